@@ -0,0 +1,179 @@
+package com.example.final_rev.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the SQLite databases the benchmarks run against.
+ *
+ * Every fixture holds one table named "items" with an INTEGER PRIMARY KEY "id".
+ * The narrow schema adds a name, a category with few distinct values and a price;
+ * the wide schema adds WIDE_COLUMNS columns alternating between INTEGER, REAL and TEXT.
+ * Values come from a fixed seed, so a fixture of a given size and schema is always the
+ * same. Fixtures are written once to the fixture directory and reused by later runs.
+ */
+public final class Fixtures {
+    static final String TABLE = "items";
+    static final int WIDE_COLUMNS = 30;
+    static final long SEED = 42;
+    static final int TRANSACTION_SIZE = 100_000;
+
+    /**
+     * Directory fixtures are kept in, overridable with -Dfixtures.dir.
+     */
+    static final Path DIRECTORY = Paths.get(System.getProperty("fixtures.dir", "target/fixtures"));
+
+    private Fixtures() {
+    }
+
+    /**
+     * Returns the fixture for the given size and schema, generating it if it does not exist yet.
+     *
+     * rows   The number of rows in the table.
+     * schema "narrow" or "wide".
+     * @return The path of the database file.
+     */
+    public static synchronized Path get(int rows, String schema) throws IOException, SQLException {
+        Path file = DIRECTORY.resolve(schema + "-" + rows + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(DIRECTORY);
+        Path partial = DIRECTORY.resolve(file.getFileName() + ".partial");
+        Files.deleteIfExists(partial);
+        generate(partial, rows, schema);
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Copies a fixture to a temporary file, for benchmarks that modify the database.
+     *
+     * @return The path of the copy, deleted when the JVM exits.
+     */
+    public static Path copy(int rows, String schema) throws IOException, SQLException {
+        Path copy = Files.createTempFile("bench-" + schema + "-" + rows + "-", ".db");
+        Files.copy(get(rows, schema), copy, StandardCopyOption.REPLACE_EXISTING);
+        copy.toFile().deleteOnExit();
+        return copy;
+    }
+
+    /**
+     * @return The columns of the schema, without the id column.
+     */
+    public static List<String> columns(String schema) {
+        List<String> columns = new ArrayList<>();
+        if ("wide".equals(schema)) {
+            for (int i = 0; i < WIDE_COLUMNS; i++) {
+                columns.add("c" + i);
+            }
+        } else {
+            columns.add("name");
+            columns.add("category");
+            columns.add("price");
+        }
+        return columns;
+    }
+
+    /**
+     * Produces the values of one generated row, without the id.
+     *
+     * random The generator, consumed in the same order for every row.
+     * schema "narrow" or "wide".
+     * row    The number of the row, used in unique text values.
+     */
+    public static String[] values(Random random, String schema, long row) {
+        List<String> columns = columns(schema);
+        String[] values = new String[columns.size()];
+        if ("wide".equals(schema)) {
+            for (int i = 0; i < values.length; i++) {
+                switch (i % 3) {
+                    case 0:
+                        values[i] = Integer.toString(random.nextInt(1_000_000));
+                        break;
+                    case 1:
+                        values[i] = Double.toString(random.nextDouble() * 1000);
+                        break;
+                    default:
+                        values[i] = "text-" + row + "-" + i;
+                        break;
+                }
+            }
+        } else {
+            values[0] = "item-" + row;
+            values[1] = "category-" + random.nextInt(20);
+            values[2] = Double.toString(Math.round(random.nextDouble() * 100_000) / 100.0);
+        }
+        return values;
+    }
+
+    private static void generate(Path file, int rows, String schema) throws SQLException {
+        List<String> columns = columns(schema);
+        StringBuilder create = new StringBuilder("CREATE TABLE " + TABLE + " (id INTEGER PRIMARY KEY");
+        StringBuilder insert = new StringBuilder("INSERT INTO " + TABLE + " (");
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String type = "wide".equals(schema) ? new String[] {"INTEGER", "REAL", "TEXT"}[i % 3]
+                    : new String[] {"TEXT", "TEXT", "REAL"}[i];
+            create.append(", ").append(columns.get(i)).append(' ').append(type);
+            insert.append(i > 0 ? ", " : "").append(columns.get(i));
+            placeholders.append(i > 0 ? ", ?" : "?");
+        }
+        create.append(");");
+        insert.append(") VALUES (").append(placeholders).append(");");
+
+        System.out.println("Generating fixture " + file.getFileName() + " with " + rows + " rows...");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath())) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode = OFF;");
+                statement.execute("PRAGMA synchronous = OFF;");
+                statement.execute(create.toString());
+            }
+
+            connection.setAutoCommit(false);
+            Random random = new Random(SEED);
+            try (PreparedStatement statement = connection.prepareStatement(insert.toString())) {
+                for (long row = 1; row <= rows; row++) {
+                    String[] values = values(random, schema, row);
+                    for (int i = 0; i < values.length; i++) {
+                        statement.setString(i + 1, values[i]);
+                    }
+                    statement.addBatch();
+                    if (row % 1000 == 0) {
+                        statement.executeBatch();
+                    }
+                    if (row % TRANSACTION_SIZE == 0) {
+                        connection.commit();
+                    }
+                }
+                statement.executeBatch();
+                connection.commit();
+            }
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode = DELETE;");
+            }
+        }
+    }
+
+    /**
+     * Generates fixtures ahead of a benchmark run.
+     * Arguments are pairs of row count and schema, e.g. 1000000 narrow 1000000 wide.
+     */
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            System.out.println(get(Integer.parseInt(args[i]), args[i + 1]));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.final_rev.bench;
+
+import com.example.final_rev.Database;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of Database against an unchanged fixture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmarks {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"narrow", "wide"})
+    public String schema;
+
+    private Database database;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        database = new Database(Fixtures.get(rows, schema).toString());
+        random = new SplittableRandom(Fixtures.SEED);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+    }
+
+    /**
+     * Reads every cell of the table through getTableRows, reported per full scan.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long fullScan(Blackhole blackhole) throws SQLException {
+        long count = 0;
+        try (ResultSet rs = database.getTableRows(Fixtures.TABLE)) {
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    blackhole.consume(rs.getString(i));
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean isPrimaryKeyExists() {
+        return database.isPrimaryKeyExists(Fixtures.TABLE, "id", Integer.toString(random.nextInt(rows * 2) + 1));
+    }
+
+    @Benchmark
+    public Object getColumns() {
+        return database.getColumns(Fixtures.TABLE);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.final_rev.bench;
+
+import com.example.final_rev.Database;
+import com.example.final_rev.DuplicatePolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write paths of Database. Every trial works on its own copy of the fixture, so
+ * the rows added by one benchmark do not change what the next one measures.
+ * All results are reported per row written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmarks {
+    static final int BATCH_ROWS = 1000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"narrow", "wide"})
+    public String schema;
+
+    private Path file;
+    private Database database;
+    private List<String> columns;
+    private List<String> allColumns;
+    private Random random;
+    private long nextRow;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        file = Fixtures.copy(rows, schema);
+        database = new Database(file.toString());
+        columns = Fixtures.columns(schema);
+        allColumns = new ArrayList<>(columns);
+        allColumns.add(0, "id");
+        random = new Random(Fixtures.SEED);
+        nextRow = rows + 1L;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        database.close();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+
+    /**
+     * One insertRow call, which runs in its own transaction.
+     */
+    @Benchmark
+    public Object insertSingle() {
+        return database.insertRow(Fixtures.TABLE, columns, rowValues(nextRow++));
+    }
+
+    /**
+     * BATCH_ROWS rows inserted with insertRows in one batched transaction.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_ROWS)
+    public long insertBatched() throws SQLException {
+        List<String[]> batch = new ArrayList<>(BATCH_ROWS);
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            batch.add(Fixtures.values(random, schema, nextRow++));
+        }
+        return database.insertRows(Fixtures.TABLE, columns, DuplicatePolicy.FAIL, batch.iterator(),
+                BATCH_ROWS, BATCH_ROWS, null);
+    }
+
+    /**
+     * Rewrites every column of a random existing row with updateRow.
+     */
+    @Benchmark
+    public Object updateRow() {
+        String id = Integer.toString(random.nextInt(rows) + 1);
+        Map<String, String> values = rowValues(Long.parseLong(id));
+        values.put("id", id);
+        return database.updateRow(Fixtures.TABLE, "id", id, values);
+    }
+
+    private Map<String, String> rowValues(long row) {
+        String[] values = Fixtures.values(random, schema, row);
+        Map<String, String> columnValues = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            columnValues.put(columns.get(i), values[i]);
+        }
+        return columnValues;
+    }
+}
@@ -11,26 +11,42 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class AddRow {
-    private Database database;
+    private AsyncDatabase database;
     private String tableName;
     private Stage modalStage;
     private UI parentUI;
-    private Main main;
+    private EditSession editSession;
 
-    public AddRow(Database database, String tableName, Main main) {
+    public AddRow(AsyncDatabase database, String tableName, UI parentUI) {
         this.database = database;
         this.tableName = tableName;
-        this.main = main;
+        this.parentUI = parentUI;
+    }
+
+    /**
+     * Buffers the new row in the given edit session instead of inserting it right away.
+     *
+     * editSession The active edit session, or null to insert directly.
+     */
+    public void setEditSession(EditSession editSession) {
+        this.editSession = editSession;
     }
 
     public void show() {
+        database.getColumns(tableName).thenAccept(this::show).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
+
+    private void show(List<String> columnNames) {
         modalStage = new Stage();
         modalStage.initModality(Modality.APPLICATION_MODAL);
         modalStage.setTitle("Add a Row");
@@ -45,10 +61,8 @@ public class AddRow {
         // Create text fields for each column
         List<TextField> textFields = new ArrayList<>();
 
-        List columnNames = database.getColumns(tableName);
-
         for (int i = 0; i < columnNames.size(); i++) {
-            String columnName = (String) columnNames.get(i);
+            String columnName = columnNames.get(i);
             Label label = new Label(columnName + ":");
             TextField textField = new TextField();
             textFields.add(textField);
@@ -78,47 +92,57 @@ public class AddRow {
 
         // Create a map to store the mapping of column names to their edited values
         // The key is the column name, and the value is the edited value for that column
-        Map<String, String> columnValueMap = new HashMap<>();
+        Map<String, String> columnValueMap = new LinkedHashMap<>();
         for (int i = 0; i < columnNames.size(); i++) {
             columnValueMap.put(columnNames.get(i), columnValues[i]);
         }
 
-        // Get the primary key columns for the table
-        List<String> primaryKeys;
-        try {
-            primaryKeys = database.getPrimaryKeyColumns(tableName);
-        } catch (SQLException e) {
-            e.printStackTrace();
-            // Handle the exception appropriately
-            return; // Stop further processing if there's an error
+        // In an edit session the row is written together with the other buffered changes
+        // While a commit runs the dialog stays open, so the row can be saved once it finishes
+        if (editSession != null) {
+            if (editSession.addRow(columnValueMap)) {
+                modalStage.close();
+            }
+            return;
         }
 
-        // Check if any of the primary key columns exist in the column names
-        for (String primaryKeyColumn : primaryKeys) {
-            if (columnNames.contains(primaryKeyColumn)) {
-                // Get the primary key value from the map
-                String primaryKeyValue = columnValueMap.get(primaryKeyColumn);
-
-                // Check if the primary key value is not empty and already exists in the table
-                if (primaryKeyValue != null && database.isPrimaryKeyExists(tableName, primaryKeyColumn, primaryKeyValue)) {
-                    // Show an error message to the user or handle the duplicate key scenario appropriately
-                    // For example:
-                    // showError("Primary key value already exists. Please enter a unique value.");
-                    return; // Stop further processing since we cannot insert a duplicate primary key
+        // Check the primary keys and insert on the writer thread, so no other write can slip in between
+        long saveStart = System.nanoTime();
+        database.write(db -> {
+            // Get the primary key columns for the table
+            List<String> primaryKeys = db.getPrimaryKeyColumns(tableName);
+
+            // Check if any of the primary key columns exist in the column names
+            for (String primaryKeyColumn : primaryKeys) {
+                if (columnNames.contains(primaryKeyColumn)) {
+                    // Get the primary key value from the map
+                    String primaryKeyValue = columnValueMap.get(primaryKeyColumn);
+
+                    // Check if the primary key value is not empty and already exists in the table
+                    if (primaryKeyValue != null && db.isPrimaryKeyExists(tableName, primaryKeyColumn, primaryKeyValue)) {
+                        // Show an error message to the user or handle the duplicate key scenario appropriately
+                        // For example:
+                        // showError("Primary key value already exists. Please enter a unique value.");
+                        return Optional.<RowPage>empty(); // Stop further processing since we cannot insert a duplicate primary key
+                    }
                 }
             }
-        }
-
-
 
-        // Insert the new row into the database
-        database.insertRow(tableName, columnNames, columnValueMap);
+            // Insert the new row into the database, it is read back for the table view
+            return Optional.ofNullable(db.insertRow(tableName, columnNames, columnValueMap));
+        }).thenAccept(inserted -> {
+            if (inserted.isPresent()) {
+                // Close the modal after saving the new row
+                modalStage.close();
 
-        // Close the modal after saving the new row
-        modalStage.close();
-
-        // Refresh the table view in the parent UI
-        main.refreshUIAfterUpdate();
+                // Add the new row to the table view in the parent UI
+                parentUI.addRowToTable(tableName, inserted.get());
+            }
+            database.getDatabase().getMetrics().recordTime(MetricsRegistry.SAVE, System.nanoTime() - saveStart);
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
     }
 
 }
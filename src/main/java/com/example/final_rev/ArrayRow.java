@@ -0,0 +1,49 @@
+package com.example.final_rev;
+
+import java.util.Arrays;
+
+/**
+ * A row held as a plain array of values, used for edited rows and placeholders
+ * that are not part of a RowStore.
+ */
+public class ArrayRow implements RowView {
+    private final Object[] values;
+
+    public ArrayRow(int columnCount) {
+        this.values = new Object[columnCount];
+    }
+
+    public ArrayRow(Object[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return A modifiable copy of the given row.
+     */
+    public static ArrayRow copyOf(RowView row) {
+        ArrayRow copy = new ArrayRow(row.getColumnCount());
+        for (int i = 0; i < copy.values.length; i++) {
+            copy.values[i] = row.getValue(i);
+        }
+        return copy;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    @Override
+    public Object getValue(int column) {
+        return values[column];
+    }
+
+    public void setValue(int column, Object value) {
+        values[column] = value;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.final_rev;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs Database calls off the JavaFX Application Thread.
+ *
+ * Writes go through a single writer thread so they are applied in the order they
+ * were submitted, reads are spread over a small pool of reader threads. Every
+ * returned future is completed on the JavaFX Application Thread, so callbacks
+ * attached to it can touch the UI directly. Cancelling a future cancels the
+ * statement it is running with Statement.cancel().
+ */
+public class AsyncDatabase {
+    /**
+     * Executor that runs tasks on the JavaFX Application Thread.
+     */
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    private final Database database;
+    private final ExecutorService writer;
+    private final ExecutorService readers;
+    private final Set<CompletableFuture<?>> activeCalls = ConcurrentHashMap.newKeySet();
+    private final ReadOnlyIntegerWrapper runningCalls = new ReadOnlyIntegerWrapper(this, "runningCalls", 0);
+
+    /**
+     * Creates the writer thread and one reader thread per reader connection of the database.
+     *
+     * database The database to run calls against.
+     */
+    public AsyncDatabase(Database database) {
+        this(database, database.getSettings().getReaderConnections());
+    }
+
+    /**
+     * Creates the writer thread and the reader pool for the given database.
+     *
+     * database      The database to run calls against.
+     * readerThreads The number of threads used for read calls.
+     */
+    public AsyncDatabase(Database database, int readerThreads) {
+        this.database = database;
+        this.writer = Executors.newSingleThreadExecutor(workerThreads("db-writer"));
+        this.readers = Executors.newFixedThreadPool(readerThreads, workerThreads("db-reader"));
+    }
+
+    private static ThreadFactory workerThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public Database getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return The number of calls submitted but not yet completed, for progress indicators.
+     */
+    public ReadOnlyIntegerProperty runningCallsProperty() {
+        return runningCalls.getReadOnlyProperty();
+    }
+
+    /**
+     * Runs a read-only call on the reader pool.
+     *
+     * call The call to run.
+     * @return A future completed on the JavaFX Application Thread with the result of the call.
+     */
+    public <T> CompletableFuture<T> read(DatabaseCall<T> call) {
+        return submit(readers, call);
+    }
+
+    /**
+     * Runs a call that modifies the database on the writer thread.
+     *
+     * call The call to run.
+     * @return A future completed on the JavaFX Application Thread with the result of the call.
+     */
+    public <T> CompletableFuture<T> write(DatabaseCall<T> call) {
+        return submit(writer, call);
+    }
+
+    /**
+     * Runs a long call that modifies the database in chunks, each under the write lock, such
+     * as Database.deleteWhere. It runs on the reader pool instead of the writer thread, so
+     * writes submitted meanwhile are applied between its chunks instead of after it.
+     *
+     * call The call to run.
+     * @return A future completed on the JavaFX Application Thread with the result of the call.
+     */
+    public <T> CompletableFuture<T> writeInChunks(DatabaseCall<T> call) {
+        return submit(readers, call);
+    }
+
+    public CompletableFuture<List<String>> getTables() {
+        return read(Database::getTables);
+    }
+
+    public CompletableFuture<List<String>> getColumns(String tableName) {
+        return read(db -> db.getColumns(tableName));
+    }
+
+    public CompletableFuture<List<String>> getPrimaryKeyColumns(String tableName) {
+        return read(db -> db.getPrimaryKeyColumns(tableName));
+    }
+
+    public CompletableFuture<Boolean> isPrimaryKeyExists(String tableName, String primaryKeyColumn, String primaryKeyValue) {
+        return read(db -> db.isPrimaryKeyExists(tableName, primaryKeyColumn, primaryKeyValue));
+    }
+
+    public CompletableFuture<RowPage> getRowPage(String tableName, String keyColumn, Object afterKey, long offset, int limit) {
+        return read(db -> db.getRowPage(tableName, keyColumn, afterKey, offset, limit));
+    }
+
+    public CompletableFuture<RowPage> getRowPage(String tableName, String keyColumn, RowQuery query, RowPage.Position after, long offset, int limit) {
+        return read(db -> db.getRowPage(tableName, keyColumn, query, after, offset, limit));
+    }
+
+    public CompletableFuture<Long> countRows(String tableName) {
+        return read(db -> db.countRows(tableName));
+    }
+
+    public CompletableFuture<Long> countRows(String tableName, RowQuery query) {
+        return read(db -> db.countRows(tableName, query));
+    }
+
+    public CompletableFuture<Boolean> isLastRowKey(String tableName, String keyColumn, Object key) {
+        return read(db -> db.isLastRowKey(tableName, keyColumn, key));
+    }
+
+    public CompletableFuture<List<SearchHit>> searchAll(String text, int limit) {
+        return read(db -> db.searchAll(text, limit));
+    }
+
+    public CompletableFuture<RowPage> insertRow(String tableName, List<String> columnNames, Map<String, String> columnValues) {
+        return write(db -> db.insertRow(tableName, columnNames, columnValues));
+    }
+
+    public CompletableFuture<RowPage> updateRow(String tableName, String primaryKeyColumn, String primaryKeyValue, Map<String, String> editedValues) {
+        return write(db -> db.updateRow(tableName, primaryKeyColumn, primaryKeyValue, editedValues));
+    }
+
+    /**
+     * Cancels every call that has not completed yet.
+     */
+    public void cancelAll() {
+        for (CompletableFuture<?> call : activeCalls) {
+            call.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels outstanding calls and stops the worker threads.
+     */
+    public void shutdown() {
+        cancelAll();
+        readers.shutdownNow();
+        writer.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(ExecutorService executor, DatabaseCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<CancelToken> running = new AtomicReference<>();
+        activeCalls.add(result);
+        changeRunningCalls(1);
+
+        result.whenComplete((value, error) -> {
+            activeCalls.remove(result);
+            if (error instanceof CancellationException) {
+                CancelToken token = running.get();
+                if (token != null) {
+                    database.cancel(token);
+                }
+                // The worker still reports completion, a cancelled call is counted down there
+            }
+        });
+
+        executor.execute(() -> {
+            if (result.isDone()) {
+                changeRunningCalls(-1);
+                return;
+            }
+            CancelToken token = database.beginCall();
+            running.set(token);
+            // A cancel between the check above and the line before found no token to cancel
+            if (result.isCancelled()) {
+                database.cancel(token);
+            }
+            try {
+                T value = call.call(database);
+                Platform.runLater(() -> result.complete(value));
+            } catch (Exception e) {
+                Platform.runLater(() -> result.completeExceptionally(e));
+            } finally {
+                running.set(null);
+                database.endCall(token);
+                changeRunningCalls(-1);
+            }
+        });
+        return result;
+    }
+
+    private void changeRunningCalls(int delta) {
+        if (Platform.isFxApplicationThread()) {
+            runningCalls.set(runningCalls.get() + delta);
+        } else {
+            Platform.runLater(() -> runningCalls.set(runningCalls.get() + delta));
+        }
+    }
+}
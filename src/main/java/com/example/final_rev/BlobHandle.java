@@ -0,0 +1,52 @@
+package com.example.final_rev;
+
+import java.sql.SQLException;
+
+/**
+ * Stands in for a BLOB value in a RowStore. Only the size is kept in memory,
+ * the bytes are read from the database when they are actually needed.
+ */
+public class BlobHandle {
+    private final String tableName;
+    private final String keyColumn;
+    private final Object key;
+    private final String columnName;
+    private final int length;
+
+    /**
+     * tableName  The table holding the BLOB.
+     * keyColumn  The row key column, see Database.getRowKeyColumn.
+     * key        The key of the row.
+     * columnName The column holding the BLOB.
+     * length     The size of the BLOB in bytes.
+     */
+    public BlobHandle(String tableName, String keyColumn, Object key, String columnName, int length) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.key = key;
+        this.columnName = columnName;
+        this.length = length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Reads the bytes of the BLOB.
+     *
+     * database The database to read from.
+     * @return The bytes, or null if the row no longer exists.
+     */
+    public byte[] load(Database database) throws SQLException {
+        if (keyColumn == null) {
+            throw new SQLException("Rows of " + tableName + " cannot be identified to read the BLOB");
+        }
+        return database.readBlob(tableName, keyColumn, key, columnName);
+    }
+
+    @Override
+    public String toString() {
+        return "BLOB (" + length + " bytes)";
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.final_rev;
+
+/**
+ * A bulk delete, update or import recorded in the undo journal, see Database.deleteWhere,
+ * updateWhere and insertRows.
+ */
+public class BulkOperation {
+    /**
+     * What a bulk operation did to its rows.
+     */
+    public enum Kind {
+        DELETE,
+        UPDATE,
+        INSERT
+    }
+
+    private final long id;
+    private final String tableName;
+    private final Kind kind;
+    private final String description;
+    private final long rowCount;
+    private final long created;
+
+    /**
+     * id          The id of the operation in the journal.
+     * tableName   The table the operation changed.
+     * kind        Whether rows were deleted, updated or inserted.
+     * description What the operation did, for the user.
+     * rowCount    The number of rows changed and saved in the journal.
+     * created     When the operation started, in milliseconds since the epoch.
+     */
+    public BulkOperation(long id, String tableName, Kind kind, String description, long rowCount, long created) {
+        this.id = id;
+        this.tableName = tableName;
+        this.kind = kind;
+        this.description = description;
+        this.rowCount = rowCount;
+        this.created = created;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return description + " (" + rowCount + " rows)";
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.final_rev;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * One call running on a worker thread, see Database.beginCall.
+ *
+ * A cancel only ever reaches the call it was meant for: once the call has ended its token
+ * ignores cancels, so a cancel that arrives late can neither interrupt a statement of the
+ * next call on the same thread nor make that call fail.
+ */
+public class CancelToken {
+    private Statement statement;
+    private boolean cancelled;
+    private boolean finished;
+
+    // The statement most recently prepared by the call, the one a cancel interrupts
+    synchronized void setStatement(Statement statement) {
+        if (!finished) {
+            this.statement = statement;
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Interrupts SQLite, so a statement blocked on the worker fails with an SQLException
+    synchronized void cancel() {
+        if (finished) {
+            return;
+        }
+        cancelled = true;
+        if (statement != null) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    synchronized void finish() {
+        finished = true;
+        statement = null;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change data capture: triggers that record every insert, update and delete of a table in
+ * the _fr_changes table, whether the change is made through this application or by another
+ * process writing the same file.
+ *
+ * Every change gets an increasing seq, the time, the table, the operation, the key of the row
+ * before the change and the row after it as a JSON object. The key is the rowid, or for a
+ * WITHOUT ROWID table a JSON object of its primary key columns. Blob values are written as
+ * {"hex": "..."} since JSON has no binary type.
+ *
+ * _fr_changes is a ring buffer of RING_CAPACITY changes: a trigger on it removes the oldest
+ * change for every new one. Consumers such as ChangeFeed keep their position as an offset in
+ * _fr_change_offsets, and a consumer that falls more than RING_CAPACITY changes behind sees a
+ * gap in the seq numbers. The triggers use only json_object, json_insert and julianday, so
+ * they also work for other programs writing the file with their own SQLite.
+ *
+ * All methods run on the writer connection and expect the caller to hold the write lock.
+ */
+public class ChangeCapture {
+    static final String CHANGES = Database.INTERNAL_TABLE_PREFIX + "changes";
+    static final String OFFSETS = Database.INTERNAL_TABLE_PREFIX + "change_offsets";
+    static final String TRIGGER_PREFIX = Database.INTERNAL_TABLE_PREFIX + "cdc_";
+    static final long RING_CAPACITY = 100_000;
+    // Functions take at most 100 arguments in some SQLite builds, wider rows are continued with json_insert
+    static final int MAX_JSON_PAIRS = 49;
+
+    private static final String[] OPERATIONS = {"insert", "update", "delete"};
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    private final ConnectionPool pool;
+
+    /**
+     * pool The pool whose writer connection the triggers and offsets are written with.
+     */
+    public ChangeCapture(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    private Connection writer() {
+        return pool.getWriter();
+    }
+
+    private void create() throws SQLException {
+        try (Statement statement = writer().createStatement()) {
+            // AUTOINCREMENT keeps seq increasing even after the ring buffer was emptied
+            statement.execute("CREATE TABLE IF NOT EXISTS " + CHANGES + " (seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "ts INTEGER NOT NULL, tbl TEXT NOT NULL, op TEXT NOT NULL, row_key, data TEXT);");
+            statement.execute("CREATE TRIGGER IF NOT EXISTS " + CHANGES + "_ring AFTER INSERT ON " + CHANGES
+                    + " BEGIN DELETE FROM " + CHANGES + " WHERE seq <= NEW.seq - " + RING_CAPACITY + "; END;");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + OFFSETS + " (consumer TEXT PRIMARY KEY, seq INTEGER NOT NULL);");
+        }
+    }
+
+    /**
+     * Starts capturing the changes of a table, or picks up columns added since capture was started.
+     *
+     * tableName  The table.
+     * columns    The columns of the table.
+     * keyColumns The primary key columns of a WITHOUT ROWID table, or null for a rowid table.
+     */
+    public void enable(String tableName, List<String> columns, List<String> keyColumns) throws SQLException {
+        create();
+        try (Statement statement = writer().createStatement()) {
+            for (String operation : OPERATIONS) {
+                statement.execute("DROP TRIGGER IF EXISTS " + triggerName(tableName, operation) + ";");
+                statement.execute(triggerSql(tableName, operation, columns, keyColumns));
+            }
+        }
+    }
+
+    /**
+     * Stops capturing the changes of a table. Changes already captured stay in the ring buffer.
+     *
+     * tableName The table.
+     */
+    public void disable(String tableName) throws SQLException {
+        try (Statement statement = writer().createStatement()) {
+            for (String operation : OPERATIONS) {
+                statement.execute("DROP TRIGGER IF EXISTS " + triggerName(tableName, operation) + ";");
+            }
+        }
+    }
+
+    /**
+     * @return The tables whose changes are captured.
+     */
+    public List<String> getCapturedTables() throws SQLException {
+        List<String> tables = new ArrayList<>();
+        String sql = "SELECT tbl_name FROM sqlite_master WHERE type = 'trigger' AND name = '" + TRIGGER_PREFIX
+                + "' || tbl_name || '_insert' ORDER BY tbl_name;";
+        try (Statement statement = writer().createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * consumer The name of the consumer.
+     * @return The seq of the last change the consumer has processed, 0 if it has none yet.
+     */
+    public long getOffset(String consumer) throws SQLException {
+        create();
+        try (PreparedStatement statement = writer().prepareStatement("SELECT seq FROM " + OFFSETS + " WHERE consumer = ?;")) {
+            statement.setString(1, consumer);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Remembers the last change a consumer has processed, so it can resume after it.
+     *
+     * consumer The name of the consumer.
+     * seq      The seq of the change.
+     */
+    public void saveOffset(String consumer, long seq) throws SQLException {
+        create();
+        try (StatementCache.CachedStatement cached = pool.getStatementCache(writer()).borrow(OFFSETS, "save", List.of(),
+                () -> "INSERT OR REPLACE INTO " + OFFSETS + " (consumer, seq) VALUES (?, ?);")) {
+            cached.get().setString(1, consumer);
+            cached.get().setLong(2, seq);
+            cached.get().executeUpdate();
+        }
+    }
+
+    private static String triggerName(String tableName, String operation) {
+        return Database.quoteIdentifier(TRIGGER_PREFIX + tableName + "_" + operation);
+    }
+
+    // The key comes from the row before the change and the data from the row after it
+    private static String triggerSql(String tableName, String operation, List<String> columns, List<String> keyColumns) {
+        String keyRow = operation.equals("insert") ? "NEW" : "OLD";
+        String key = keyColumns == null ? keyRow + ".rowid" : jsonObject(keyColumns, keyRow);
+        String data = operation.equals("delete") ? "NULL" : jsonObject(columns, "NEW");
+        return "CREATE TRIGGER " + triggerName(tableName, operation) + " AFTER " + operation.toUpperCase()
+                + " ON " + Database.quoteIdentifier(tableName) + " BEGIN INSERT INTO " + CHANGES
+                + " (ts, tbl, op, row_key, data) VALUES (" + NOW_MILLIS + ", " + quoteLiteral(tableName) + ", '"
+                + operation + "', " + key + ", " + data + "); END;";
+    }
+
+    private static String jsonObject(List<String> columns, String row) {
+        StringBuilder json = new StringBuilder("json_object(");
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            if (i > 0 && i % MAX_JSON_PAIRS == 0) {
+                json.insert(0, "json_insert(").append("), ");
+            } else if (i > 0) {
+                json.append(", ");
+            }
+            String value = row + "." + Database.quoteIdentifier(column);
+            json.append(i < MAX_JSON_PAIRS ? quoteLiteral(column) : quoteLiteral("$." + Database.quoteIdentifier(column)))
+                    .append(", CASE typeof(").append(value).append(") WHEN 'blob' THEN json_object('hex', hex(")
+                    .append(value).append(")) ELSE ").append(value).append(" END");
+        }
+        return json.append(')').toString();
+    }
+
+    private static String quoteLiteral(String text) {
+        return "'" + text.replace("'", "''") + "'";
+    }
+}
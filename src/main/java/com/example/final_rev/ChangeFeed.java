@@ -0,0 +1,211 @@
+package com.example.final_rev;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams the changes recorded by ChangeCapture to a file or a local socket as JSON Lines,
+ * one object per change:
+ * <pre>
+ * {"seq":42,"ts":1700000000000,"table":"orders","op":"update","key":7,"row":{"id":7,"total":19.5}}
+ * </pre>
+ * A delete has "row":null. When changes were dropped from the ring buffer before the feed
+ * read them, a {"op":"gap","from":...,"to":...} line tells the consumer to reload in full.
+ *
+ * The feed reads BATCH_ROWS changes at a time on its own read-only connection, writes them,
+ * flushes, and only then saves the seq of the last one as the offset of its consumer. A
+ * restarted feed resumes after that offset, so every change is delivered at least once and
+ * consumers can skip repeats by seq. Writes block while the receiver does not keep up, which
+ * holds back the next read, so a slow receiver costs no memory. When the target fails, the
+ * feed opens it again after RETRY_MILLIS and resumes from the saved offset.
+ */
+public class ChangeFeed {
+    static final int BATCH_ROWS = 1_000;
+    static final long IDLE_POLL_MILLIS = 250;
+    static final long RETRY_MILLIS = 2_000;
+
+    private final Database database;
+    private final String consumer;
+    private final Target target;
+    private volatile boolean running;
+    private volatile long offset;
+    private Thread thread;
+
+    /**
+     * database The database whose captured changes are streamed.
+     * consumer The name the offset is saved under, one per downstream consumer.
+     * target   Where the changes are written, see file, tcp and unixSocket.
+     */
+    public ChangeFeed(Database database, String consumer, Target target) {
+        this.database = database;
+        this.consumer = consumer;
+        this.target = target;
+    }
+
+    /**
+     * Appends to a file, creating it if needed.
+     *
+     * file The file.
+     * @return The target.
+     */
+    public static Target file(Path file) {
+        return () -> FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Connects to a TCP socket.
+     *
+     * host The host, usually localhost.
+     * port The port.
+     * @return The target.
+     */
+    public static Target tcp(String host, int port) {
+        return () -> SocketChannel.open(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * Connects to a Unix domain socket.
+     *
+     * socket The socket file.
+     * @return The target.
+     */
+    public static Target unixSocket(Path socket) {
+        return () -> {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            return channel;
+        };
+    }
+
+    /**
+     * Starts streaming on a background thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "change-feed-" + consumer);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops streaming and waits for the batch being written.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Streams until stop is called, on the calling thread.
+     */
+    public void run() {
+        running = true;
+        while (running) {
+            try (Connection reader = database.getConnectionPool().openReader();
+                 ChannelWriter out = new ChannelWriter(target.open())) {
+                offset = database.getChangeFeedOffset(consumer);
+                while (running) {
+                    if (streamBatch(reader, out) < BATCH_ROWS) {
+                        Thread.sleep(IDLE_POLL_MILLIS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException | SQLException e) {
+                // The receiver went away or the database is busy, try again from the saved offset
+                e.printStackTrace();
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    // Writes the next batch of changes and saves the offset once they are flushed
+    private int streamBatch(Connection reader, ChannelWriter out) throws SQLException, IOException {
+        int rows = 0;
+        long last = offset;
+        StringBuilder line = new StringBuilder(256);
+        String sql = "SELECT seq, ts, tbl, op, row_key, data FROM " + ChangeCapture.CHANGES + " WHERE seq > ? ORDER BY seq LIMIT ?;";
+        try (PreparedStatement statement = reader.prepareStatement(sql)) {
+            statement.setLong(1, offset);
+            statement.setInt(2, BATCH_ROWS);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long seq = rs.getLong(1);
+                    line.setLength(0);
+                    if (seq > last + 1) {
+                        line.append("{\"op\":\"gap\",\"from\":").append(last + 1).append(",\"to\":").append(seq - 1).append("}\n");
+                    }
+                    line.append("{\"seq\":").append(seq).append(",\"ts\":").append(rs.getLong(2)).append(",\"table\":");
+                    ResultExporter.appendJsonString(line, rs.getString(3));
+                    line.append(",\"op\":");
+                    ResultExporter.appendJsonString(line, rs.getString(4));
+                    // The key and the row are already JSON, written by the triggers
+                    Object key = rs.getObject(5);
+                    line.append(",\"key\":").append(key == null ? "null" : key.toString());
+                    String data = rs.getString(6);
+                    line.append(",\"row\":").append(data == null ? "null" : data).append("}\n");
+                    out.writeUtf8(line);
+                    last = seq;
+                    rows++;
+                }
+            }
+        }
+        if (rows > 0) {
+            out.flush();
+            database.saveChangeFeedOffset(consumer, last);
+            offset = last;
+            database.getMetrics().increment(MetricsRegistry.ROWS_READ, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * @return The seq of the last change written and saved.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Opens the channel the changes are written to.
+     */
+    @FunctionalInterface
+    public interface Target {
+        /**
+         * @return A new channel, closed by the feed.
+         */
+        WritableByteChannel open() throws IOException;
+    }
+}
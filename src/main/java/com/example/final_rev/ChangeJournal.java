@@ -0,0 +1,392 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Append-only log of the row changes made through Database, for undo and redo.
+ *
+ * Every user action, such as saving an edited row or committing an edit session, gets a
+ * row in _fr_actions, and every row it changed gets a record in _fr_journal with the
+ * table, the rowid and the before- and after-image of the changed columns encoded with
+ * RowCodec. Records are written on the writer connection inside the transaction of the
+ * change itself, so they cost a few indexed statements and no extra commit.
+ *
+ * Undo replays the before-images of the latest action in reverse order and redo replays
+ * the after-images, each as one transaction in which consecutive records of the same
+ * shape share one batched statement. A new action discards the actions that were undone.
+ * Only the newest MAX_ACTIONS actions are kept, older ones are compacted away.
+ *
+ * All methods run on the writer connection and expect the caller to hold the write lock.
+ */
+public class ChangeJournal {
+    static final String JOURNAL = Database.INTERNAL_TABLE_PREFIX + "journal";
+    static final String ACTIONS = Database.INTERNAL_TABLE_PREFIX + "actions";
+    static final int MAX_ACTIONS = 1_000;
+    // Compact once every this many actions instead of after every one
+    static final int COMPACT_INTERVAL = 100;
+
+    /**
+     * What a journal record did to its row.
+     */
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private final ConnectionPool pool;
+    private boolean created;
+
+    /**
+     * pool The pool whose writer connection the journal is written with.
+     */
+    public ChangeJournal(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    private Connection writer() {
+        return pool.getWriter();
+    }
+
+    private void create() throws SQLException {
+        if (created) {
+            return;
+        }
+        try (Statement statement = writer().createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + ACTIONS + " (id INTEGER PRIMARY KEY, description TEXT NOT NULL, "
+                    + "created INTEGER NOT NULL, undone INTEGER NOT NULL DEFAULT 0);");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + JOURNAL + " (seq INTEGER PRIMARY KEY, action INTEGER NOT NULL, "
+                    + "tbl TEXT NOT NULL, op INTEGER NOT NULL, row_id INTEGER NOT NULL, before BLOB, after BLOB);");
+            statement.execute("CREATE INDEX IF NOT EXISTS " + JOURNAL + "_action ON " + JOURNAL + " (action);");
+        }
+        created = true;
+    }
+
+    /**
+     * Tells the journal that a transaction it wrote in was rolled back, which may have taken
+     * back the journal tables too if they were created in it.
+     */
+    public void rolledBack() {
+        created = false;
+    }
+
+    /**
+     * Starts a new action, discarding the actions that were undone since they can no longer be redone.
+     * Call it inside the transaction of the change.
+     *
+     * description What the user did, shown in the undo and redo buttons.
+     * @return The id of the action, to pass to record.
+     */
+    public long beginAction(String description) throws SQLException {
+        create();
+        // Undo always takes the newest action, so the undone actions are the newest ones and the
+        // newest action tells whether there are any
+        boolean undone;
+        try (StatementCache.CachedStatement cached = borrow("newest", List.of(),
+                () -> "SELECT undone FROM " + ACTIONS + " ORDER BY id DESC LIMIT 1;");
+             ResultSet rs = cached.get().executeQuery()) {
+            undone = rs.next() && rs.getInt(1) == 1;
+        }
+        if (undone) {
+            try (Statement statement = writer().createStatement()) {
+                statement.execute("DELETE FROM " + JOURNAL + " WHERE action IN (SELECT id FROM " + ACTIONS + " WHERE undone = 1);");
+                statement.execute("DELETE FROM " + ACTIONS + " WHERE undone = 1;");
+            }
+        }
+        long id;
+        try (StatementCache.CachedStatement cached = borrow("begin", List.of(),
+                () -> "INSERT INTO " + ACTIONS + " (description, created) VALUES (?, ?) RETURNING id;")) {
+            cached.get().setString(1, description);
+            cached.get().setLong(2, System.currentTimeMillis());
+            try (ResultSet rs = cached.get().executeQuery()) {
+                rs.next();
+                id = rs.getLong(1);
+            }
+        }
+        if (id % COMPACT_INTERVAL == 0) {
+            compact(MAX_ACTIONS);
+        }
+        return id;
+    }
+
+    /**
+     * Appends the change of one row to an action.
+     *
+     * action    The action, see beginAction.
+     * tableName The table of the row.
+     * operation What happened to the row.
+     * rowid     The rowid of the row.
+     * before    The changed columns before the change, null for an insert.
+     * after     The changed columns after the change, null for a delete.
+     */
+    public void record(long action, String tableName, Operation operation, long rowid,
+                       Map<String, Object> before, Map<String, Object> after) throws SQLException {
+        try (StatementCache.CachedStatement cached = borrow("record", List.of(),
+                () -> "INSERT INTO " + JOURNAL + " (action, tbl, op, row_id, before, after) VALUES (?, ?, ?, ?, ?, ?);")) {
+            PreparedStatement statement = cached.get();
+            statement.setLong(1, action);
+            statement.setString(2, tableName);
+            statement.setInt(3, operation.ordinal());
+            statement.setLong(4, rowid);
+            statement.setBytes(5, before == null ? null : RowCodec.encode(before));
+            statement.setBytes(6, after == null ? null : RowCodec.encode(after));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads columns of a row as they are stored, for a before- or after-image.
+     *
+     * tableName The table of the row.
+     * rowid     The rowid of the row.
+     * columns   The columns to read, or null for all of them.
+     * @return The values by column name, or null if there is no such row.
+     */
+    public Map<String, Object> readImage(String tableName, long rowid, List<String> columns) throws SQLException {
+        List<String> key = columns == null ? List.of("*") : columns;
+        try (StatementCache.CachedStatement cached = pool.getStatementCache(writer()).borrow(tableName, "journal-image", key,
+                () -> "SELECT " + selectList(columns) + " FROM " + Database.quoteIdentifier(tableName) + " WHERE rowid = ?;")) {
+            PreparedStatement statement = cached.get();
+            statement.setLong(1, rowid);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Map<String, Object> image = new LinkedHashMap<>();
+                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                    image.put(rs.getMetaData().getColumnName(i), rs.getObject(i));
+                }
+                return image;
+            }
+        }
+    }
+
+    /**
+     * Reads columns of the rows with a given value, such as the rows an update by primary key changes.
+     *
+     * tableName   The table to search.
+     * whereColumn The column to compare.
+     * value       The value to look for.
+     * columns     The columns to read.
+     * @return The values by column name of every matching row, by rowid.
+     */
+    public Map<Long, Map<String, Object>> readImages(String tableName, String whereColumn, Object value,
+                                                    List<String> columns) throws SQLException {
+        List<String> key = new ArrayList<>(columns);
+        key.add(whereColumn);
+        Map<Long, Map<String, Object>> images = new LinkedHashMap<>();
+        try (StatementCache.CachedStatement cached = pool.getStatementCache(writer()).borrow(tableName, "journal-images", key,
+                () -> "SELECT rowid, " + selectList(columns) + " FROM " + Database.quoteIdentifier(tableName) + " WHERE "
+                        + Database.quoteIdentifier(whereColumn) + " = ?;")) {
+            cached.get().setObject(1, value);
+            try (ResultSet rs = cached.get().executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> image = new LinkedHashMap<>();
+                    for (int i = 0; i < columns.size(); i++) {
+                        image.put(columns.get(i), rs.getObject(i + 2));
+                    }
+                    images.put(rs.getLong(1), image);
+                }
+            }
+        }
+        return images;
+    }
+
+    private static String selectList(List<String> columns) {
+        if (columns == null) {
+            return "*";
+        }
+        StringBuilder select = new StringBuilder();
+        for (String column : columns) {
+            select.append(select.length() == 0 ? "" : ", ").append(Database.quoteIdentifier(column));
+        }
+        return select.toString();
+    }
+
+    /**
+     * @return The description of the action undo would revert, or null if there is none.
+     */
+    public String peekUndo() throws SQLException {
+        return peek("SELECT description FROM " + ACTIONS + " WHERE undone = 0 ORDER BY id DESC LIMIT 1;");
+    }
+
+    /**
+     * @return The description of the action redo would apply again, or null if there is none.
+     */
+    public String peekRedo() throws SQLException {
+        return peek("SELECT description FROM " + ACTIONS + " WHERE undone = 1 ORDER BY id LIMIT 1;");
+    }
+
+    private String peek(String sql) throws SQLException {
+        create();
+        try (Statement statement = writer().createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    /**
+     * Reverts the latest action that has not been undone. Call it inside a transaction.
+     *
+     * @return The tables the action changed, empty if there was nothing to undo.
+     */
+    public List<String> undo() throws SQLException {
+        return replay("SELECT id FROM " + ACTIONS + " WHERE undone = 0 ORDER BY id DESC LIMIT 1;", true);
+    }
+
+    /**
+     * Applies the earliest undone action again. Call it inside a transaction.
+     *
+     * @return The tables the action changed, empty if there was nothing to redo.
+     */
+    public List<String> redo() throws SQLException {
+        return replay("SELECT id FROM " + ACTIONS + " WHERE undone = 1 ORDER BY id LIMIT 1;", false);
+    }
+
+    private List<String> replay(String findAction, boolean undo) throws SQLException {
+        create();
+        long action;
+        try (Statement statement = writer().createStatement();
+             ResultSet rs = statement.executeQuery(findAction)) {
+            if (!rs.next()) {
+                return List.of();
+            }
+            action = rs.getLong(1);
+        }
+
+        List<Record> records = new ArrayList<>();
+        String sql = "SELECT tbl, op, row_id, before, after FROM " + JOURNAL + " WHERE action = ? ORDER BY seq"
+                + (undo ? " DESC;" : ";");
+        try (PreparedStatement statement = writer().prepareStatement(sql)) {
+            statement.setLong(1, action);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Operation operation = Operation.values()[rs.getInt(2)];
+                    byte[] image = undo ? rs.getBytes(4) : rs.getBytes(5);
+                    // Undoing an insert deletes the row and undoing a delete inserts it
+                    if (undo && operation != Operation.UPDATE) {
+                        operation = operation == Operation.INSERT ? Operation.DELETE : Operation.INSERT;
+                    }
+                    records.add(new Record(rs.getString(1), operation, rs.getLong(3),
+                            image == null ? Map.of() : RowCodec.decode(image)));
+                }
+            }
+        }
+
+        // Consecutive records with the same table, operation and columns share one batched statement
+        List<String> tables = new ArrayList<>();
+        int start = 0;
+        while (start < records.size()) {
+            Record first = records.get(start);
+            int end = start + 1;
+            while (end < records.size() && first.hasSameShape(records.get(end))) {
+                end++;
+            }
+            apply(records.subList(start, end));
+            if (!tables.contains(first.tableName)) {
+                tables.add(first.tableName);
+            }
+            start = end;
+        }
+
+        try (Statement statement = writer().createStatement()) {
+            statement.execute("UPDATE " + ACTIONS + " SET undone = " + (undo ? 1 : 0) + " WHERE id = " + action + ";");
+        }
+        return tables;
+    }
+
+    private void apply(List<Record> batch) throws SQLException {
+        Record first = batch.get(0);
+        List<String> columns = new ArrayList<>(first.values.keySet());
+        String table = Database.quoteIdentifier(first.tableName);
+        String sql;
+        if (first.operation == Operation.DELETE) {
+            sql = "DELETE FROM " + table + " WHERE rowid = ?;";
+        } else if (first.operation == Operation.INSERT) {
+            StringBuilder names = new StringBuilder("rowid");
+            StringBuilder placeholders = new StringBuilder("?");
+            for (String column : columns) {
+                names.append(", ").append(Database.quoteIdentifier(column));
+                placeholders.append(", ?");
+            }
+            sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + placeholders + ");";
+        } else {
+            StringBuilder assignments = new StringBuilder();
+            for (String column : columns) {
+                assignments.append(assignments.length() == 0 ? "" : ", ").append(Database.quoteIdentifier(column)).append(" = ?");
+            }
+            sql = "UPDATE " + table + " SET " + assignments + " WHERE rowid = ?;";
+        }
+
+        try (StatementCache.CachedStatement cached = pool.getStatementCache(writer()).borrow(first.tableName,
+                "journal-" + first.operation, columns, () -> sql)) {
+            PreparedStatement statement = cached.get();
+            for (Record record : batch) {
+                int index = 1;
+                if (record.operation == Operation.INSERT) {
+                    statement.setLong(index++, record.rowid);
+                }
+                if (record.operation != Operation.DELETE) {
+                    for (String column : columns) {
+                        statement.setObject(index++, record.values.get(column));
+                    }
+                }
+                if (record.operation != Operation.INSERT) {
+                    statement.setLong(index, record.rowid);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Removes all but the newest actions and their records. Call it inside a transaction.
+     *
+     * keepActions The number of actions to keep.
+     * @return The number of journal records removed.
+     */
+    public int compact(int keepActions) throws SQLException {
+        create();
+        String oldest = "(SELECT max(id) - " + keepActions + " FROM " + ACTIONS + ")";
+        try (Statement statement = writer().createStatement()) {
+            int removed = statement.executeUpdate("DELETE FROM " + JOURNAL + " WHERE action <= " + oldest + ";");
+            statement.execute("DELETE FROM " + ACTIONS + " WHERE id <= " + oldest + ";");
+            return removed;
+        }
+    }
+
+    private StatementCache.CachedStatement borrow(String operation, List<String> columns,
+                                                  Supplier<String> sql) throws SQLException {
+        return pool.getStatementCache(writer()).borrow(JOURNAL, operation, columns, sql);
+    }
+
+    // One journal record prepared for replay, with the image the replay writes
+    private static class Record {
+        private final String tableName;
+        private final Operation operation;
+        private final long rowid;
+        private final Map<String, Object> values;
+
+        Record(String tableName, Operation operation, long rowid, Map<String, Object> values) {
+            this.tableName = tableName;
+            this.operation = operation;
+            this.rowid = rowid;
+            this.values = values;
+        }
+
+        boolean hasSameShape(Record other) {
+            return tableName.equals(other.tableName) && operation == other.operation
+                    && (operation == Operation.DELETE || values.keySet().equals(other.values.keySet()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.final_rev;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Buffered inserts, updates and deletes for one table, applied together by
+ * Database.applyChanges. Rows are identified by their key (rowid or primary key)
+ * as read by Database.getRowPage. Repeated edits of the same row are merged, and
+ * deleting a row drops any pending update of it.
+ */
+public class ChangeSet {
+    private final Map<Object, Map<String, String>> updates = new LinkedHashMap<>();
+    private final Set<Object> deletes = new LinkedHashSet<>();
+    private final List<Map<String, String>> inserts = new ArrayList<>();
+
+    /**
+     * Records a new value for one cell of an existing row.
+     *
+     * rowKey     The key of the row.
+     * columnName The column that changed.
+     * value      The new value.
+     */
+    public void update(Object rowKey, String columnName, String value) {
+        if (!deletes.contains(rowKey)) {
+            updates.computeIfAbsent(rowKey, key -> new LinkedHashMap<>()).put(columnName, value);
+        }
+    }
+
+    /**
+     * Records the deletion of an existing row.
+     *
+     * rowKey The key of the row.
+     */
+    public void delete(Object rowKey) {
+        updates.remove(rowKey);
+        deletes.add(rowKey);
+    }
+
+    /**
+     * Records a new row.
+     *
+     * columnValues The values of the new row by column name.
+     */
+    public void insert(Map<String, String> columnValues) {
+        inserts.add(new LinkedHashMap<>(columnValues));
+    }
+
+    public Map<Object, Map<String, String>> getUpdates() {
+        return Collections.unmodifiableMap(updates);
+    }
+
+    public Set<Object> getDeletes() {
+        return Collections.unmodifiableSet(deletes);
+    }
+
+    public List<Map<String, String>> getInserts() {
+        return Collections.unmodifiableList(inserts);
+    }
+
+    public boolean isDeleted(Object rowKey) {
+        return deletes.contains(rowKey);
+    }
+
+    /**
+     * @return The number of buffered row changes.
+     */
+    public int size() {
+        return updates.size() + deletes.size() + inserts.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        updates.clear();
+        deletes.clear();
+        inserts.clear();
+    }
+
+    /**
+     * @return An independent copy, so a commit can run while new edits are buffered.
+     */
+    public ChangeSet copy() {
+        ChangeSet copy = new ChangeSet();
+        for (Map.Entry<Object, Map<String, String>> entry : updates.entrySet()) {
+            copy.updates.put(entry.getKey(), new LinkedHashMap<>(entry.getValue()));
+        }
+        copy.deletes.addAll(deletes);
+        for (Map<String, String> insert : inserts) {
+            copy.insert(insert);
+        }
+        return copy;
+    }
+}
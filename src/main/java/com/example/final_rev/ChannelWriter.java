@@ -0,0 +1,139 @@
+package com.example.final_rev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered binary and UTF-8 output on top of an NIO channel.
+ *
+ * Everything is collected in one direct buffer that is drained to the channel
+ * whenever it fills up, so writing costs one system call per buffer rather than
+ * one per value, and memory use does not depend on how much is written.
+ */
+public class ChannelWriter implements Closeable {
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long bytesWritten;
+
+    public ChannelWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Opens the given file for writing, replacing any existing content.
+     *
+     * file The file to write.
+     * @return A writer for the file.
+     */
+    public static ChannelWriter open(Path file) throws IOException {
+        return new ChannelWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * @return The number of bytes written so far, including bytes still in the buffer.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        write(bytes, 0, bytes.length);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+            bytesWritten += chunk;
+        }
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+        bytesWritten++;
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+        bytesWritten += Integer.BYTES;
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+        bytesWritten += Long.BYTES;
+    }
+
+    public void writeDouble(double value) throws IOException {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(value);
+        bytesWritten += Double.BYTES;
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the given text, without a length prefix.
+     *
+     * text The text to write.
+     */
+    public void writeUtf8(CharSequence text) throws IOException {
+        write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the given text prefixed with their length as an int.
+     *
+     * text The text to write.
+     */
+    public void writeLengthPrefixed(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        write(bytes);
+    }
+
+    /**
+     * Drains the buffer to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
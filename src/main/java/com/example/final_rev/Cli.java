@@ -0,0 +1,336 @@
+package com.example.final_rev;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Command line entry point for scripts and cron jobs, running the operations of the table
+ * browser on Database without a display.
+ *
+ * Nothing here touches JavaFX, so starting costs only the JVM and the SQLite driver. Run it
+ * from the class path rather than as a module, for example
+ * <pre>
+ * java -cp target/classes:sqlite-jdbc.jar com.example.final_rev.Cli tables data/*.db
+ * </pre>
+ * Every command takes one or more database files, which are processed in parallel by up to
+ * --jobs threads with one Database each. With a single database the output is streamed to
+ * standard output; with several, the output of each database is collected and printed in one
+ * piece under a "==> file <==" header as soon as it is done, so outputs never interleave.
+ */
+public class Cli {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int MAX_VALUE_CHARS = 60;
+
+    static final String USAGE = """
+            Usage: Cli [options] <command> [arguments] <database>...
+
+            Commands:
+              tables                   List the tables
+              dump <table>             Write every row of a table
+              import <table> <file>    Import a CSV or TSV file into a table
+              query <sql>              Run a read-only query and write its result
+              profile <table>          Print the column statistics of a table
+              capture <table>          Start recording the changes of a table for feed
+              uncapture <table>        Stop recording the changes of a table
+              feed <target>            Stream recorded changes as JSON Lines until stopped, to a file,
+                                       tcp:<host>:<port> or unix:<socket file>
+
+            Options:
+              --jobs <n>               Databases processed at the same time (default: number of processors)
+              --format <format>        csv, jsonl or col, for dump and query (default: csv)
+              --out <path>             File to write a dump or query result to, or with several
+                                       databases the directory to write one file per database to
+              --duplicates <policy>    skip, replace or fail, for rows of an import whose key exists
+              --large                  Open the databases in large file mode
+              --consumer <name>        Name the feed saves its offset under, to resume (default: cli)
+            """;
+
+    private String command;
+    private final List<String> arguments = new ArrayList<>();
+    private final List<Path> databases = new ArrayList<>();
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private ExportFormat format = ExportFormat.CSV;
+    private Path out;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.SKIP;
+    private boolean largeFile;
+    private String consumer = "cli";
+    private ChangeFeed.Target feedTarget;
+
+    public static void main(String[] args) {
+        System.exit(new Cli().run(args));
+    }
+
+    /**
+     * Runs one command line.
+     *
+     * args The options, the command, its arguments and the database files.
+     * @return The exit code: EXIT_OK, EXIT_FAILED if any database failed or EXIT_USAGE for a bad command line.
+     */
+    public int run(String[] args) {
+        try {
+            parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (command == null) {
+            System.out.print(USAGE);
+            return EXIT_OK;
+        }
+
+        if (databases.size() == 1) {
+            ChannelWriter stdout = new ChannelWriter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+            return runDatabase(databases.get(0), stdout) ? EXIT_OK : EXIT_FAILED;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, databases.size()), runnable -> {
+            Thread thread = new Thread(runnable, "cli-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (Path database : databases) {
+            results.add(executor.submit(() -> {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                boolean succeeded = runDatabase(database, new ChannelWriter(Channels.newChannel(buffer)));
+                synchronized (System.out) {
+                    System.out.println("==> " + database + " <==");
+                    System.out.write(buffer.toByteArray(), 0, buffer.size());
+                    System.out.flush();
+                }
+                return succeeded;
+            }));
+        }
+
+        boolean succeeded = true;
+        try {
+            for (Future<Boolean> result : results) {
+                succeeded &= result.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            succeeded = false;
+        } finally {
+            executor.shutdownNow();
+        }
+        return succeeded ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private void parse(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            if (arg.equals("--help")) {
+                command = null;
+                return;
+            }
+            if (arg.equals("--large")) {
+                largeFile = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--jobs" -> {
+                    try {
+                        jobs = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        jobs = 0;
+                    }
+                    if (jobs < 1) {
+                        throw new IllegalArgumentException("--jobs must be a positive number: " + value);
+                    }
+                }
+                case "--format" -> format = parseFormat(value);
+                case "--out" -> out = Paths.get(value);
+                case "--consumer" -> consumer = value;
+                case "--duplicates" -> {
+                    try {
+                        duplicatePolicy = DuplicatePolicy.valueOf(value.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown duplicate policy: " + value);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        if (positional.isEmpty()) {
+            return;
+        }
+        command = positional.get(0);
+        int argumentCount = switch (command) {
+            case "tables" -> 0;
+            case "dump", "query", "profile", "capture", "uncapture", "feed" -> 1;
+            case "import" -> 2;
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        };
+        if (positional.size() < 2 + argumentCount) {
+            throw new IllegalArgumentException("Missing arguments or database for " + command);
+        }
+        arguments.addAll(positional.subList(1, 1 + argumentCount));
+        if (command.equals("feed")) {
+            feedTarget = parseTarget(arguments.get(0));
+        }
+        for (String database : positional.subList(1 + argumentCount, positional.size())) {
+            databases.add(Paths.get(database));
+        }
+        if (out != null && databases.size() > 1 && !Files.isDirectory(out)) {
+            throw new IllegalArgumentException("--out must be an existing directory when several databases are given");
+        }
+    }
+
+    private static ExportFormat parseFormat(String value) {
+        for (ExportFormat exportFormat : ExportFormat.values()) {
+            if (exportFormat.getExtension().equalsIgnoreCase(value) || exportFormat.name().equalsIgnoreCase(value)) {
+                return exportFormat;
+            }
+        }
+        throw new IllegalArgumentException("Unknown format: " + value);
+    }
+
+    // Runs the command on one database, failures are reported on standard error
+    private boolean runDatabase(Path file, ChannelWriter output) {
+        if (!Files.isRegularFile(file)) {
+            System.err.println(file + ": no such database");
+            return false;
+        }
+        Database database = new Database(file.toAbsolutePath().toString(),
+                largeFile ? ConnectionSettings.largeFile() : new ConnectionSettings());
+        try (output) {
+            switch (command) {
+                case "tables" -> {
+                    for (String table : database.getTables()) {
+                        output.writeUtf8(table + "\n");
+                    }
+                }
+                case "dump" -> export(database, file, "SELECT * FROM " + Database.quoteIdentifier(arguments.get(0)) + ";",
+                        arguments.get(0), output);
+                case "query" -> export(database, file, arguments.get(0), "query", output);
+                case "import" -> importFile(database, output);
+                case "capture" -> {
+                    database.enableChangeCapture(arguments.get(0));
+                    output.writeUtf8("Capturing changes of " + arguments.get(0) + "\n");
+                }
+                case "uncapture" -> {
+                    database.disableChangeCapture(arguments.get(0));
+                    output.writeUtf8("Stopped capturing changes of " + arguments.get(0) + "\n");
+                }
+                case "feed" -> new ChangeFeed(database, consumer, feedTarget).run();
+                case "profile" -> profile(database, output);
+                default -> throw new IllegalStateException(command);
+            }
+            return true;
+        } catch (SQLException | IOException | RuntimeException e) {
+            System.err.println(file + ": " + e.getMessage());
+            return false;
+        } finally {
+            database.close();
+        }
+    }
+
+    private void export(Database database, Path file, String sql, String name, ChannelWriter output) throws SQLException, IOException {
+        try (ResultSet rs = database.search(sql)) {
+            if (rs == null) {
+                throw new SQLException("Query failed: " + sql);
+            }
+            ResultExporter exporter = new ResultExporter(database);
+            if (out == null) {
+                exporter.export(rs, output, format, null);
+                return;
+            }
+            // Several databases write one file each into the --out directory
+            Path target = databases.size() == 1 ? out
+                    : out.resolve(baseName(file) + "-" + name + "." + format.getExtension());
+            long rows = exporter.export(rs, target, format, null);
+            output.writeUtf8("Wrote " + rows + " rows to " + target + "\n");
+        }
+    }
+
+    private void importFile(Database database, ChannelWriter output) throws SQLException, IOException {
+        CsvImporter importer = new CsvImporter(database);
+        importer.setDuplicatePolicy(duplicatePolicy);
+        long rows = importer.importFile(Paths.get(arguments.get(1)), arguments.get(0), null);
+        output.writeUtf8("Imported " + rows + " rows into " + arguments.get(0) + "\n");
+    }
+
+    private void profile(Database database, ChannelWriter output) throws SQLException, IOException {
+        TableProfile profile = database.getTableProfiler().profile(arguments.get(0), null);
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s: %d rows, %d ranges in %.0f ms%n", profile.getTableName(), profile.getRowCount(),
+                profile.getPartitions(), profile.getElapsedNanos() / 1e6));
+        for (ColumnProfile column : profile.getColumns()) {
+            text.append(String.format("%n%s: %.1f%% NULL, about %d distinct, min %s, max %s%n", column.getColumnName(),
+                    column.getNullFraction() * 100, column.getDistinctEstimate(), formatValue(column.getMin()),
+                    formatValue(column.getMax())));
+            for (Map.Entry<Object, Long> top : column.getTopValues().entrySet()) {
+                text.append(String.format("  %10d  %s%n", top.getValue(), formatValue(top.getKey())));
+            }
+        }
+        output.writeUtf8(text);
+    }
+
+    private static String formatValue(Object value) {
+        if (value instanceof byte[] bytes) {
+            return "<blob, " + bytes.length + " bytes>";
+        }
+        if (value instanceof ByteBuffer buffer) {
+            return "<blob, " + buffer.remaining() + " bytes>";
+        }
+        String text = RowView.format(value);
+        return text.length() > MAX_VALUE_CHARS ? text.substring(0, MAX_VALUE_CHARS) + "..." : text;
+    }
+
+    private static ChangeFeed.Target parseTarget(String target) {
+        if (target.startsWith("unix:")) {
+            return ChangeFeed.unixSocket(Paths.get(target.substring("unix:".length())));
+        }
+        if (target.startsWith("tcp:")) {
+            int colon = target.lastIndexOf(':');
+            String host = colon > "tcp:".length() ? target.substring("tcp:".length(), colon) : "";
+            int port;
+            try {
+                port = Integer.parseInt(target.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+            if (host.isEmpty() || port < 0 || port > 0xFFFF) {
+                throw new IllegalArgumentException("Expected tcp:<host>:<port>: " + target);
+            }
+            return ChangeFeed.tcp(host, port);
+        }
+        return ChangeFeed.file(Paths.get(target.startsWith("file:") ? target.substring("file:".length()) : target));
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
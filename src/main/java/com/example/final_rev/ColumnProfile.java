@@ -0,0 +1,290 @@
+package com.example.final_rev;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of one column, built by TableProfiler from the values of one rowid range
+ * and merged with the statistics of the other ranges.
+ *
+ * The distinct count is a HyperLogLog estimate. The most frequent values are tracked with
+ * the Misra-Gries algorithm in TOP_CAPACITY counters: the counts are exact while the column
+ * has no more distinct values than counters, and otherwise under-count by at most
+ * rows / (TOP_CAPACITY + 1). Counters within that bound may hold any leftover value and are
+ * not reported. TableProfiler recounts the remaining candidates exactly, see setTopCounts.
+ * Lengths are counted for TEXT values in characters and for BLOB values in bytes, in buckets
+ * that double in size.
+ */
+public class ColumnProfile {
+    static final int TOP_CAPACITY = 256;
+    static final int TOP_VALUES = 10;
+    // Bucket 0 holds empty values, bucket i holds lengths from 2^(i-1) to 2^i - 1
+    static final int LENGTH_BUCKETS = 33;
+
+    private final String columnName;
+    private long rows;
+    private long nulls;
+    private final HyperLogLog distinct = new HyperLogLog();
+    private Object min;
+    private Object max;
+    private final Map<Object, Long> topCounts = new HashMap<>();
+    // Set once counters were decremented, the counts are then lower bounds
+    private boolean topApproximate;
+    private final long[] lengths = new long[LENGTH_BUCKETS];
+
+    /**
+     * columnName The name of the column.
+     */
+    public ColumnProfile(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * Counts one value.
+     *
+     * value The value as returned by ResultSet.getObject.
+     */
+    void add(Object value) {
+        rows++;
+        if (value == null) {
+            nulls++;
+            return;
+        }
+        distinct.add(value);
+        if (min == null || compareValues(value, min) < 0) {
+            min = value;
+        }
+        if (max == null || compareValues(value, max) > 0) {
+            max = value;
+        }
+        if (value instanceof String text) {
+            lengths[lengthBucket(text.length())]++;
+        } else if (value instanceof byte[] bytes) {
+            lengths[lengthBucket(bytes.length)]++;
+        }
+        countTop(topKey(value));
+    }
+
+    /**
+     * Adds the statistics of another range of the same column.
+     *
+     * other The statistics to add.
+     */
+    void merge(ColumnProfile other) {
+        rows += other.rows;
+        nulls += other.nulls;
+        distinct.merge(other.distinct);
+        if (other.min != null && (min == null || compareValues(other.min, min) < 0)) {
+            min = other.min;
+        }
+        if (other.max != null && (max == null || compareValues(other.max, max) > 0)) {
+            max = other.max;
+        }
+        for (int i = 0; i < LENGTH_BUCKETS; i++) {
+            lengths[i] += other.lengths[i];
+        }
+        // Sum the counters of both summaries, then take the count of the first counter
+        // past TOP_CAPACITY off all of them, which keeps the error bound of a single summary
+        for (Map.Entry<Object, Long> top : other.topCounts.entrySet()) {
+            topCounts.merge(top.getKey(), top.getValue(), Long::sum);
+        }
+        topApproximate |= other.topApproximate;
+        if (topCounts.size() > TOP_CAPACITY) {
+            topApproximate = true;
+            List<Long> counts = new ArrayList<>(topCounts.values());
+            counts.sort(Comparator.reverseOrder());
+            long cut = counts.get(TOP_CAPACITY);
+            topCounts.replaceAll((key, count) -> count - cut);
+            topCounts.values().removeIf(count -> count <= 0);
+        }
+    }
+
+    // Misra-Gries: a new value that finds every counter taken decrements them all instead.
+    // Each decrement round undoes TOP_CAPACITY earlier increments, so a value costs O(1) on average.
+    private void countTop(Object key) {
+        Long current = topCounts.get(key);
+        if (current != null) {
+            topCounts.put(key, current + 1);
+        } else if (topCounts.size() < TOP_CAPACITY) {
+            topCounts.put(key, 1L);
+        } else {
+            topApproximate = true;
+            topCounts.replaceAll((value, count) -> count - 1);
+            topCounts.values().removeIf(count -> count == 0);
+        }
+    }
+
+    // Arrays compare by identity, wrap blobs so equal contents count as one value.
+    // The driver returns small integers as Integer and large ones as Long, count both as Long.
+    static Object topKey(Object value) {
+        if (value instanceof Integer integer) {
+            return integer.longValue();
+        }
+        return value instanceof byte[] bytes ? ByteBuffer.wrap(bytes) : value;
+    }
+
+    static int lengthBucket(int length) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(length);
+    }
+
+    /**
+     * Compares two non-null values the way SQLite orders them with the BINARY collation:
+     * numbers before text before blobs, integers and reals by their numeric value.
+     * Text is compared by UTF-16 code units, which only differs from SQLite's byte order
+     * for characters outside the Basic Multilingual Plane.
+     */
+    static int compareValues(Object a, Object b) {
+        int classA = storageClass(a);
+        int classB = storageClass(b);
+        if (classA != classB) {
+            return Integer.compare(classA, classB);
+        }
+        if (a instanceof Number numberA && b instanceof Number numberB) {
+            if (a instanceof Double || b instanceof Double) {
+                return Double.compare(numberA.doubleValue(), numberB.doubleValue());
+            }
+            return Long.compare(numberA.longValue(), numberB.longValue());
+        }
+        if (a instanceof byte[] bytesA) {
+            return Arrays.compareUnsigned(bytesA, (byte[]) b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static int storageClass(Object value) {
+        if (value instanceof Number) {
+            return 0;
+        }
+        return value instanceof byte[] ? 2 : 1;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return The number of rows scanned, including NULLs.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNulls() {
+        return nulls;
+    }
+
+    /**
+     * @return The share of NULL values between 0 and 1, or 0 for an empty table.
+     */
+    public double getNullFraction() {
+        return rows == 0 ? 0 : (double) nulls / rows;
+    }
+
+    /**
+     * @return The estimated number of distinct non-NULL values, never more than the number of non-NULL values.
+     */
+    public long getDistinctEstimate() {
+        return Math.min(distinct.estimate(), rows - nulls);
+    }
+
+    /**
+     * @return The smallest non-NULL value, or null if every value is NULL.
+     */
+    public Object getMin() {
+        return min;
+    }
+
+    /**
+     * @return The largest non-NULL value, or null if every value is NULL.
+     */
+    public Object getMax() {
+        return max;
+    }
+
+    /**
+     * @return Up to TOP_VALUES of the most frequent values with their counts, most frequent first,
+     *         empty if no value is repeated often enough to be told apart from the error bound.
+     *         Blob values are returned as read-only ByteBuffers.
+     */
+    public Map<Object, Long> getTopValues() {
+        List<Map.Entry<Object, Long>> entries = new ArrayList<>(topCounts.entrySet());
+        entries.sort(Map.Entry.<Object, Long>comparingByValue().reversed());
+        long bound = topErrorBound();
+        Map<Object, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<Object, Long> entry : entries) {
+            if (top.size() == TOP_VALUES || entry.getValue() <= bound) {
+                break;
+            }
+            Object key = entry.getKey() instanceof ByteBuffer buffer ? buffer.asReadOnlyBuffer() : entry.getKey();
+            top.put(key, entry.getValue());
+        }
+        return top;
+    }
+
+    /**
+     * @return Whether the counts of the top values are lower bounds that setTopCounts can correct.
+     */
+    boolean isTopApproximate() {
+        return topApproximate;
+    }
+
+    /**
+     * @return The values whose counters exceed the error bound, as read by ResultSet.getObject.
+     */
+    List<Object> getTopCandidates() {
+        long bound = topErrorBound();
+        List<Object> candidates = new ArrayList<>();
+        for (Map.Entry<Object, Long> entry : topCounts.entrySet()) {
+            if (entry.getValue() > bound) {
+                candidates.add(entry.getKey() instanceof ByteBuffer buffer ? buffer.array() : entry.getKey());
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Replaces the counters with exact counts of the candidates.
+     *
+     * counts The number of rows of every candidate value, keyed like add counts them.
+     */
+    void setTopCounts(Map<Object, Long> counts) {
+        topCounts.clear();
+        for (Map.Entry<Object, Long> count : counts.entrySet()) {
+            topCounts.merge(topKey(count.getKey()), count.getValue(), Long::sum);
+        }
+        topApproximate = false;
+    }
+
+    // Counters of an approximate summary at or below this may belong to any value
+    private long topErrorBound() {
+        return topApproximate ? (rows - nulls) / (TOP_CAPACITY + 1) : 0;
+    }
+
+    /**
+     * @return The number of TEXT and BLOB values per length bucket, see LENGTH_BUCKETS.
+     */
+    public long[] getLengthHistogram() {
+        return lengths.clone();
+    }
+
+    /**
+     * Describes the lengths a bucket of the length histogram holds.
+     *
+     * bucket The index of the bucket.
+     * @return The range of lengths, such as "4-7".
+     */
+    public static String lengthBucketLabel(int bucket) {
+        if (bucket == 0) {
+            return "0";
+        }
+        long low = 1L << (bucket - 1);
+        long high = (1L << bucket) - 1;
+        return low == high ? Long.toString(low) : low + "-" + high;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.final_rev;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one column of a RowStore. SQLite types values per row, so a vector
+ * starts out specialised for the type of the first value it sees and is replaced by
+ * a generic vector once a value of another type shows up.
+ *
+ * INTEGER and REAL values are held in primitive arrays, TEXT is dictionary encoded
+ * while the column has few distinct values, and BLOBs are held as BlobHandles.
+ * Text is never turned into a number, so an edited "007" is kept as entered.
+ */
+abstract class ColumnVector {
+    static final int DICTIONARY_LIMIT = 256;
+
+    // Rough JVM sizes used by estimateBytes, assuming compressed references
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+    static final int STRING_BYTES = 40;
+
+    /**
+     * Creates an empty vector suited to the given value.
+     *
+     * value    The first non-null value of the column.
+     * capacity The expected number of rows.
+     */
+    static ColumnVector forValue(Object value, int capacity) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return new LongVector(capacity);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return new DoubleVector(capacity);
+        }
+        if (value instanceof String) {
+            return new TextVector(capacity);
+        }
+        return new ObjectVector(capacity);
+    }
+
+    abstract Object get(int row);
+
+    /**
+     * @return True if the value can be stored without replacing the vector.
+     */
+    abstract boolean accepts(Object value);
+
+    /**
+     * Stores a value, growing the vector as needed. The value must be null or accepted.
+     */
+    abstract void set(int row, Object value);
+
+    /**
+     * @return The approximate heap used by the vector in bytes.
+     */
+    abstract long estimateBytes();
+
+    /**
+     * @return A generic vector holding the first size values of this one.
+     */
+    ObjectVector toObjectVector(int size) {
+        ObjectVector vector = new ObjectVector(size);
+        for (int row = 0; row < size; row++) {
+            vector.set(row, get(row));
+        }
+        return vector;
+    }
+
+    static int grow(int length, int row) {
+        return Math.max(row + 1, Math.max(length * 2, 8));
+    }
+
+    static long stringBytes(String value) {
+        return STRING_BYTES + value.length();
+    }
+
+    static class LongVector extends ColumnVector {
+        private long[] values;
+        private final BitSet nulls = new BitSet();
+
+        LongVector(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return row >= values.length || nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value == null || value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            nulls.set(row, value == null);
+            if (value != null) {
+                values[row] = ((Number) value).longValue();
+            }
+        }
+
+        @Override
+        long estimateBytes() {
+            return ARRAY_HEADER_BYTES + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    static class DoubleVector extends ColumnVector {
+        private double[] values;
+        private final BitSet nulls = new BitSet();
+
+        DoubleVector(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return row >= values.length || nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value == null || value instanceof Double || value instanceof Float;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            nulls.set(row, value == null);
+            if (value != null) {
+                values[row] = ((Number) value).doubleValue();
+            }
+        }
+
+        @Override
+        long estimateBytes() {
+            return ARRAY_HEADER_BYTES + 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Text held as codes into a dictionary of distinct values, switching to a plain
+     * array once there are more than DICTIONARY_LIMIT of them.
+     */
+    static class TextVector extends ColumnVector {
+        private int[] codes;
+        private List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> dictionaryIndex = new HashMap<>();
+        private String[] plain;
+
+        TextVector(int capacity) {
+            codes = new int[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            if (plain != null) {
+                return row < plain.length ? plain[row] : null;
+            }
+            if (row >= codes.length) {
+                return null;
+            }
+            int code = codes[row];
+            return code == 0 ? null : dictionary.get(code - 1);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value == null || value instanceof String;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            String text = (String) value;
+            if (plain == null && text != null && !dictionaryIndex.containsKey(text) && dictionary.size() >= DICTIONARY_LIMIT) {
+                toPlain();
+            }
+            if (plain != null) {
+                if (row >= plain.length) {
+                    plain = Arrays.copyOf(plain, grow(plain.length, row));
+                }
+                plain[row] = text;
+                return;
+            }
+
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            }
+            if (text == null) {
+                codes[row] = 0;
+                return;
+            }
+            Integer code = dictionaryIndex.get(text);
+            if (code == null) {
+                dictionary.add(text);
+                code = dictionary.size();
+                dictionaryIndex.put(text, code);
+            }
+            codes[row] = code;
+        }
+
+        private void toPlain() {
+            plain = new String[codes.length];
+            for (int row = 0; row < codes.length; row++) {
+                plain[row] = (String) get(row);
+            }
+            codes = null;
+            dictionary = null;
+            dictionaryIndex = null;
+        }
+
+        @Override
+        long estimateBytes() {
+            long bytes = 0;
+            if (plain != null) {
+                bytes += ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * plain.length;
+                for (String text : plain) {
+                    if (text != null) {
+                        bytes += stringBytes(text);
+                    }
+                }
+                return bytes;
+            }
+            // The index map costs roughly one entry object per distinct value on top of the list
+            bytes += ARRAY_HEADER_BYTES + 4L * codes.length;
+            for (String text : dictionary) {
+                bytes += stringBytes(text) + REFERENCE_BYTES + 32;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Boxed values of any type, for columns mixing storage classes and for BLOB handles.
+     */
+    static class ObjectVector extends ColumnVector {
+        private Object[] values;
+
+        ObjectVector(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @Override
+        Object get(int row) {
+            return row < values.length ? values[row] : null;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length, row));
+            }
+            values[row] = value;
+        }
+
+        @Override
+        ObjectVector toObjectVector(int size) {
+            return this;
+        }
+
+        @Override
+        long estimateBytes() {
+            long bytes = ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * values.length;
+            for (Object value : values) {
+                if (value instanceof String) {
+                    bytes += stringBytes((String) value);
+                } else if (value instanceof BlobHandle) {
+                    bytes += 40;
+                } else if (value != null) {
+                    bytes += 24;
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One writer connection and a fixed number of read-only connections to a SQLite file.
+ *
+ * A thread that reads checks out a reader connection of its own the first time it asks for
+ * one and keeps it until it calls releaseReader, so its statements can be cancelled without
+ * interrupting other threads and ResultSets it hands out stay valid until then. Readers are
+ * never shared, since cancelling interrupts every statement of a connection. Once all of
+ * them are checked out, further threads wait for one to be released. Database releases the
+ * reader at the end of every call it runs for AsyncDatabase, and the reader of a thread that
+ * has ended is taken back as well.
+ * Each connection has its own StatementCache, since compiled statements belong to
+ * the connection that prepared them.
+ *
+ * Other database files can be attached to the pooled readers for queries across files, see attach.
+ * A reader picks up attachments the next time a thread asks for it, on that thread, so no
+ * connection is changed while another thread is reading from it.
+ */
+public class ConnectionPool implements AutoCloseable {
+    // SQLITE_OPEN_READONLY, passed to the driver through the open_mode property
+    private static final String OPEN_READ_ONLY = "1";
+    // How often a thread waiting for a reader looks for readers of threads that have ended
+    private static final long READER_WAIT_MILLIS = 100;
+
+    private final String url;
+    private final ConnectionSettings settings;
+    private final StatementProfiler profiler;
+    private final Connection writer;
+    private final List<Connection> readers = new ArrayList<>();
+    private final Deque<Connection> idleReaders = new ArrayDeque<>();
+    private boolean closed;
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final ThreadLocal<Connection> threadReader = new ThreadLocal<>();
+    // The thread each checked out reader is bound to
+    private final Map<Connection, Thread> readerThreads = new HashMap<>();
+
+    // Attached files by schema name, and the attachments each reader has applied
+    private final Map<String, String> attachments = new ConcurrentHashMap<>();
+    private final AtomicInteger attachmentVersion = new AtomicInteger();
+    private final Map<Connection, Map<String, String>> appliedAttachments = new ConcurrentHashMap<>();
+    private final Map<Connection, Integer> appliedAttachmentVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the writer connection and applies the journal and cache settings.
+     * Reader connections are opened on demand.
+     *
+     * absolutePath Absolute path to the SQLite database file.
+     * settings     The connection settings.
+     */
+    public ConnectionPool(String absolutePath, ConnectionSettings settings) throws SQLException {
+        this(absolutePath, settings, null);
+    }
+
+    /**
+     * Opens the writer connection and applies the journal and cache settings.
+     * The statement caches of all connections report their statements to the profiler.
+     *
+     * absolutePath Absolute path to the SQLite database file.
+     * settings     The connection settings.
+     * profiler     Times every cached statement, may be null.
+     */
+    public ConnectionPool(String absolutePath, ConnectionSettings settings, StatementProfiler profiler) throws SQLException {
+        this.url = "jdbc:sqlite:" + absolutePath;
+        this.settings = settings;
+        this.profiler = profiler;
+        this.writer = DriverManager.getConnection(url);
+        configure(writer);
+        if (settings.getPageSize() > 0) {
+            // Only takes effect while the file is still empty, and must come before the switch to WAL
+            try (Statement statement = writer.createStatement()) {
+                statement.execute("PRAGMA page_size=" + settings.getPageSize() + ";");
+            }
+        }
+        if (settings.isWalMode()) {
+            try (Statement statement = writer.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL;");
+                statement.execute("PRAGMA synchronous=NORMAL;");
+            } catch (SQLException e) {
+                // Read-only files and some file systems cannot use WAL, stay in rollback journal mode
+                e.printStackTrace();
+            }
+        }
+        statementCaches.put(writer, new StatementCache(writer, StatementCache.DEFAULT_CAPACITY, profiler));
+    }
+
+    public ConnectionSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return The single connection all writes go through.
+     */
+    public Connection getWriter() {
+        return writer;
+    }
+
+    /**
+     * Returns the read-only connection bound to the calling thread, checking one out first if
+     * needed. Waits while every reader is checked out by another thread.
+     *
+     * @return A read-only connection.
+     */
+    public Connection getReader() throws SQLException {
+        Connection reader = threadReader.get();
+        if (reader == null || reader.isClosed()) {
+            reader = checkOutReader();
+            threadReader.set(reader);
+        }
+        if (appliedAttachmentVersions.getOrDefault(reader, 0) != attachmentVersion.get()) {
+            try {
+                applyAttachments(reader);
+            } catch (SQLException e) {
+                // A reader whose thread still has a result open cannot attach, it retries next time
+                e.printStackTrace();
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Attaches another database file to the read-only connections, so queries can read its
+     * tables as schemaName.table. Attached files are read-only as well.
+     *
+     * schemaName   The name to refer to the file by in queries.
+     * absolutePath Absolute path to the SQLite database file.
+     */
+    public void attach(String schemaName, String absolutePath) {
+        attachments.put(schemaName, absolutePath);
+        attachmentVersion.incrementAndGet();
+    }
+
+    /**
+     * Detaches a database file attached with attach.
+     *
+     * schemaName The name the file was attached under.
+     */
+    public void detach(String schemaName) {
+        if (attachments.remove(schemaName) != null) {
+            attachmentVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return The attached files by schema name.
+     */
+    public Map<String, String> getAttachments() {
+        return Map.copyOf(attachments);
+    }
+
+    // Brings the attached files of a connection in line with the attachments of the pool
+    private void applyAttachments(Connection connection) throws SQLException {
+        synchronized (connection) {
+            int version = attachmentVersion.get();
+            Map<String, String> applied = appliedAttachments.computeIfAbsent(connection, key -> new HashMap<>());
+            try (Statement statement = connection.createStatement()) {
+                for (Map.Entry<String, String> attachment : new ArrayList<>(applied.entrySet())) {
+                    if (!attachment.getValue().equals(attachments.get(attachment.getKey()))) {
+                        statement.execute("DETACH DATABASE " + Database.quoteIdentifier(attachment.getKey()) + ";");
+                        applied.remove(attachment.getKey());
+                    }
+                }
+                for (Map.Entry<String, String> attachment : attachments.entrySet()) {
+                    if (!applied.containsKey(attachment.getKey())) {
+                        statement.execute("ATTACH DATABASE '" + attachment.getValue().replace("'", "''") + "' AS "
+                                + Database.quoteIdentifier(attachment.getKey()) + ";");
+                        applied.put(attachment.getKey(), attachment.getValue());
+                    }
+                }
+            }
+            appliedAttachmentVersions.put(connection, version);
+        }
+    }
+
+    /**
+     * @return True if the calling thread has a reader checked out.
+     */
+    public boolean hasReader() {
+        return threadReader.get() != null;
+    }
+
+    /**
+     * Gives the reader of the calling thread back to the pool, if it has one. Statements and
+     * ResultSets of the thread on that reader must be closed by then.
+     */
+    public synchronized void releaseReader() {
+        Connection reader = threadReader.get();
+        threadReader.remove();
+        if (reader != null && readerThreads.remove(reader) != null) {
+            idleReaders.push(reader);
+            notifyAll();
+        }
+    }
+
+    private synchronized Connection checkOutReader() throws SQLException {
+        while (true) {
+            if (closed) {
+                throw new SQLException("The connection pool is closed");
+            }
+            Connection reader = idleReaders.poll();
+            if (reader == null && readers.size() < settings.getReaderConnections()) {
+                reader = openReader();
+                readers.add(reader);
+                statementCaches.put(reader, new StatementCache(reader, StatementCache.DEFAULT_CAPACITY, profiler));
+            }
+            if (reader == null) {
+                reader = takeBackFromEndedThread();
+            }
+            if (reader != null) {
+                readerThreads.put(reader, Thread.currentThread());
+                return reader;
+            }
+            try {
+                // Threads that end without releasing their reader do not notify
+                wait(READER_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a reader connection", e);
+            }
+        }
+    }
+
+    private Connection takeBackFromEndedThread() {
+        for (Map.Entry<Connection, Thread> owner : readerThreads.entrySet()) {
+            if (!owner.getValue().isAlive()) {
+                Connection reader = owner.getKey();
+                readerThreads.remove(reader);
+                return reader;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens a read-only connection with the same settings as the pooled readers but outside
+     * the pool, for jobs that scan in parallel and must not take the readers of other threads.
+     * The caller closes it, and its statements are not cached.
+     *
+     * @return A new read-only connection.
+     */
+    public Connection openReader() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("open_mode", OPEN_READ_ONLY);
+        Connection reader = DriverManager.getConnection(url, properties);
+        configure(reader);
+        return reader;
+    }
+
+    private void configure(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout=" + settings.getBusyTimeoutMillis() + ";");
+            statement.execute("PRAGMA cache_size=-" + settings.getCacheSizeKib() + ";");
+            statement.execute("PRAGMA mmap_size=" + settings.getMmapSizeBytes() + ";");
+            if (settings.isTempStoreMemory()) {
+                statement.execute("PRAGMA temp_store=MEMORY;");
+            }
+        }
+    }
+
+    /**
+     * Returns the statement cache of a connection opened by this pool.
+     *
+     * connection The connection.
+     * @return The statement cache of the connection.
+     */
+    public StatementCache getStatementCache(Connection connection) {
+        return statementCaches.get(connection);
+    }
+
+    /**
+     * Closes the idle compiled statements of every connection, for example after the schema changed.
+     */
+    public void clearStatementCaches() {
+        for (StatementCache statementCache : statementCaches.values()) {
+            statementCache.clear();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        clearStatementCaches();
+        List<Connection> connections = new ArrayList<>(readers);
+        connections.add(writer);
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        closed = true;
+        readers.clear();
+        idleReaders.clear();
+        readerThreads.clear();
+        notifyAll();
+        appliedAttachments.clear();
+        appliedAttachmentVersions.clear();
+    }
+}
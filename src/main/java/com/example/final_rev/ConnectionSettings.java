@@ -0,0 +1,151 @@
+package com.example.final_rev;
+
+/**
+ * Tunable settings for the connections a ConnectionPool opens.
+ *
+ * The defaults put the database in WAL mode with synchronous=NORMAL, which lets
+ * readers run in parallel with the single writer and makes commits cheap while
+ * still being safe against application crashes.
+ *
+ * largeFile() returns settings for files of tens of gigabytes: reads go through a
+ * memory map instead of read() system calls, every connection gets a larger page
+ * cache, temporary tables and sort spills stay in memory, and new files get larger pages.
+ *
+ * The row cache budget bounds the rows Database keeps in memory for tables that were shown, see RowCache.
+ */
+public class ConnectionSettings {
+    static final int DEFAULT_READER_CONNECTIONS = 4;
+    static final int DEFAULT_BUSY_TIMEOUT_MILLIS = 5000;
+    static final int DEFAULT_CACHE_SIZE_KIB = 16 * 1024;
+    static final long DEFAULT_MMAP_SIZE_BYTES = 0;
+    static final long DEFAULT_ROW_CACHE_BYTES = 64L << 20;
+    static final int LARGE_FILE_CACHE_SIZE_KIB = 64 * 1024;
+    // SQLite maps at most the file size, so this only caps how large a file can be mapped
+    static final long LARGE_FILE_MMAP_SIZE_BYTES = 256L << 30;
+    static final int LARGE_FILE_PAGE_SIZE = 16 * 1024;
+    static final long LARGE_FILE_ROW_CACHE_BYTES = 256L << 20;
+    // Files at least this large are offered large file mode when opened
+    public static final long LARGE_FILE_THRESHOLD_BYTES = 1L << 30;
+
+    private int readerConnections = DEFAULT_READER_CONNECTIONS;
+    private int busyTimeoutMillis = DEFAULT_BUSY_TIMEOUT_MILLIS;
+    private int cacheSizeKib = DEFAULT_CACHE_SIZE_KIB;
+    private long mmapSizeBytes = DEFAULT_MMAP_SIZE_BYTES;
+    private boolean walMode = true;
+    private boolean tempStoreMemory;
+    private int pageSize;
+    private long rowCacheBytes = DEFAULT_ROW_CACHE_BYTES;
+    private boolean largeFileMode;
+
+    /**
+     * Creates the settings for browsing very large files, see the class comment.
+     *
+     * @return The large file settings.
+     */
+    public static ConnectionSettings largeFile() {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setCacheSizeKib(LARGE_FILE_CACHE_SIZE_KIB);
+        settings.setMmapSizeBytes(LARGE_FILE_MMAP_SIZE_BYTES);
+        settings.setTempStoreMemory(true);
+        settings.setPageSize(LARGE_FILE_PAGE_SIZE);
+        settings.setRowCacheBytes(LARGE_FILE_ROW_CACHE_BYTES);
+        settings.largeFileMode = true;
+        return settings;
+    }
+
+    /**
+     * @return True if these are the large file settings, which also warm the cache for the table being browsed.
+     */
+    public boolean isLargeFileMode() {
+        return largeFileMode;
+    }
+
+    /**
+     * @return The number of read-only connections opened next to the writer connection, which reading threads check out in turn.
+     */
+    public int getReaderConnections() {
+        return readerConnections;
+    }
+
+    public void setReaderConnections(int readerConnections) {
+        this.readerConnections = Math.max(1, readerConnections);
+    }
+
+    /**
+     * @return How long a statement waits for a lock held by another connection before failing.
+     */
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * @return The page cache size of every connection in KiB (PRAGMA cache_size).
+     */
+    public int getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+
+    public void setCacheSizeKib(int cacheSizeKib) {
+        this.cacheSizeKib = cacheSizeKib;
+    }
+
+    /**
+     * @return The number of bytes of the file SQLite may memory-map (PRAGMA mmap_size), 0 to disable.
+     */
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    public void setMmapSizeBytes(long mmapSizeBytes) {
+        this.mmapSizeBytes = mmapSizeBytes;
+    }
+
+    /**
+     * @return Whether the writer switches the database to journal_mode=WAL with synchronous=NORMAL.
+     */
+    public boolean isWalMode() {
+        return walMode;
+    }
+
+    public void setWalMode(boolean walMode) {
+        this.walMode = walMode;
+    }
+
+    /**
+     * @return Whether temporary tables, indexes and sort spills are kept in memory (PRAGMA temp_store=MEMORY).
+     */
+    public boolean isTempStoreMemory() {
+        return tempStoreMemory;
+    }
+
+    public void setTempStoreMemory(boolean tempStoreMemory) {
+        this.tempStoreMemory = tempStoreMemory;
+    }
+
+    /**
+     * @return The page size in bytes given to a new, empty database file (PRAGMA page_size), 0 to use SQLite's default.
+     *         Existing files keep their page size, changing it would mean rewriting the whole file with VACUUM.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return The heap the rows cached by Database may use in bytes, 0 to disable the row cache.
+     */
+    public long getRowCacheBytes() {
+        return rowCacheBytes;
+    }
+
+    public void setRowCacheBytes(long rowCacheBytes) {
+        this.rowCacheBytes = Math.max(0, rowCacheBytes);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.final_rev;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * Imports a CSV or TSV file into a table.
+ *
+ * The file is streamed from disk record by record and handed to Database.insertRows,
+ * which inserts it with batched statements in chunked transactions. When the file has
+ * a header row its columns are matched to the table columns by name (ignoring case and
+ * skipping unknown columns), otherwise the fields are mapped to the table columns in order.
+ */
+public class CsvImporter {
+    static final int DEFAULT_BATCH_SIZE = 1000;
+    static final int DEFAULT_TRANSACTION_SIZE = 100_000;
+
+    private final Database database;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.SKIP;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int transactionSize = DEFAULT_TRANSACTION_SIZE;
+    private boolean headerRow = true;
+
+    public CsvImporter(Database database) {
+        this.database = database;
+    }
+
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setTransactionSize(int transactionSize) {
+        this.transactionSize = transactionSize;
+    }
+
+    public void setHeaderRow(boolean headerRow) {
+        this.headerRow = headerRow;
+    }
+
+    /**
+     * Imports the given file into the table.
+     *
+     * file      The CSV or TSV file, the delimiter is picked from the file extension.
+     * tableName The name of the table to import into.
+     * progress  Called with the number of records processed so far, may be null.
+     * @return The number of rows inserted.
+     */
+    public long importFile(Path file, String tableName, LongConsumer progress) throws IOException, SQLException {
+        List<String> tableColumns = database.getColumns(tableName);
+        if (tableColumns.isEmpty()) {
+            throw new SQLException("Table " + tableName + " has no columns");
+        }
+
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8),
+                CsvReader.delimiterFor(file.getFileName().toString()))) {
+            List<String> columnNames = new ArrayList<>();
+            List<Integer> fieldIndexes = new ArrayList<>();
+
+            if (headerRow) {
+                String[] header = reader.readRecord();
+                if (header == null) {
+                    return 0;
+                }
+                for (int i = 0; i < header.length; i++) {
+                    String field = header[i] == null ? "" : header[i].trim();
+                    if (i == 0 && field.startsWith("\uFEFF")) {
+                        field = field.substring(1);
+                    }
+                    for (String column : tableColumns) {
+                        if (column.equalsIgnoreCase(field) && !columnNames.contains(column)) {
+                            columnNames.add(column);
+                            fieldIndexes.add(i);
+                            break;
+                        }
+                    }
+                }
+                if (columnNames.isEmpty()) {
+                    throw new IOException("None of the columns in " + file.getFileName() + " match table " + tableName);
+                }
+            } else {
+                for (int i = 0; i < tableColumns.size(); i++) {
+                    columnNames.add(tableColumns.get(i));
+                    fieldIndexes.add(i);
+                }
+            }
+
+            try {
+                return database.insertRows(tableName, columnNames, duplicatePolicy,
+                        new MappedRows(reader, fieldIndexes), batchSize, transactionSize, progress);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Picks the mapped fields out of every record and skips blank lines
+    private static class MappedRows implements Iterator<String[]> {
+        private final CsvReader reader;
+        private final int[] fieldIndexes;
+        private String[] next;
+
+        MappedRows(CsvReader reader, List<Integer> fieldIndexes) {
+            this.reader = reader;
+            this.fieldIndexes = fieldIndexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && reader.hasNext()) {
+                String[] record = reader.next();
+                if (record.length == 1 && record[0] == null) {
+                    continue;
+                }
+                String[] row = new String[fieldIndexes.length];
+                for (int i = 0; i < fieldIndexes.length; i++) {
+                    int field = fieldIndexes[i];
+                    row[i] = field < record.length ? record[field] : null;
+                }
+                next = row;
+            }
+            return next != null;
+        }
+
+        @Override
+        public String[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String[] row = next;
+            next = null;
+            return row;
+        }
+    }
+}
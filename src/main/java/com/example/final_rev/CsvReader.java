@@ -0,0 +1,166 @@
+package com.example.final_rev;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader for CSV and TSV files.
+ *
+ * Records are parsed one at a time from the underlying reader, so files of any size
+ * can be read in constant memory. Fields may be quoted with double quotes, in which
+ * case they can contain the delimiter, line breaks and doubled quotes. Empty unquoted
+ * fields are returned as null so they are stored as NULL, a quoted empty field stays
+ * an empty string.
+ */
+public class CsvReader implements Iterator<String[]>, Closeable {
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private String[] nextRecord;
+    private boolean finished;
+    private long lineNumber;
+
+    /**
+     * Creates a reader that parses records from the given character stream.
+     *
+     * reader    The character stream, it should be buffered or read from a file.
+     * delimiter The field delimiter, ',' for CSV and '\t' for TSV.
+     */
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Picks the delimiter from a file name: tab for .tsv and .tab files, comma otherwise.
+     *
+     * fileName The name of the file.
+     * @return The delimiter.
+     */
+    public static char delimiterFor(String fileName) {
+        String lower = fileName.toLowerCase();
+        return lower.endsWith(".tsv") || lower.endsWith(".tab") ? '\t' : ',';
+    }
+
+    /**
+     * @return The number of lines read so far, for error messages.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRecord == null && !finished) {
+            try {
+                nextRecord = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = nextRecord == null;
+        }
+        return nextRecord != null;
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String[] record = nextRecord;
+        nextRecord = null;
+        return record;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return The fields of the record, or null at the end of the input.
+     */
+    public String[] readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean inQuotes = false;
+
+        while (true) {
+            if (inQuotes) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field at line " + lineNumber);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(toValue(field, quoted));
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n' && next != -1) {
+                        position--;
+                    }
+                }
+                lineNumber++;
+                fields.add(toValue(field, quoted));
+                return fields.toArray(new String[0]);
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private static String toValue(StringBuilder field, boolean quoted) {
+        if (field.length() == 0 && !quoted) {
+            return null;
+        }
+        return field.toString();
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
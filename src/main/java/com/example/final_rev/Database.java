@@ -2,13 +2,64 @@ package com.example.final_rev;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 public class Database {
-    private Connection connection;
-    private PreparedStatement preparedStatement;
-    private ResultSet resultSet;
+    static final int FIRST_CHUNK_ROWS = 100;
+    static final long CHUNK_INTERVAL_NANOS = 100_000_000L;
+    // Tables the application creates for itself start with this prefix and are hidden from getTables
+    static final String INTERNAL_TABLE_PREFIX = "_fr_";
+    static final String SEARCH_INDEX_PREFIX = INTERNAL_TABLE_PREFIX + "fts_";
+    static final int SNIPPET_TOKENS = 12;
+    static final int RANK_CANDIDATES = 5_000;
+    // Bulk deletes and updates, see runBulk
+    static final String BULK_JOURNAL = INTERNAL_TABLE_PREFIX + "bulk_ops";
+    static final String BULK_UNDO_PREFIX = INTERNAL_TABLE_PREFIX + "undo_";
+    static final int BULK_FIRST_CHUNK_ROWS = 1_000;
+    static final int BULK_MIN_CHUNK_ROWS = 100;
+    static final int BULK_MAX_CHUNK_ROWS = 200_000;
+    static final long BULK_CHUNK_NANOS = 100_000_000L;
+    // Temporary triggers recording an import, see importTriggers
+    static final String IMPORT_INSERT_TRIGGER = INTERNAL_TABLE_PREFIX + "import_insert";
+    static final String IMPORT_DELETE_TRIGGER = INTERNAL_TABLE_PREFIX + "import_delete";
+
+    private ConnectionPool pool;
+    private ConnectionSettings settings;
+    private SchemaCache schemaCache;
+    // Read-only connection that only runs PRAGMA data_version, see getDataVersion
+    private Connection versionConnection;
+    private TableProfiler tableProfiler;
+    private ChangeJournal journal;
+    private ChangeCapture changeCapture;
+    // Pages of rows in key order and row counts of the tables shown, see getRowPage
+    private RowCache rowCache;
+    // Whether a write may change other tables than its own through a trigger or a foreign key, see invalidateRows
+    private boolean cascadingWrites;
+    private int cascadingWritesSchemaVersion = -1;
+
+    // Held for the whole of every write so transactions on the writer connection never interleave
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // The call each worker thread is running, so its statement can be cancelled from another thread
+    private final Map<Thread, CancelToken> runningCalls = new ConcurrentHashMap<>();
+
+    // Rows read and written and the latency of every statement
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    // Times every statement below and captures the plans of slow ones
+    private final StatementProfiler profiler = new StatementProfiler(this::explainQueryPlan,
+            metrics.timer(MetricsRegistry.QUERY_LATENCY));
 
     /**
      * Constructor to connect to the SQLite database.
@@ -16,24 +67,55 @@ public class Database {
      * absolutePath Absolute path to the SQLite database file.
      */
     public Database(String absolutePath) {
+        this(absolutePath, new ConnectionSettings());
+    }
+
+    /**
+     * Constructor to connect to the SQLite database with the given connection settings.
+     *
+     * absolutePath Absolute path to the SQLite database file.
+     * settings     The pool size, journal and cache settings.
+     */
+    public Database(String absolutePath, ConnectionSettings settings) {
+        this.settings = settings;
         connect(absolutePath);
         createTables();
     }
 
     /**
      * Connects to the SQLite database using the given absolute path.
+     * Any connections opened before are closed first.
      *
      * absolutePath Absolute path to the SQLite database file.
      */
     void connect(String absolutePath) {
+        if (pool != null) {
+            closeVersionConnection();
+            pool.close();
+        }
         try {
-            String url = "jdbc:sqlite:" + absolutePath;
-            connection = DriverManager.getConnection(url);
+            pool = new ConnectionPool(absolutePath, settings, profiler);
+            tableProfiler = new TableProfiler(this);
+            journal = new ChangeJournal(pool);
+            changeCapture = new ChangeCapture(pool);
+            schemaCache = new SchemaCache(this::reader);
+            rowCache = new RowCache(settings.getRowCacheBytes());
+            // Compiled statements may refer to dropped or altered tables once the schema changes
+            schemaCache.addInvalidationListener(pool::clearStatementCaches);
+            // and cached rows may miss columns
+            schemaCache.addInvalidationListener(rowCache::clear);
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @return The connection settings this database was opened with.
+     */
+    public ConnectionSettings getSettings() {
+        return settings;
+    }
+
     /**
      * Creates necessary tables in the database.
      * Call this method to create tables when initializing the database instance.
@@ -43,23 +125,29 @@ public class Database {
     }
 
     /**
-     * Retrieves the names of all tables in the database.
+     * Retrieves the names of all tables in the database, leaving out the internal tables
+     * of the application such as the search indexes, and those of SQLite such as sqlite_sequence.
      *
      * @return A list of table names.
      */
     public List<String> getTables() {
         List<String> tableNames = new ArrayList<>();
 
+        String sql = "SELECT name FROM sqlite_master WHERE type='table' AND substr(name, 1, " + INTERNAL_TABLE_PREFIX.length()
+                + ") <> '" + INTERNAL_TABLE_PREFIX + "' AND name NOT LIKE 'sqlite\\_%' ESCAPE '\\'";
         try {
-            ResultSet resultSet = search("SELECT name FROM sqlite_master WHERE type='table'");
-            while (resultSet.next()) {
-                String tableName = resultSet.getString("name");
-                tableNames.add(tableName);
-            }
+            profiler.time(sql, () -> {
+                try (PreparedStatement statement = prepare(reader(), sql);
+                     ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String tableName = rs.getString("name");
+                        tableNames.add(tableName);
+                    }
+                }
+                return tableNames;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
-        } finally {
-            closeResources();
         }
 
         return tableNames;
@@ -73,12 +161,13 @@ public class Database {
      * primaryKeyValue The value of the primary key to check for existence.
      */
     public boolean isPrimaryKeyExists(String tableName, String primaryKeyColumn, String primaryKeyValue) {
-        try {
-            String query = "SELECT 1 FROM " + tableName + " WHERE " + primaryKeyColumn + " = ? LIMIT 1;";
-            preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1, primaryKeyValue);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            return resultSet.next();
+        try (StatementCache.CachedStatement cached = borrow(reader(), tableName, "exists", List.of(primaryKeyColumn),
+                () -> "SELECT 1 FROM " + quoteIdentifier(tableName) + " WHERE " + quoteIdentifier(primaryKeyColumn) + " = ? LIMIT 1;")) {
+            PreparedStatement statement = cached.get();
+            statement.setString(1, primaryKeyValue);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -92,17 +181,7 @@ public class Database {
      * @return A list of primary key column names.
      */
     public List<String> getPrimaryKeyColumns(String tableName) throws SQLException {
-        List<String> primaryKeys = new ArrayList<>();
-
-        DatabaseMetaData metaData = connection.getMetaData();
-        ResultSet rs = metaData.getPrimaryKeys(null, null, tableName);
-
-        while (rs.next()) {
-            String primaryKeyColumnName = rs.getString("COLUMN_NAME");
-            primaryKeys.add(primaryKeyColumnName);
-        }
-
-        return primaryKeys;
+        return new ArrayList<>(schemaCache.getTable(tableName).getPrimaryKeyColumns());
     }
 
     /**
@@ -115,25 +194,37 @@ public class Database {
         List<String> columnNames = new ArrayList<>();
 
         try {
-            String query = "PRAGMA table_info(" + tableName + ");";
-            preparedStatement = connection.prepareStatement(query);
-            resultSet = preparedStatement.executeQuery();
-
-            while (resultSet.next()) {
-                String columnName = resultSet.getString("name");
-                columnNames.add(columnName);
-            }
+            columnNames.addAll(schemaCache.getTable(tableName).getColumnNames());
         } catch (SQLException e) {
             e.printStackTrace();
-        } finally {
-            closeResources();
         }
 
         return columnNames;
     }
 
+    /**
+     * Retrieves the cached schema of the given table: column types, constraints,
+     * primary key and indexes. The schema is loaded once and reused until the
+     * database schema changes.
+     *
+     * tableName The name of the table.
+     * @return The table schema.
+     */
+    public TableSchema getTableSchema(String tableName) throws SQLException {
+        return schemaCache.getTable(tableName);
+    }
+
+    /**
+     * @return The schema cache shared by all connections.
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
     /**
      * Executes the given SQL query and returns the result set.
+     * The query runs on the read-only connection of the calling thread.
+     * Only the time until the first row is ready is profiled, reading the rest is up to the caller.
      *
      * query The SQL query to execute.
      * @return The result set of the query.
@@ -141,14 +232,95 @@ public class Database {
     public ResultSet search(String query) {
         ResultSet tableRows = null;
         try {
-            preparedStatement = connection.prepareStatement(query);
-            tableRows = preparedStatement.executeQuery();
+            // Closing the result set closes the statement, the caller owns both
+            tableRows = profiler.time(query, () -> {
+                PreparedStatement statement = prepare(reader(), query);
+                statement.closeOnCompletion();
+                return statement.executeQuery();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return tableRows;
     }
 
+    /**
+     * Runs an arbitrary query and hands its rows to the listener in chunks while they are read,
+     * so the first rows can be shown long before a large result is complete. The first chunk
+     * holds at most FIRST_CHUNK_ROWS rows; later chunks are cut at chunkSize rows or after
+     * CHUNK_INTERVAL_NANOS, whichever comes first.
+     * The query runs on the read-only connection of the calling thread, so statements that
+     * modify the database fail. It can be cancelled through cancel.
+     *
+     * sql       The query to run.
+     * rowLimit  The maximum number of rows to read, reading stops there to cap memory use.
+     * chunkSize The maximum number of rows per chunk.
+     * listener  Receives the columns and the chunks of rows.
+     * @return The number of rows read.
+     */
+    public long streamQuery(String sql, long rowLimit, int chunkSize, QueryListener listener) throws SQLException {
+        return profiler.time(sql, () -> {
+            try (PreparedStatement statement = prepare(reader(), sql)) {
+                if (!statement.execute()) {
+                    listener.columns(List.of("Rows changed"));
+                    listener.rows(List.of(new ArrayRow(new Object[] {(long) statement.getUpdateCount()})));
+                    return 0L;
+                }
+
+                try (ResultSet rs = statement.getResultSet()) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    List<String> columnNames = new ArrayList<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        columnNames.add(metaData.getColumnLabel(i));
+                    }
+                    listener.columns(columnNames);
+
+                    long rows = 0;
+                    int chunkLimit = Math.min(FIRST_CHUNK_ROWS, chunkSize);
+                    RowStore chunk = new RowStore(columnCount, chunkLimit);
+                    Object[] values = new Object[columnCount];
+                    long chunkStart = System.nanoTime();
+                    while (rows < rowLimit && rs.next()) {
+                        for (int i = 0; i < columnCount; i++) {
+                            Object value = rs.getObject(i + 1);
+                            if (value instanceof byte[]) {
+                                value = new BlobHandle(null, null, null, columnNames.get(i), ((byte[]) value).length);
+                            }
+                            values[i] = value;
+                        }
+                        chunk.append(values);
+                        rows++;
+
+                        if (chunk.size() >= chunkLimit
+                                || ((chunk.size() & 63) == 0 && System.nanoTime() - chunkStart >= CHUNK_INTERVAL_NANOS)) {
+                            listener.rows(chunkRows(chunk));
+                            chunkLimit = chunkSize;
+                            chunk = new RowStore(columnCount, chunkLimit);
+                            chunkStart = System.nanoTime();
+                        }
+                    }
+                    if (chunk.size() > 0) {
+                        listener.rows(chunkRows(chunk));
+                    }
+                    metrics.increment(MetricsRegistry.ROWS_READ, rows);
+                    if (rows >= rowLimit && rs.next()) {
+                        listener.limitReached();
+                    }
+                    return rows;
+                }
+            }
+        });
+    }
+
+    private static List<RowView> chunkRows(RowStore chunk) {
+        List<RowView> rows = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            rows.add(chunk.row(i));
+        }
+        return rows;
+    }
+
     /**
      * Retrieves all rows from the given table.
      *
@@ -157,10 +329,14 @@ public class Database {
      */
     public ResultSet getTableRows(String tableName) {
         ResultSet tableRows = null;
+        // Closing the result set closes the statement, the caller owns both
+        String query = "SELECT * FROM " + quoteIdentifier(tableName) + ";";
         try {
-            String query = "SELECT * FROM " + tableName + ";";
-            preparedStatement = connection.prepareStatement(query);
-            tableRows = preparedStatement.executeQuery();
+            tableRows = profiler.time(query, () -> {
+                PreparedStatement statement = prepare(reader(), query);
+                statement.closeOnCompletion();
+                return statement.executeQuery();
+            });
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -168,102 +344,1928 @@ public class Database {
     }
 
     /**
-     * Inserts a new row into the given table with the specified column values.
+     * Determines the column used to page through the given table.
+     * Ordinary tables are paged on their rowid; WITHOUT ROWID tables fall back to
+     * their primary key column. A composite primary key does not identify a row by one
+     * column, so those tables have no key column and are paged with OFFSET instead.
      *
-     * tableName   The name of the table to insert the row.
-     * columnNames The list of column names.
-     * columnValues The map containing column names and their corresponding values.
+     * tableName The name of the table to page through.
+     * @return The key column name, or null if the table has neither a rowid nor a single column primary key.
      */
-    public void insertRow(String tableName, List<String> columnNames, Map<String, String> columnValues) {
+    public String getRowKeyColumn(String tableName) {
+        String sql = "SELECT rowid FROM " + quoteIdentifier(tableName) + " LIMIT 0;";
         try {
-            StringBuilder placeholders = new StringBuilder();
+            return profiler.time(sql, () -> {
+                try (PreparedStatement statement = prepare(reader(), sql)) {
+                    statement.executeQuery().close();
+                }
+                return "rowid";
+            });
+        } catch (SQLException e) {
+            // WITHOUT ROWID table, use the primary key instead
+        }
 
-            for (int i = 0; i < columnNames.size(); i++) {
-                placeholders.append("?, ");
+        try {
+            List<String> primaryKeys = getPrimaryKeyColumns(tableName);
+            if (primaryKeys.size() == 1) {
+                return primaryKeys.get(0);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Reads every page of a table once so later reads are served from memory, the OS page
+     * cache when the file is memory-mapped and the SQLite page cache otherwise. The table is
+     * walked in rowid order, which reads the file sequentially for most tables. Only the
+     * page structure is visited, no values are copied into Java. It runs on the read-only
+     * connection of the calling thread and can be cancelled through cancel.
+     * A table that was warmed and has not changed since is not read again.
+     *
+     * tableName The table to warm.
+     * @return The number of rows visited.
+     */
+    public long warmTable(String tableName) throws SQLException {
+        long stamp = rowCache.validate(getExternalDataVersion());
+        long warmedRows = stamp >= 0 ? rowCache.getWarmedRows(tableName) : -1;
+        if (warmedRows >= 0) {
+            return warmedRows;
+        }
+        // NOT INDEXED keeps SQLite from scanning a smaller index instead of the table itself
+        String sql = "SELECT 1 FROM " + quoteIdentifier(tableName) + " NOT INDEXED;";
+        long rows = profiler.time(sql, () -> {
+            long visited = 0;
+            try (PreparedStatement statement = prepare(reader(), sql);
+                 ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    visited++;
+                }
             }
+            return visited;
+        });
+        if (stamp >= 0) {
+            rowCache.putWarmedRows(stamp, tableName, rows);
+        }
+        return rows;
+    }
 
-            placeholders.delete(placeholders.length() - 2, placeholders.length());
+    /**
+     * Counts the rows of the given table.
+     *
+     * tableName The name of the table to count.
+     * @return The number of rows, or -1 if the count failed.
+     */
+    public long countRows(String tableName) {
+        return countRows(tableName, null);
+    }
 
-            String query = "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") VALUES (" + placeholders + ");";
-            preparedStatement = connection.prepareStatement(query);
+    /**
+     * Counts the rows of the given table that match the filters of a query.
+     *
+     * tableName The name of the table to count.
+     * query     The filters to apply, or null to count every row.
+     * @return The number of matching rows, or -1 if the count failed.
+     */
+    public long countRows(String tableName, RowQuery query) {
+        long stamp = query == null || query.isEmpty() ? rowCache.validate(getExternalDataVersion()) : -1;
+        long cachedCount = stamp >= 0 ? rowCache.getRowCount(tableName) : -1;
+        if (cachedCount >= 0) {
+            metrics.increment(MetricsRegistry.ROW_CACHE_HITS, 1);
+            return cachedCount;
+        }
 
-            int index = 1;
-            for (String columnName : columnNames) {
-                preparedStatement.setString(index, columnValues.get(columnName));
-                index++;
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM " + quoteIdentifier(tableName));
+        List<Object> params = new ArrayList<>();
+        if (query != null) {
+            StringBuilder conditions = new StringBuilder();
+            if (query.appendConditions(conditions, params)) {
+                sql.append(" WHERE ").append(conditions);
             }
+        }
 
-            preparedStatement.executeUpdate();
+        String countSql = sql.append(';').toString();
+        try {
+            long count = profiler.time(countSql, () -> {
+                try (PreparedStatement statement = prepare(reader(), countSql)) {
+                    for (int i = 0; i < params.size(); i++) {
+                        statement.setObject(i + 1, params.get(i));
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : 0L;
+                    }
+                }
+            });
+            if (stamp >= 0) {
+                rowCache.putRowCount(stamp, tableName, count);
+            }
+            return count;
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return -1;
     }
 
     /**
-     * Updates a row in the given table with the specified column values.
+     * Retrieves one page of rows using keyset pagination on the given key column.
+     * The page starts after the row whose key is afterKey (or at the start of the table
+     * when afterKey is null) and skips another offset rows from there, so a caller that
+     * knows the key of the previous page never makes SQLite walk over earlier rows.
      *
-     * tableName      The name of the table to update the row.
-     * primaryKeyColumn The name of the primary key column.
-     * primaryKeyValue The value of the primary key of the row to be updated.
-     * editedValues   The map containing column names and their updated values.
+     * tableName The name of the table to read.
+     * keyColumn The column the table is ordered and paged on, see getRowKeyColumn.
+     *           When null the table is read in storage order using the offset alone.
+     * afterKey  The key of the last row before the page, or null to start at the beginning.
+     * offset    The number of rows to skip after afterKey.
+     * limit     The maximum number of rows in the page.
+     * @return The page of rows together with their keys.
      */
-    public void updateRow(String tableName, String primaryKeyColumn, String primaryKeyValue, Map<String, String> editedValues) {
-        try {
-            List<String> columns = getColumns(tableName);
-            StringBuilder setClause = new StringBuilder();
+    public RowPage getRowPage(String tableName, String keyColumn, Object afterKey, long offset, int limit) throws SQLException {
+        return getRowPage(tableName, keyColumn, null, afterKey == null ? null : new RowPage.Position(afterKey, null), offset, limit);
+    }
 
-            for (String columnName : columns) {
-                if (!columnName.equals(primaryKeyColumn)) {
-                    setClause.append(columnName).append(" = ?, ");
-                }
+    /**
+     * Retrieves one page of the rows matching a query, in the query's sort order.
+     * Rows are ordered by the sort column and then by the key column, and the page
+     * starts after the given position, so SQLite can seek to it through an index on
+     * the sort column instead of skipping the rows before it. NULL sort values come
+     * first in ascending and last in descending order, as SQLite sorts them.
+     *
+     * Pages in plain key order that start right after a known key are kept in the RowCache,
+     * so showing a table again that has not changed reads nothing from SQLite.
+     *
+     * tableName The name of the table to read.
+     * keyColumn The row key column, see getRowKeyColumn. When null the rows are paged with the offset alone.
+     * query     The filters and sort order, or null to read every row in key order.
+     * after     The position of the last row before the page, or null to start at the beginning.
+     * offset    The number of rows to skip after the position.
+     * limit     The maximum number of rows in the page.
+     * @return The page of rows together with their keys and sort values.
+     */
+    public RowPage getRowPage(String tableName, String keyColumn, RowQuery query, RowPage.Position after, long offset, int limit) throws SQLException {
+        Object afterKey = after == null ? null : after.getKey();
+        long stamp = keyColumn != null && (query == null || query.isEmpty()) && offset == 0
+                ? rowCache.validate(getExternalDataVersion()) : -1;
+        if (stamp >= 0) {
+            RowPage cached = rowCache.getPage(tableName, afterKey, limit);
+            if (cached != null) {
+                metrics.increment(MetricsRegistry.ROW_CACHE_HITS, 1);
+                return cached;
+            }
+            metrics.increment(MetricsRegistry.ROW_CACHE_MISSES, 1);
+        }
+
+        String key = keyColumn == null ? "NULL" : quoteIdentifier(keyColumn);
+        String sortColumn = query == null || query.getSortColumn() == null ? null : quoteIdentifier(query.getSortColumn());
+        boolean descending = query != null && query.isDescending();
+        List<Object> params = new ArrayList<>();
+
+        StringBuilder sql = new StringBuilder("SELECT " + key + ", " + (sortColumn == null ? "NULL" : sortColumn)
+                + ", * FROM " + quoteIdentifier(tableName));
+        StringBuilder conditions = new StringBuilder();
+        boolean filtered = query != null && query.appendConditions(conditions, params);
+        if (keyColumn != null && after != null) {
+            if (filtered) {
+                conditions.append(" AND ");
             }
-            setClause.delete(setClause.length() - 2, setClause.length());
+            appendAfterCondition(conditions, params, key, sortColumn, descending, after);
+            filtered = true;
+        }
+        if (filtered) {
+            sql.append(" WHERE ").append(conditions);
+        }
 
-            String query = "UPDATE " + tableName + " SET " + setClause + " WHERE " + primaryKeyColumn + " = ?";
-            preparedStatement = connection.prepareStatement(query);
+        String direction = descending ? " DESC" : "";
+        if (sortColumn != null) {
+            sql.append(" ORDER BY ").append(sortColumn).append(direction);
+            if (keyColumn != null) {
+                sql.append(", ").append(key).append(direction);
+            }
+        } else if (keyColumn != null) {
+            sql.append(" ORDER BY ").append(key);
+        }
+        String pageQuery = sql.append(" LIMIT ? OFFSET ?;").toString();
 
+        // Every query shape gets its own cached statement, keyed by its SQL
+        try (StatementCache.CachedStatement cached = borrow(reader(), tableName, "page", List.of(pageQuery), () -> pageQuery)) {
+            PreparedStatement statement = cached.get();
             int index = 1;
-            for (String columnName : columns) {
-                if (!columnName.equals(primaryKeyColumn)) {
-                    preparedStatement.setString(index++, editedValues.get(columnName));
+            for (Object param : params) {
+                statement.setObject(index++, param);
+            }
+            statement.setInt(index++, limit);
+            statement.setLong(index, offset);
+
+            try (ResultSet rs = statement.executeQuery()) {
+                RowPage page = readPage(rs, tableName, keyColumn, limit);
+                metrics.increment(MetricsRegistry.ROWS_READ, page.size());
+                if (stamp >= 0) {
+                    rowCache.putPage(stamp, tableName, afterKey, limit, page);
                 }
+                return page;
             }
-            preparedStatement.setString(index, primaryKeyValue);
+        }
+    }
 
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Reads rows selected as key, sort value and then the table columns into a page.
+     * Values keep their SQLite storage class; BLOBs are replaced by a BlobHandle so
+     * their bytes do not stay on the heap.
+     *
+     * rs        The result set to read.
+     * tableName The table the rows come from.
+     * keyColumn The row key column, see getRowKeyColumn.
+     * capacity  The expected number of rows.
+     */
+    private static RowPage readPage(ResultSet rs, String tableName, String keyColumn, int capacity) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount() - 2;
+        RowPage page = new RowPage(columnCount, capacity);
+        Object[] values = new Object[columnCount];
+        while (rs.next()) {
+            Object key = rs.getObject(1);
+            for (int i = 0; i < columnCount; i++) {
+                Object value = rs.getObject(i + 3);
+                if (value instanceof byte[]) {
+                    value = new BlobHandle(tableName, keyColumn, key, metaData.getColumnName(i + 3), ((byte[]) value).length);
+                }
+                values[i] = value;
+            }
+            page.add(key, rs.getObject(2), values);
+        }
+        return page;
+    }
+
+    /**
+     * Reads one BLOB value, see BlobHandle.
+     *
+     * tableName  The table holding the BLOB.
+     * keyColumn  The row key column.
+     * key        The key of the row.
+     * columnName The column holding the BLOB.
+     * @return The bytes, or null if the row does not exist or the value is NULL.
+     */
+    public byte[] readBlob(String tableName, String keyColumn, Object key, String columnName) throws SQLException {
+        try (StatementCache.CachedStatement cached = borrow(reader(), tableName, "blob", List.of(keyColumn, columnName),
+                () -> "SELECT " + quoteIdentifier(columnName) + " FROM " + quoteIdentifier(tableName)
+                        + " WHERE " + quoteIdentifier(keyColumn) + " = ?;")) {
+            PreparedStatement statement = cached.get();
+            statement.setObject(1, key);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getBytes(1) : null;
+            }
+        }
+    }
+
+    // Keyset condition for the rows after a (sort value, key) position
+    // The comparisons lead with a range on the sort column so an index on it can be used for the seek
+    private static void appendAfterCondition(StringBuilder sql, List<Object> params, String key, String sortColumn,
+                                             boolean descending, RowPage.Position after) {
+        String keyOperator = descending ? " < ?" : " > ?";
+        if (sortColumn == null) {
+            sql.append(key).append(keyOperator);
+            params.add(after.getKey());
+        } else if (after.getSortValue() == null) {
+            // NULLs sort first ascending, so after a NULL come the other NULLs with a larger key and then every non-NULL value
+            sql.append("((").append(sortColumn).append(" IS NULL AND ").append(key).append(keyOperator).append(')');
+            if (!descending) {
+                sql.append(" OR ").append(sortColumn).append(" IS NOT NULL");
+            }
+            sql.append(')');
+            params.add(after.getKey());
+        } else {
+            String sortOperator = descending ? " <" : " >";
+            sql.append("((").append(sortColumn).append(sortOperator).append("= ? AND (")
+                    .append(sortColumn).append(sortOperator).append(" ? OR ").append(key).append(keyOperator).append("))");
+            if (descending) {
+                sql.append(" OR ").append(sortColumn).append(" IS NULL");
+            }
+            sql.append(')');
+            params.add(after.getSortValue());
+            params.add(after.getSortValue());
+            params.add(after.getKey());
+        }
+    }
+
+    /**
+     * Creates an index on a single column so filters and sorts on it can use it.
+     * The index is named idx_table_column and is left alone if it already exists.
+     *
+     * tableName  The name of the table.
+     * columnName The column to index.
+     */
+    public void createIndex(String tableName, String columnName) throws SQLException {
+        writeLock.lock();
+        try (Statement statement = pool.getWriter().createStatement()) {
+            statement.execute("CREATE INDEX IF NOT EXISTS " + quoteIdentifier("idx_" + tableName + "_" + columnName)
+                    + " ON " + quoteIdentifier(tableName) + " (" + quoteIdentifier(columnName) + ");");
         } finally {
-            closeResources();
+            writeLock.unlock();
         }
+        schemaCache.invalidate();
     }
 
     /**
-     * Closes the resources used for database operations.
+     * Builds or rebuilds the full-text search index of a table over the given columns.
+     * The index is an FTS5 table with external content, so it stores the index only and
+     * reads the text from the table itself. Triggers keep it up to date on every insert,
+     * update and delete, whether the change comes from this application or another process.
+     *
+     * tableName   The table to index, it must have a rowid.
+     * columnNames The columns to index, usually the TEXT columns.
      */
-    private void closeResources() {
-        try {
-            if (resultSet != null) {
-                resultSet.close();
+    public void createSearchIndex(String tableName, List<String> columnNames) throws SQLException {
+        if (columnNames.isEmpty()) {
+            throw new SQLException("No columns to index in " + tableName);
+        }
+        if (!"rowid".equals(getRowKeyColumn(tableName))) {
+            throw new SQLException(tableName + " is a WITHOUT ROWID table and cannot be searched");
+        }
+
+        String index = quoteIdentifier(SEARCH_INDEX_PREFIX + tableName);
+        String table = quoteIdentifier(tableName);
+        StringBuilder columns = new StringBuilder();
+        StringBuilder newValues = new StringBuilder();
+        StringBuilder oldValues = new StringBuilder();
+        for (String columnName : columnNames) {
+            columns.append(", ").append(quoteIdentifier(columnName));
+            newValues.append(", new.").append(quoteIdentifier(columnName));
+            oldValues.append(", old.").append(quoteIdentifier(columnName));
+        }
+        String insertNew = "INSERT INTO " + index + " (rowid" + columns + ") VALUES (new.rowid" + newValues + ");";
+        String deleteOld = "INSERT INTO " + index + " (" + index + ", rowid" + columns + ") VALUES ('delete', old.rowid" + oldValues + ");";
+
+        Connection connection = pool.getWriter();
+        writeLock.lock();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SAVEPOINT search_index;");
+            try {
+                dropSearchIndex(statement, tableName);
+                statement.execute("CREATE VIRTUAL TABLE " + index + " USING fts5(" + columns.substring(2)
+                        + ", content=" + quoteString(tableName) + ", content_rowid='rowid');");
+                statement.execute("CREATE TRIGGER " + searchTrigger(tableName, "ai") + " AFTER INSERT ON " + table
+                        + " BEGIN " + insertNew + " END;");
+                statement.execute("CREATE TRIGGER " + searchTrigger(tableName, "ad") + " AFTER DELETE ON " + table
+                        + " BEGIN " + deleteOld + " END;");
+                statement.execute("CREATE TRIGGER " + searchTrigger(tableName, "au") + " AFTER UPDATE ON " + table
+                        + " BEGIN " + deleteOld + " " + insertNew + " END;");
+                // Index the rows already in the table
+                statement.execute("INSERT INTO " + index + " (" + index + ") VALUES ('rebuild');");
+                statement.execute("RELEASE search_index;");
+            } catch (SQLException e) {
+                statement.execute("ROLLBACK TO search_index;");
+                statement.execute("RELEASE search_index;");
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        schemaCache.invalidate();
+    }
+
+    /**
+     * Drops the full-text search index of a table and its triggers, if it has one.
+     *
+     * tableName The indexed table.
+     */
+    public void dropSearchIndex(String tableName) throws SQLException {
+        writeLock.lock();
+        try (Statement statement = pool.getWriter().createStatement()) {
+            dropSearchIndex(statement, tableName);
+        } finally {
+            writeLock.unlock();
+        }
+        schemaCache.invalidate();
+    }
+
+    private static void dropSearchIndex(Statement statement, String tableName) throws SQLException {
+        for (String trigger : new String[] {"ai", "ad", "au"}) {
+            statement.execute("DROP TRIGGER IF EXISTS " + searchTrigger(tableName, trigger) + ";");
+        }
+        statement.execute("DROP TABLE IF EXISTS " + quoteIdentifier(SEARCH_INDEX_PREFIX + tableName) + ";");
+    }
+
+    private static String searchTrigger(String tableName, String event) {
+        return quoteIdentifier(SEARCH_INDEX_PREFIX + tableName + "_" + event);
+    }
+
+    /**
+     * Lists the tables that have a full-text search index.
+     *
+     * @return The indexed columns of every indexed table, by table name.
+     */
+    public Map<String, List<String>> getSearchIndexes() throws SQLException {
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        List<String> tableNames = getTables();
+        Connection connection = reader();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT name FROM sqlite_master WHERE type='table' AND sql LIKE 'CREATE VIRTUAL TABLE%' AND substr(name, 1, ?) = ?;")) {
+            statement.setInt(1, SEARCH_INDEX_PREFIX.length());
+            statement.setString(2, SEARCH_INDEX_PREFIX);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String tableName = rs.getString(1).substring(SEARCH_INDEX_PREFIX.length());
+                    if (tableNames.contains(tableName)) {
+                        indexes.put(tableName, null);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+            List<String> columnNames = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("PRAGMA table_info(" + quoteIdentifier(SEARCH_INDEX_PREFIX + index.getKey()) + ");")) {
+                while (rs.next()) {
+                    columnNames.add(rs.getString("name"));
+                }
+            }
+            index.setValue(columnNames);
+        }
+        return indexes;
+    }
+
+    /**
+     * Searches the full-text indexes of all tables for rows containing every word of the text.
+     * The last word also matches as a prefix, so results show up while it is being typed.
+     * Each table is searched with its own FTS5 query and the hits are merged by bm25 rank,
+     * which is comparable between tables since it only depends on term statistics.
+     * Ranking has to score every match, so only the first RANK_CANDIDATES matches of a
+     * table in rowid order are ranked: a word found in millions of rows still comes back
+     * in milliseconds, while rarer words, the usual case when looking for a value, are
+     * ranked in full.
+     *
+     * text  The words to search for.
+     * limit The maximum number of hits.
+     * @return The hits, best match first.
+     */
+    public List<SearchHit> searchAll(String text, int limit) throws SQLException {
+        String match = toMatchQuery(text);
+        List<SearchHit> hits = new ArrayList<>();
+        if (match.isEmpty()) {
+            return hits;
+        }
+
+        for (Map.Entry<String, List<String>> index : getSearchIndexes().entrySet()) {
+            String tableName = index.getKey();
+            List<String> columnNames = index.getValue();
+            String fts = quoteIdentifier(SEARCH_INDEX_PREFIX + tableName);
+            // A one token snippet per column tells which columns matched without reading their whole text
+            StringBuilder sql = new StringBuilder("SELECT rowid, rank, snippet(" + fts + ", -1, '[', ']', '...', " + SNIPPET_TOKENS + ")");
+            for (int i = 0; i < columnNames.size(); i++) {
+                sql.append(", snippet(").append(fts).append(", ").append(i).append(", char(1), '', '', 1)");
+            }
+            sql.append(" FROM ").append(fts).append(" WHERE ").append(fts).append(" MATCH ?")
+                    .append(" AND rowid <= (SELECT max(rowid) FROM (SELECT rowid FROM ").append(fts)
+                    .append(" WHERE ").append(fts).append(" MATCH ? LIMIT ?)) ORDER BY rank LIMIT ?;");
+
+            try (StatementCache.CachedStatement cached = borrow(reader(), tableName, "search", columnNames, sql::toString)) {
+                PreparedStatement statement = cached.get();
+                statement.setString(1, match);
+                statement.setString(2, match);
+                statement.setInt(3, RANK_CANDIDATES);
+                statement.setInt(4, limit);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        String columnName = null;
+                        for (int i = 0; i < columnNames.size() && columnName == null; i++) {
+                            String marker = rs.getString(4 + i);
+                            if (marker != null && marker.indexOf('\u0001') >= 0) {
+                                columnName = columnNames.get(i);
+                            }
+                        }
+                        hits.add(new SearchHit(tableName, columnName, rs.getLong(1), rs.getString(3), rs.getDouble(2)));
+                    }
+                }
+            }
+        }
+        metrics.increment(MetricsRegistry.ROWS_READ, hits.size());
+
+        hits.sort(Comparator.comparingDouble(SearchHit::getRank));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    // Quote every word so FTS5 operators and punctuation in the text are searched for literally
+    static String toMatchQuery(String text) {
+        StringBuilder match = new StringBuilder();
+        String[] words = text.trim().split("\\s+");
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
             }
-            if (preparedStatement != null) {
-                preparedStatement.close();
+            match.append('"').append(words[i].replace("\"", "\"\"")).append('"');
+            if (i == words.length - 1) {
+                match.append('*');
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * Quotes a string literal for generated SQL.
+     *
+     * value The string.
+     * @return The quoted literal.
+     */
+    static String quoteString(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Quotes an identifier so table and column names containing spaces or keywords
+     * can be used in generated SQL.
+     *
+     * identifier The table or column name.
+     * @return The quoted identifier.
+     */
+    static String quoteIdentifier(String identifier) {
+        if (identifier.equalsIgnoreCase("rowid")) {
+            return identifier;
+        }
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Inserts a new row into the given table with the specified column values.
+     *
+     * tableName   The name of the table to insert the row.
+     * columnNames The list of column names.
+     * columnValues The map containing column names and their corresponding values.
+     * @return The new row read back together with its row key, or null if the insert failed.
+     */
+    public RowPage insertRow(String tableName, List<String> columnNames, Map<String, String> columnValues) {
+        String keyColumn = getRowKeyColumn(tableName);
+        Connection connection = pool.getWriter();
+        writeLock.lock();
+        try (Statement control = connection.createStatement()) {
+            // The row and its journal record are written together
+            control.execute("SAVEPOINT insert_row;");
+            try {
+                RowPage row = null;
+                try (StatementCache.CachedStatement cached = borrow(connection, tableName, "insert", columnNames,
+                        () -> buildInsert("INSERT", tableName, columnNames))) {
+                    PreparedStatement statement = cached.get();
+
+                    int index = 1;
+                    for (String columnName : columnNames) {
+                        statement.setString(index, columnValues.get(columnName));
+                        index++;
+                    }
+
+                    statement.executeUpdate();
+                }
+
+                // Read the new row back so the UI can add it without reloading the table
+                if ("rowid".equals(keyColumn)) {
+                    long rowid = lastInsertRowid(connection);
+                    journal.record(journal.beginAction("Add row to " + tableName), tableName, ChangeJournal.Operation.INSERT,
+                            rowid, null, journal.readImage(tableName, rowid, null));
+                    row = readRow(connection, tableName, keyColumn, keyColumn, rowid);
+                } else if (keyColumn != null) {
+                    row = readRow(connection, tableName, keyColumn, keyColumn, columnValues.get(keyColumn));
+                }
+                control.execute("RELEASE insert_row;");
+                metrics.increment(MetricsRegistry.ROWS_WRITTEN, 1);
+                return row;
+            } catch (SQLException e) {
+                control.execute("ROLLBACK TO insert_row;");
+                journal.rolledBack();
+                control.execute("RELEASE insert_row;");
+                throw e;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+        } finally {
+            writeLock.unlock();
+            invalidateRows(tableName);
+        }
+        return null;
+    }
+
+    private static long lastInsertRowid(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT last_insert_rowid();")) {
+            return rs.getLong(1);
         }
     }
 
     /**
-     * Closes the database connection.
+     * Inserts many rows in batches, committing a transaction every transactionSize rows.
+     * Duplicate keys are resolved by SQLite according to the given policy instead of
+     * looking every key up first. With DuplicatePolicy.FAIL the current transaction is
+     * rolled back and the exception rethrown; chunks committed before stay in the table.
+     *
+     * The rows of a transaction are read from the iterator before the write lock is taken,
+     * and the lock is released after every transaction, so other writes get their turn
+     * between them. Inserts into rowid tables are recorded as a bulk operation, which
+     * undoBulkOperation reverts like a bulk delete or update, see importTriggers. Cancelling
+     * through cancel rolls back the running transaction only.
+     *
+     * tableName       The name of the table to insert into.
+     * columnNames     The columns the values of every row are bound to, in order.
+     * policy          What to do with rows whose key already exists.
+     * rows            The rows to insert, each with one value per column.
+     * batchSize       The number of rows sent to SQLite per executeBatch.
+     * transactionSize The number of rows committed per transaction.
+     * progress        Called with the number of rows processed after every batch, may be null.
+     * @return The number of rows actually inserted.
      */
-    public void close() {
+    public long insertRows(String tableName, List<String> columnNames, DuplicatePolicy policy, Iterator<String[]> rows,
+                           int batchSize, int transactionSize, LongConsumer progress) throws SQLException {
+        Connection connection = pool.getWriter();
+        boolean journaled = "rowid".equals(getRowKeyColumn(tableName));
+        boolean replacing = journaled && policy == DuplicatePolicy.REPLACE;
+        long created = System.currentTimeMillis();
+        long id = 0;
+        List<String> createTriggers = List.of();
+        if (journaled) {
+            List<String> tableColumns = getColumns(tableName);
+            StringBuilder undoColumns = new StringBuilder(", _fr_inserted INTEGER NOT NULL");
+            for (String column : tableColumns) {
+                undoColumns.append(", ").append(quoteIdentifier(column));
+            }
+            writeLock.lock();
+            try {
+                id = beginBulkOperation(tableName, BulkOperation.Kind.INSERT, "Import into " + tableName, created,
+                        undoColumns.toString());
+            } finally {
+                writeLock.unlock();
+            }
+            createTriggers = importTriggers(tableName, quoteIdentifier(BULK_UNDO_PREFIX + id), tableColumns, replacing);
+        }
+        String count = "UPDATE " + BULK_JOURNAL + " SET row_count = row_count + ? WHERE id = ?;";
+
+        long processed = 0;
+        long inserted = 0;
+        List<String[]> chunk = new ArrayList<>();
         try {
-            if (connection != null) {
-                connection.close();
+            while (rows.hasNext()) {
+                checkCancelled();
+                chunk.clear();
+                while (chunk.size() < transactionSize && rows.hasNext()) {
+                    chunk.add(rows.next());
+                }
+
+                long chunkInserted = 0;
+                writeLock.lock();
+                try (Statement control = connection.createStatement();
+                     StatementCache.CachedStatement cached = borrow(connection, tableName, policy.name(), columnNames,
+                             () -> buildInsert(policy.getInsertVerb(), tableName, columnNames))) {
+                    if (replacing) {
+                        // REPLACE only fires delete triggers for the rows it deletes with recursive triggers on
+                        control.execute("PRAGMA recursive_triggers = ON;");
+                    }
+                    connection.setAutoCommit(false);
+                    // The triggers live in the transaction, so no other write is recorded and a rollback drops them
+                    for (String trigger : createTriggers) {
+                        control.execute(trigger);
+                    }
+                    PreparedStatement statement = cached.get();
+                    int batched = 0;
+                    for (int r = 0; r < chunk.size(); r++) {
+                        String[] row = chunk.get(r);
+                        for (int i = 0; i < columnNames.size(); i++) {
+                            statement.setString(i + 1, i < row.length ? row[i] : null);
+                        }
+                        statement.addBatch();
+                        batched++;
+
+                        if (batched == batchSize || r == chunk.size() - 1) {
+                            chunkInserted += countInserted(statement.executeBatch());
+                            processed += batched;
+                            batched = 0;
+                            if (progress != null) {
+                                progress.accept(processed);
+                            }
+                        }
+                    }
+                    if (journaled) {
+                        control.execute("DROP TRIGGER temp." + IMPORT_INSERT_TRIGGER + ";");
+                        if (replacing) {
+                            control.execute("DROP TRIGGER temp." + IMPORT_DELETE_TRIGGER + ";");
+                        }
+                        try (PreparedStatement update = connection.prepareStatement(count)) {
+                            update.setLong(1, chunkInserted);
+                            update.setLong(2, id);
+                            update.executeUpdate();
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    try {
+                        connection.setAutoCommit(true);
+                        if (replacing) {
+                            try (Statement control = connection.createStatement()) {
+                                control.execute("PRAGMA recursive_triggers = OFF;");
+                            }
+                        }
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+                invalidateRows(tableName);
+                // Chunks committed before a failure stay in the table and count as written
+                inserted += chunkInserted;
+                metrics.increment(MetricsRegistry.ROWS_WRITTEN, chunkInserted);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        } finally {
+            if (journaled && inserted == 0) {
+                // Nothing to undo
+                discardBulkOperation(new BulkOperation(id, tableName, BulkOperation.Kind.INSERT, "", 0, created));
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Builds the temporary triggers that record an import into its undo table. The insert
+     * trigger saves the rowid of every new row. With DuplicatePolicy.REPLACE the delete
+     * trigger saves the rows replaced, unless they were inserted by the same import, and a
+     * row replaced by a new one under the same rowid keeps its saved values. The outer INSERT
+     * OR REPLACE would override a conflict clause in the triggers, so rowids already saved
+     * are skipped with NOT EXISTS instead.
+     *
+     * tableName    The table imported into.
+     * undoTable    The quoted name of the undo table of the import.
+     * tableColumns The columns of the table.
+     * replacing    Whether rows are inserted with DuplicatePolicy.REPLACE.
+     * @return The CREATE TRIGGER statements.
+     */
+    private static List<String> importTriggers(String tableName, String undoTable, List<String> tableColumns, boolean replacing) {
+        String table = "main." + quoteIdentifier(tableName);
+        String unsaved = " WHERE NOT EXISTS (SELECT 1 FROM " + undoTable + " WHERE _fr_rowid = ";
+        List<String> triggers = new ArrayList<>();
+        triggers.add("CREATE TEMP TRIGGER " + IMPORT_INSERT_TRIGGER + " AFTER INSERT ON " + table + " BEGIN "
+                + "INSERT INTO " + undoTable + " (_fr_rowid, _fr_inserted) SELECT NEW.rowid, 1" + unsaved + "NEW.rowid); END;");
+        if (replacing) {
+            StringBuilder columns = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (String column : tableColumns) {
+                columns.append(", ").append(quoteIdentifier(column));
+                values.append(", OLD.").append(quoteIdentifier(column));
+            }
+            triggers.add("CREATE TEMP TRIGGER " + IMPORT_DELETE_TRIGGER + " BEFORE DELETE ON " + table + " BEGIN "
+                    + "INSERT INTO " + undoTable + " (_fr_rowid, _fr_inserted" + columns + ") SELECT OLD.rowid, 0"
+                    + values + unsaved + "OLD.rowid); END;");
+        }
+        return triggers;
+    }
+
+    /**
+     * Builds an INSERT statement with one placeholder per column.
+     *
+     * insertVerb  The statement prefix, such as "INSERT" or "INSERT OR IGNORE".
+     * tableName   The name of the table.
+     * columnNames The columns to insert.
+     * @return The SQL.
+     */
+    private static String buildInsert(String insertVerb, String tableName, List<String> columnNames) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+
+        for (String columnName : columnNames) {
+            columns.append(quoteIdentifier(columnName)).append(", ");
+            placeholders.append("?, ");
+        }
+
+        columns.delete(columns.length() - 2, columns.length());
+        placeholders.delete(placeholders.length() - 2, placeholders.length());
+
+        return insertVerb + " INTO " + quoteIdentifier(tableName) + " (" + columns + ") VALUES (" + placeholders + ");";
+    }
+
+    private static long countInserted(int[] updateCounts) {
+        long count = 0;
+        for (int updateCount : updateCounts) {
+            if (updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Updates a row in the given table with the specified column values.
+     *
+     * tableName      The name of the table to update the row.
+     * primaryKeyColumn The name of the primary key column.
+     * primaryKeyValue The value of the primary key of the row to be updated.
+     * editedValues   The new values of the columns that were changed, other columns keep their stored values.
+     * @return The updated row read back together with its row key, or null if the update failed.
+     */
+    public RowPage updateRow(String tableName, String primaryKeyColumn, String primaryKeyValue, Map<String, String> editedValues) {
+        List<String> changedColumns = new ArrayList<>();
+        for (String columnName : getColumns(tableName)) {
+            if (editedValues.containsKey(columnName) && !columnName.equals(primaryKeyColumn)) {
+                changedColumns.add(columnName);
+            }
+        }
+        List<String> statementColumns = new ArrayList<>(changedColumns);
+        statementColumns.add(primaryKeyColumn);
+        String keyColumn = getRowKeyColumn(tableName);
+
+        writeLock.lock();
+        try (Statement control = pool.getWriter().createStatement()) {
+            if (primaryKeyColumn == null) {
+                throw new SQLException(tableName + " has no key column to find the row by");
+            }
+            control.execute("SAVEPOINT update_row;");
+            try {
+                // Before-images of the rows the key matches, for the journal
+                Map<Long, Map<String, Object>> before = "rowid".equals(keyColumn) && !changedColumns.isEmpty()
+                        ? journal.readImages(tableName, primaryKeyColumn, primaryKeyValue, changedColumns) : Map.of();
+
+                int updated = 0;
+                if (!changedColumns.isEmpty()) {
+                    try (StatementCache.CachedStatement cached = borrow(pool.getWriter(), tableName, "update", statementColumns, () -> {
+                        StringBuilder setClause = new StringBuilder();
+
+                        for (String columnName : changedColumns) {
+                            setClause.append(quoteIdentifier(columnName)).append(" = ?, ");
+                        }
+                        setClause.delete(setClause.length() - 2, setClause.length());
+
+                        return "UPDATE " + quoteIdentifier(tableName) + " SET " + setClause + " WHERE " + quoteIdentifier(primaryKeyColumn) + " = ?";
+                    })) {
+                        PreparedStatement statement = cached.get();
+
+                        int index = 1;
+                        for (String columnName : changedColumns) {
+                            statement.setString(index++, editedValues.get(columnName));
+                        }
+                        statement.setString(index, primaryKeyValue);
+                        updated = statement.executeUpdate();
+                    }
+                }
+
+                if (!before.isEmpty()) {
+                    long action = journal.beginAction("Edit row in " + tableName);
+                    for (Map.Entry<Long, Map<String, Object>> row : before.entrySet()) {
+                        journal.record(action, tableName, ChangeJournal.Operation.UPDATE, row.getKey(), row.getValue(),
+                                journal.readImage(tableName, row.getKey(), changedColumns));
+                    }
+                }
+                RowPage row = readRow(pool.getWriter(), tableName, keyColumn, primaryKeyColumn, primaryKeyValue);
+                control.execute("RELEASE update_row;");
+                metrics.increment(MetricsRegistry.ROWS_WRITTEN, updated);
+                return row;
+            } catch (SQLException e) {
+                control.execute("ROLLBACK TO update_row;");
+                journal.rolledBack();
+                control.execute("RELEASE update_row;");
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            writeLock.unlock();
+            invalidateRows(tableName);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the rows matching a single column value together with their row keys,
+     * in the same shape as getRowPage.
+     *
+     * connection  The connection to read with, the writer right after a write.
+     * tableName   The name of the table to read.
+     * keyColumn   The row key column, see getRowKeyColumn.
+     * whereColumn The column to match.
+     * value       The value to match.
+     */
+    private RowPage readRow(Connection connection, String tableName, String keyColumn, String whereColumn, Object value) throws SQLException {
+        String key = keyColumn == null ? "NULL" : quoteIdentifier(keyColumn);
+        try (StatementCache.CachedStatement cached = borrow(connection, tableName, "read-row", List.of(key, whereColumn),
+                () -> "SELECT " + key + ", NULL, * FROM " + quoteIdentifier(tableName) + " WHERE " + quoteIdentifier(whereColumn) + " = ?;")) {
+            PreparedStatement statement = cached.get();
+            statement.setObject(1, value);
+            try (ResultSet rs = statement.executeQuery()) {
+                return readPage(rs, tableName, keyColumn, 1);
+            }
+        }
+    }
+
+    /**
+     * Checks whether no row sorts after the given key, so a new row with that key belongs at the end of the table.
+     * Uses the rowid or primary key index and costs the same on any table size.
+     *
+     * tableName The name of the table.
+     * keyColumn The row key column, see getRowKeyColumn.
+     * key       The key to check.
+     */
+    public boolean isLastRowKey(String tableName, String keyColumn, Object key) throws SQLException {
+        String column = quoteIdentifier(keyColumn);
+        try (StatementCache.CachedStatement cached = borrow(reader(), tableName, "last-key", List.of(column),
+                () -> "SELECT NOT EXISTS (SELECT 1 FROM " + quoteIdentifier(tableName) + " WHERE " + column + " > ?);")) {
+            PreparedStatement statement = cached.get();
+            statement.setObject(1, key);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * Reads PRAGMA data_version on the writer connection. The value changes whenever
+     * another process commits to the database file, but not for commits made through
+     * this Database, so polling it detects external changes only.
+     *
+     * @return The data version, or -1 if the writer is busy and the check should be retried later.
+     */
+    public long getExternalDataVersion() {
+        if (!writeLock.tryLock()) {
+            return -1;
+        }
+        // Checked before every cached read, so the statement is kept compiled
+        try (StatementCache.CachedStatement cached = pool.getStatementCache(pool.getWriter()).borrow("", "data_version",
+                List.of(), () -> "PRAGMA data_version;");
+             ResultSet rs = cached.get().executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cached rows of a table after a write to it was committed. A trigger or a
+     * foreign key action may have changed other tables as well, then every table is dropped.
+     *
+     * tableName The table written to.
+     */
+    private void invalidateRows(String tableName) {
+        try {
+            if (hasCascadingWrites()) {
+                rowCache.clear();
+            } else {
+                rowCache.invalidate(tableName);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            rowCache.clear();
+        }
+    }
+
+    // The schema is only searched again after it changed, reading PRAGMA schema_version is cheap
+    private synchronized boolean hasCascadingWrites() throws SQLException {
+        try (Statement statement = reader().createStatement()) {
+            int schemaVersion;
+            try (ResultSet rs = statement.executeQuery("PRAGMA schema_version;")) {
+                schemaVersion = rs.getInt(1);
+            }
+            if (schemaVersion != cascadingWritesSchemaVersion) {
+                // The triggers of the application only write its own tables
+                try (ResultSet rs = statement.executeQuery("SELECT EXISTS (SELECT 1 FROM sqlite_master WHERE "
+                        + "(type = 'trigger' AND name NOT LIKE '\\_fr\\_%' ESCAPE '\\') OR (type = 'table' AND sql LIKE '%REFERENCES%'));")) {
+                    cascadingWrites = rs.getBoolean(1);
+                }
+                cascadingWritesSchemaVersion = schemaVersion;
+            }
+            return cascadingWrites;
+        }
+    }
+
+    /**
+     * Reads PRAGMA data_version on a read-only connection kept open for that purpose. Unlike
+     * getExternalDataVersion the value changes with every commit, made through this Database
+     * or by another process, so it tells whether anything derived from the data is still current.
+     * Values are only comparable with earlier values of the same Database.
+     *
+     * @return The data version.
+     */
+    public synchronized long getDataVersion() throws SQLException {
+        if (versionConnection == null) {
+            versionConnection = pool.openReader();
+        }
+        try (Statement statement = versionConnection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA data_version;")) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private synchronized void closeVersionConnection() {
+        if (versionConnection != null) {
+            try {
+                versionConnection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            versionConnection = null;
+        }
+    }
+
+    /**
+     * Applies a set of buffered changes in one transaction.
+     * Updates touching the same columns, deletes and inserts with the same columns are each
+     * sent as one batch of a single cached statement. Everything runs inside a savepoint, so
+     * on failure the database is left exactly as it was and the exception is rethrown.
+     * The savepoint also nests inside a transaction that is already open on the writer.
+     * Changes to rowid tables are recorded in the ChangeJournal as one action, see undo.
+     * Updates and deletes are refused unless keyColumn is the row key column of the table,
+     * since matching on part of a composite primary key could change several rows.
+     *
+     * tableName The name of the table the changes belong to.
+     * keyColumn The column identifying rows in the change set, see getRowKeyColumn.
+     * changes   The changes to apply.
+     */
+    public void applyChanges(String tableName, String keyColumn, ChangeSet changes) throws SQLException {
+        boolean matchesRows = !changes.getUpdates().isEmpty() || !changes.getDeletes().isEmpty();
+        if (matchesRows && (keyColumn == null || !keyColumn.equals(getRowKeyColumn(tableName)))) {
+            throw new SQLException("Rows of " + tableName + " cannot be identified by " + keyColumn + ", no changes were written");
+        }
+        Connection connection = pool.getWriter();
+        writeLock.lock();
+        try (Statement control = connection.createStatement()) {
+            control.execute("SAVEPOINT edit_session;");
+            try {
+                long action = "rowid".equals(keyColumn) && !changes.isEmpty()
+                        ? journal.beginAction("Commit " + changes.size() + " changes to " + tableName) : 0;
+                applyUpdates(connection, tableName, keyColumn, changes.getUpdates(), action);
+                applyDeletes(connection, tableName, keyColumn, changes.getDeletes(), action);
+                applyInserts(connection, tableName, changes.getInserts(), action);
+                control.execute("RELEASE edit_session;");
+                metrics.increment(MetricsRegistry.ROWS_WRITTEN, changes.size());
+            } catch (SQLException | RuntimeException e) {
+                control.execute("ROLLBACK TO edit_session;");
+                journal.rolledBack();
+                control.execute("RELEASE edit_session;");
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+            invalidateRows(tableName);
+        }
+    }
+
+    // A journal action of 0 means the changes are not journaled
+    private void applyUpdates(Connection connection, String tableName, String keyColumn,
+                              Map<Object, Map<String, String>> updates, long action) throws SQLException {
+        // Group the rows by the set of columns they change, each group is one batched statement
+        Map<List<String>, List<Object>> rowsByColumns = new LinkedHashMap<>();
+        for (Map.Entry<Object, Map<String, String>> update : updates.entrySet()) {
+            rowsByColumns.computeIfAbsent(new ArrayList<>(update.getValue().keySet()), columns -> new ArrayList<>())
+                    .add(update.getKey());
+        }
+
+        for (Map.Entry<List<String>, List<Object>> group : rowsByColumns.entrySet()) {
+            List<String> columns = group.getKey();
+            List<String> statementColumns = new ArrayList<>(columns);
+            statementColumns.add(keyColumn);
+
+            Map<Long, Map<String, Object>> before = new LinkedHashMap<>();
+            if (action != 0) {
+                for (Object rowKey : group.getValue()) {
+                    long rowid = ((Number) rowKey).longValue();
+                    before.put(rowid, journal.readImage(tableName, rowid, columns));
+                }
+            }
+
+            try (StatementCache.CachedStatement cached = borrow(connection, tableName, "update-columns", statementColumns, () -> {
+                StringBuilder setClause = new StringBuilder();
+                for (String columnName : columns) {
+                    setClause.append(quoteIdentifier(columnName)).append(" = ?, ");
+                }
+                setClause.delete(setClause.length() - 2, setClause.length());
+                return "UPDATE " + quoteIdentifier(tableName) + " SET " + setClause + " WHERE " + quoteIdentifier(keyColumn) + " = ?;";
+            })) {
+                PreparedStatement statement = cached.get();
+                for (Object rowKey : group.getValue()) {
+                    Map<String, String> values = updates.get(rowKey);
+                    int index = 1;
+                    for (String columnName : columns) {
+                        statement.setString(index++, values.get(columnName));
+                    }
+                    statement.setObject(index, rowKey);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            for (Map.Entry<Long, Map<String, Object>> row : before.entrySet()) {
+                if (row.getValue() != null) {
+                    journal.record(action, tableName, ChangeJournal.Operation.UPDATE, row.getKey(), row.getValue(),
+                            journal.readImage(tableName, row.getKey(), columns));
+                }
+            }
+        }
+    }
+
+    private void applyDeletes(Connection connection, String tableName, String keyColumn, Set<Object> deletes,
+                              long action) throws SQLException {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        if (action != 0) {
+            for (Object rowKey : deletes) {
+                long rowid = ((Number) rowKey).longValue();
+                Map<String, Object> before = journal.readImage(tableName, rowid, null);
+                if (before != null) {
+                    journal.record(action, tableName, ChangeJournal.Operation.DELETE, rowid, before, null);
+                }
+            }
+        }
+        try (StatementCache.CachedStatement cached = borrow(connection, tableName, "delete", List.of(keyColumn),
+                () -> "DELETE FROM " + quoteIdentifier(tableName) + " WHERE " + quoteIdentifier(keyColumn) + " = ?;")) {
+            PreparedStatement statement = cached.get();
+            for (Object rowKey : deletes) {
+                statement.setObject(1, rowKey);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void applyInserts(Connection connection, String tableName, List<Map<String, String>> inserts,
+                              long action) throws SQLException {
+        Map<List<String>, List<Map<String, String>>> rowsByColumns = new LinkedHashMap<>();
+        for (Map<String, String> insert : inserts) {
+            rowsByColumns.computeIfAbsent(new ArrayList<>(insert.keySet()), columns -> new ArrayList<>()).add(insert);
+        }
+
+        for (Map.Entry<List<String>, List<Map<String, String>>> group : rowsByColumns.entrySet()) {
+            List<String> columns = group.getKey();
+            try (StatementCache.CachedStatement cached = borrow(connection, tableName, "insert", columns,
+                    () -> buildInsert("INSERT", tableName, columns))) {
+                PreparedStatement statement = cached.get();
+                for (Map<String, String> values : group.getValue()) {
+                    int index = 1;
+                    for (String columnName : columns) {
+                        statement.setString(index++, values.get(columnName));
+                    }
+                    if (action != 0) {
+                        // Journaled rows are inserted one by one to learn the rowid each one got
+                        statement.executeUpdate();
+                        long rowid = lastInsertRowid(connection);
+                        journal.record(action, tableName, ChangeJournal.Operation.INSERT, rowid, null,
+                                journal.readImage(tableName, rowid, null));
+                    } else {
+                        statement.addBatch();
+                    }
+                }
+                if (action == 0) {
+                    statement.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every row matching the filters of a query, see runBulk.
+     *
+     * tableName The table to delete from, it must have a rowid.
+     * query     The filters rows must match, or null to delete every row.
+     * progress  Receives the number of rows deleted so far after every chunk, may be null.
+     * @return The operation as recorded in the undo journal.
+     */
+    public BulkOperation deleteWhere(String tableName, RowQuery query, LongConsumer progress) throws SQLException {
+        StringBuilder conditions = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        String description = "Delete from " + tableName + describeFilters(query, conditions, params);
+        return runBulk(tableName, BulkOperation.Kind.DELETE, description, conditions.toString(), params, null, progress);
+    }
+
+    /**
+     * Deletes the rows with the given rowids, see runBulk.
+     *
+     * tableName The table to delete from, it must have a rowid.
+     * rowids    The rowids of the rows to delete.
+     * progress  Receives the number of rows deleted so far after every chunk, may be null.
+     * @return The operation as recorded in the undo journal.
+     */
+    public BulkOperation deleteRowids(String tableName, Collection<Long> rowids, LongConsumer progress) throws SQLException {
+        // One JSON array parameter instead of one parameter per row, which SQLite limits
+        StringBuilder json = new StringBuilder("[");
+        for (Long rowid : rowids) {
+            json.append(json.length() > 1 ? "," : "").append(rowid);
+        }
+        json.append(']');
+        return runBulk(tableName, BulkOperation.Kind.DELETE, "Delete " + rowids.size() + " selected rows from " + tableName,
+                "rowid IN (SELECT value FROM json_each(?))", List.of(json.toString()), null, progress);
+    }
+
+    /**
+     * Sets columns of every row matching the filters of a query, see runBulk.
+     *
+     * tableName The table to update, it must have a rowid.
+     * query     The filters rows must match, or null to update every row.
+     * values    The new values by column name.
+     * progress  Receives the number of rows updated so far after every chunk, may be null.
+     * @return The operation as recorded in the undo journal.
+     */
+    public BulkOperation updateWhere(String tableName, RowQuery query, Map<String, String> values, LongConsumer progress) throws SQLException {
+        if (values.isEmpty()) {
+            throw new SQLException("No columns to update in " + tableName);
+        }
+        StringBuilder conditions = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        String filters = describeFilters(query, conditions, params);
+        StringBuilder description = new StringBuilder("Update " + tableName + " set ");
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            description.append(description.charAt(description.length() - 1) == ' ' ? "" : ", ")
+                    .append(value.getKey()).append(" = ").append(value.getValue());
+        }
+        return runBulk(tableName, BulkOperation.Kind.UPDATE, description + filters, conditions.toString(), params,
+                values, progress);
+    }
+
+    // Appends the conditions of the query and returns them as text for the description of the operation
+    private static String describeFilters(RowQuery query, StringBuilder conditions, List<Object> params) {
+        if (query == null || !query.appendConditions(conditions, params)) {
+            conditions.append("1");
+            return "";
+        }
+        StringBuilder description = new StringBuilder();
+        for (RowQuery.Filter filter : query.getFilters()) {
+            description.append(description.length() == 0 ? " where " : " and ")
+                    .append(filter.getColumnName()).append(' ').append(filter.getOperator());
+            if (filter.getOperator().hasValue()) {
+                description.append(' ').append(filter.getValue());
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Deletes or updates the matching rows of a table in chunks of consecutive rowids, each
+     * committed in its own transaction. The write lock is released between chunks, so other
+     * writes get their turn, the WAL is checkpointed as it grows instead of holding every
+     * changed page until the end, and readers keep reading throughout. The chunk size adapts
+     * so a chunk takes about BULK_CHUNK_NANOS.
+     *
+     * Before a chunk is changed its rows are copied into an undo table of the operation,
+     * in the same transaction, so undoBulkOperation can put them back. Cancelling through
+     * cancel rolls back the running chunk only, the chunks committed before stay
+     * changed and can be undone like a finished operation.
+     *
+     * tableName   The table to change, it must have a rowid.
+     * kind        Whether to delete or update the rows.
+     * description What the operation does, for the journal.
+     * conditions  The SQL conditions rows must match.
+     * params      The parameters of the conditions.
+     * values      The new values by column name for an update, null for a delete.
+     * progress    Receives the number of rows changed so far after every chunk, may be null.
+     * @return The operation as recorded in the undo journal.
+     */
+    private BulkOperation runBulk(String tableName, BulkOperation.Kind kind, String description, String conditions,
+                                  List<Object> params, Map<String, String> values, LongConsumer progress) throws SQLException {
+        if (!"rowid".equals(getRowKeyColumn(tableName))) {
+            throw new SQLException(tableName + " is a WITHOUT ROWID table, use an edit session to change its rows");
+        }
+        // A delete saves whole rows, an update only the columns it changes
+        List<String> savedColumns = values == null ? getColumns(tableName) : new ArrayList<>(values.keySet());
+        String table = quoteIdentifier(tableName);
+        StringBuilder columns = new StringBuilder();
+        for (String column : savedColumns) {
+            columns.append(", ").append(quoteIdentifier(column));
+        }
+
+        long created = System.currentTimeMillis();
+        long id;
+        Connection connection = pool.getWriter();
+        writeLock.lock();
+        try {
+            id = beginBulkOperation(tableName, kind, description, created, columns.toString());
+        } finally {
+            writeLock.unlock();
+        }
+        String undoTable = quoteIdentifier(BULK_UNDO_PREFIX + id);
+
+        String range = " WHERE rowid BETWEEN ? AND ? AND (" + conditions + ")";
+        String findEnd = "SELECT max(rowid) FROM (SELECT rowid FROM " + table + " WHERE rowid >= ? AND (" + conditions
+                + ") ORDER BY rowid LIMIT ?);";
+        String save = "INSERT INTO " + undoTable + " SELECT rowid" + columns + " FROM " + table + range + ";";
+        String change;
+        if (values == null) {
+            change = "DELETE FROM " + table + range + ";";
+        } else {
+            StringBuilder assignments = new StringBuilder();
+            for (String column : savedColumns) {
+                assignments.append(assignments.length() == 0 ? "" : ", ").append(quoteIdentifier(column)).append(" = ?");
+            }
+            change = "UPDATE " + table + " SET " + assignments + range + ";";
+        }
+        String count = "UPDATE " + BULK_JOURNAL + " SET row_count = row_count + ? WHERE id = ?;";
+
+        long changed = 0;
+        int chunkRows = BULK_FIRST_CHUNK_ROWS;
+        long from = Long.MIN_VALUE;
+        while (true) {
+            checkCancelled();
+            long startTime = System.nanoTime();
+            long to;
+            long chunkChanged;
+            writeLock.lock();
+            try {
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = prepare(connection, findEnd)) {
+                    statement.setLong(1, from);
+                    int index = bindAll(statement, 2, params);
+                    statement.setInt(index, chunkRows);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        to = rs.getLong(1);
+                        if (rs.wasNull()) {
+                            connection.commit();
+                            break;
+                        }
+                    }
+                }
+                long chunkFrom = from;
+                profiler.time(save, () -> {
+                    try (PreparedStatement statement = prepare(connection, save)) {
+                        statement.setLong(1, chunkFrom);
+                        statement.setLong(2, to);
+                        bindAll(statement, 3, params);
+                        return statement.executeUpdate();
+                    }
+                });
+                chunkChanged = profiler.time(change, () -> {
+                    try (PreparedStatement statement = prepare(connection, change)) {
+                        int index = 1;
+                        if (values != null) {
+                            for (String column : savedColumns) {
+                                statement.setString(index++, values.get(column));
+                            }
+                        }
+                        statement.setLong(index, chunkFrom);
+                        statement.setLong(index + 1, to);
+                        bindAll(statement, index + 2, params);
+                        return statement.executeUpdate();
+                    }
+                });
+                try (PreparedStatement statement = connection.prepareStatement(count)) {
+                    statement.setLong(1, chunkChanged);
+                    statement.setLong(2, id);
+                    statement.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(true);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+
+            invalidateRows(tableName);
+            changed += chunkChanged;
+            metrics.increment(MetricsRegistry.ROWS_WRITTEN, chunkChanged);
+            if (progress != null) {
+                progress.accept(changed);
+            }
+            chunkRows = nextChunkRows(chunkRows, System.nanoTime() - startTime);
+            if (to == Long.MAX_VALUE) {
+                break;
+            }
+            from = to + 1;
+        }
+        BulkOperation operation = new BulkOperation(id, tableName, kind, description, changed, created);
+        if (changed == 0) {
+            // Nothing to undo
+            discardBulkOperation(operation);
+        }
+        return operation;
+    }
+
+    // Records a bulk operation in the journal and creates its undo table, the caller holds the write lock
+    // Untyped columns keep every value exactly as it was stored
+    private long beginBulkOperation(String tableName, BulkOperation.Kind kind, String description, long created,
+                                    String undoColumns) throws SQLException {
+        Connection connection = pool.getWriter();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + BULK_JOURNAL + " (id INTEGER PRIMARY KEY, tbl TEXT NOT NULL, "
+                    + "kind TEXT NOT NULL, description TEXT NOT NULL, row_count INTEGER NOT NULL DEFAULT 0, created INTEGER NOT NULL);");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + BULK_JOURNAL
+                    + " (tbl, kind, description, created) VALUES (?, ?, ?, ?);")) {
+                insert.setString(1, tableName);
+                insert.setString(2, kind.name());
+                insert.setString(3, description);
+                insert.setLong(4, created);
+                insert.executeUpdate();
+            }
+            long id;
+            try (ResultSet rs = statement.executeQuery("SELECT last_insert_rowid();")) {
+                id = rs.getLong(1);
+            }
+            statement.execute("CREATE TABLE " + quoteIdentifier(BULK_UNDO_PREFIX + id) + " (_fr_rowid INTEGER PRIMARY KEY" + undoColumns + ");");
+            return id;
+        }
+    }
+
+    // Grow or shrink the chunk towards BULK_CHUNK_NANOS, by at most a factor of two per chunk
+    private static int nextChunkRows(int chunkRows, long elapsedNanos) {
+        double factor = Math.max(0.5, Math.min(2.0, (double) BULK_CHUNK_NANOS / Math.max(1, elapsedNanos)));
+        return (int) Math.max(BULK_MIN_CHUNK_ROWS, Math.min(BULK_MAX_CHUNK_ROWS, chunkRows * factor));
+    }
+
+    private static int bindAll(PreparedStatement statement, int firstIndex, List<Object> params) throws SQLException {
+        int index = firstIndex;
+        for (Object param : params) {
+            statement.setObject(index++, param);
+        }
+        return index;
+    }
+
+    /**
+     * Lists the bulk operations that can still be undone, most recent first.
+     *
+     * @return The operations.
+     */
+    public List<BulkOperation> getBulkOperations() throws SQLException {
+        List<BulkOperation> operations = new ArrayList<>();
+        String sql = "SELECT id, tbl, kind, description, row_count, created FROM " + BULK_JOURNAL + " ORDER BY id DESC;";
+        try (PreparedStatement statement = prepare(reader(), sql);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                operations.add(new BulkOperation(rs.getLong(1), rs.getString(2), BulkOperation.Kind.valueOf(rs.getString(3)),
+                        rs.getString(4), rs.getLong(5), rs.getLong(6)));
+            }
+        } catch (SQLException e) {
+            // Nothing has been journaled in this database yet
+            if (e.getMessage() == null || !e.getMessage().contains("no such table")) {
+                throw e;
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Puts back the rows a bulk operation deleted or the values it overwrote, in chunks of
+     * consecutive rowids like the operation itself. Undoing an import deletes the rows it
+     * inserted and puts back the rows it replaced. Every chunk removes its rows from the undo
+     * table in the same transaction, so a cancelled undo continues where it stopped when it is
+     * started again. Once all rows are back the operation is removed from the journal.
+     * Restoring a deleted row fails if its rowid has been taken by a new row since.
+     *
+     * operation The operation to undo.
+     * progress  Receives the number of rows restored so far after every chunk, may be null.
+     * @return The number of rows restored, or deleted again for an import.
+     */
+    public long undoBulkOperation(BulkOperation operation, LongConsumer progress) throws SQLException {
+        String table = quoteIdentifier(operation.getTableName());
+        String undoTable = quoteIdentifier(BULK_UNDO_PREFIX + operation.getId());
+        List<String> savedColumns = new ArrayList<>();
+        try (PreparedStatement statement = prepare(reader(), "PRAGMA table_info(" + undoTable + ");");
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                if (!"_fr_rowid".equals(rs.getString("name")) && !"_fr_inserted".equals(rs.getString("name"))) {
+                    savedColumns.add(rs.getString("name"));
+                }
+            }
+        }
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder assignments = new StringBuilder();
+        for (String column : savedColumns) {
+            columns.append(", ").append(quoteIdentifier(column));
+            assignments.append(assignments.length() == 0 ? "" : ", ").append(quoteIdentifier(column))
+                    .append(" = saved.").append(quoteIdentifier(column));
+        }
+        String findEnd = "SELECT max(_fr_rowid) FROM (SELECT _fr_rowid FROM " + undoTable + " ORDER BY _fr_rowid LIMIT ?);";
+        String restore = switch (operation.getKind()) {
+            case DELETE -> "INSERT INTO " + table + " (rowid" + columns + ") SELECT _fr_rowid" + columns + " FROM " + undoTable
+                    + " WHERE _fr_rowid <= ?;";
+            case UPDATE -> "UPDATE " + table + " SET " + assignments + " FROM " + undoTable + " AS saved WHERE " + table
+                    + ".rowid = saved._fr_rowid AND saved._fr_rowid <= ?;";
+            // A replaced row may share a unique key with an imported row of a later chunk, which is deleted anyway
+            case INSERT -> "INSERT OR REPLACE INTO " + table + " (rowid" + columns + ") SELECT _fr_rowid" + columns + " FROM "
+                    + undoTable + " WHERE _fr_inserted = 0 AND _fr_rowid <= ?;";
+        };
+        String removeInserted = "DELETE FROM " + table + " WHERE rowid IN (SELECT _fr_rowid FROM " + undoTable
+                + " WHERE _fr_inserted = 1 AND _fr_rowid <= ?);";
+        String forget = "DELETE FROM " + undoTable + " WHERE _fr_rowid <= ?;";
+
+        Connection connection = pool.getWriter();
+        long restored = 0;
+        int chunkRows = BULK_FIRST_CHUNK_ROWS;
+        while (true) {
+            checkCancelled();
+            long startTime = System.nanoTime();
+            long chunkRestored;
+            writeLock.lock();
+            try {
+                connection.setAutoCommit(false);
+                long to;
+                boolean empty;
+                try (PreparedStatement statement = prepare(connection, findEnd)) {
+                    statement.setInt(1, chunkRows);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        to = rs.getLong(1);
+                        empty = rs.wasNull();
+                    }
+                }
+                if (empty) {
+                    // The undo table cannot be dropped while a statement reading it is open
+                    try (Statement drop = connection.createStatement()) {
+                        drop.execute("DROP TABLE " + undoTable + ";");
+                        drop.execute("DELETE FROM " + BULK_JOURNAL + " WHERE id = " + operation.getId() + ";");
+                    }
+                    connection.commit();
+                    break;
+                }
+                long removed = operation.getKind() != BulkOperation.Kind.INSERT ? 0 : profiler.time(removeInserted, () -> {
+                    try (PreparedStatement statement = prepare(connection, removeInserted)) {
+                        statement.setLong(1, to);
+                        return statement.executeUpdate();
+                    }
+                });
+                chunkRestored = removed + profiler.time(restore, () -> {
+                    try (PreparedStatement statement = prepare(connection, restore)) {
+                        statement.setLong(1, to);
+                        return statement.executeUpdate();
+                    }
+                });
+                try (PreparedStatement statement = prepare(connection, forget)) {
+                    statement.setLong(1, to);
+                    statement.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                try {
+                    connection.setAutoCommit(true);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+
+            invalidateRows(operation.getTableName());
+            restored += chunkRestored;
+            metrics.increment(MetricsRegistry.ROWS_WRITTEN, chunkRestored);
+            if (progress != null) {
+                progress.accept(restored);
+            }
+            chunkRows = nextChunkRows(chunkRows, System.nanoTime() - startTime);
+        }
+        return restored;
+    }
+
+    /**
+     * Removes a bulk operation from the undo journal without undoing it, freeing the space its saved rows take.
+     *
+     * operation The operation to forget.
+     */
+    public void discardBulkOperation(BulkOperation operation) throws SQLException {
+        writeLock.lock();
+        try (Statement statement = pool.getWriter().createStatement()) {
+            statement.execute("SAVEPOINT discard_bulk;");
+            try {
+                statement.execute("DROP TABLE IF EXISTS " + quoteIdentifier(BULK_UNDO_PREFIX + operation.getId()) + ";");
+                statement.execute("DELETE FROM " + BULK_JOURNAL + " WHERE id = " + operation.getId() + ";");
+                statement.execute("RELEASE discard_bulk;");
+            } catch (SQLException e) {
+                statement.execute("ROLLBACK TO discard_bulk;");
+                statement.execute("RELEASE discard_bulk;");
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reverts the latest row edit recorded in the ChangeJournal: an added row, a saved row or a
+     * committed edit session. Bulk operations have their own undo, see undoBulkOperation.
+     *
+     * @return The tables that changed, empty if there was nothing to undo.
+     */
+    public List<String> undo() throws SQLException {
+        return replayJournal(true);
+    }
+
+    /**
+     * Applies the latest undone row edit again.
+     *
+     * @return The tables that changed, empty if there was nothing to redo.
+     */
+    public List<String> redo() throws SQLException {
+        return replayJournal(false);
+    }
+
+    private List<String> replayJournal(boolean undo) throws SQLException {
+        writeLock.lock();
+        try (Statement statement = pool.getWriter().createStatement()) {
+            statement.execute("SAVEPOINT journal_replay;");
+            try {
+                List<String> tables = undo ? journal.undo() : journal.redo();
+                statement.execute("RELEASE journal_replay;");
+                for (String table : tables) {
+                    invalidateRows(table);
+                }
+                return tables;
+            } catch (SQLException e) {
+                statement.execute("ROLLBACK TO journal_replay;");
+                journal.rolledBack();
+                statement.execute("RELEASE journal_replay;");
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return What undo would revert, or null if there is nothing to undo.
+     */
+    public String getUndoDescription() throws SQLException {
+        writeLock.lock();
+        try {
+            return journal.peekUndo();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return What redo would apply again, or null if there is nothing to redo.
+     */
+    public String getRedoDescription() throws SQLException {
+        writeLock.lock();
+        try {
+            return journal.peekRedo();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Prepares a statement and records it as the running statement of the calling thread.
+     *
+     * connection The pool connection to prepare the statement on.
+     * sql        The SQL to prepare.
+     * @return The prepared statement.
+     */
+    private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        trackStatement(statement);
+        return statement;
+    }
+
+    /**
+     * Borrows a compiled statement from the statement cache and records it as the
+     * running statement of the calling thread. Closing the returned statement gives
+     * it back to the cache.
+     *
+     * connection The pool connection whose statement cache is used.
+     * tableName  The table the statement works on.
+     * operation  The kind of statement.
+     * columns    The columns that shape the SQL.
+     * sql        Builds the SQL when the statement is not cached yet.
+     * @return The borrowed statement.
+     */
+    private StatementCache.CachedStatement borrow(Connection connection, String tableName, String operation,
+                                                  List<String> columns, Supplier<String> sql) throws SQLException {
+        StatementCache.CachedStatement statement = pool.getStatementCache(connection).borrow(tableName, operation, columns, sql);
+        trackStatement(statement.get());
+        return statement;
+    }
+
+    /**
+     * @return The counters and timers of this database.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The cache of the rows of the tables shown, see getRowPage.
+     */
+    public RowCache getRowCache() {
+        return rowCache;
+    }
+
+    /**
+     * @return The profiler timing every statement run through this database.
+     */
+    public StatementProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Runs EXPLAIN QUERY PLAN for a statement on the read-only connection of the calling thread.
+     * Parameters of the statement are left unbound, which does not change the plan.
+     * The statement itself is not run and the call is not profiled. A reader checked out
+     * only for the plan is given back, since the profiler explains on threads of its own.
+     *
+     * sql The SQL of the statement.
+     * @return The plan, one line per step, indented by two spaces per level of nesting.
+     */
+    public List<String> explainQueryPlan(String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        Map<Integer, Integer> depths = new HashMap<>();
+        boolean checkedOut = !pool.hasReader();
+        try (PreparedStatement statement = reader().prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                int depth = depths.getOrDefault(rs.getInt("parent"), -1) + 1;
+                depths.put(id, depth);
+                plan.add("  ".repeat(depth) + rs.getString("detail"));
+            }
+        } finally {
+            if (checkedOut) {
+                pool.releaseReader();
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Starts a cancellable call on the calling thread. Statements the thread prepares until
+     * endCall can then be cancelled from another thread through cancel.
+     *
+     * @return The token of the call.
+     */
+    public CancelToken beginCall() {
+        CancelToken call = new CancelToken();
+        runningCalls.put(Thread.currentThread(), call);
+        return call;
+    }
+
+    /**
+     * Cancels a call started with beginCall, unless it has already ended. The statement it
+     * is executing fails with an SQLException, and chunked operations stop before their next chunk.
+     *
+     * call The token of the call.
+     */
+    public void cancel(CancelToken call) {
+        call.cancel();
+    }
+
+    /**
+     * Ends a call started with beginCall on the calling thread, so later cancels of it are ignored,
+     * and gives the reader connection of the thread back to the pool.
+     *
+     * call The token of the call.
+     */
+    public void endCall(CancelToken call) {
+        call.finish();
+        runningCalls.remove(Thread.currentThread(), call);
+        pool.releaseReader();
+    }
+
+    // Reads while holding the write lock go to the writer, so the holder never waits for a
+    // reader that a thread waiting for the lock has checked out
+    private Connection reader() throws SQLException {
+        return writeLock.isHeldByCurrentThread() ? pool.getWriter() : pool.getReader();
+    }
+
+    private void trackStatement(Statement statement) {
+        CancelToken call = runningCalls.get(Thread.currentThread());
+        if (call != null) {
+            call.setStatement(statement);
+        }
+    }
+
+    // Chunked operations check this between chunks, where no statement is running that cancel could interrupt
+    private void checkCancelled() throws SQLException {
+        CancelToken call = runningCalls.get(Thread.currentThread());
+        if (call != null && call.isCancelled()) {
+            throw new SQLException("Cancelled");
+        }
+    }
+
+    /**
+     * @return The profiler computing column statistics of whole tables.
+     */
+    public TableProfiler getTableProfiler() {
+        return tableProfiler;
+    }
+
+    /**
+     * Starts recording every insert, update and delete of a table for ChangeFeed, see ChangeCapture.
+     * Call it again after adding columns to the table to capture them too.
+     *
+     * tableName The table.
+     */
+    public void enableChangeCapture(String tableName) throws SQLException {
+        List<String> columns = getColumns(tableName);
+        if (columns.isEmpty()) {
+            throw new SQLException("No such table: " + tableName);
+        }
+        List<String> keyColumns = "rowid".equals(getRowKeyColumn(tableName)) ? null : getPrimaryKeyColumns(tableName);
+        writeLock.lock();
+        try (Statement statement = pool.getWriter().createStatement()) {
+            statement.execute("SAVEPOINT change_capture;");
+            try {
+                changeCapture.enable(tableName, columns, keyColumns);
+                statement.execute("RELEASE change_capture;");
+            } catch (SQLException e) {
+                statement.execute("ROLLBACK TO change_capture;");
+                statement.execute("RELEASE change_capture;");
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stops recording the changes of a table.
+     *
+     * tableName The table.
+     */
+    public void disableChangeCapture(String tableName) throws SQLException {
+        writeLock.lock();
+        try {
+            changeCapture.disable(tableName);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return The tables whose changes are recorded.
+     */
+    public List<String> getCapturedTables() throws SQLException {
+        writeLock.lock();
+        try {
+            return changeCapture.getCapturedTables();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * consumer The name of a ChangeFeed consumer.
+     * @return The seq of the last change the consumer has processed, 0 if it has none yet.
+     */
+    public long getChangeFeedOffset(String consumer) throws SQLException {
+        writeLock.lock();
+        try {
+            return changeCapture.getOffset(consumer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remembers the last change a ChangeFeed consumer has processed.
+     *
+     * consumer The name of the consumer.
+     * seq      The seq of the change.
+     */
+    public void saveChangeFeedOffset(String consumer, long seq) throws SQLException {
+        writeLock.lock();
+        try {
+            changeCapture.saveOffset(consumer, seq);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Attaches another database file for queries across files, such as
+     * SELECT * FROM main.orders EXCEPT SELECT * FROM other.orders. The attached file is
+     * read-only and only visible to queries, see ConnectionPool.attach.
+     *
+     * schemaName   The name to refer to the file by, a plain identifier that is not main or temp.
+     * absolutePath Absolute path to the SQLite database file.
+     */
+    public void attachDatabase(String schemaName, String absolutePath) {
+        if (!schemaName.matches("[A-Za-z_][A-Za-z0-9_]*") || schemaName.equalsIgnoreCase("main")
+                || schemaName.equalsIgnoreCase("temp")) {
+            throw new IllegalArgumentException("Not a valid schema name: " + schemaName);
+        }
+        pool.attach(schemaName, absolutePath);
+    }
+
+    /**
+     * Detaches a database file attached with attachDatabase.
+     *
+     * schemaName The name the file was attached under.
+     */
+    public void detachDatabase(String schemaName) {
+        pool.detach(schemaName);
+    }
+
+    /**
+     * @return The pool of writer and reader connections.
+     */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Closes the database connections.
+     */
+    public void close() {
+        if (pool != null) {
+            closeVersionConnection();
+            pool.close();
         }
     }
 }
@@ -0,0 +1,12 @@
+package com.example.final_rev;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * A unit of work run against the Database on one of the AsyncDatabase worker threads.
+ */
+@FunctionalInterface
+public interface DatabaseCall<T> {
+    T call(Database database) throws SQLException, IOException;
+}
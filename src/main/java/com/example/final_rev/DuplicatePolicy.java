@@ -0,0 +1,36 @@
+package com.example.final_rev;
+
+/**
+ * What a bulk insert does with a row whose primary or unique key already exists.
+ * The policy is enforced by SQLite through the INSERT conflict clause, so rows
+ * do not have to be looked up before they are inserted.
+ */
+public enum DuplicatePolicy {
+    /**
+     * Keep the existing row and drop the new one (INSERT OR IGNORE).
+     */
+    SKIP("INSERT OR IGNORE"),
+
+    /**
+     * Delete the existing row and insert the new one (INSERT OR REPLACE).
+     */
+    REPLACE("INSERT OR REPLACE"),
+
+    /**
+     * Abort the import and roll back the current transaction (INSERT OR ABORT).
+     */
+    FAIL("INSERT OR ABORT");
+
+    private final String insertVerb;
+
+    DuplicatePolicy(String insertVerb) {
+        this.insertVerb = insertVerb;
+    }
+
+    /**
+     * @return The INSERT statement prefix with the matching conflict clause.
+     */
+    public String getInsertVerb() {
+        return insertVerb;
+    }
+}
@@ -17,22 +17,29 @@ import java.util.List;
 import java.util.Map;
 
 public class EditRow {
-    private Database database;
-    private Main main;
+    private AsyncDatabase database;
+    private UI parentUI;
     private Stage modalStage;
-    private String[] selectedRow;
+    private RowView selectedRow;
     private String tableName;
 
     // Constructor for EditRow class
-    public EditRow(Database database, String[] rowData, String tableName, Main main) {
+    public EditRow(AsyncDatabase database, RowView rowData, String tableName, UI parentUI) {
         this.database = database;
         this.selectedRow = rowData;
         this.tableName = tableName;
-        this.main = main;
+        this.parentUI = parentUI;
     }
 
-    // Show the modal dialog for editing a row
+    // Show the modal dialog for editing a row once the column names are loaded
     public void show() {
+        database.getColumns(tableName).thenAccept(this::show).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
+
+    private void show(List<String> columnNames) {
         modalStage = new Stage();
         modalStage.initModality(Modality.APPLICATION_MODAL);
         modalStage.setTitle("Edit Row");
@@ -46,17 +53,18 @@ public class EditRow {
 
         // Check if a row is selected
         if (selectedRow != null) {
-            int columnCount = selectedRow.length;
+            int columnCount = selectedRow.getColumnCount();
 
             List<TextField> textFields = new ArrayList<>();
-            List<String> columnNames = database.getColumns(tableName);
             // Create input fields for each column in the row
             for (int i = 0; i < columnCount; i++) {
                 String columnName = columnNames.get(i);
-                String columnValue = selectedRow[i];
+                String columnValue = selectedRow.getText(i);
 
                 Label label = new Label(columnName + ":");
                 TextField textField = new TextField(columnValue);
+                // BLOBs are only shown by their size and cannot be edited as text
+                textField.setDisable(selectedRow.getValue(i) instanceof BlobHandle);
                 textFields.add(textField);
 
                 gridPane.addRow(i, label, textField);
@@ -64,7 +72,7 @@ public class EditRow {
 
             // Create save button and handle the save action
             Button saveButton = new Button("Save");
-            saveButton.setOnAction(e -> handleSave(textFields, columnCount));
+            saveButton.setOnAction(e -> handleSave(columnNames, textFields, columnCount));
 
             VBox layout = new VBox(10);
             layout.getChildren().addAll(gridPane, saveButton);
@@ -77,32 +85,34 @@ public class EditRow {
     }
 
     // Handle the save button action to update the row in the database
-    private void handleSave(List<TextField> textFields, int columnCount) {
-        String[] editedValues = new String[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            editedValues[i] = textFields.get(i).getText();
-        }
-
-        List<String> columns = database.getColumns(tableName);
-
+    private void handleSave(List<String> columns, List<TextField> textFields, int columnCount) {
         // Assuming the primary key is the first column
         String primaryKeyColumn = columns.get(0);
-        String primaryKeyValue = selectedRow[0]; // Use the first element as the primary key value
+        String primaryKeyValue = selectedRow.toTextArray()[0]; // Use the first element as the primary key value
 
         // Create a map to store the mapping of column names to their edited values
-        // The key is the column name, and the value is the edited value for that column
+        // Only the columns the user changed are written, so untouched values and BLOBs keep their stored form
         Map<String, String> columnValueMap = new HashMap<>();
         for (int i = 0; i < columnCount; i++) {
-            columnValueMap.put(columns.get(i), editedValues[i]);
+            TextField textField = textFields.get(i);
+            String editedValue = textField.getText() == null ? "" : textField.getText();
+            if (!textField.isDisabled() && !editedValue.equals(selectedRow.getText(i))) {
+                columnValueMap.put(columns.get(i), editedValue);
+            }
         }
 
         // Update the row in the database with the edited values
-        database.updateRow(tableName, primaryKeyColumn, primaryKeyValue, columnValueMap);
-
-        // Close the modal after saving the changes
-        modalStage.close();
-
-        // Refresh the UI after updating the row
-        main.refreshUIAfterUpdate();
+        long saveStart = System.nanoTime();
+        database.updateRow(tableName, primaryKeyColumn, primaryKeyValue, columnValueMap).thenAccept(updatedRows -> {
+            // Close the modal after saving the changes
+            modalStage.close();
+
+            // Patch the updated row into the table view
+            parentUI.updateRowInTable(tableName, updatedRows);
+            database.getDatabase().getMetrics().recordTime(MetricsRegistry.SAVE, System.nanoTime() - saveStart);
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
     }
 }
@@ -0,0 +1,164 @@
+package com.example.final_rev;
+
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Buffers cell edits, deletes and new rows made in the TableView and writes them
+ * to the database in one transaction when the session is committed.
+ *
+ * Edited rows are shown through the pending overlay of the TableRowWindow, so the
+ * table reflects the edits straight away without touching the database. The session
+ * must only be used on the JavaFX Application Thread.
+ *
+ * No edits are taken while a commit runs, so every change the table shows is either
+ * written by that commit or still buffered once it finishes.
+ */
+public class EditSession {
+    private final TableRowWindow rowWindow;
+    private final List<String> columnNames;
+    private final ChangeSet changes = new ChangeSet();
+    private final ReadOnlyIntegerWrapper pendingChanges = new ReadOnlyIntegerWrapper(this, "pendingChanges", 0);
+    private boolean committing;
+
+    /**
+     * rowWindow   The rows being edited, its table must have a key column.
+     * columnNames The column names of the table, in the order of the row arrays.
+     */
+    public EditSession(TableRowWindow rowWindow, List<String> columnNames) {
+        if (rowWindow.getKeyColumn() == null) {
+            throw new IllegalArgumentException("Table " + rowWindow.getTableName() + " has no key column to edit rows by");
+        }
+        this.rowWindow = rowWindow;
+        this.columnNames = columnNames;
+    }
+
+    public String getTableName() {
+        return rowWindow.getTableName();
+    }
+
+    /**
+     * @return The number of rows with buffered changes.
+     */
+    public ReadOnlyIntegerProperty pendingChangesProperty() {
+        return pendingChanges.getReadOnlyProperty();
+    }
+
+    /**
+     * @return True while a commit is being written, edits are refused until it finishes.
+     */
+    public boolean isCommitting() {
+        return committing;
+    }
+
+    /**
+     * Buffers a new value for one cell.
+     *
+     * rowIndex    The index of the row in the row window.
+     * columnIndex The index of the column.
+     * value       The new value.
+     * @return False if a commit is running, or the row is not loaded or is marked for deletion.
+     */
+    public boolean editCell(int rowIndex, int columnIndex, String value) {
+        Object key = rowWindow.getRowKey(rowIndex);
+        if (committing || key == null || changes.isDeleted(key)) {
+            return false;
+        }
+        ArrayRow edited = ArrayRow.copyOf(rowWindow.get(rowIndex));
+        edited.setValue(columnIndex, value);
+        changes.update(key, columnNames.get(columnIndex), value);
+        rowWindow.setPendingRow(rowIndex, edited);
+        updatePendingChanges();
+        return true;
+    }
+
+    /**
+     * Marks rows for deletion.
+     *
+     * rowIndexes The indexes of the rows in the row window.
+     * @return False if a commit is running and no row was marked.
+     */
+    public boolean deleteRows(List<Integer> rowIndexes) {
+        if (committing) {
+            return false;
+        }
+        for (int rowIndex : rowIndexes) {
+            Object key = rowWindow.getRowKey(rowIndex);
+            if (key != null) {
+                changes.delete(key);
+                // Show the loaded values again, and give the TableRow a new item so it restyles
+                rowWindow.setPendingRow(rowIndex, ArrayRow.copyOf(rowWindow.get(rowIndex)));
+            }
+        }
+        updatePendingChanges();
+        return true;
+    }
+
+    /**
+     * @return True if the row at the given index is marked for deletion.
+     */
+    public boolean isDeleted(int rowIndex) {
+        Object key = rowWindow.getRowKey(rowIndex);
+        return key != null && changes.isDeleted(key);
+    }
+
+    /**
+     * Buffers a new row.
+     *
+     * columnValues The values of the new row by column name.
+     * @return False if a commit is running and the row was not buffered.
+     */
+    public boolean addRow(Map<String, String> columnValues) {
+        if (committing) {
+            return false;
+        }
+        changes.insert(columnValues);
+        updatePendingChanges();
+        return true;
+    }
+
+    /**
+     * Writes all buffered changes in one transaction on the writer thread.
+     * Edited cells are patched into the row window in place. When rows were added or
+     * deleted the row positions change, and the caller has to reload the table.
+     * Edits are refused until the returned future completes, see isCommitting.
+     *
+     * database The database to write to.
+     * @return A future completed on the JavaFX Application Thread with true if the table must be reloaded.
+     */
+    public CompletableFuture<Boolean> commit(AsyncDatabase database) {
+        ChangeSet committed = changes.copy();
+        String tableName = rowWindow.getTableName();
+        String keyColumn = rowWindow.getKeyColumn();
+        committing = true;
+        return database.write(db -> {
+            db.applyChanges(tableName, keyColumn, committed);
+            return null;
+        }).thenApply(ignored -> {
+            changes.clear();
+            updatePendingChanges();
+            rowWindow.commitPendingRows();
+            return !committed.getDeletes().isEmpty() || !committed.getInserts().isEmpty();
+        }).whenComplete((reload, error) -> committing = false);
+    }
+
+    /**
+     * Drops all buffered changes. Ignored while a commit is running.
+     */
+    public void discard() {
+        if (committing) {
+            return;
+        }
+        changes.clear();
+        rowWindow.clearPendingRows();
+        updatePendingChanges();
+    }
+
+    private void updatePendingChanges() {
+        pendingChanges.set(changes.size());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.final_rev;
+
+/**
+ * File formats supported by ResultExporter.
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values with a header row, RFC 4180 quoting.
+     */
+    CSV("CSV", "csv"),
+
+    /**
+     * One JSON object per line, keyed by column name.
+     */
+    JSON_LINES("JSON Lines", "jsonl"),
+
+    /**
+     * Simple columnar binary format, see ResultExporter for the layout.
+     */
+    COLUMNAR("Columnar", "col");
+
+    private final String displayName;
+    private final String extension;
+
+    ExportFormat(String displayName, String extension) {
+        this.displayName = displayName;
+        this.extension = extension;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Picks the format from a file name, falling back to CSV for unknown extensions.
+     *
+     * fileName The name of the file.
+     * @return The export format.
+     */
+    public static ExportFormat forFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+        for (ExportFormat format : values()) {
+            if (lower.endsWith("." + format.extension)) {
+                return format;
+            }
+        }
+        return CSV;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.final_rev;
+
+/**
+ * Receives progress updates from a running export.
+ */
+@FunctionalInterface
+public interface ExportProgress {
+    /**
+     * Called periodically while rows are written and once more when the export is done.
+     *
+     * rows          The number of rows written so far.
+     * bytes         The number of bytes written so far.
+     * rowsPerSecond The average throughput since the export started.
+     */
+    void update(long rows, long bytes, double rowsPerSecond);
+}
@@ -0,0 +1,61 @@
+package com.example.final_rev;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls PRAGMA data_version to notice commits made to the database file by other
+ * processes, so the UI can reload what it shows. Writes made through this application
+ * do not change the version and are patched into the UI directly instead.
+ */
+public class ExternalChangeWatcher {
+    static final long POLL_INTERVAL_MILLIS = 2000;
+
+    private final Database database;
+    private final Runnable onChange;
+    private ScheduledExecutorService scheduler;
+    private long lastVersion = -1;
+
+    /**
+     * database The database to watch.
+     * onChange Run on the JavaFX Application Thread after another process changed the database.
+     */
+    public ExternalChangeWatcher(Database database, Runnable onChange) {
+        this.database = database;
+        this.onChange = onChange;
+    }
+
+    public void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-change-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void poll() {
+        long version = database.getExternalDataVersion();
+        if (version < 0) {
+            // The writer is busy, try again on the next poll
+            return;
+        }
+        if (lastVersion >= 0 && version != lastVersion) {
+            Platform.runLater(onChange);
+        }
+        lastVersion = version;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.final_rev;
+
+/**
+ * Comparisons offered by the filter bar. Each is translated into a parameterized
+ * SQL condition so the filter runs inside SQLite and can use an index.
+ */
+public enum FilterOperator {
+    EQUALS("=", "%s = ?", true),
+    NOT_EQUALS("≠", "%s <> ?", false),
+    LESS_THAN("<", "%s < ?", true),
+    LESS_OR_EQUAL("≤", "%s <= ?", true),
+    GREATER_THAN(">", "%s > ?", true),
+    GREATER_OR_EQUAL("≥", "%s >= ?", true),
+
+    /**
+     * Case-insensitive substring match, always scans the table.
+     */
+    CONTAINS("contains", "%s LIKE '%%' || ? || '%%' ESCAPE '\\'", false),
+
+    /**
+     * Case-insensitive prefix match.
+     */
+    STARTS_WITH("starts with", "%s LIKE ? || '%%' ESCAPE '\\'", false),
+    IS_NULL("is empty", "%s IS NULL", false),
+    IS_NOT_NULL("is not empty", "%s IS NOT NULL", false);
+
+    private final String displayName;
+    private final String condition;
+    private final boolean indexable;
+
+    FilterOperator(String displayName, String condition, boolean indexable) {
+        this.displayName = displayName;
+        this.condition = condition;
+        this.indexable = indexable;
+    }
+
+    /**
+     * @return The SQL condition for the given quoted column, with one placeholder if hasValue() is true.
+     */
+    public String toSql(String quotedColumn) {
+        return String.format(condition, quotedColumn);
+    }
+
+    /**
+     * @return True if the condition takes a value.
+     */
+    public boolean hasValue() {
+        return this != IS_NULL && this != IS_NOT_NULL;
+    }
+
+    /**
+     * @return True if an index on the column lets SQLite answer the condition without a full scan.
+     */
+    public boolean isIndexable() {
+        return indexable;
+    }
+
+    /**
+     * Escapes the LIKE wildcards in a value compared with CONTAINS or STARTS_WITH.
+     *
+     * value The value typed by the user.
+     * @return The value to bind.
+     */
+    public String bindValue(String value) {
+        if (this != CONTAINS && this != STARTS_WITH) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.final_rev;
+
+/**
+ * Estimates how often keys were seen recently with a fixed amount of memory, for the
+ * admission filter of RowCache.
+ *
+ * A count-min sketch with four 4-bit counters per key, sixteen to a long. The estimate is
+ * the smallest of the four counters, so collisions can only make it too high. Counters stop
+ * at 15, and once the sketch has counted ten times as many keys as it was sized for, all
+ * counters are halved so keys that were popular long ago fade out.
+ */
+public class FrequencySketch {
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    // Halving the counters of a long at once: shift every nibble right and drop the bit that crossed into the next
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * capacity The number of keys expected to be tracked at a time, at least 1.
+     */
+    public FrequencySketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        int counters = Integer.highestOneBit(Math.min(capacity, 1 << 26) * 4 - 1) << 1;
+        this.table = new long[Math.max(1, counters / 16)];
+        this.counterMask = table.length * 16 - 1;
+        this.sampleSize = 10 * capacity;
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     *
+     * key The key, compared by hashCode.
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= incrementAt(indexOf(hash, i));
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * key The key, compared by hashCode.
+     * @return The estimated number of recent occurrences of the key, at most MAX_FREQUENCY.
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, counterAt(indexOf(hash, i)));
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(int index) {
+        int shift = (index & 15) << 2;
+        if (((table[index >>> 4] >>> shift) & 0xf) == MAX_FREQUENCY) {
+            return false;
+        }
+        table[index >>> 4] += 1L << shift;
+        return true;
+    }
+
+    private int counterAt(int index) {
+        return (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xf);
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    // Mixes the bits of a hashCode, since PageKey hashes of neighbouring pages differ only in a few low bits
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.final_rev;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct values in a stream with a fixed amount of memory.
+ *
+ * Every value is hashed to 64 bits. The first PRECISION bits pick one of 2^PRECISION
+ * registers, which keeps the longest run of leading zeros seen in the remaining bits.
+ * With the default precision the sketch takes 16 KiB and is off by about 0.8% on
+ * average. Two sketches of the same precision merge by taking the larger register,
+ * so partial scans can be combined into the sketch of the whole table.
+ */
+public class HyperLogLog {
+    static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * precision The number of hash bits that select a register, between 4 and 18.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value as returned by ResultSet.getObject, see hash.
+     *
+     * value The value, null values are ignored.
+     */
+    public void add(Object value) {
+        if (value != null) {
+            addHash(hash(value));
+        }
+    }
+
+    /**
+     * Adds a value by its 64-bit hash.
+     *
+     * hash The well-mixed hash of the value.
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // The sentinel bit caps the run so a hash of all zeros still fits in a register
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Adds every value seen by another sketch to this one.
+     *
+     * other A sketch with the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return The estimated number of distinct values added.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Few distinct values leave registers empty, linear counting is more accurate there
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Hashes a value read from SQLite. Integers and reals that are equal hash the same, as
+     * SQLite treats them as the same value in DISTINCT, and text and blobs with the same
+     * bytes hash differently.
+     *
+     * value An Integer, Long, Double, String or byte[].
+     * @return The 64-bit hash.
+     */
+    static long hash(Object value) {
+        if (value instanceof Double d) {
+            double number = d;
+            if (number == Math.rint(number) && Math.abs(number) < 0x1p63) {
+                return mix((long) number);
+            }
+            return mix(Double.doubleToLongBits(number) ^ 0x5DEECE66DL);
+        }
+        if (value instanceof Number number) {
+            return mix(number.longValue());
+        }
+        if (value instanceof byte[] bytes) {
+            return mix(hashBytes(bytes, 0xB10BL));
+        }
+        return mix(hashBytes(value.toString().getBytes(StandardCharsets.UTF_8), 0x7E47L));
+    }
+
+    // 64-bit FNV-1a, well mixed by the finalizer below
+    private static long hashBytes(byte[] bytes, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // The finalizer of MurmurHash3, spreads every input bit over the whole hash
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
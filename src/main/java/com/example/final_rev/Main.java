@@ -3,17 +3,10 @@ package com.example.final_rev;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
-import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.sql.SQLException;
-
 public class Main extends Application {
-    private Database database;
-    private UI ui;
-
-    private File selectedFile;
+    private Workspace workspace;
 
     public static void main(String[] args) {
         launch(args);
@@ -24,26 +17,13 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
-        // Show FileChooser to select the database file on the JavaFX Application Thread
+        // Show FileChooser to select the database files on the JavaFX Application Thread
         Platform.runLater(() -> {
-            FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Java Final");
-            selectedFile = fileChooser.showOpenDialog(primaryStage);
-
-            if (selectedFile != null) {
-                try {
-                    // Create Database and UI instances
-                    database = new Database(String.valueOf(selectedFile));
-                    ui = new UI(primaryStage, database, this);
+            workspace = new Workspace(primaryStage);
 
-                    // Load the selected database file into the Database class
-                    database.connect(String.valueOf(selectedFile));
-
-                    // Show the main UI with the loaded database
-                    ui.showMainUI();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
+            if (workspace.chooseFiles()) {
+                // Show the workspace, every file gets its own tab as soon as it is open
+                workspace.show();
             } else {
                 // Show an error message to the user
                 Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -59,14 +39,12 @@ public class Main extends Application {
     }
 
     /**
-     * Refreshes the UI after updating a row in the database.
-     * This method is called from the EditRow class after saving the changes.
+     * Stops the database worker threads and closes the databases when the application exits.
      */
-    public void refreshUIAfterUpdate() {
-        try {
-            ui.refreshTableData();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    @Override
+    public void stop() {
+        if (workspace != null) {
+            workspace.close();
         }
     }
 
@@ -0,0 +1,37 @@
+package com.example.final_rev;
+
+/**
+ * The metrics of a database as exposed over JMX, see MetricsRegistry.registerMBean.
+ * Durations are in milliseconds.
+ */
+public interface MetricsMXBean {
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    long getBytesExported();
+
+    long getQueryCount();
+
+    double getQueryLatencyP50Millis();
+
+    double getQueryLatencyP95Millis();
+
+    double getQueryLatencyP99Millis();
+
+    double getQueryLatencyMaxMillis();
+
+    long getUiRefreshCount();
+
+    double getUiRefreshP95Millis();
+
+    long getSaveCount();
+
+    double getSaveP95Millis();
+
+    long getHeapUsedBytes();
+
+    long getHeapMaxBytes();
+
+    void reset();
+}
@@ -0,0 +1,260 @@
+package com.example.final_rev;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers describing how much work a database did and how long it took.
+ *
+ * Counters are LongAdders and timers are LatencyHistograms, so recording from any thread
+ * is cheap and lock-free. The values are shown in the status bar, exposed as a JMX MXBean
+ * and can be written as a Prometheus text file.
+ */
+public class MetricsRegistry implements MetricsMXBean {
+    public static final String ROWS_READ = "rows_read";
+    public static final String ROWS_WRITTEN = "rows_written";
+    public static final String BYTES_EXPORTED = "bytes_exported";
+    public static final String ROW_CACHE_HITS = "row_cache_hits";
+    public static final String ROW_CACHE_MISSES = "row_cache_misses";
+    public static final String QUERY_LATENCY = "query_latency";
+    public static final String UI_REFRESH = "ui_refresh";
+    public static final String SAVE = "save";
+
+    static final String PROMETHEUS_PREFIX = "final_rev_";
+    static final double[] PROMETHEUS_QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private ObjectName mbeanName;
+
+    public MetricsRegistry() {
+        for (String counter : new String[] {ROWS_READ, ROWS_WRITTEN, BYTES_EXPORTED, ROW_CACHE_HITS, ROW_CACHE_MISSES}) {
+            counter(counter);
+        }
+        for (String timer : new String[] {QUERY_LATENCY, UI_REFRESH, SAVE}) {
+            timer(timer);
+        }
+    }
+
+    /**
+     * Adds to a counter, creating it if needed.
+     *
+     * name  The name of the counter.
+     * delta The amount to add.
+     */
+    public void increment(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Returns the timer with the given name, creating it if needed.
+     *
+     * name The name of the timer.
+     * @return The histogram of the timer.
+     */
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Records one duration in a timer.
+     *
+     * name  The name of the timer.
+     * nanos The duration in nanoseconds.
+     */
+    public void recordTime(String name, long nanos) {
+        timer(name).record(nanos);
+    }
+
+    private LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Metrics registered under the same
+     * name by another registry are left alone, this registry gets a numbered name instead.
+     *
+     * databaseName Tells the databases of one process apart, for example the absolute path of the file.
+     */
+    public synchronized void registerMBean(String databaseName) {
+        if (mbeanName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (int number = 1; ; number++) {
+                String name = number == 1 ? databaseName : databaseName + " (" + number + ")";
+                ObjectName objectName = new ObjectName("com.example.final_rev:type=Metrics,name=" + ObjectName.quote(name));
+                try {
+                    server.registerMBean(this, objectName);
+                    mbeanName = objectName;
+                    return;
+                } catch (InstanceAlreadyExistsException e) {
+                    // Taken by another open database, try the next number
+                }
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes the registration made by registerMBean, if any. Registrations of other registries are never touched.
+     */
+    public synchronized void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text exposition format. Counters become
+     * counters with a _total suffix, timers become summaries in seconds.
+     *
+     * @return The metrics as text.
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            String name = PROMETHEUS_PREFIX + counter.getKey() + "_total";
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> timer : timers.entrySet()) {
+            String name = PROMETHEUS_PREFIX + timer.getKey() + "_seconds";
+            LatencyHistogram histogram = timer.getValue();
+            text.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : PROMETHEUS_QUANTILES) {
+                text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.getPercentileNanos(quantile * 100) / 1e9).append('\n');
+            }
+            text.append(name).append("_sum ").append(histogram.getTotalNanos() / 1e9).append('\n');
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        String heap = PROMETHEUS_PREFIX + "heap_used_bytes";
+        text.append("# TYPE ").append(heap).append(" gauge\n");
+        text.append(heap).append(' ').append(getHeapUsedBytes()).append('\n');
+        String heapMax = PROMETHEUS_PREFIX + "heap_max_bytes";
+        text.append("# TYPE ").append(heapMax).append(" gauge\n");
+        text.append(heapMax).append(' ').append(getHeapMaxBytes()).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Writes the metrics to a Prometheus text file, for example for the node exporter's
+     * textfile collector. The file is replaced atomically so a scrape never sees half of it.
+     *
+     * file The file to write.
+     */
+    public void writePrometheusFile(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, toPrometheusText(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public long getRowsRead() {
+        return getCount(ROWS_READ);
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return getCount(ROWS_WRITTEN);
+    }
+
+    @Override
+    public long getBytesExported() {
+        return getCount(BYTES_EXPORTED);
+    }
+
+    @Override
+    public long getQueryCount() {
+        return timer(QUERY_LATENCY).getCount();
+    }
+
+    @Override
+    public double getQueryLatencyP50Millis() {
+        return timer(QUERY_LATENCY).getPercentileNanos(50) / 1e6;
+    }
+
+    @Override
+    public double getQueryLatencyP95Millis() {
+        return timer(QUERY_LATENCY).getPercentileNanos(95) / 1e6;
+    }
+
+    @Override
+    public double getQueryLatencyP99Millis() {
+        return timer(QUERY_LATENCY).getPercentileNanos(99) / 1e6;
+    }
+
+    @Override
+    public double getQueryLatencyMaxMillis() {
+        return timer(QUERY_LATENCY).getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public long getUiRefreshCount() {
+        return timer(UI_REFRESH).getCount();
+    }
+
+    @Override
+    public double getUiRefreshP95Millis() {
+        return timer(UI_REFRESH).getPercentileNanos(95) / 1e6;
+    }
+
+    @Override
+    public long getSaveCount() {
+        return timer(SAVE).getCount();
+    }
+
+    @Override
+    public double getSaveP95Millis() {
+        return timer(SAVE).getPercentileNanos(95) / 1e6;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Sets every counter and timer back to zero.
+     */
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram timer : timers.values()) {
+            timer.reset();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.final_rev;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * How well file reads of this process are served from the OS page cache, read from
+ * /proc/self/io and /proc/self/stat on Linux.
+ *
+ * The SQLite JDBC driver does not expose sqlite3_db_status, so SQLite's own page cache
+ * hits cannot be counted. What matters for a large file is whether a page miss goes to
+ * the disk: read() calls served from the OS cache and minor page faults on the memory map
+ * cost microseconds, bytes fetched from storage and major faults cost disk bandwidth.
+ * The counters cover the whole process, so they include the few reads of the JVM itself.
+ */
+public class PageCacheStats {
+    private static final Path PROC_IO = Path.of("/proc/self/io");
+    private static final Path PROC_STAT = Path.of("/proc/self/stat");
+
+    private final long requestedBytes;
+    private final long storageBytes;
+    private final long majorFaults;
+
+    private PageCacheStats(long requestedBytes, long storageBytes, long majorFaults) {
+        this.requestedBytes = requestedBytes;
+        this.storageBytes = storageBytes;
+        this.majorFaults = majorFaults;
+    }
+
+    /**
+     * Takes a sample of the counters.
+     *
+     * @return The sample, or null if the counters are not available on this system.
+     */
+    public static PageCacheStats sample() {
+        try {
+            long requested = -1;
+            long storage = -1;
+            for (String line : Files.readAllLines(PROC_IO)) {
+                if (line.startsWith("rchar:")) {
+                    requested = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("read_bytes:")) {
+                    storage = Long.parseLong(line.substring(11).trim());
+                }
+            }
+            // The command name in parentheses may contain spaces, the fields after it are fixed
+            List<String> stat = Files.readAllLines(PROC_STAT);
+            String[] fields = stat.get(0).substring(stat.get(0).lastIndexOf(')') + 2).split(" ");
+            long majorFaults = Long.parseLong(fields[9]);
+            if (requested < 0 || storage < 0) {
+                return null;
+            }
+            return new PageCacheStats(requested, storage, majorFaults);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the counters accumulated since an earlier sample.
+     *
+     * since The earlier sample.
+     * @return The difference.
+     */
+    public PageCacheStats minus(PageCacheStats since) {
+        return new PageCacheStats(requestedBytes - since.requestedBytes, storageBytes - since.storageBytes,
+                majorFaults - since.majorFaults);
+    }
+
+    /**
+     * @return The bytes requested with read() and similar calls.
+     */
+    public long getRequestedBytes() {
+        return requestedBytes;
+    }
+
+    /**
+     * @return The bytes the kernel had to fetch from storage, for read() calls and memory-mapped pages alike.
+     */
+    public long getStorageBytes() {
+        return storageBytes;
+    }
+
+    /**
+     * @return The page faults that had to wait for storage.
+     */
+    public long getMajorFaults() {
+        return majorFaults;
+    }
+
+    /**
+     * @return The share of the bytes requested with read() that were served from the OS page cache, or 1 if nothing was read.
+     */
+    public double getReadHitRatio() {
+        if (requestedBytes <= 0) {
+            return 1;
+        }
+        return Math.max(0, 1 - (double) storageBytes / requestedBytes);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.final_rev;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Shows the statements the StatementProfiler has timed, ordered by total time, with their
+ * latency percentiles and whether their query plan uses an index or scans the whole table,
+ * next to the slow-query log. Selecting a statement shows its EXPLAIN QUERY PLAN.
+ * The MetricsRegistry of the database can be saved as a Prometheus text file from here.
+ */
+public class ProfilerPanel {
+    static final int TOP_STATEMENTS = 100;
+    static final Duration REFRESH_INTERVAL = Duration.seconds(2);
+
+    private final AsyncDatabase database;
+    private final StatementProfiler profiler;
+    private final TableView<StatementProfiler.StatementStats> statements = new TableView<>();
+    private final TableView<StatementProfiler.SlowStatement> slowLog = new TableView<>();
+    private final TextArea planView = new TextArea();
+    private final Spinner<Integer> slowThreshold = new Spinner<>(1, 60_000, 100, 10);
+    private final Label statusLabel = new Label();
+    private final Timeline autoRefresh = new Timeline(new KeyFrame(REFRESH_INTERVAL, event -> refresh()));
+    // Statements whose plan is being captured, so each is explained only once
+    private final Set<StatementProfiler.StatementStats> explaining = new HashSet<>();
+
+    public ProfilerPanel(AsyncDatabase database) {
+        this.database = database;
+        this.profiler = database.getDatabase().getProfiler();
+        autoRefresh.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    /**
+     * Builds the panel.
+     *
+     * @return The node to place in the main window.
+     */
+    public Node createContent() {
+        statements.getColumns().add(textColumn("Statement", 420, StatementProfiler.StatementStats::getSql));
+        statements.getColumns().add(textColumn("Runs", 70, stats -> Long.toString(stats.getCount())));
+        statements.getColumns().add(textColumn("Total ms", 90, stats -> millis(stats.getTotalNanos())));
+        statements.getColumns().add(textColumn("Mean ms", 80, stats -> millis(stats.getMeanNanos())));
+        statements.getColumns().add(textColumn("p50 ms", 80, stats -> millis(stats.getPercentileNanos(50))));
+        statements.getColumns().add(textColumn("p95 ms", 80, stats -> millis(stats.getPercentileNanos(95))));
+        statements.getColumns().add(textColumn("p99 ms", 80, stats -> millis(stats.getPercentileNanos(99))));
+        statements.getColumns().add(textColumn("Max ms", 80, stats -> millis(stats.getMaxNanos())));
+        statements.getColumns().add(textColumn("Access", 110, stats -> stats.getAccess() == null ? "" : stats.getAccess().toString()));
+        statements.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, stats) -> {
+            if (stats != null) {
+                showPlan(stats.getSql(), stats.getPlan());
+            }
+        });
+
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+        slowLog.getColumns().add(textColumn("Time", 80, slow -> timeFormat.format(new Date(slow.getTimestamp()))));
+        slowLog.getColumns().add(textColumn("ms", 80, slow -> millis(slow.getNanos())));
+        slowLog.getColumns().add(textColumn("Access", 110, slow -> slow.getAccess().toString()));
+        slowLog.getColumns().add(textColumn("Statement", 520, StatementProfiler.SlowStatement::getSql));
+        slowLog.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, slow) -> {
+            if (slow != null) {
+                showPlan(slow.getSql(), slow.getPlan());
+            }
+        });
+
+        planView.setEditable(false);
+        planView.setPrefRowCount(6);
+
+        slowThreshold.setEditable(true);
+        slowThreshold.setPrefWidth(100);
+        slowThreshold.getValueFactory().setValue((int) (profiler.getSlowThresholdNanos() / 1_000_000));
+        slowThreshold.valueProperty().addListener((observable, oldValue, value) ->
+                profiler.setSlowThresholdNanos(value * 1_000_000L));
+
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setOnAction(event -> refresh());
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(event -> {
+            profiler.reset();
+            explaining.clear();
+            planView.clear();
+            refresh();
+        });
+
+        Button saveMetricsButton = new Button("Save Metrics");
+        saveMetricsButton.setOnAction(event -> saveMetrics(saveMetricsButton));
+
+        HBox controls = new HBox(10, refreshButton, resetButton, new Label("Slow threshold (ms):"), slowThreshold,
+                saveMetricsButton, statusLabel);
+        controls.setAlignment(Pos.CENTER_LEFT);
+
+        VBox statementsBox = new VBox(5, new Label("Statements by total time"), statements);
+        VBox.setVgrow(statements, Priority.ALWAYS);
+        VBox slowLogBox = new VBox(5, new Label("Slow queries"), slowLog);
+        VBox.setVgrow(slowLog, Priority.ALWAYS);
+        SplitPane tables = new SplitPane(statementsBox, slowLogBox);
+        tables.setOrientation(Orientation.VERTICAL);
+
+        VBox layout = new VBox(10, controls, tables, planView);
+        layout.setPadding(new Insets(10, 0, 0, 0));
+        VBox.setVgrow(tables, Priority.ALWAYS);
+        return layout;
+    }
+
+    /**
+     * Refreshes the panel every REFRESH_INTERVAL while it is shown.
+     *
+     * shown True while the panel is visible.
+     */
+    public void setShown(boolean shown) {
+        if (shown) {
+            refresh();
+            autoRefresh.play();
+        } else {
+            autoRefresh.stop();
+        }
+    }
+
+    /**
+     * Reloads the statements and the slow-query log from the profiler.
+     */
+    public void refresh() {
+        StatementProfiler.StatementStats selected = statements.getSelectionModel().getSelectedItem();
+        List<StatementProfiler.StatementStats> top = profiler.getTopStatements(TOP_STATEMENTS);
+        statements.getItems().setAll(top);
+        if (selected != null && top.contains(selected)) {
+            statements.getSelectionModel().select(selected);
+        }
+        StatementProfiler.SlowStatement selectedSlow = slowLog.getSelectionModel().getSelectedItem();
+        slowLog.getItems().setAll(profiler.getSlowLog());
+        if (selectedSlow != null && slowLog.getItems().contains(selectedSlow)) {
+            slowLog.getSelectionModel().select(selectedSlow);
+        }
+        statusLabel.setText(top.size() + " statements, " + slowLog.getItems().size() + " slow");
+
+        for (StatementProfiler.StatementStats stats : top) {
+            if (stats.getPlan() == null && explaining.add(stats)) {
+                database.read(db -> db.getProfiler().explain(stats)).thenRun(statements::refresh);
+            }
+        }
+    }
+
+    // Dump the metrics registry in the Prometheus text format
+    private void saveMetrics(Node owner) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Metrics");
+        fileChooser.setInitialFileName("final_rev.prom");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Prometheus text", "*.prom", "*.txt"));
+        File file = fileChooser.showSaveDialog(owner.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        try {
+            database.getDatabase().getMetrics().writePrometheusFile(file.toPath());
+            statusLabel.setText("Metrics saved to " + file.getName());
+        } catch (IOException e) {
+            e.printStackTrace();
+            statusLabel.setText("Could not save metrics: " + e.getMessage());
+        }
+    }
+
+    private void showPlan(String sql, List<String> plan) {
+        planView.setText(sql + "\n\n" + (plan == null ? "Plan not captured yet" : String.join("\n", plan)));
+    }
+
+    private static <T> TableColumn<T, String> textColumn(String title, double width, Function<T, String> value) {
+        TableColumn<T, String> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        // The rows are already ordered by total time, and the values are formatted text
+        column.setSortable(false);
+        column.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(value.apply(cellData.getValue())));
+        return column;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.final_rev;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SQL console that runs arbitrary queries on a reader thread and shows their rows
+ * while they are still being read. Results are capped at a configurable row limit
+ * and a running query can be cancelled.
+ *
+ * With Off-heap selected the rows are encoded into a ResultBuffer on the reader thread
+ * instead of being kept as objects, so a result of millions of rows does not fill the
+ * heap and scrolling through it does not cause long garbage collection pauses.
+ */
+public class QueryConsole {
+    static final int DEFAULT_ROW_LIMIT = 100_000;
+    static final int MAX_ROW_LIMIT = 10_000_000;
+    static final int CHUNK_SIZE = 5_000;
+    // Off-heap results beyond this are spilled to a memory-mapped temporary file
+    static final long SPILL_THRESHOLD_BYTES = 256L << 20;
+
+    private final AsyncDatabase database;
+    private final TextArea queryInput = new TextArea();
+    private final Spinner<Integer> rowLimit = new Spinner<>(100, MAX_ROW_LIMIT, DEFAULT_ROW_LIMIT, 10_000);
+    private final TableView<RowView> results = new TableView<>();
+    private final Label statusLabel = new Label();
+    private final Button runButton = new Button("Run");
+    private final Button cancelButton = new Button("Cancel");
+    private final CheckBox offHeap = new CheckBox("Off-heap");
+    private CompletableFuture<Long> running;
+
+    public QueryConsole(AsyncDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Builds the console.
+     *
+     * @return The node to place in the main window.
+     */
+    public Node createContent() {
+        queryInput.setPromptText("SELECT ... (Ctrl+Enter to run)");
+        queryInput.setPrefRowCount(5);
+        queryInput.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (event.getCode() == KeyCode.ENTER && event.isShortcutDown()) {
+                event.consume();
+                run();
+            }
+        });
+
+        rowLimit.setEditable(true);
+        rowLimit.setPrefWidth(120);
+        runButton.setOnAction(event -> run());
+        cancelButton.setOnAction(event -> cancel());
+        cancelButton.setDisable(true);
+
+        offHeap.setSelected(true);
+        HBox controls = new HBox(10, runButton, cancelButton, new Label("Row limit:"), rowLimit, offHeap, statusLabel);
+        controls.setAlignment(Pos.CENTER_LEFT);
+
+        VBox layout = new VBox(10, queryInput, controls, results);
+        layout.setPadding(new Insets(10, 0, 0, 0));
+        VBox.setVgrow(results, Priority.ALWAYS);
+        return layout;
+    }
+
+    private void run() {
+        String sql = queryInput.getText().trim();
+        if (sql.isEmpty()) {
+            return;
+        }
+        cancel();
+
+        results.getColumns().clear();
+        ObservableList<RowView> rows = offHeap.isSelected() ? new ResultBuffer(SPILL_THRESHOLD_BYTES)
+                : FXCollections.observableArrayList();
+        ObservableList<RowView> previous = results.getItems();
+        results.setItems(rows);
+        if (previous instanceof ResultBuffer buffer) {
+            buffer.close();
+        }
+        runButton.setDisable(true);
+        cancelButton.setDisable(false);
+        statusLabel.setText("Running...");
+
+        long limit = rowLimit.getValue();
+        long startTime = System.nanoTime();
+        AtomicBoolean truncated = new AtomicBoolean();
+        CompletableFuture<Long> query = database.read(db -> db.streamQuery(sql, limit, CHUNK_SIZE, new QueryListener() {
+            @Override
+            public void columns(List<String> columnNames) {
+                if (rows instanceof ResultBuffer buffer) {
+                    buffer.setColumnNames(columnNames);
+                }
+                Platform.runLater(() -> showColumns(rows, columnNames));
+            }
+
+            @Override
+            public void rows(List<RowView> chunk) {
+                // Off-heap rows are encoded here on the reader thread, only the new size is handed over
+                if (rows instanceof ResultBuffer buffer) {
+                    buffer.appendAll(chunk);
+                }
+                Platform.runLater(() -> {
+                    if (results.getItems() == rows) {
+                        if (rows instanceof ResultBuffer buffer) {
+                            buffer.publish();
+                        } else {
+                            rows.addAll(chunk);
+                        }
+                        statusLabel.setText(String.format("%d rows, %.2f s...%s", rows.size(), elapsedSeconds(startTime),
+                                describeMemory(rows)));
+                    }
+                });
+            }
+
+            @Override
+            public void limitReached() {
+                truncated.set(true);
+            }
+        }));
+        running = query;
+
+        query.whenComplete((count, error) -> {
+            if (running != query) {
+                return;
+            }
+            running = null;
+            runButton.setDisable(false);
+            cancelButton.setDisable(true);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                statusLabel.setText(String.format("Cancelled after %d rows, %.2f s", rows.size(), elapsedSeconds(startTime)));
+            } else if (cause != null) {
+                statusLabel.setText("Error: " + cause.getMessage());
+            } else {
+                String limitNote = truncated.get() ? " (stopped at the row limit)" : "";
+                statusLabel.setText(String.format("%d rows in %.2f s%s%s", count, elapsedSeconds(startTime), limitNote,
+                        describeMemory(rows)));
+            }
+        });
+    }
+
+    private void cancel() {
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+
+    private void showColumns(ObservableList<RowView> rows, List<String> columnNames) {
+        if (results.getItems() != rows) {
+            return;
+        }
+        for (int i = 0; i < columnNames.size(); i++) {
+            TableColumn<RowView, Object> column = new TableColumn<>(columnNames.get(i));
+            final int columnIndex = i;
+            column.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getValue(columnIndex)));
+            column.setCellFactory(param -> new TableCell<>() {
+                @Override
+                protected void updateItem(Object item, boolean empty) {
+                    super.updateItem(item, empty);
+                    setText(empty ? null : RowView.format(item));
+                }
+            });
+            // Sorting here would reorder rows in memory, order the query instead
+            column.setSortable(false);
+            results.getColumns().add(column);
+        }
+    }
+
+    private static String describeMemory(ObservableList<RowView> rows) {
+        if (!(rows instanceof ResultBuffer buffer)) {
+            return "";
+        }
+        long spilled = buffer.getSpilledBytes();
+        return String.format(", %d MB off-heap%s", (buffer.getDirectBytes() + spilled) >> 20,
+                spilled > 0 ? String.format(" (%d MB in a temporary file)", spilled >> 20) : "");
+    }
+
+    private static double elapsedSeconds(long startTime) {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.final_rev;
+
+import java.util.List;
+
+/**
+ * Receives the result of a query streamed by Database.streamQuery.
+ * All methods are called on the thread running the query.
+ */
+public interface QueryListener {
+    /**
+     * Called once before any rows, with the column labels of the result.
+     */
+    void columns(List<String> columnNames);
+
+    /**
+     * Called with every chunk of rows as soon as it has been read.
+     *
+     * rows The rows of the chunk, typed as SQLite returned them.
+     */
+    void rows(List<RowView> rows);
+
+    /**
+     * Called when reading stopped at the row limit while the query had more rows.
+     */
+    void limitReached();
+}
@@ -0,0 +1,288 @@
+package com.example.final_rev;
+
+import javafx.collections.ObservableListBase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A read-only list of query result rows kept outside the Java heap, used as the items of
+ * the query console.
+ *
+ * Rows are encoded one after another into segments allocated with ByteBuffer.allocateDirect,
+ * every value as a RowCodec tag followed by a variable-length integer, a double or UTF-8 text.
+ * The offset of every row is kept in direct buffers too. Once the segments take more than the
+ * spill threshold, new segments are memory-mapped from a temporary file instead, which the
+ * operating system can write out and drop under memory pressure. Only the rows the TableView
+ * asks for are decoded, into short-lived ArrayRows, so even tens of millions of rows leave the
+ * heap small and give the garbage collector nothing to trace. BLOB values keep their length
+ * only, like the BlobHandles of streamed query results.
+ *
+ * Rows are appended on the thread reading the query and show up in the list once publish is
+ * called on the JavaFX Application Thread. The memory is given back when the buffer is closed
+ * and no longer referenced; direct and mapped buffers are freed by the garbage collector.
+ */
+public class ResultBuffer extends ObservableListBase<RowView> implements AutoCloseable {
+    static final int FIRST_SEGMENT_BYTES = 256 << 10;
+    static final int MAX_SEGMENT_BYTES = 64 << 20;
+    static final int INDEX_CHUNK_ROWS = 64 << 10;
+    // Enough for a tag and the longest variable-length integer
+    private static final int MAX_HEADER_BYTES = 11;
+
+    private final long spillThresholdBytes;
+    // Segments and index chunks are only added by the appending thread, the JavaFX thread reads published rows
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final List<LongBuffer> index = new CopyOnWriteArrayList<>();
+    private volatile List<String> columnNames = List.of();
+    private volatile int appended;
+    private int size;
+
+    // State of the appending thread
+    private ByteBuffer segment;
+    private int segmentPosition;
+    private byte[] scratch = new byte[1024];
+    private long directBytes;
+    private long mappedBytes;
+    private FileChannel spillFile;
+    private boolean closed;
+
+    /**
+     * spillThresholdBytes The direct memory the rows may take before they are written to a mapped temporary file.
+     */
+    public ResultBuffer(long spillThresholdBytes) {
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+
+    /**
+     * Sets the column labels of the result, before any row is appended.
+     *
+     * columnNames The column labels.
+     */
+    public void setColumnNames(List<String> columnNames) {
+        this.columnNames = List.copyOf(columnNames);
+    }
+
+    /**
+     * Encodes rows at the end of the buffer. They are not visible until publish is called.
+     *
+     * rows The rows, with one value per column.
+     */
+    public synchronized void appendAll(List<? extends RowView> rows) {
+        if (closed) {
+            return;
+        }
+        for (RowView row : rows) {
+            int length = encode(row);
+            if (segment == null || segment.capacity() - segmentPosition < length) {
+                int capacity = segment == null ? FIRST_SEGMENT_BYTES : Math.min(MAX_SEGMENT_BYTES, segment.capacity() * 2);
+                segment = allocate(Math.max(capacity, length));
+                segmentPosition = 0;
+                segments.add(segment);
+            }
+            segment.put(segmentPosition, scratch, 0, length);
+
+            int rowIndex = appended;
+            if (rowIndex % INDEX_CHUNK_ROWS == 0) {
+                index.add(ByteBuffer.allocateDirect(INDEX_CHUNK_ROWS * Long.BYTES).asLongBuffer());
+                directBytes += (long) INDEX_CHUNK_ROWS * Long.BYTES;
+            }
+            index.get(rowIndex / INDEX_CHUNK_ROWS).put(rowIndex % INDEX_CHUNK_ROWS,
+                    ((long) (segments.size() - 1) << 32) | segmentPosition);
+            segmentPosition += length;
+            appended = rowIndex + 1;
+        }
+    }
+
+    /**
+     * Shows the rows appended since the last call. Must be called on the JavaFX Application Thread.
+     */
+    public void publish() {
+        int newSize = appended;
+        if (newSize > size) {
+            int oldSize = size;
+            size = newSize;
+            beginChange();
+            nextAdd(oldSize, newSize);
+            endChange();
+        }
+    }
+
+    @Override
+    public RowView get(int rowIndex) {
+        Objects.checkIndex(rowIndex, size);
+        long offset = index.get(rowIndex / INDEX_CHUNK_ROWS).get(rowIndex % INDEX_CHUNK_ROWS);
+        Decoder decoder = new Decoder(segments.get((int) (offset >>> 32)), (int) offset);
+        List<String> names = columnNames;
+        Object[] values = new Object[names.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = decoder.value(names.get(i));
+        }
+        return new ArrayRow(values);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The direct memory taken by the rows and their index in bytes.
+     */
+    public synchronized long getDirectBytes() {
+        return directBytes;
+    }
+
+    /**
+     * @return The bytes of rows spilled to the mapped temporary file.
+     */
+    public synchronized long getSpilledBytes() {
+        return mappedBytes;
+    }
+
+    /**
+     * Drops the rows and deletes the temporary file. The buffer must no longer be shown.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        segments.clear();
+        index.clear();
+        segment = null;
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spillFile = null;
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        if (directBytes + capacity <= spillThresholdBytes) {
+            directBytes += capacity;
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        try {
+            if (spillFile == null) {
+                // Deleted when closed, the mappings stay valid until they are freed
+                spillFile = FileChannel.open(Files.createTempFile("final_rev-results", ".tmp"), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            ByteBuffer mapped = spillFile.map(FileChannel.MapMode.READ_WRITE, mappedBytes, capacity);
+            mappedBytes += capacity;
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Encodes a row into the scratch array and returns its length
+    private int encode(RowView row) {
+        int length = 0;
+        for (int i = 0; i < row.getColumnCount(); i++) {
+            Object value = row.getValue(i);
+            ensureScratch(length + MAX_HEADER_BYTES);
+            if (value == null) {
+                scratch[length++] = RowCodec.NULL;
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                scratch[length++] = RowCodec.INTEGER;
+                long number = ((Number) value).longValue();
+                length = writeVarint(length, (number << 1) ^ (number >> 63));
+            } else if (value instanceof Number number) {
+                scratch[length++] = RowCodec.REAL;
+                long bits = Double.doubleToRawLongBits(number.doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    scratch[length++] = (byte) (bits >>> shift);
+                }
+            } else if (value instanceof BlobHandle blob) {
+                scratch[length++] = RowCodec.BLOB;
+                length = writeVarint(length, blob.getLength());
+            } else if (value instanceof byte[] bytes) {
+                scratch[length++] = RowCodec.BLOB;
+                length = writeVarint(length, bytes.length);
+            } else {
+                byte[] text = value.toString().getBytes(StandardCharsets.UTF_8);
+                ensureScratch(length + MAX_HEADER_BYTES + text.length);
+                scratch[length++] = RowCodec.TEXT;
+                length = writeVarint(length, text.length);
+                System.arraycopy(text, 0, scratch, length, text.length);
+                length += text.length;
+            }
+        }
+        return length;
+    }
+
+    private void ensureScratch(int capacity) {
+        if (scratch.length < capacity) {
+            byte[] larger = new byte[Math.max(capacity, scratch.length * 2)];
+            System.arraycopy(scratch, 0, larger, 0, scratch.length);
+            scratch = larger;
+        }
+    }
+
+    // Seven bits per byte like RowCodec, the high bit tells whether another byte follows
+    private int writeVarint(int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            scratch[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        scratch[position++] = (byte) value;
+        return position;
+    }
+
+    // Reads the values of one row with absolute gets, so segments are never shared mutable state
+    private static class Decoder {
+        private final ByteBuffer segment;
+        private int position;
+
+        Decoder(ByteBuffer segment, int position) {
+            this.segment = segment;
+            this.position = position;
+        }
+
+        Object value(String columnName) {
+            int tag = segment.get(position++);
+            switch (tag) {
+                case RowCodec.NULL:
+                    return null;
+                case RowCodec.INTEGER:
+                    long zigzag = varint();
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                case RowCodec.REAL:
+                    double real = segment.getDouble(position);
+                    position += Double.BYTES;
+                    return real;
+                case RowCodec.BLOB:
+                    return new BlobHandle(null, null, null, columnName, (int) varint());
+                case RowCodec.TEXT:
+                    byte[] text = new byte[(int) varint()];
+                    segment.get(position, text);
+                    position += text.length;
+                    return new String(text, StandardCharsets.UTF_8);
+                default:
+                    throw new IllegalStateException("Unknown value tag " + tag);
+            }
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = segment.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
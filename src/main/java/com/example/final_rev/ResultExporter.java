@@ -0,0 +1,412 @@
+package com.example.final_rev;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Streams a table or query result to a file as CSV, JSON Lines or a columnar binary format.
+ *
+ * Rows are read one at a time from the ResultSet and written through a ChannelWriter,
+ * so memory use is constant no matter how large the table is. The columnar format only
+ * holds one row group of COLUMNAR_GROUP_ROWS rows at a time.
+ *
+ * Columnar layout, all numbers big-endian:
+ * <pre>
+ * "FRC1"  int version  int columnCount  { int length, UTF-8 column name } * columnCount
+ * row group:   int rowCount  { byte type, null bitmap of (rowCount + 7) / 8 bytes, values } * columnCount
+ *              type 0 = all null, 1 = INTEGER (long), 2 = REAL (double), 3 = TEXT, 4 = BLOB (int length, bytes)
+ * end marker:  int -1  long totalRows  int groupCount  long groupOffset * groupCount
+ * trailer:     long offset of the end marker  "FRC1"
+ * </pre>
+ */
+public class ResultExporter {
+    static final int COLUMNAR_GROUP_ROWS = 16_384;
+    static final int COLUMNAR_VERSION = 1;
+    static final long PROGRESS_INTERVAL_NANOS = 250_000_000L;
+
+    private static final byte[] COLUMNAR_MAGIC = {'F', 'R', 'C', '1'};
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_REAL = 2;
+    private static final byte TYPE_TEXT = 3;
+    private static final byte TYPE_BLOB = 4;
+
+    private final Database database;
+
+    public ResultExporter(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Exports every row of a table.
+     *
+     * tableName The table to export.
+     * file      The file to write, replaced if it exists.
+     * format    The output format.
+     * progress  Receives progress updates, may be null.
+     * @return The number of rows written.
+     */
+    public long exportTable(String tableName, Path file, ExportFormat format, ExportProgress progress) throws SQLException, IOException {
+        return exportQuery("SELECT * FROM " + Database.quoteIdentifier(tableName) + ";", file, format, progress);
+    }
+
+    /**
+     * Exports the result of an arbitrary query run through Database.search.
+     *
+     * query    The SQL query.
+     * file     The file to write, replaced if it exists.
+     * format   The output format.
+     * progress Receives progress updates, may be null.
+     * @return The number of rows written.
+     */
+    public long exportQuery(String query, Path file, ExportFormat format, ExportProgress progress) throws SQLException, IOException {
+        try (ResultSet rs = database.search(query)) {
+            if (rs == null) {
+                throw new SQLException("Query failed: " + query);
+            }
+            return export(rs, file, format, progress);
+        }
+    }
+
+    /**
+     * Writes all remaining rows of the result set to the file.
+     *
+     * rs       The result set, positioned before its first row.
+     * file     The file to write, replaced if it exists.
+     * format   The output format.
+     * progress Receives progress updates, may be null.
+     * @return The number of rows written.
+     */
+    public long export(ResultSet rs, Path file, ExportFormat format, ExportProgress progress) throws SQLException, IOException {
+        try (ChannelWriter out = ChannelWriter.open(file)) {
+            return export(rs, out, format, progress);
+        }
+    }
+
+    /**
+     * Writes all remaining rows of the result set to a writer, such as one on standard output.
+     * The writer is flushed but left open.
+     *
+     * rs       The result set, positioned before its first row.
+     * out      The writer to write to.
+     * format   The output format.
+     * progress Receives progress updates, may be null.
+     * @return The number of rows written.
+     */
+    public long export(ResultSet rs, ChannelWriter out, ExportFormat format, ExportProgress progress) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columnNames.add(metaData.getColumnLabel(i));
+        }
+
+        long bytesBefore = out.getBytesWritten();
+        Progress tracker = new Progress(out, progress);
+        switch (format) {
+            case CSV:
+                writeCsv(rs, columnNames, out, tracker);
+                break;
+            case JSON_LINES:
+                writeJsonLines(rs, columnNames, out, tracker);
+                break;
+            default:
+                writeColumnar(rs, columnNames, out, tracker);
+                break;
+        }
+        tracker.finish();
+        out.flush();
+        MetricsRegistry metrics = database.getMetrics();
+        metrics.increment(MetricsRegistry.ROWS_READ, tracker.rows);
+        metrics.increment(MetricsRegistry.BYTES_EXPORTED, out.getBytesWritten() - bytesBefore);
+        return tracker.rows;
+    }
+
+    private void writeCsv(ResultSet rs, List<String> columnNames, ChannelWriter out, Progress tracker) throws SQLException, IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendCsvField(line, columnNames.get(i));
+        }
+        line.append('\n');
+        out.writeUtf8(line);
+
+        while (rs.next()) {
+            line.setLength(0);
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                Object value = rs.getObject(i + 1);
+                if (value instanceof byte[]) {
+                    line.append(Base64.getEncoder().encodeToString((byte[]) value));
+                } else if (value != null) {
+                    appendCsvField(line, value.toString());
+                }
+            }
+            line.append('\n');
+            out.writeUtf8(line);
+            tracker.rowWritten();
+        }
+    }
+
+    // Quote fields that need it, and empty strings so they read back as '' rather than NULL
+    private static void appendCsvField(StringBuilder line, String value) {
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void writeJsonLines(ResultSet rs, List<String> columnNames, ChannelWriter out, Progress tracker) throws SQLException, IOException {
+        StringBuilder line = new StringBuilder();
+        while (rs.next()) {
+            line.setLength(0);
+            line.append('{');
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendJsonString(line, columnNames.get(i));
+                line.append(':');
+                appendJsonValue(line, rs.getObject(i + 1));
+            }
+            line.append("}\n");
+            out.writeUtf8(line);
+            tracker.rowWritten();
+        }
+    }
+
+    /**
+     * Appends a value as JSON: numbers as numbers, BLOBs as base64 strings and everything else as a string.
+     *
+     * json  The builder to append to.
+     * value The value, may be null.
+     */
+    static void appendJsonValue(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                json.append("null");
+            } else {
+                json.append(value);
+            }
+        } else if (value instanceof byte[]) {
+            appendJsonString(json, Base64.getEncoder().encodeToString((byte[]) value));
+        } else {
+            appendJsonString(json, value.toString());
+        }
+    }
+
+    /**
+     * Appends a string as a quoted and escaped JSON string.
+     *
+     * json  The builder to append to.
+     * value The string.
+     */
+    static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private void writeColumnar(ResultSet rs, List<String> columnNames, ChannelWriter out, Progress tracker) throws SQLException, IOException {
+        int columnCount = columnNames.size();
+        out.write(COLUMNAR_MAGIC);
+        out.writeInt(COLUMNAR_VERSION);
+        out.writeInt(columnCount);
+        for (String columnName : columnNames) {
+            out.writeLengthPrefixed(columnName);
+        }
+
+        List<Long> groupOffsets = new ArrayList<>();
+        Object[][] group = new Object[columnCount][COLUMNAR_GROUP_ROWS];
+        int groupRows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                group[i][groupRows] = rs.getObject(i + 1);
+            }
+            groupRows++;
+            tracker.rowWritten();
+            if (groupRows == COLUMNAR_GROUP_ROWS) {
+                groupOffsets.add(out.getBytesWritten());
+                writeRowGroup(group, groupRows, out);
+                groupRows = 0;
+            }
+        }
+        if (groupRows > 0) {
+            groupOffsets.add(out.getBytesWritten());
+            writeRowGroup(group, groupRows, out);
+        }
+
+        long endOffset = out.getBytesWritten();
+        out.writeInt(-1);
+        out.writeLong(tracker.rows);
+        out.writeInt(groupOffsets.size());
+        for (long offset : groupOffsets) {
+            out.writeLong(offset);
+        }
+        out.writeLong(endOffset);
+        out.write(COLUMNAR_MAGIC);
+    }
+
+    private static void writeRowGroup(Object[][] group, int rowCount, ChannelWriter out) throws IOException {
+        out.writeInt(rowCount);
+        byte[] nulls = new byte[(rowCount + 7) / 8];
+        for (Object[] column : group) {
+            byte type = columnType(column, rowCount);
+            out.writeByte(type);
+
+            Arrays.fill(nulls, (byte) 0);
+            for (int row = 0; row < rowCount; row++) {
+                if (column[row] == null) {
+                    nulls[row >> 3] |= (byte) (1 << (row & 7));
+                }
+            }
+            out.write(nulls);
+
+            for (int row = 0; row < rowCount; row++) {
+                Object value = column[row];
+                column[row] = null;
+                if (value == null) {
+                    continue;
+                }
+                switch (type) {
+                    case TYPE_INTEGER:
+                        out.writeLong(((Number) value).longValue());
+                        break;
+                    case TYPE_REAL:
+                        out.writeDouble(((Number) value).doubleValue());
+                        break;
+                    case TYPE_BLOB:
+                        out.writeInt(((byte[]) value).length);
+                        out.write((byte[]) value);
+                        break;
+                    default:
+                        String text = value instanceof byte[]
+                                ? Base64.getEncoder().encodeToString((byte[]) value)
+                                : value.toString();
+                        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                        break;
+                }
+            }
+        }
+    }
+
+    // SQLite types values per row, so pick the narrowest encoding that fits every value in the group
+    private static byte columnType(Object[] column, int rowCount) {
+        boolean any = false;
+        boolean allIntegers = true;
+        boolean allNumbers = true;
+        boolean allBlobs = true;
+        for (int row = 0; row < rowCount; row++) {
+            Object value = column[row];
+            if (value == null) {
+                continue;
+            }
+            any = true;
+            boolean integer = value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+            allIntegers &= integer;
+            allNumbers &= value instanceof Number;
+            allBlobs &= value instanceof byte[];
+        }
+        if (!any) {
+            return TYPE_NULL;
+        }
+        if (allIntegers) {
+            return TYPE_INTEGER;
+        }
+        if (allNumbers) {
+            return TYPE_REAL;
+        }
+        return allBlobs ? TYPE_BLOB : TYPE_TEXT;
+    }
+
+    // Counts rows and reports progress at most every PROGRESS_INTERVAL_NANOS
+    private static class Progress {
+        private final ChannelWriter out;
+        private final ExportProgress listener;
+        private final long startTime = System.nanoTime();
+        private long lastReport = startTime;
+        private long rows;
+
+        Progress(ChannelWriter out, ExportProgress listener) {
+            this.out = out;
+            this.listener = listener;
+        }
+
+        void rowWritten() {
+            rows++;
+            if (listener != null && (rows & 1023) == 0) {
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    lastReport = now;
+                    report(now);
+                }
+            }
+        }
+
+        void finish() {
+            if (listener != null) {
+                report(System.nanoTime());
+            }
+        }
+
+        private void report(long now) {
+            double seconds = Math.max(now - startTime, 1) / 1e9;
+            listener.update(rows, out.getBytesWritten(), rows / seconds);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.final_rev;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the pages of rows Database.getRowPage read in key order, so switching back to a
+ * table shows it without reading anything from SQLite again. A page is found by its table
+ * and the rowid or primary key of the row before it, the same key TableRowWindow pages
+ * with. The row count of every table and whether it was warmed are kept as well.
+ *
+ * The cache is bounded by the estimated heap of its pages, see RowPage.estimateBytes, and
+ * follows W-TinyLFU so that scrolling once through a large table does not push out the pages
+ * that are read again and again. New pages go into a small window, WINDOW_PERCENT of the
+ * budget, kept in least recently used order. A page pushed out of the window only enters the
+ * main part if a FrequencySketch of recent lookups says it is asked for more often than the
+ * least recently used main page it would replace; otherwise it is dropped. Reads filtered or
+ * sorted by a RowQuery are not cached.
+ *
+ * Database drops the entries of a table after every write to it, and validate drops
+ * everything when PRAGMA data_version on the writer shows that another process committed.
+ * Every lookup calls validate first and passes the stamp it returned to the put methods,
+ * which ignore a value read before an invalidation, so a read that raced a write is never
+ * cached. Cached pages are shared with every caller and marked with RowPage.markShared, so
+ * TableRowWindow changes a copy of them instead, see RowPage.copy.
+ */
+public class RowCache {
+    static final int WINDOW_PERCENT = 1;
+    // Sizes the frequency sketch for the number of pages the budget holds
+    private static final long ESTIMATED_PAGE_BYTES = 16 * 1024;
+
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    // New pages in access order, the eldest become candidates for the main part
+    private final Map<PageKey, CachedPage> window = new LinkedHashMap<>(16, 0.75f, true);
+    // Admitted pages in access order, the eldest is the victim a candidate has to beat
+    private final Map<PageKey, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long windowBytes;
+    private final Map<String, Long> rowCounts = new HashMap<>();
+    // Tables read in full by Database.warmTable, with the number of rows visited
+    private final Map<String, Long> warmedRows = new HashMap<>();
+    private long bytes;
+    private long dataVersion = -1;
+    // Bumped by every invalidation, values read with an older stamp are not stored
+    private long stamp;
+
+    /**
+     * maxBytes The heap the cached pages may use, 0 to disable the cache.
+     */
+    public RowCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.windowMaxBytes = maxBytes * WINDOW_PERCENT / 100;
+        this.sketch = new FrequencySketch((int) Math.max(16, Math.min(maxBytes / ESTIMATED_PAGE_BYTES, 1 << 20)));
+    }
+
+    /**
+     * Drops everything if another process committed since the last call.
+     *
+     * externalDataVersion The value of Database.getExternalDataVersion.
+     * @return The stamp to pass to the put methods, or -1 if the cache must not be used because
+     *         it is disabled or the version could not be read.
+     */
+    public synchronized long validate(long externalDataVersion) {
+        if (maxBytes <= 0 || externalDataVersion < 0) {
+            return -1;
+        }
+        if (externalDataVersion != dataVersion) {
+            clear();
+            dataVersion = externalDataVersion;
+        }
+        return stamp;
+    }
+
+    /**
+     * Looks up a page and counts the lookup, hit or miss, towards its frequency.
+     *
+     * tableName The table.
+     * afterKey  The key of the row before the page, or null for the first page.
+     * limit     The number of rows the page was read with.
+     * @return The cached page, or null. It must not be changed.
+     */
+    public synchronized RowPage getPage(String tableName, Object afterKey, int limit) {
+        PageKey key = new PageKey(tableName, afterKey, limit);
+        sketch.increment(key);
+        CachedPage cached = window.get(key);
+        if (cached == null) {
+            cached = pages.get(key);
+        }
+        return cached == null ? null : cached.page;
+    }
+
+    /**
+     * Caches a page in the window. Pages pushed out of the window replace the least recently
+     * used main pages only if they were looked up more often, see the class comment.
+     *
+     * stamp     The stamp validate returned before the page was read.
+     * tableName The table.
+     * afterKey  The key of the row before the page, or null for the first page.
+     * limit     The number of rows the page was read with.
+     * page      The page.
+     */
+    public synchronized void putPage(long stamp, String tableName, Object afterKey, int limit, RowPage page) {
+        long pageBytes = page.estimateBytes();
+        if (stamp != this.stamp || pageBytes > maxBytes - windowMaxBytes) {
+            return;
+        }
+        page.markShared();
+        PageKey key = new PageKey(tableName, afterKey, limit);
+        CachedPage replaced = pages.remove(key);
+        if (replaced != null) {
+            bytes -= replaced.bytes;
+        }
+        replaced = window.put(key, new CachedPage(page, pageBytes));
+        if (replaced != null) {
+            windowBytes -= replaced.bytes;
+        }
+        windowBytes += pageBytes;
+        Iterator<Map.Entry<PageKey, CachedPage>> eldest = window.entrySet().iterator();
+        while (windowBytes > windowMaxBytes) {
+            Map.Entry<PageKey, CachedPage> candidate = eldest.next();
+            eldest.remove();
+            windowBytes -= candidate.getValue().bytes;
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    // Moves a page out of the window into the main part if it beats every victim it displaces
+    private void admit(PageKey key, CachedPage candidate) {
+        int frequency = sketch.frequency(key);
+        Iterator<Map.Entry<PageKey, CachedPage>> eldest = pages.entrySet().iterator();
+        while (bytes + candidate.bytes > maxBytes - windowMaxBytes) {
+            Map.Entry<PageKey, CachedPage> victim = eldest.next();
+            if (frequency <= sketch.frequency(victim.getKey())) {
+                return;
+            }
+            eldest.remove();
+            bytes -= victim.getValue().bytes;
+        }
+        pages.put(key, candidate);
+        bytes += candidate.bytes;
+    }
+
+    /**
+     * @return The cached number of rows of the table, or -1 if it is not cached.
+     */
+    public synchronized long getRowCount(String tableName) {
+        return rowCounts.getOrDefault(tableName, -1L);
+    }
+
+    /**
+     * stamp     The stamp validate returned before the rows were counted.
+     * tableName The table.
+     * count     The number of rows.
+     */
+    public synchronized void putRowCount(long stamp, String tableName, long count) {
+        if (stamp == this.stamp) {
+            rowCounts.put(tableName, count);
+        }
+    }
+
+    /**
+     * @return The number of rows visited when the table was warmed, or -1 if it has not been warmed since it last changed.
+     */
+    public synchronized long getWarmedRows(String tableName) {
+        return warmedRows.getOrDefault(tableName, -1L);
+    }
+
+    /**
+     * stamp     The stamp validate returned before the table was warmed.
+     * tableName The table.
+     * rows      The number of rows visited, which is also the row count.
+     */
+    public synchronized void putWarmedRows(long stamp, String tableName, long rows) {
+        if (stamp == this.stamp) {
+            warmedRows.put(tableName, rows);
+            rowCounts.put(tableName, rows);
+        }
+    }
+
+    /**
+     * Drops everything cached for a table after it was written to.
+     *
+     * tableName The table.
+     */
+    public synchronized void invalidate(String tableName) {
+        stamp++;
+        rowCounts.remove(tableName);
+        warmedRows.remove(tableName);
+        bytes -= removeTable(pages, tableName);
+        windowBytes -= removeTable(window, tableName);
+    }
+
+    // Removes the pages of a table from the window or the main part and returns their size
+    private static long removeTable(Map<PageKey, CachedPage> pages, String tableName) {
+        long removed = 0;
+        Iterator<Map.Entry<PageKey, CachedPage>> entries = pages.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<PageKey, CachedPage> entry = entries.next();
+            if (entry.getKey().tableName.equals(tableName)) {
+                removed += entry.getValue().bytes;
+                entries.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Drops everything cached.
+     */
+    public synchronized void clear() {
+        stamp++;
+        window.clear();
+        pages.clear();
+        rowCounts.clear();
+        warmedRows.clear();
+        windowBytes = 0;
+        bytes = 0;
+    }
+
+    /**
+     * @return The estimated heap used by the cached pages.
+     */
+    public synchronized long getBytes() {
+        return windowBytes + bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    // The size is kept as it was when the page was cached, so the total stays exact
+    private static class CachedPage {
+        private final RowPage page;
+        private final long bytes;
+
+        CachedPage(RowPage page, long bytes) {
+            this.page = page;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class PageKey {
+        private final String tableName;
+        private final Object afterKey;
+        private final int limit;
+
+        PageKey(String tableName, Object afterKey, int limit) {
+            this.tableName = tableName;
+            this.afterKey = afterKey;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PageKey key)) {
+                return false;
+            }
+            return limit == key.limit && tableName.equals(key.tableName) && Objects.equals(afterKey, key.afterKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, afterKey, limit);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.final_rev;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes the column values of a row into a compact byte array for the change journal.
+ *
+ * The format is the number of columns followed by every column as its name and a tagged
+ * value. Counts, lengths and integers are variable-length, so small values take one byte,
+ * and integers are zigzag-encoded so small negative values stay small too. Values keep
+ * their SQLite storage class: decoding returns Long, Double, String, byte[] or null.
+ */
+public final class RowCodec {
+    // Value tags, also used by ResultBuffer
+    static final int NULL = 0;
+    static final int INTEGER = 1;
+    static final int REAL = 2;
+    static final int TEXT = 3;
+    static final int BLOB = 4;
+
+    private RowCodec() {
+    }
+
+    /**
+     * row The values by column name, as returned by ResultSet.getObject.
+     * @return The encoded row.
+     */
+    public static byte[] encode(Map<String, Object> row) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + row.size() * 16);
+        writeVarint(out, row.size());
+        for (Map.Entry<String, Object> column : row.entrySet()) {
+            writeBytes(out, column.getKey().getBytes(StandardCharsets.UTF_8));
+            Object value = column.getValue();
+            if (value == null) {
+                out.write(NULL);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                out.write(INTEGER);
+                long number = ((Number) value).longValue();
+                writeVarint(out, (number << 1) ^ (number >> 63));
+            } else if (value instanceof Number number) {
+                out.write(REAL);
+                long bits = Double.doubleToRawLongBits(number.doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            } else if (value instanceof byte[] bytes) {
+                out.write(BLOB);
+                writeBytes(out, bytes);
+            } else {
+                out.write(TEXT);
+                writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * bytes A row encoded with encode.
+     * @return The values by column name, in the order they were encoded.
+     */
+    public static Map<String, Object> decode(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int columns = (int) readVarint(in);
+        Map<String, Object> row = new LinkedHashMap<>(columns * 2);
+        for (int i = 0; i < columns; i++) {
+            String name = new String(readBytes(in), StandardCharsets.UTF_8);
+            int tag = in.get();
+            Object value = switch (tag) {
+                case NULL -> null;
+                case INTEGER -> {
+                    long zigzag = readVarint(in);
+                    yield (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                case REAL -> in.getDouble();
+                case TEXT -> new String(readBytes(in), StandardCharsets.UTF_8);
+                case BLOB -> readBytes(in);
+                default -> throw new IllegalArgumentException("Unknown value tag " + tag);
+            };
+            row.put(name, value);
+        }
+        return row;
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    // Seven bits per byte, the high bit tells whether another byte follows
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.final_rev;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page of table rows read by Database.getRowPage, together with the
+ * key (rowid or primary key) of every row so the next page can be fetched
+ * with keyset pagination. When the rows are sorted on a column, the sort
+ * value of every row is kept as well, since the page position is the pair.
+ *
+ * The row values are held in a columnar RowStore, and so are the keys and sort
+ * values, so an INTEGER rowid costs eight bytes per row instead of a boxed Long.
+ *
+ * Pages kept by RowCache are marked shared and handed to every reader of the table, so they
+ * must not be changed any more. Whoever needs to change one works on a copy.
+ */
+public class RowPage {
+    private static final int KEY = 0;
+    private static final int SORT_VALUE = 1;
+
+    // Key and sort value of every row
+    private final RowStore positions;
+    private final RowStore store;
+    // One view per row, created when first asked for, so the TableView sees the same item until the row changes
+    private final List<RowView> views;
+    private volatile boolean shared;
+
+    /**
+     * columnCount The number of columns of the rows.
+     * capacity    The expected number of rows.
+     */
+    public RowPage(int columnCount, int capacity) {
+        this.positions = new RowStore(2, capacity);
+        this.store = new RowStore(columnCount, capacity);
+        this.views = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Appends a row to the page.
+     *
+     * key The rowid or primary key value of the row.
+     * row The column values of the row.
+     */
+    public void add(Object key, RowView row) {
+        positions.append(new Object[] {key, null});
+        store.append(row);
+        views.add(null);
+    }
+
+    /**
+     * Appends a row read in the order of a sort column.
+     *
+     * key       The rowid or primary key value of the row.
+     * sortValue The value of the sort column, may be null.
+     * values    The typed column values of the row.
+     */
+    public void add(Object key, Object sortValue, Object[] values) {
+        positions.append(new Object[] {key, sortValue});
+        store.append(values);
+        views.add(null);
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    /**
+     * Marks the page as shared between readers, after which it must not be changed.
+     */
+    public void markShared() {
+        shared = true;
+    }
+
+    /**
+     * @return True if the page is shared between readers and has to be copied before it is changed.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @return A page with the same rows that is not shared. Row views that were already created are reused.
+     */
+    public RowPage copy() {
+        RowPage copy = new RowPage(store.getColumnCount(), views.size());
+        for (int i = 0; i < views.size(); i++) {
+            copy.positions.append(new Object[] {getKey(i), positions.getValue(i, SORT_VALUE)});
+            copy.store.append(store.row(i));
+        }
+        copy.views.addAll(views);
+        return copy;
+    }
+
+    public RowView getRow(int index) {
+        RowView view = views.get(index);
+        if (view == null) {
+            view = store.row(index);
+            views.set(index, view);
+        }
+        return view;
+    }
+
+    /**
+     * Replaces the values of a row.
+     *
+     * index The index of the row in the page.
+     * row   The new values.
+     */
+    public void setRow(int index, RowView row) {
+        store.set(index, row);
+        views.set(index, null);
+    }
+
+    public Object getKey(int index) {
+        return positions.getValue(index, KEY);
+    }
+
+    /**
+     * @return The key of the last row in the page, or null if the page is empty.
+     */
+    public Object getLastKey() {
+        return views.isEmpty() ? null : getKey(views.size() - 1);
+    }
+
+    /**
+     * @return The position of the last row in the page, or null if the page is empty.
+     */
+    public Position getLastPosition() {
+        if (views.isEmpty()) {
+            return null;
+        }
+        int last = views.size() - 1;
+        return new Position(getKey(last), positions.getValue(last, SORT_VALUE));
+    }
+
+    /**
+     * @return The approximate heap used by the rows of the page in bytes.
+     */
+    public long estimateBytes() {
+        return store.estimateBytes() + positions.estimateBytes()
+                + ColumnVector.ARRAY_HEADER_BYTES + (long) ColumnVector.REFERENCE_BYTES * views.size();
+    }
+
+    /**
+     * The position of a row in a sorted read: its sort value and its key.
+     * A page read after a position starts with the first row that sorts after it.
+     */
+    public static class Position {
+        private final Object key;
+        private final Object sortValue;
+
+        public Position(Object key, Object sortValue) {
+            this.key = key;
+            this.sortValue = sortValue;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public Object getSortValue() {
+            return sortValue;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.final_rev;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filter conditions and sort order for reading a table, translated into a
+ * parameterized WHERE and ORDER BY clause by Database.getRowPage and countRows.
+ *
+ * Rows are always ordered by the sort column and then by the row key, so every row
+ * has a unique position and pages can be read with keyset pagination on the pair.
+ */
+public class RowQuery {
+    private final List<Filter> filters = new ArrayList<>();
+    private String sortColumn;
+    private boolean descending;
+
+    /**
+     * Adds a condition rows must match.
+     *
+     * columnName The column to compare.
+     * operator   The comparison.
+     * value      The value to compare with, ignored by operators without a value.
+     */
+    public void addFilter(String columnName, FilterOperator operator, String value) {
+        filters.add(new Filter(columnName, operator, operator.hasValue() ? operator.bindValue(value) : null));
+    }
+
+    public List<Filter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * Sets the column rows are sorted on.
+     *
+     * columnName The column, or null to keep the rows in key order.
+     * descending True to sort from largest to smallest.
+     */
+    public void setSort(String columnName, boolean descending) {
+        this.sortColumn = columnName;
+        this.descending = columnName != null && descending;
+    }
+
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return True if the query neither filters nor sorts.
+     */
+    public boolean isEmpty() {
+        return filters.isEmpty() && sortColumn == null;
+    }
+
+    /**
+     * Appends the filter conditions joined with AND, adding their values to params.
+     *
+     * sql    The statement being built.
+     * params The parameters of the statement.
+     * @return True if at least one condition was appended.
+     */
+    boolean appendConditions(StringBuilder sql, List<Object> params) {
+        for (int i = 0; i < filters.size(); i++) {
+            Filter filter = filters.get(i);
+            if (i > 0) {
+                sql.append(" AND ");
+            }
+            sql.append('(').append(filter.getOperator().toSql(Database.quoteIdentifier(filter.getColumnName()))).append(')');
+            if (filter.getOperator().hasValue()) {
+                params.add(filter.getValue());
+            }
+        }
+        return !filters.isEmpty();
+    }
+
+    /**
+     * A single filter condition.
+     */
+    public static class Filter {
+        private final String columnName;
+        private final FilterOperator operator;
+        private final String value;
+
+        Filter(String columnName, FilterOperator operator, String value) {
+            this.columnName = columnName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public FilterOperator getOperator() {
+            return operator;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.final_rev;
+
+/**
+ * Columnar storage for a block of rows, one ColumnVector per column.
+ *
+ * Compared to one String[] per row this keeps numbers unboxed and typed, shares
+ * repeated text through a per-column dictionary and leaves BLOB bytes in the
+ * database. Rows are exposed as RowView flyweights that format values lazily.
+ */
+public class RowStore {
+    private final int columnCount;
+    private final int capacity;
+    private final ColumnVector[] columns;
+    private int size;
+
+    /**
+     * columnCount The number of columns.
+     * capacity    The expected number of rows, the store grows past it if needed.
+     */
+    public RowStore(int columnCount, int capacity) {
+        this.columnCount = columnCount;
+        this.capacity = capacity;
+        this.columns = new ColumnVector[columnCount];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * values The typed values of the row, one per column.
+     * @return The index of the new row.
+     */
+    public int append(Object[] values) {
+        int row = size++;
+        for (int column = 0; column < columnCount; column++) {
+            setValue(row, column, values[column]);
+        }
+        return row;
+    }
+
+    /**
+     * Appends a copy of a row.
+     *
+     * values The row to copy.
+     * @return The index of the new row.
+     */
+    public int append(RowView values) {
+        int row = size++;
+        set(row, values);
+        return row;
+    }
+
+    /**
+     * Replaces the values of a row with those of another row.
+     *
+     * row    The index of the row to replace.
+     * values The new values.
+     */
+    public void set(int row, RowView values) {
+        for (int column = 0; column < columnCount; column++) {
+            setValue(row, column, column < values.getColumnCount() ? values.getValue(column) : null);
+        }
+    }
+
+    public Object getValue(int row, int column) {
+        ColumnVector vector = columns[column];
+        return vector == null ? null : vector.get(row);
+    }
+
+    public void setValue(int row, int column, Object value) {
+        ColumnVector vector = columns[column];
+        if (vector == null) {
+            if (value == null) {
+                return;
+            }
+            vector = ColumnVector.forValue(value, capacity);
+            columns[column] = vector;
+        } else if (!vector.accepts(value)) {
+            vector = vector.toObjectVector(size);
+            columns[column] = vector;
+        }
+        vector.set(row, value);
+    }
+
+    /**
+     * @return A view of the given row backed by this store.
+     */
+    public RowView row(int row) {
+        return new StoredRow(this, row);
+    }
+
+    /**
+     * @return The approximate heap used by the stored values in bytes.
+     */
+    public long estimateBytes() {
+        long bytes = ColumnVector.ARRAY_HEADER_BYTES + (long) ColumnVector.REFERENCE_BYTES * columnCount;
+        for (ColumnVector column : columns) {
+            if (column != null) {
+                bytes += column.estimateBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private static class StoredRow implements RowView {
+        private final RowStore store;
+        private final int row;
+
+        StoredRow(RowStore store, int row) {
+            this.store = store;
+            this.row = row;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return store.columnCount;
+        }
+
+        @Override
+        public Object getValue(int column) {
+            return store.getValue(row, column);
+        }
+    }
+}
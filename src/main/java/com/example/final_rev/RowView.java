@@ -0,0 +1,44 @@
+package com.example.final_rev;
+
+/**
+ * One row as shown in the TableView. Values keep the type SQLite stored them with
+ * (Long, Double, String or BlobHandle) and are only turned into text when a cell
+ * is rendered.
+ */
+public interface RowView {
+    int getColumnCount();
+
+    /**
+     * @return The typed value of the column, or null.
+     */
+    Object getValue(int column);
+
+    /**
+     * @return The value of the column formatted for display, an empty string for NULL.
+     */
+    default String getText(int column) {
+        return format(getValue(column));
+    }
+
+    /**
+     * @return The values of all columns as text, NULL stays null.
+     */
+    default String[] toTextArray() {
+        String[] values = new String[getColumnCount()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = getValue(i);
+            values[i] = value == null ? null : format(value);
+        }
+        return values;
+    }
+
+    /**
+     * Formats a cell value for display.
+     *
+     * value The value, may be null.
+     * @return The text shown in the cell.
+     */
+    static String format(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cache of table metadata shared by all connections of a ConnectionPool.
+ *
+ * Table schemas are loaded on first use and kept until PRAGMA schema_version
+ * changes, which SQLite bumps on every CREATE, ALTER or DROP from any connection.
+ * The version is checked at most once per VERSION_CHECK_INTERVAL_MS, so repeated
+ * lookups while a dialog is open or a page is loaded cost no round-trips at all.
+ *
+ * The connection is taken before the cache is locked, so no thread waits for a reader
+ * connection of the pool while other threads wait for the cache.
+ */
+public class SchemaCache {
+    static final long VERSION_CHECK_INTERVAL_MS = 2000;
+
+    private final ConnectionSource connections;
+    private final Map<String, TableSchema> tables = new HashMap<>();
+    private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
+    private int schemaVersion = -1;
+    private long lastVersionCheck;
+
+    /**
+     * connections Gives the connection to read the schema with on the calling thread.
+     */
+    public SchemaCache(ConnectionSource connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Returns the schema of the given table, loading it if it is not cached yet.
+     *
+     * tableName The name of the table.
+     * @return The table schema, with no columns if the table does not exist.
+     */
+    public TableSchema getTable(String tableName) throws SQLException {
+        Connection connection = connections.get();
+        synchronized (this) {
+            checkSchemaVersion(connection);
+            String key = tableName.toLowerCase(Locale.ROOT);
+            TableSchema schema = tables.get(key);
+            if (schema == null) {
+                schema = loadTable(connection, tableName);
+                tables.put(key, schema);
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Drops all cached schemas, for example after this application ran DDL itself.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            tables.clear();
+            schemaVersion = -1;
+        }
+        fireInvalidated();
+    }
+
+    /**
+     * Registers a listener that is called whenever the cached schemas are dropped,
+     * so anything derived from the schema (such as compiled statements) can be dropped too.
+     *
+     * listener The listener to call.
+     */
+    public void addInvalidationListener(Runnable listener) {
+        invalidationListeners.add(listener);
+    }
+
+    private void checkSchemaVersion(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (schemaVersion >= 0 && now - lastVersionCheck < VERSION_CHECK_INTERVAL_MS) {
+            return;
+        }
+        lastVersionCheck = now;
+
+        int version;
+        try (PreparedStatement statement = connection.prepareStatement("PRAGMA schema_version;");
+             ResultSet rs = statement.executeQuery()) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version != schemaVersion) {
+            boolean changed = schemaVersion >= 0;
+            tables.clear();
+            schemaVersion = version;
+            if (changed) {
+                fireInvalidated();
+            }
+        }
+    }
+
+    private void fireInvalidated() {
+        for (Runnable listener : invalidationListeners) {
+            listener.run();
+        }
+    }
+
+    private TableSchema loadTable(Connection connection, String tableName) throws SQLException {
+        List<TableSchema.Column> columns = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT * FROM pragma_table_info(?);")) {
+            statement.setString(1, tableName);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(new TableSchema.Column(
+                            rs.getString("name"),
+                            rs.getString("type"),
+                            rs.getInt("notnull") != 0,
+                            rs.getString("dflt_value"),
+                            rs.getInt("pk")));
+                }
+            }
+        }
+
+        List<TableSchema.Index> indexes = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT name, \"unique\" FROM pragma_index_list(?);")) {
+            statement.setString(1, tableName);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String indexName = rs.getString(1);
+                    indexes.add(new TableSchema.Index(indexName, rs.getInt(2) != 0, loadIndexColumns(connection, indexName)));
+                }
+            }
+        }
+
+        return new TableSchema(tableName, columns, indexes);
+    }
+
+    private List<String> loadIndexColumns(Connection connection, String indexName) throws SQLException {
+        List<String> columnNames = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT name FROM pragma_index_info(?) ORDER BY seqno;")) {
+            statement.setString(1, indexName);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    // Expression indexes report a null column name
+                    String columnName = rs.getString(1);
+                    columnNames.add(columnName == null ? "" : columnName);
+                }
+            }
+        }
+        return columnNames;
+    }
+
+    /**
+     * Gives the connection schema lookups of the calling thread read with.
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
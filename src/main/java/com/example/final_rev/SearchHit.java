@@ -0,0 +1,47 @@
+package com.example.final_rev;
+
+/**
+ * A row found by Database.searchAll, identified by its table and rowid.
+ */
+public class SearchHit {
+    private final String tableName;
+    private final String columnName;
+    private final long rowid;
+    private final String snippet;
+    private final double rank;
+
+    /**
+     * tableName  The table the row belongs to.
+     * columnName The first indexed column that matched, or null if it could not be told.
+     * rowid      The rowid of the row.
+     * snippet    The matching text with the matched terms in brackets.
+     * rank       The bm25 rank of the row, lower is a better match.
+     */
+    public SearchHit(String tableName, String columnName, long rowid, String snippet, double rank) {
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.rowid = rowid;
+        this.snippet = snippet;
+        this.rank = rank;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public long getRowid() {
+        return rowid;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public double getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.final_rev;
+
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+/**
+ * Searches every table with a full-text index at once and lists the ranked hits.
+ * Opening a hit shows its row in the table browser. The panel also builds and
+ * removes the FTS5 indexes, see Database.createSearchIndex.
+ */
+public class SearchPanel {
+    static final int MAX_HITS = 500;
+    static final Duration SEARCH_DELAY = Duration.millis(250);
+
+    private final AsyncDatabase database;
+    private final BiConsumer<String, Long> openRow;
+    private final TextField searchField = new TextField();
+    private final TableView<SearchHit> hits = new TableView<>();
+    private final ListView<String> indexList = new ListView<>();
+    private final Label statusLabel = new Label();
+    private final PauseTransition searchDelay = new PauseTransition(SEARCH_DELAY);
+    // Table names of the entries of indexList
+    private List<String> indexedTables = new ArrayList<>();
+    private CompletableFuture<List<SearchHit>> running;
+
+    /**
+     * database The database to search.
+     * openRow  Shows a row given its table name and rowid.
+     */
+    public SearchPanel(AsyncDatabase database, BiConsumer<String, Long> openRow) {
+        this.database = database;
+        this.openRow = openRow;
+    }
+
+    /**
+     * Builds the panel.
+     *
+     * @return The node to place in the main window.
+     */
+    public Node createContent() {
+        searchField.setPromptText("Search all indexed tables");
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        // Search while typing, once the text has not changed for SEARCH_DELAY
+        searchDelay.setOnFinished(event -> search());
+        searchField.textProperty().addListener((observable, oldValue, text) -> searchDelay.playFromStart());
+        searchField.setOnAction(event -> {
+            searchDelay.stop();
+            search();
+        });
+        HBox searchBar = new HBox(10, searchField, statusLabel);
+        searchBar.setAlignment(Pos.CENTER_LEFT);
+
+        TableColumn<SearchHit, String> tableColumn = new TableColumn<>("Table");
+        tableColumn.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().getTableName()));
+        TableColumn<SearchHit, String> columnColumn = new TableColumn<>("Column");
+        columnColumn.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().getColumnName()));
+        TableColumn<SearchHit, Long> rowidColumn = new TableColumn<>("Rowid");
+        rowidColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().getRowid()));
+        TableColumn<SearchHit, String> snippetColumn = new TableColumn<>("Match");
+        snippetColumn.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(cellData.getValue().getSnippet()));
+        snippetColumn.setPrefWidth(450);
+        hits.getColumns().addAll(List.of(tableColumn, columnColumn, rowidColumn, snippetColumn));
+        hits.setPlaceholder(new Label("No hits"));
+        hits.setRowFactory(view -> {
+            TableRow<SearchHit> row = new TableRow<>();
+            row.setOnMouseClicked(event -> {
+                if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2 && !row.isEmpty()) {
+                    open(row.getItem());
+                }
+            });
+            return row;
+        });
+        hits.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER && hits.getSelectionModel().getSelectedItem() != null) {
+                open(hits.getSelectionModel().getSelectedItem());
+            }
+        });
+
+        Button indexButton = new Button("Index Table...");
+        indexButton.setOnAction(event -> showIndexDialog());
+        Button removeIndexButton = new Button("Remove Index");
+        removeIndexButton.setOnAction(event -> removeIndex());
+        indexList.setPrefHeight(100);
+        HBox indexButtons = new HBox(10, indexButton, removeIndexButton);
+        VBox indexes = new VBox(5, new Label("Indexed tables"), indexList, indexButtons);
+
+        VBox layout = new VBox(10, searchBar, hits, indexes);
+        layout.setPadding(new Insets(10, 0, 0, 0));
+        VBox.setVgrow(hits, Priority.ALWAYS);
+
+        refreshIndexes();
+        return layout;
+    }
+
+    private void search() {
+        if (running != null) {
+            running.cancel(true);
+        }
+        String text = searchField.getText();
+        if (text.isBlank()) {
+            hits.getItems().clear();
+            statusLabel.setText("");
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        CompletableFuture<List<SearchHit>> search = database.searchAll(text, MAX_HITS);
+        running = search;
+        search.whenComplete((found, error) -> {
+            if (running != search) {
+                return;
+            }
+            running = null;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            if (cause != null) {
+                statusLabel.setText("Search failed: " + cause.getMessage());
+                return;
+            }
+            hits.getItems().setAll(found);
+            statusLabel.setText(String.format("%d hits in %.0f ms", found.size(), (System.nanoTime() - startTime) / 1e6));
+        });
+    }
+
+    private void open(SearchHit hit) {
+        openRow.accept(hit.getTableName(), hit.getRowid());
+    }
+
+    private void refreshIndexes() {
+        database.read(Database::getSearchIndexes).thenAccept(indexes -> {
+            List<String> items = new ArrayList<>();
+            for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+                items.add(index.getKey() + " (" + String.join(", ", index.getValue()) + ")");
+            }
+            indexedTables = new ArrayList<>(indexes.keySet());
+            indexList.setItems(FXCollections.observableArrayList(items));
+        }).exceptionally(error -> {
+            statusLabel.setText("Could not list the indexes: " + error.getMessage());
+            return null;
+        });
+    }
+
+    private void removeIndex() {
+        int selected = indexList.getSelectionModel().getSelectedIndex();
+        if (selected < 0) {
+            return;
+        }
+        String tableName = indexedTables.get(selected);
+        database.write(db -> {
+            db.dropSearchIndex(tableName);
+            return null;
+        }).thenRun(() -> {
+            statusLabel.setText("Removed the index of " + tableName);
+            refreshIndexes();
+            search();
+        }).exceptionally(error -> {
+            statusLabel.setText("Could not remove the index: " + error.getMessage());
+            return null;
+        });
+    }
+
+    // Pick a table and its columns to index, TEXT columns are selected by default
+    private void showIndexDialog() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Index Table");
+        dialog.setHeaderText("Columns to make searchable");
+        ComboBox<String> tableChoice = new ComboBox<>();
+        tableChoice.setPromptText("Select a Table");
+        VBox columnChoices = new VBox(5);
+        List<CheckBox> checkBoxes = new ArrayList<>();
+        tableChoice.setOnAction(event -> {
+            String tableName = tableChoice.getValue();
+            columnChoices.getChildren().clear();
+            checkBoxes.clear();
+            database.read(db -> db.getTableSchema(tableName)).thenAccept(schema -> {
+                if (!tableName.equals(tableChoice.getValue())) {
+                    return;
+                }
+                for (TableSchema.Column column : schema.getColumns()) {
+                    CheckBox checkBox = new CheckBox(column.getName());
+                    checkBox.setSelected(column.hasTextAffinity());
+                    checkBoxes.add(checkBox);
+                }
+                columnChoices.getChildren().setAll(checkBoxes);
+            });
+        });
+        database.getTables().thenAccept(tables -> tableChoice.setItems(FXCollections.observableArrayList(tables)));
+
+        dialog.getDialogPane().setContent(new VBox(10, tableChoice, columnChoices));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK || tableChoice.getValue() == null) {
+            return;
+        }
+
+        String tableName = tableChoice.getValue();
+        List<String> columnNames = new ArrayList<>();
+        for (CheckBox checkBox : checkBoxes) {
+            if (checkBox.isSelected()) {
+                columnNames.add(checkBox.getText());
+            }
+        }
+        statusLabel.setText("Indexing " + tableName + "...");
+        database.write(db -> {
+            db.createSearchIndex(tableName, columnNames);
+            return null;
+        }).thenRun(() -> {
+            statusLabel.setText("Indexed " + tableName);
+            refreshIndexes();
+        }).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            statusLabel.setText("Could not index " + tableName + ": " + cause.getMessage());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of compiled statements keyed by table, operation and column set.
+ *
+ * A statement is owned by exactly one party at a time. While it sits in the cache the
+ * cache owns it and closes it when it is evicted or the cache is cleared. borrow()
+ * removes it from the cache and hands ownership to the caller, who gives it back by
+ * closing the returned CachedStatement, so two threads can never share one statement.
+ * Statements borrowed before clear() are closed instead of being returned.
+ *
+ * When a StatementProfiler is set, every borrow is timed until the statement is given back.
+ */
+public class StatementCache {
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final Connection connection;
+    private final Map<Key, PreparedStatement> idleStatements;
+    // SQL text of every idle statement, for the profiler
+    private final Map<Key, String> sqlTexts = new HashMap<>();
+    private final StatementProfiler profiler;
+    private long generation;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Creates an empty cache for the given connection.
+     *
+     * connection The connection statements are prepared on.
+     * capacity   The maximum number of idle statements kept compiled.
+     * profiler   Times every borrowed statement, may be null.
+     */
+    public StatementCache(Connection connection, int capacity, StatementProfiler profiler) {
+        this.connection = connection;
+        this.profiler = profiler;
+        this.idleStatements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    sqlTexts.remove(eldest.getKey());
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Takes the compiled statement for the given key out of the cache, preparing it if needed.
+     *
+     * tableName The table the statement works on.
+     * operation The kind of statement, such as "insert" or "update".
+     * columns   The columns that shape the SQL, in order.
+     * sql       Builds the SQL, only called when the statement is not cached.
+     * @return The statement, to be closed by the caller to give it back.
+     */
+    public CachedStatement borrow(String tableName, String operation, List<String> columns, Supplier<String> sql) throws SQLException {
+        Key key = new Key(tableName, operation, columns);
+        long startTime = System.nanoTime();
+        PreparedStatement statement;
+        String sqlText;
+        long borrowedGeneration;
+        synchronized (this) {
+            statement = idleStatements.remove(key);
+            sqlText = sqlTexts.get(key);
+            borrowedGeneration = generation;
+        }
+        if (statement == null || statement.isClosed()) {
+            sqlText = sql.get();
+            statement = connection.prepareStatement(sqlText);
+        }
+        return new CachedStatement(key, statement, sqlText, borrowedGeneration, startTime);
+    }
+
+    /**
+     * Closes every idle statement, for example after the schema changed.
+     * Statements that are currently borrowed are closed when they are given back.
+     */
+    public synchronized void clear() {
+        generation++;
+        sqlTexts.clear();
+        for (Iterator<PreparedStatement> it = idleStatements.values().iterator(); it.hasNext(); ) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+
+    private void giveBack(CachedStatement cached) {
+        if (profiler != null) {
+            profiler.record(cached.sql, System.nanoTime() - cached.startTime);
+        }
+        PreparedStatement statement = cached.statement;
+        try {
+            if (statement.isClosed()) {
+                return;
+            }
+            statement.clearParameters();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+
+        PreparedStatement toClose;
+        synchronized (this) {
+            if (cached.generation != generation) {
+                toClose = statement;
+            } else {
+                // Another borrower may have prepared the same statement meanwhile, keep only one
+                toClose = idleStatements.put(cached.key, statement);
+                sqlTexts.put(cached.key, cached.sql);
+            }
+        }
+        closeQuietly(toClose);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A statement borrowed from the cache. Closing it returns the statement to the cache.
+     */
+    public class CachedStatement implements AutoCloseable {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final String sql;
+        private final long generation;
+        private final long startTime;
+
+        private CachedStatement(Key key, PreparedStatement statement, String sql, long generation, long startTime) {
+            this.key = key;
+            this.statement = statement;
+            this.sql = sql;
+            this.generation = generation;
+            this.startTime = startTime;
+        }
+
+        public PreparedStatement get() {
+            return statement;
+        }
+
+        @Override
+        public void close() {
+            giveBack(this);
+        }
+    }
+
+    private static class Key {
+        private final String tableName;
+        private final String operation;
+        private final List<String> columns;
+
+        Key(String tableName, String operation, List<String> columns) {
+            this.tableName = tableName;
+            this.operation = operation;
+            // List.copyOf rejects nulls, a column list may hold a missing key column
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return tableName.equals(other.tableName) && operation.equals(other.operation) && columns.equals(other.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, operation, columns);
+        }
+    }
+}
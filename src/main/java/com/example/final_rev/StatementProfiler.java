@@ -0,0 +1,307 @@
+package com.example.final_rev;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every statement the Database runs and keeps a latency histogram per SQL text.
+ *
+ * Statements slower than the slow threshold are added to a bounded slow-query log together
+ * with their EXPLAIN QUERY PLAN, which is captured once per SQL text and tells whether the
+ * statement searched an index or scanned the whole table. Recording a statement that is not
+ * slow only updates its histogram, so profiling is always on.
+ */
+public class StatementProfiler {
+    static final long DEFAULT_SLOW_THRESHOLD_NANOS = 100_000_000L;
+    static final int MAX_STATEMENTS = 500;
+    static final int MAX_SLOW_ENTRIES = 200;
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final Deque<SlowStatement> slowLog = new ArrayDeque<>();
+    private final PlanSource planSource;
+    // Every recorded statement, including those past MAX_STATEMENTS
+    private final LatencyHistogram allStatements;
+    private volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_NANOS;
+
+    /**
+     * planSource Runs EXPLAIN QUERY PLAN for a statement, see Database.explainQueryPlan.
+     */
+    public StatementProfiler(PlanSource planSource) {
+        this(planSource, new LatencyHistogram());
+    }
+
+    /**
+     * planSource    Runs EXPLAIN QUERY PLAN for a statement, see Database.explainQueryPlan.
+     * allStatements Receives the duration of every statement, such as the query latency timer of a MetricsRegistry.
+     */
+    public StatementProfiler(PlanSource planSource, LatencyHistogram allStatements) {
+        this.planSource = planSource;
+        this.allStatements = allStatements;
+    }
+
+    public long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    public void setSlowThresholdNanos(long slowThresholdNanos) {
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+
+    /**
+     * Runs a statement and records how long it took, also when it fails.
+     *
+     * sql  The SQL text of the statement.
+     * call Runs the statement.
+     * @return The result of the call.
+     */
+    public <T> T time(String sql, TimedCall<T> call) throws SQLException {
+        long startTime = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            record(sql, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Records one run of a statement.
+     *
+     * sql   The SQL text of the statement.
+     * nanos How long the statement took in nanoseconds.
+     */
+    public void record(String sql, long nanos) {
+        allStatements.record(nanos);
+        StatementStats stats = statements.get(sql);
+        if (stats == null) {
+            // Ad hoc SQL from the query console is unbounded, stop tracking new texts once full
+            if (statements.size() >= MAX_STATEMENTS) {
+                return;
+            }
+            stats = statements.computeIfAbsent(sql, StatementStats::new);
+        }
+        stats.histogram.record(nanos);
+
+        if (nanos >= slowThresholdNanos) {
+            SlowStatement slow = new SlowStatement(sql, nanos, System.currentTimeMillis(), explain(stats));
+            synchronized (slowLog) {
+                slowLog.addFirst(slow);
+                if (slowLog.size() > MAX_SLOW_ENTRIES) {
+                    slowLog.removeLast();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the query plan of a statement, capturing it the first time it is asked for.
+     * Runs on the calling thread's reader connection.
+     *
+     * stats The statement.
+     * @return The lines of the plan, or a single line explaining why it is not available.
+     */
+    public List<String> explain(StatementStats stats) {
+        List<String> plan = stats.plan;
+        if (plan == null) {
+            try {
+                plan = List.copyOf(planSource.explain(stats.sql));
+            } catch (Exception e) {
+                plan = List.of("Plan not available: " + e.getMessage());
+            }
+            stats.plan = plan;
+            stats.access = Access.of(plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the statements that took the most time in total.
+     *
+     * limit The maximum number of statements to return.
+     * @return The statements, slowest first.
+     */
+    public List<StatementStats> getTopStatements(int limit) {
+        List<StatementStats> top = new ArrayList<>(statements.values());
+        top.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+    }
+
+    /**
+     * @return The slow statements, most recent first.
+     */
+    public List<SlowStatement> getSlowLog() {
+        synchronized (slowLog) {
+            return new ArrayList<>(slowLog);
+        }
+    }
+
+    /**
+     * Forgets all timings and the slow-query log.
+     */
+    public void reset() {
+        statements.clear();
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+
+    /**
+     * How a statement reaches its rows, read from its query plan.
+     */
+    public enum Access {
+        INDEX("Index"),
+        FULL_SCAN("Full scan"),
+        NO_TABLE("No table access"),
+        UNKNOWN("Unknown");
+
+        private final String label;
+
+        Access(String label) {
+            this.label = label;
+        }
+
+        // SQLite prints "SCAN t" for a full scan and "SEARCH t USING INDEX ..." or "... USING INTEGER PRIMARY KEY" otherwise
+        static Access of(List<String> plan) {
+            boolean index = false;
+            boolean tableAccess = false;
+            for (String line : plan) {
+                String detail = line.trim();
+                if (detail.startsWith("Plan not available")) {
+                    return UNKNOWN;
+                }
+                if (detail.startsWith("SCAN ") && !detail.startsWith("SCAN CONSTANT ROW")) {
+                    tableAccess = true;
+                    if (!detail.contains(" USING ")) {
+                        return FULL_SCAN;
+                    }
+                }
+                if (detail.startsWith("SEARCH ") || detail.startsWith("SCAN ")) {
+                    tableAccess = true;
+                    index |= detail.contains(" INDEX ") || detail.contains(" PRIMARY KEY");
+                }
+            }
+            if (index) {
+                return INDEX;
+            }
+            return tableAccess ? UNKNOWN : NO_TABLE;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Timings of one SQL text.
+     */
+    public static class StatementStats {
+        private final String sql;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private volatile List<String> plan;
+        private volatile Access access;
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        public long getTotalNanos() {
+            return histogram.getTotalNanos();
+        }
+
+        public long getMeanNanos() {
+            return histogram.getMeanNanos();
+        }
+
+        public long getMaxNanos() {
+            return histogram.getMaxNanos();
+        }
+
+        public long getPercentileNanos(double percentile) {
+            return histogram.getPercentileNanos(percentile);
+        }
+
+        /**
+         * @return The query plan, or null if it has not been captured yet.
+         */
+        public List<String> getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return How the statement reaches its rows, or null if its plan has not been captured yet.
+         */
+        public Access getAccess() {
+            return access;
+        }
+    }
+
+    /**
+     * One run of a statement that exceeded the slow threshold.
+     */
+    public static class SlowStatement {
+        private final String sql;
+        private final long nanos;
+        private final long timestamp;
+        private final List<String> plan;
+
+        SlowStatement(String sql, long nanos, long timestamp, List<String> plan) {
+            this.sql = sql;
+            this.nanos = nanos;
+            this.timestamp = timestamp;
+            this.plan = plan;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return When the statement finished, in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public List<String> getPlan() {
+            return plan;
+        }
+
+        public Access getAccess() {
+            return Access.of(plan);
+        }
+    }
+
+    /**
+     * Runs one statement timed by time.
+     */
+    @FunctionalInterface
+    public interface TimedCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Produces the EXPLAIN QUERY PLAN output of a statement.
+     */
+    @FunctionalInterface
+    public interface PlanSource {
+        List<String> explain(String sql) throws Exception;
+    }
+}
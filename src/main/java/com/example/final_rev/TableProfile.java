@@ -0,0 +1,57 @@
+package com.example.final_rev;
+
+import java.util.List;
+
+/**
+ * The column statistics of a whole table computed by TableProfiler.
+ */
+public class TableProfile {
+    private final String tableName;
+    private final long rowCount;
+    private final List<ColumnProfile> columns;
+    private final long dataVersion;
+    private final int partitions;
+    private final long elapsedNanos;
+
+    /**
+     * tableName    The profiled table.
+     * rowCount     The number of rows scanned.
+     * columns      The statistics of every column, in table order.
+     * dataVersion  The Database.getDataVersion the table was scanned at.
+     * partitions   The number of rowid ranges the scan was split into.
+     * elapsedNanos How long the scan took.
+     */
+    public TableProfile(String tableName, long rowCount, List<ColumnProfile> columns, long dataVersion,
+                        int partitions, long elapsedNanos) {
+        this.tableName = tableName;
+        this.rowCount = rowCount;
+        this.columns = List.copyOf(columns);
+        this.dataVersion = dataVersion;
+        this.partitions = partitions;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return columns;
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
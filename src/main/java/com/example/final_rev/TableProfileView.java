@@ -0,0 +1,163 @@
+package com.example.final_rev;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * A window showing the TableProfiler statistics of one table: a row per column with its
+ * null fraction, distinct estimate and value range, and for the selected column its most
+ * frequent values and length histogram.
+ */
+public class TableProfileView {
+    static final int MAX_VALUE_CHARS = 60;
+
+    private final AsyncDatabase database;
+    private final String tableName;
+    private final TableView<ColumnProfile> columns = new TableView<>();
+    private final TextArea details = new TextArea();
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label statusLabel = new Label();
+    private CompletableFuture<TableProfile> running;
+
+    /**
+     * database  The database the table belongs to.
+     * tableName The table to profile.
+     */
+    public TableProfileView(AsyncDatabase database, String tableName) {
+        this.database = database;
+        this.tableName = tableName;
+    }
+
+    public void show() {
+        Stage stage = new Stage();
+        stage.setTitle("Profile of " + tableName);
+
+        columns.getColumns().add(textColumn("Column", 150, ColumnProfile::getColumnName));
+        columns.getColumns().add(textColumn("Nulls", 70, column -> String.format("%.1f%%", column.getNullFraction() * 100)));
+        columns.getColumns().add(textColumn("Distinct ~", 90, column -> Long.toString(column.getDistinctEstimate())));
+        columns.getColumns().add(textColumn("Min", 160, column -> formatValue(column.getMin())));
+        columns.getColumns().add(textColumn("Max", 160, column -> formatValue(column.getMax())));
+        columns.setPlaceholder(new Label("Not profiled yet"));
+        columns.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, column) -> showDetails(column));
+        details.setEditable(false);
+        details.setPrefRowCount(12);
+
+        Button refreshButton = new Button("Profile");
+        refreshButton.setOnAction(event -> profile());
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(event -> {
+            if (running != null) {
+                running.cancel(true);
+                database.getDatabase().getTableProfiler().cancel();
+            }
+        });
+        HBox toolBar = new HBox(10, refreshButton, cancelButton, progressBar, statusLabel);
+        toolBar.setAlignment(Pos.CENTER_LEFT);
+
+        SplitPane split = new SplitPane(columns, details);
+        split.setOrientation(Orientation.VERTICAL);
+        split.setDividerPositions(0.6);
+        VBox layout = new VBox(10, toolBar, split);
+        layout.setPadding(new Insets(10));
+        VBox.setVgrow(split, Priority.ALWAYS);
+
+        stage.setScene(new Scene(layout, 700, 550));
+        stage.setOnHidden(event -> {
+            if (running != null) {
+                running.cancel(true);
+                database.getDatabase().getTableProfiler().cancel();
+            }
+        });
+        stage.show();
+        profile();
+    }
+
+    private void profile() {
+        if (running != null) {
+            return;
+        }
+        progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        statusLabel.setText("Profiling...");
+        CompletableFuture<TableProfile> profile = database.read(db -> db.getTableProfiler().profile(tableName,
+                (rangesDone, ranges) -> Platform.runLater(() -> progressBar.setProgress((double) rangesDone / ranges))));
+        running = profile;
+        profile.whenComplete((result, error) -> {
+            running = null;
+            progressBar.setProgress(error == null ? 1 : 0);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                statusLabel.setText("Cancelled");
+                return;
+            }
+            if (cause != null) {
+                statusLabel.setText("Profiling failed: " + cause.getMessage());
+                return;
+            }
+            columns.getItems().setAll(result.getColumns());
+            statusLabel.setText(String.format("%d rows, %d ranges in %.0f ms", result.getRowCount(), result.getPartitions(),
+                    result.getElapsedNanos() / 1e6));
+        });
+    }
+
+    private void showDetails(ColumnProfile column) {
+        if (column == null) {
+            details.clear();
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(column.getColumnName()).append(": ").append(column.getRows()).append(" rows, ")
+                .append(column.getNulls()).append(" NULL, about ").append(column.getDistinctEstimate()).append(" distinct\n\n");
+        text.append("Most frequent values\n");
+        for (Map.Entry<Object, Long> top : column.getTopValues().entrySet()) {
+            text.append(String.format("  %10d  %s%n", top.getValue(), formatValue(top.getKey())));
+        }
+        text.append("\nLengths of text and blob values\n");
+        long[] lengths = column.getLengthHistogram();
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) {
+                text.append(String.format("  %15s  %d%n", ColumnProfile.lengthBucketLabel(i), lengths[i]));
+            }
+        }
+        details.setText(text.toString());
+    }
+
+    private static String formatValue(Object value) {
+        if (value instanceof byte[] bytes) {
+            return "<blob, " + bytes.length + " bytes>";
+        }
+        if (value instanceof ByteBuffer buffer) {
+            return "<blob, " + buffer.remaining() + " bytes>";
+        }
+        String text = RowView.format(value);
+        return text.length() > MAX_VALUE_CHARS ? text.substring(0, MAX_VALUE_CHARS) + "..." : text;
+    }
+
+    private static <T> TableColumn<T, String> textColumn(String title, double width, Function<T, String> value) {
+        TableColumn<T, String> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cellData -> new ReadOnlyStringWrapper(value.apply(cellData.getValue())));
+        return column;
+    }
+}
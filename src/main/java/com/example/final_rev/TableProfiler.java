@@ -0,0 +1,284 @@
+package com.example.final_rev;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the column statistics of a whole table, see ColumnProfile.
+ *
+ * The table is split into rowid ranges that are scanned in parallel, one thread and one
+ * read-only connection per reader connection of the settings. The connections are opened
+ * for the job outside the ConnectionPool, so a profile never competes with the table browser
+ * for its readers. Every thread accumulates the ranges it scanned into its own statistics,
+ * which are merged when all ranges are done. Tables without a rowid are scanned in one piece.
+ * Columns whose top value counters were decremented are then read once more, grouped by the
+ * candidate values only, so the reported counts are exact.
+ *
+ * Profiles are cached per table together with the Database.getDataVersion they were
+ * computed at, and recomputed only after something was committed to the database.
+ */
+public class TableProfiler {
+    static final int RANGES_PER_THREAD = 4;
+    // Smaller ranges cost more in statement setup than they gain in balance
+    static final long MIN_RANGE_ROWIDS = 10_000;
+
+    private final Database database;
+    private final Map<String, TableProfile> cache = new ConcurrentHashMap<>();
+    private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
+    // Bumped by cancel, so workers of earlier jobs stop between ranges
+    private final AtomicLong cancelGeneration = new AtomicLong();
+
+    /**
+     * database The database whose tables are profiled.
+     */
+    public TableProfiler(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the profile of a table, from the cache if nothing was committed since it was computed.
+     * Blocks until the scan is done.
+     *
+     * tableName The table to profile.
+     * progress  Told about every finished range, may be null. Called on the scanning threads.
+     * @return The profile.
+     */
+    public TableProfile profile(String tableName, Progress progress) throws SQLException {
+        long dataVersion = database.getDataVersion();
+        TableProfile cached = cache.get(tableName);
+        if (cached != null && cached.getDataVersion() == dataVersion) {
+            return cached;
+        }
+
+        List<String> columnNames = database.getColumns(tableName);
+        if (columnNames.isEmpty()) {
+            throw new SQLException("No such table: " + tableName);
+        }
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (int i = 0; i < columnNames.size(); i++) {
+            select.append(i == 0 ? "" : ", ").append(Database.quoteIdentifier(columnNames.get(i)));
+        }
+        select.append(" FROM ").append(Database.quoteIdentifier(tableName));
+
+        long startTime = System.nanoTime();
+        List<long[]> ranges = "rowid".equals(database.getRowKeyColumn(tableName)) ? splitRowids(tableName) : null;
+        String sql = ranges == null ? select + ";" : select + " WHERE rowid BETWEEN ? AND ?;";
+        int rangeCount = ranges == null ? 1 : ranges.size();
+        int threads = Math.min(rangeCount, database.getSettings().getReaderConnections());
+
+        long generation = cancelGeneration.get();
+        Set<Statement> jobStatements = ConcurrentHashMap.newKeySet();
+        AtomicInteger nextRange = new AtomicInteger();
+        AtomicInteger doneRanges = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "table-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<ColumnProfile[]>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    ColumnProfile[] columns = new ColumnProfile[columnNames.size()];
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i] = new ColumnProfile(columnNames.get(i));
+                    }
+                    try (Connection connection = database.getConnectionPool().openReader();
+                         PreparedStatement statement = connection.prepareStatement(sql)) {
+                        runningStatements.add(statement);
+                        jobStatements.add(statement);
+                        try {
+                            for (int range = nextRange.getAndIncrement(); range < rangeCount; range = nextRange.getAndIncrement()) {
+                                if (cancelGeneration.get() != generation || Thread.currentThread().isInterrupted()) {
+                                    throw new SQLException("Profiling of " + tableName + " was cancelled");
+                                }
+                                if (ranges != null) {
+                                    statement.setLong(1, ranges.get(range)[0]);
+                                    statement.setLong(2, ranges.get(range)[1]);
+                                }
+                                scan(statement, sql, columns);
+                                int done = doneRanges.incrementAndGet();
+                                if (progress != null) {
+                                    progress.update(done, rangeCount);
+                                }
+                            }
+                        } finally {
+                            runningStatements.remove(statement);
+                            jobStatements.remove(statement);
+                        }
+                    }
+                    return columns;
+                }));
+            }
+
+            ColumnProfile[] merged = null;
+            for (Future<ColumnProfile[]> worker : workers) {
+                ColumnProfile[] columns = worker.get();
+                if (merged == null) {
+                    merged = columns;
+                } else {
+                    for (int i = 0; i < merged.length; i++) {
+                        merged[i].merge(columns[i]);
+                    }
+                }
+            }
+            recountTopValues(tableName, merged, generation, jobStatements);
+
+            TableProfile profile = new TableProfile(tableName, merged[0].getRows(), List.of(merged), dataVersion,
+                    rangeCount, System.nanoTime() - startTime);
+            // Ranges read on different connections only form one snapshot if nothing was committed meanwhile
+            if (database.getDataVersion() == dataVersion) {
+                cache.put(tableName, profile);
+            }
+            return profile;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("Profiling of " + tableName + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Profiling of " + tableName + " was interrupted", e);
+        } finally {
+            // After a failure the remaining workers stop at their next range, or right away through their statement
+            executor.shutdownNow();
+            cancelAll(jobStatements);
+        }
+    }
+
+    private void scan(PreparedStatement statement, String sql, ColumnProfile[] columns) throws SQLException {
+        database.getProfiler().time(sql, () -> {
+            long rows = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        columns[i].add(rs.getObject(i + 1));
+                    }
+                    rows++;
+                }
+            } finally {
+                database.getMetrics().increment(MetricsRegistry.ROWS_READ, rows);
+            }
+            return rows;
+        });
+    }
+
+    // Replaces approximate top value counts by exact ones, one grouped read per column that has candidates
+    private void recountTopValues(String tableName, ColumnProfile[] columns, long generation,
+                                  Set<Statement> jobStatements) throws SQLException {
+        try (Connection connection = database.getConnectionPool().openReader()) {
+            for (ColumnProfile column : columns) {
+                List<Object> candidates = column.isTopApproximate() ? column.getTopCandidates() : List.of();
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                if (cancelGeneration.get() != generation || Thread.currentThread().isInterrupted()) {
+                    throw new SQLException("Profiling of " + tableName + " was cancelled");
+                }
+                String quotedColumn = Database.quoteIdentifier(column.getColumnName());
+                String sql = "SELECT " + quotedColumn + ", count(*) FROM " + Database.quoteIdentifier(tableName)
+                        + " WHERE " + quotedColumn + " IN (" + "?, ".repeat(candidates.size() - 1) + "?) GROUP BY 1;";
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    runningStatements.add(statement);
+                    jobStatements.add(statement);
+                    try {
+                        for (int i = 0; i < candidates.size(); i++) {
+                            statement.setObject(i + 1, candidates.get(i));
+                        }
+                        Map<Object, Long> counts = new HashMap<>();
+                        database.getProfiler().time(sql, () -> {
+                            try (ResultSet rs = statement.executeQuery()) {
+                                while (rs.next()) {
+                                    counts.put(rs.getObject(1), rs.getLong(2));
+                                }
+                            }
+                            return counts;
+                        });
+                        column.setTopCounts(counts);
+                    } finally {
+                        runningStatements.remove(statement);
+                        jobStatements.remove(statement);
+                    }
+                }
+            }
+        }
+    }
+
+    // Equal rowid spans, several per thread so a thread that drew a sparse range can take another
+    private List<long[]> splitRowids(String tableName) throws SQLException {
+        long min;
+        long max;
+        String sql = "SELECT min(rowid), max(rowid) FROM " + Database.quoteIdentifier(tableName) + ";";
+        try (Connection connection = database.getConnectionPool().openReader();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+        }
+        // The span overflows for rowids spread over the whole range of a long
+        long span = max - min + 1 > 0 ? max - min + 1 : Long.MAX_VALUE;
+        int threads = database.getSettings().getReaderConnections();
+        long count = Math.max(1, Math.min((long) threads * RANGES_PER_THREAD, span / MIN_RANGE_ROWIDS));
+        long size = Math.max(1, (span + count - 1) / count);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = min; from <= max && from >= min; from += size) {
+            ranges.add(new long[] {from, Math.min(max, from + size - 1)});
+        }
+        if (ranges.isEmpty()) {
+            ranges.add(new long[] {min, max});
+        }
+        return ranges;
+    }
+
+    /**
+     * Stops every running profile. The profile calls fail with an SQLException.
+     */
+    public void cancel() {
+        cancelGeneration.incrementAndGet();
+        cancelAll(runningStatements);
+    }
+
+    private static void cancelAll(Set<Statement> statements) {
+        for (Statement statement : statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forgets every cached profile.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Receives progress updates from a running profile.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        /**
+         * rangesDone The number of rowid ranges scanned so far.
+         * ranges     The number of rowid ranges of the table.
+         */
+        void update(int rangesDone, int ranges);
+    }
+}
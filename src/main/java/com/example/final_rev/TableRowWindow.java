@@ -0,0 +1,390 @@
+package com.example.final_rev;
+
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.collections.ObservableListBase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A windowed, read-only list of table rows used as the items of the TableView.
+ *
+ * Only the pages around the rows the TableView asks for are kept in memory. Pages
+ * are read with keyset pagination on the table's rowid (or primary key), pages
+ * outside the window are evicted, and the total row count is computed in the
+ * background so opening a large table costs the same as opening a small one.
+ * Tables without a key column, like WITHOUT ROWID tables with a composite primary
+ * key, are paged with OFFSET from the start of the table.
+ *
+ * All pages are loaded through the AsyncDatabase. A row whose page has not arrived
+ * yet is returned as an empty placeholder and replaced once the page is loaded.
+ * The list must only be used on the JavaFX Application Thread.
+ *
+ * A RowQuery filters and sorts the rows inside SQLite. Pages are then read with keyset
+ * pagination on the (sort value, key) pair, so scrolling stays cheap on any table size.
+ *
+ * Rows edited in an EditSession are kept in a pending overlay keyed by row key, which
+ * takes precedence over the loaded pages until it is committed or discarded.
+ */
+public class TableRowWindow extends ObservableListBase<RowView> {
+    static final int PAGE_SIZE = 200;
+    static final int MAX_PAGES = 8;
+    static final int PREFETCH_MARGIN = 50;
+
+    private final AsyncDatabase database;
+    private final String tableName;
+    private final String keyColumn;
+    private final RowQuery query;
+    private final int columnCount;
+    // Shown for rows whose page is still loading
+    private final RowView placeholder;
+
+    // Loaded pages in access order, the eldest page is evicted once the window is full
+    private final Map<Integer, RowPage> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, RowPage> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    // Position of the last row before each page whose start is known, page 0 starts before everything
+    private final TreeMap<Integer, RowPage.Position> pageStartKeys = new TreeMap<>();
+    private final Set<Integer> pendingPages = new HashSet<>();
+    private final Map<Object, RowView> pendingRows = new HashMap<>();
+    private final ReadOnlyLongWrapper totalRows = new ReadOnlyLongWrapper(this, "totalRows", -1);
+    private int size;
+    // Bumped whenever the loaded pages may be stale, so page loads already in flight are dropped
+    private int generation;
+
+    private TableRowWindow(AsyncDatabase database, String tableName, String keyColumn, RowQuery query, int columnCount, RowPage firstPage) {
+        this.database = database;
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.query = query;
+        this.columnCount = columnCount;
+        this.placeholder = new ArrayRow(columnCount);
+        pageStartKeys.put(0, null);
+        storePage(0, firstPage);
+
+        size = firstPage.size();
+        if (firstPage.size() < PAGE_SIZE) {
+            totalRows.set(size);
+        } else {
+            countRows();
+        }
+    }
+
+    /**
+     * Opens a window over the given table, loading its first page in the background.
+     *
+     * database    The database to read from.
+     * tableName   The name of the table to show.
+     * columnCount The number of columns of the table.
+     * @return A future completed on the JavaFX Application Thread with the window.
+     */
+    public static CompletableFuture<TableRowWindow> open(AsyncDatabase database, String tableName, int columnCount) {
+        return open(database, tableName, columnCount, null);
+    }
+
+    /**
+     * Opens a window over the rows of a table matching a query, loading its first page in the background.
+     *
+     * database    The database to read from.
+     * tableName   The name of the table to show.
+     * columnCount The number of columns of the table.
+     * query       The filters and sort order, or null to show every row in key order.
+     * @return A future completed on the JavaFX Application Thread with the window.
+     */
+    public static CompletableFuture<TableRowWindow> open(AsyncDatabase database, String tableName, int columnCount, RowQuery query) {
+        return database.read(db -> db.getRowKeyColumn(tableName))
+                .thenCompose(keyColumn -> database.getRowPage(tableName, keyColumn, query, null, 0, PAGE_SIZE)
+                        .thenApply(firstPage -> new TableRowWindow(database, tableName, keyColumn, query, columnCount, firstPage)));
+    }
+
+    /**
+     * @return The total number of rows in the table, or -1 while it is still being counted.
+     */
+    public ReadOnlyLongProperty totalRowsProperty() {
+        return totalRows.getReadOnlyProperty();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The query the rows were read with, or null if they are in key order.
+     */
+    public RowQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return True if the rows are in plain key order, so a row with a new largest key belongs at the end.
+     */
+    public boolean isKeyOrdered() {
+        return query == null || query.isEmpty();
+    }
+
+    /**
+     * @return The column identifying rows, see Database.getRowKeyColumn, or null if rows cannot be identified.
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @return The key of the row at the given index, or null if its page is not loaded.
+     */
+    public Object getRowKey(int index) {
+        RowPage page = pages.get(index / PAGE_SIZE);
+        int offset = index % PAGE_SIZE;
+        if (page == null || offset >= page.size()) {
+            return null;
+        }
+        return page.getKey(offset);
+    }
+
+    /**
+     * Finds a row by key among the loaded pages, so the cost does not depend on the table size.
+     *
+     * key The key of the row.
+     * @return The index of the row, or -1 if its page is not loaded.
+     */
+    public int indexOfLoadedKey(Object key) {
+        for (Map.Entry<Integer, RowPage> entry : pages.entrySet()) {
+            RowPage page = entry.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (key.equals(page.getKey(i))) {
+                    int index = entry.getKey() * PAGE_SIZE + i;
+                    return index < size ? index : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Shows an edited row in place of the loaded one until the edit is committed or discarded.
+     *
+     * index The index of the row, its page must be loaded.
+     * row   The edited column values.
+     */
+    public void setPendingRow(int index, RowView row) {
+        Object key = getRowKey(index);
+        if (key == null) {
+            return;
+        }
+        pendingRows.put(key, row);
+        beginChange();
+        nextUpdate(index);
+        endChange();
+    }
+
+    /**
+     * Replaces a row after it was updated in the database, if its page is loaded.
+     * Only the loaded pages are searched, so the cost does not depend on the table size.
+     *
+     * key The key of the row.
+     * row The new column values.
+     * @return True if the row was loaded and has been replaced.
+     */
+    public boolean updateRow(Object key, RowView row) {
+        for (Map.Entry<Integer, RowPage> entry : pages.entrySet()) {
+            RowPage page = entry.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (key.equals(page.getKey(i))) {
+                    ownedPage(entry).setRow(i, row);
+                    int index = entry.getKey() * PAGE_SIZE + i;
+                    if (index < size) {
+                        beginChange();
+                        nextUpdate(index);
+                        endChange();
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a row inserted into the database after the last row, without reloading.
+     * The caller must have checked that no row sorts after the new key.
+     *
+     * key The key of the new row.
+     * row The column values of the new row.
+     * @return False if the rows are filtered or sorted or the row count is not known yet, the caller has to reload instead.
+     */
+    public boolean appendRow(Object key, RowView row) {
+        if (!isKeyOrdered() || totalRows.get() < 0 || size == Integer.MAX_VALUE) {
+            return false;
+        }
+        int index = size;
+        int pageIndex = index / PAGE_SIZE;
+        RowPage page = pages.get(pageIndex);
+        if (page != null && page.size() == index % PAGE_SIZE) {
+            if (page.isShared()) {
+                page = page.copy();
+                pages.put(pageIndex, page);
+            }
+            page.add(key, row);
+            if (page.size() == PAGE_SIZE) {
+                pageStartKeys.put(pageIndex + 1, page.getLastPosition());
+            }
+        }
+        size++;
+        totalRows.set(totalRows.get() + 1);
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+        return true;
+    }
+
+    /**
+     * Drops all pending rows and shows the loaded values again.
+     */
+    public void clearPendingRows() {
+        pendingRows.clear();
+        fireLoadedRowsUpdated();
+    }
+
+    /**
+     * Makes the pending rows the loaded values after they have been written to the database.
+     */
+    public void commitPendingRows() {
+        for (Map.Entry<Integer, RowPage> entry : pages.entrySet()) {
+            RowPage page = entry.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                RowView row = pendingRows.get(page.getKey(i));
+                if (row != null) {
+                    ownedPage(entry).setRow(i, row);
+                }
+            }
+        }
+        pendingRows.clear();
+        // Pages read before the commit would bring back the old values
+        generation++;
+        pendingPages.clear();
+    }
+
+    // Pages from the RowCache are shared with other readers, so the window changes a copy of its own
+    private static RowPage ownedPage(Map.Entry<Integer, RowPage> entry) {
+        if (entry.getValue().isShared()) {
+            entry.setValue(entry.getValue().copy());
+        }
+        return entry.getValue();
+    }
+
+    @Override
+    public RowView get(int index) {
+        int pageIndex = index / PAGE_SIZE;
+        int offset = index % PAGE_SIZE;
+        RowPage page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return placeholder;
+        }
+
+        if (offset >= PAGE_SIZE - PREFETCH_MARGIN && page.size() == PAGE_SIZE) {
+            requestPage(pageIndex + 1);
+        } else if (offset < PREFETCH_MARGIN && pageIndex > 0) {
+            requestPage(pageIndex - 1);
+        }
+
+        if (offset < page.size()) {
+            if (!pendingRows.isEmpty()) {
+                RowView pending = pendingRows.get(page.getKey(offset));
+                if (pending != null) {
+                    return pending;
+                }
+            }
+            return page.getRow(offset);
+        }
+        return placeholder;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void storePage(int pageIndex, RowPage page) {
+        pages.put(pageIndex, page);
+        if (page.size() == PAGE_SIZE && page.getLastKey() != null) {
+            pageStartKeys.put(pageIndex + 1, page.getLastPosition());
+        }
+    }
+
+    // Load a page in the background, starting from the closest page whose start key is known
+    private void requestPage(int pageIndex) {
+        if (pages.containsKey(pageIndex) || !pendingPages.add(pageIndex)) {
+            return;
+        }
+
+        Map.Entry<Integer, RowPage.Position> start = pageStartKeys.floorEntry(pageIndex);
+        long offset = (long) (pageIndex - start.getKey()) * PAGE_SIZE;
+        int requestGeneration = generation;
+        database.getRowPage(tableName, keyColumn, query, start.getValue(), offset, PAGE_SIZE)
+                .whenComplete((page, error) -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    pendingPages.remove(pageIndex);
+                    if (error != null || pages.containsKey(pageIndex)) {
+                        return;
+                    }
+                    storePage(pageIndex, page);
+                    fireRowsLoaded(pageIndex, page.size());
+                });
+    }
+
+    // Tell the TableView that the placeholders of a freshly loaded page have been replaced
+    private void fireRowsLoaded(int pageIndex, int rowCount) {
+        int from = pageIndex * PAGE_SIZE;
+        int to = Math.min(from + rowCount, size);
+        if (from >= to) {
+            return;
+        }
+        beginChange();
+        for (int i = from; i < to; i++) {
+            nextUpdate(i);
+        }
+        endChange();
+    }
+
+    private void fireLoadedRowsUpdated() {
+        beginChange();
+        for (Map.Entry<Integer, RowPage> page : pages.entrySet()) {
+            int from = page.getKey() * PAGE_SIZE;
+            int to = Math.min(from + page.getValue().size(), size);
+            for (int i = from; i < to; i++) {
+                nextUpdate(i);
+            }
+        }
+        endChange();
+    }
+
+    private void countRows() {
+        database.countRows(tableName, query).thenAccept(count -> {
+            if (count < 0) {
+                return;
+            }
+            totalRows.set(count);
+            int newSize = (int) Math.min(count, Integer.MAX_VALUE);
+            if (newSize > size) {
+                int oldSize = size;
+                size = newSize;
+                beginChange();
+                nextAdd(oldSize, newSize);
+                endChange();
+            }
+        });
+    }
+}
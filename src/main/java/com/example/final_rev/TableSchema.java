@@ -0,0 +1,180 @@
+package com.example.final_rev;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cached metadata of one table: its columns with their declared types and
+ * constraints, its primary key columns and its indexes.
+ */
+public class TableSchema {
+    private final String tableName;
+    private final List<Column> columns;
+    private final List<Index> indexes;
+    private final List<String> columnNames;
+    private final List<String> primaryKeyColumns;
+
+    public TableSchema(String tableName, List<Column> columns, List<Index> indexes) {
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.indexes = Collections.unmodifiableList(new ArrayList<>(indexes));
+
+        List<String> names = new ArrayList<>();
+        List<Column> keyColumns = new ArrayList<>();
+        for (Column column : columns) {
+            names.add(column.getName());
+            if (column.getPrimaryKeyPosition() > 0) {
+                keyColumns.add(column);
+            }
+        }
+        keyColumns.sort(Comparator.comparingInt(Column::getPrimaryKeyPosition));
+
+        List<String> keyNames = new ArrayList<>();
+        for (Column column : keyColumns) {
+            keyNames.add(column.getName());
+        }
+        this.columnNames = Collections.unmodifiableList(names);
+        this.primaryKeyColumns = Collections.unmodifiableList(keyNames);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return The primary key column names in key order.
+     */
+    public List<String> getPrimaryKeyColumns() {
+        return primaryKeyColumns;
+    }
+
+    public List<Index> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * Looks up a column by name, ignoring case like SQLite does.
+     *
+     * columnName The name of the column.
+     * @return The column, or null if the table has no such column.
+     */
+    public Column getColumn(String columnName) {
+        for (Column column : columns) {
+            if (column.getName().equalsIgnoreCase(columnName)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether SQLite can use an index to search or sort on the given column,
+     * either because it is the first column of an index or the rowid itself.
+     *
+     * columnName The name of the column.
+     * @return True if the column leads an index.
+     */
+    public boolean isIndexed(String columnName) {
+        if (columnName.equalsIgnoreCase("rowid")) {
+            return true;
+        }
+        Column column = getColumn(columnName);
+        if (column != null && column.getPrimaryKeyPosition() == 1 && primaryKeyColumns.size() == 1
+                && "INTEGER".equalsIgnoreCase(column.getDeclaredType())) {
+            return true; // INTEGER PRIMARY KEY is an alias for the rowid
+        }
+        for (Index index : indexes) {
+            if (!index.getColumnNames().isEmpty() && index.getColumnNames().get(0).equalsIgnoreCase(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A column as reported by PRAGMA table_info.
+     */
+    public static class Column {
+        private final String name;
+        private final String declaredType;
+        private final boolean notNull;
+        private final String defaultValue;
+        private final int primaryKeyPosition;
+
+        public Column(String name, String declaredType, boolean notNull, String defaultValue, int primaryKeyPosition) {
+            this.name = name;
+            this.declaredType = declaredType;
+            this.notNull = notNull;
+            this.defaultValue = defaultValue;
+            this.primaryKeyPosition = primaryKeyPosition;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDeclaredType() {
+            return declaredType;
+        }
+
+        public boolean isNotNull() {
+            return notNull;
+        }
+
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+
+        /**
+         * @return True if the declared type gives the column TEXT affinity under SQLite's affinity rules.
+         */
+        public boolean hasTextAffinity() {
+            String type = declaredType == null ? "" : declaredType.toUpperCase();
+            return !type.contains("INT") && (type.contains("CHAR") || type.contains("CLOB") || type.contains("TEXT"));
+        }
+
+        /**
+         * @return The 1-based position of the column in the primary key, or 0 if it is not part of it.
+         */
+        public int getPrimaryKeyPosition() {
+            return primaryKeyPosition;
+        }
+    }
+
+    /**
+     * An index as reported by PRAGMA index_list and PRAGMA index_info.
+     */
+    public static class Index {
+        private final String name;
+        private final boolean unique;
+        private final List<String> columnNames;
+
+        public Index(String name, boolean unique, List<String> columnNames) {
+            this.name = name;
+            this.unique = unique;
+            this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+    }
+}
@@ -1,174 +1,980 @@
 package com.example.final_rev;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Scene;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
 
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 
 public class UI {
+    // Cells keep the typed value and only format it when they are rendered, edited text is passed on as is
+    private static final StringConverter<Object> CELL_TEXT = new StringConverter<>() {
+        @Override
+        public String toString(Object value) {
+            return RowView.format(value);
+        }
+
+        @Override
+        public Object fromString(String text) {
+            return text;
+        }
+    };
+
     private Stage primaryStage;
-    private Database database;
+    private AsyncDatabase database;
 
-    private Main main;
     private AddRow addRow;
     private EditRow editRow;
-    private TableView<String[]> tableView;
+    private TableView<RowView> tableView;
+    private Label rowCountLabel;
+    private Label statusLabel;
     private String selectedTableName;
+    private CompletableFuture<?> tableLoad;
+    private TableRowWindow rowWindow;
+    private List<String> columnNames;
+    private ToggleButton editSessionToggle;
+    private HBox editSessionBar;
+    private Label pendingChangesLabel;
+    private EditSession editSession;
+    private ComboBox<String> filterColumn;
+    private ComboBox<FilterOperator> filterOperator;
+    private TextField filterValue;
+    private Button createIndexButton;
+    private String sortColumn;
+    private boolean sortDescending;
+    private Label metricsLabel;
+    private ComboBox<String> tableDropdown;
+    private TabPane tabPane;
+    private Tab tablesTab;
+    // Row to show once the columns of the selected table are loaded, or null
+    private Long pendingRowid;
+    // Large file mode: the running cache warm-up and the page cache counters when the UI opened
+    private CompletableFuture<Long> cacheWarmUp;
+    private PageCacheStats pageCacheBaseline;
+    // Start of the table refresh whose rows have not been laid out yet, or -1
+    private long pendingRefreshStart = -1;
+    private Timeline metricsRefresh;
 
-    // Constructor for UI class
-    public UI(Stage primaryStage, Database database, Main main) {
+    // Constructor for UI class, the stage owns the dialogs of this UI
+    public UI(Stage primaryStage, AsyncDatabase database) {
         this.primaryStage = primaryStage;
         this.database = database;
-        this.main = main;
     }
 
-    // Show the main user interface
-    public void showMainUI() throws SQLException {
-        primaryStage.setTitle("Java Final");
+    // Build the user interface of one database, shown in its own workspace tab
+    public Node createContent() {
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(20));
         layout.setAlignment(Pos.CENTER);
 
-        ComboBox<String> tableDropdown = new ComboBox<>();
+        tableDropdown = new ComboBox<>();
         tableDropdown.setPromptText("Select a Table");
-        tableDropdown.setOnAction(e -> {
-            try {
-                handleTableSelection(tableDropdown.getValue());
-            } catch (SQLException ex) {
-                throw new RuntimeException(ex);
-            }
-        });
+        tableDropdown.setOnAction(e -> handleTableSelection(tableDropdown.getValue()));
         layout.getChildren().add(tableDropdown);
 
+        // Filter bar, the filter runs inside SQLite as a parameterized WHERE clause
+        filterColumn = new ComboBox<>();
+        filterColumn.setPromptText("Column");
+        filterOperator = new ComboBox<>(FXCollections.observableArrayList(FilterOperator.values()));
+        filterOperator.setValue(FilterOperator.CONTAINS);
+        filterValue = new TextField();
+        filterValue.setPromptText("Value");
+        filterValue.setOnAction(event -> loadRows());
+        Button applyFilterButton = new Button("Filter");
+        applyFilterButton.setOnAction(event -> loadRows());
+        Button clearFilterButton = new Button("Clear");
+        clearFilterButton.setOnAction(event -> {
+            filterColumn.setValue(null);
+            filterValue.clear();
+            loadRows();
+        });
+        // Range operations on every row the filter matches, run in chunks with an undo journal
+        Button deleteMatchingButton = new Button("Delete matching");
+        deleteMatchingButton.setOnAction(event -> deleteMatchingRows());
+        Button updateMatchingButton = new Button("Update matching...");
+        updateMatchingButton.setOnAction(event -> updateMatchingRows());
+        HBox filterBar = new HBox(10, filterColumn, filterOperator, filterValue, applyFilterButton, clearFilterButton,
+                deleteMatchingButton, updateMatchingButton);
+        filterBar.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(filterValue, Priority.ALWAYS);
+        layout.getChildren().add(filterBar);
+
         tableView = new TableView<>();
+        tableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        // Sorting by a column header reloads the rows in that order from SQLite instead of sorting them in memory
+        tableView.setSortPolicy(view -> {
+            String newSortColumn = null;
+            boolean newSortDescending = false;
+            if (!view.getSortOrder().isEmpty()) {
+                TableColumn<RowView, ?> column = view.getSortOrder().get(0);
+                newSortColumn = column.getText();
+                newSortDescending = column.getSortType() == TableColumn.SortType.DESCENDING;
+            }
+            if (columnNames != null && (!Objects.equals(newSortColumn, sortColumn) || newSortDescending != sortDescending)) {
+                sortColumn = newSortColumn;
+                sortDescending = newSortDescending;
+                loadRows();
+            }
+            return true;
+        });
+        // Dim rows that are marked for deletion in the edit session
+        tableView.setRowFactory(view -> new TableRow<>() {
+            @Override
+            protected void updateItem(RowView item, boolean empty) {
+                super.updateItem(item, empty);
+                setOpacity(!empty && editSession != null && editSession.isDeleted(getIndex()) ? 0.4 : 1.0);
+            }
+        });
+        VBox.setVgrow(tableView, Priority.ALWAYS);
         layout.getChildren().add(tableView);
 
-        List<String> tables = database.getTables();
-        if (!tables.isEmpty()) {
-            selectedTableName = tables.get(0);
-            tableDropdown.setValue(selectedTableName);
-            tableDropdown.setItems(FXCollections.observableArrayList(tables));
-            showTableRows(selectedTableName);
-        }
+        // Edits made in an edit session are buffered until they are committed together
+        Button commitButton = new Button("Commit");
+        commitButton.setOnAction(event -> commitEditSession());
+        Button discardButton = new Button("Discard");
+        discardButton.setOnAction(event -> {
+            if (editSession != null) {
+                editSession.discard();
+                tableView.refresh();
+            }
+        });
+        Button deleteButton = new Button("Delete selected");
+        deleteButton.setOnAction(event -> deleteSelectedRows());
+        pendingChangesLabel = new Label();
+        editSessionBar = new HBox(10, deleteButton, commitButton, discardButton, pendingChangesLabel);
+        editSessionBar.setAlignment(Pos.CENTER_LEFT);
+        editSessionBar.managedProperty().bind(editSessionBar.visibleProperty());
+        editSessionBar.setVisible(false);
+        layout.getChildren().add(editSessionBar);
+
+        // Progress of background database calls, with a way to cancel slow ones
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setPrefSize(16, 16);
+        progressIndicator.visibleProperty().bind(database.runningCallsProperty().greaterThan(0));
+        Button cancelButton = new Button("Cancel");
+        cancelButton.visibleProperty().bind(progressIndicator.visibleProperty());
+        cancelButton.setOnAction(event -> database.cancelAll());
+
+        rowCountLabel = new Label();
+        statusLabel = new Label();
+        createIndexButton = new Button();
+        createIndexButton.managedProperty().bind(createIndexButton.visibleProperty());
+        createIndexButton.setVisible(false);
+        metricsLabel = new Label();
+        pageCacheBaseline = PageCacheStats.sample();
+        Region statusSpacer = new Region();
+        HBox.setHgrow(statusSpacer, Priority.ALWAYS);
+        HBox statusBar = new HBox(10, rowCountLabel, progressIndicator, cancelButton, statusLabel, createIndexButton,
+                statusSpacer, metricsLabel);
+        statusBar.setAlignment(Pos.CENTER_LEFT);
+        metricsRefresh = new Timeline(new KeyFrame(Duration.seconds(2), event -> showMetrics()));
+        metricsRefresh.setCycleCount(Timeline.INDEFINITE);
+        metricsRefresh.play();
+
+        database.getTables().thenAccept(tables -> {
+            if (!tables.isEmpty()) {
+                tableDropdown.setItems(FXCollections.observableArrayList(tables));
+                // Setting the value fires the drop-down action, which loads the table
+                tableDropdown.setValue(tables.get(0));
+            }
+        }).exceptionally(this::logError);
 
         Button addButton = new Button("Add");
         addButton.setOnAction(event -> {
-            AddRow addRowInstance = new AddRow(database, selectedTableName, main);
+            AddRow addRowInstance = new AddRow(database, selectedTableName, this);
+            addRowInstance.setEditSession(editSession);
             addRowInstance.show();
         });
 
-        layout.getChildren().add(0, addButton);
+        Button importButton = new Button("Import");
+        importButton.setOnAction(event -> importFile());
+
+        Button exportButton = new Button("Export");
+        exportButton.setOnAction(event -> exportTable());
+
+        Button profileButton = new Button("Profile");
+        profileButton.setOnAction(event -> {
+            if (selectedTableName != null) {
+                new TableProfileView(database, selectedTableName).show();
+            }
+        });
+
+        editSessionToggle = new ToggleButton("Edit session");
+        editSessionToggle.setOnAction(event -> {
+            if (editSessionToggle.isSelected()) {
+                startEditSession();
+            } else {
+                endEditSession();
+            }
+        });
+
+        Button deleteRowsButton = new Button("Delete");
+        deleteRowsButton.setOnAction(event -> deleteSelectedRows());
+
+        Button undoButton = new Button("Undo");
+        undoButton.setOnAction(event -> replayJournal(true));
+        Button redoButton = new Button("Redo");
+        redoButton.setOnAction(event -> replayJournal(false));
+
+        Button undoBulkButton = new Button("Undo bulk...");
+        undoBulkButton.setOnAction(event -> undoBulkOperation());
+
+        HBox toolBar = new HBox(10, addButton, deleteRowsButton, importButton, exportButton, profileButton, undoButton,
+                redoButton, undoBulkButton, editSessionToggle);
+        toolBar.setAlignment(Pos.CENTER);
+        layout.getChildren().add(0, toolBar);
+
+        // The table browser, the query console, search and the profiler share the status bar
+        tablesTab = new Tab("Tables", layout);
+        tablesTab.setClosable(false);
+        layout.setPadding(new Insets(10, 0, 0, 0));
+        Tab queryTab = new Tab("Query", new QueryConsole(database).createContent());
+        queryTab.setClosable(false);
+        ProfilerPanel profilerPanel = new ProfilerPanel(database);
+        Tab profilerTab = new Tab("Statements", profilerPanel.createContent());
+        profilerTab.setClosable(false);
+        profilerTab.selectedProperty().addListener((observable, oldValue, selected) -> profilerPanel.setShown(selected));
+        Tab searchTab = new Tab("Search", new SearchPanel(database, this::showRow).createContent());
+        searchTab.setClosable(false);
+        tabPane = new TabPane(tablesTab, queryTab, searchTab, profilerTab);
+        VBox.setVgrow(tabPane, Priority.ALWAYS);
+
+        VBox root = new VBox(10, tabPane, statusBar);
+        root.setPadding(new Insets(20));
+        return root;
+    }
+
+    // Called after every layout pass of the scene, a table refresh is complete once its rows have been laid out
+    public void layoutDone() {
+        if (pendingRefreshStart >= 0) {
+            database.getDatabase().getMetrics().recordTime(MetricsRegistry.UI_REFRESH, System.nanoTime() - pendingRefreshStart);
+            pendingRefreshStart = -1;
+        }
+    }
+
+    // Stop the background work of this UI once its tab is closed
+    public void dispose() {
+        if (metricsRefresh != null) {
+            metricsRefresh.stop();
+        }
+        if (cacheWarmUp != null) {
+            cacheWarmUp.cancel(true);
+            cacheWarmUp = null;
+        }
+    }
 
-        Scene scene = new Scene(layout, 800, 600);
-        primaryStage.setScene(scene);
-        primaryStage.show();
+    // Rows read and written, latency percentiles and heap use, so slowness can be backed by numbers
+    private void showMetrics() {
+        MetricsRegistry metrics = database.getDatabase().getMetrics();
+        RowCache rowCache = database.getDatabase().getRowCache();
+        String text = String.format("Read %,d rows | Wrote %,d | Query p95 %.1f ms | Refresh p95 %.0f ms | Row cache %d / %d MB | Heap %d / %d MB",
+                metrics.getRowsRead(), metrics.getRowsWritten(), metrics.getQueryLatencyP95Millis(),
+                metrics.getUiRefreshP95Millis(), rowCache.getBytes() >> 20, rowCache.getMaxBytes() >> 20,
+                metrics.getHeapUsedBytes() >> 20, metrics.getHeapMaxBytes() >> 20);
+        PageCacheStats pageCache = PageCacheStats.sample();
+        if (database.getDatabase().getSettings().isLargeFileMode() && pageCache != null && pageCacheBaseline != null) {
+            PageCacheStats sinceOpen = pageCache.minus(pageCacheBaseline);
+            text += String.format(" | From disk %,d MB, %,d major faults, read cache hits %.0f%%",
+                    sinceOpen.getStorageBytes() >> 20, sinceOpen.getMajorFaults(), sinceOpen.getReadHitRatio() * 100);
+        }
+        metricsLabel.setText(text);
+    }
+
+    /**
+     * Shows a single row in the table browser, filtered by its rowid.
+     *
+     * tableName The table of the row.
+     * rowid     The rowid of the row.
+     */
+    public void showRow(String tableName, long rowid) {
+        tabPane.getSelectionModel().select(tablesTab);
+        pendingRowid = rowid;
+        if (tableName.equals(tableDropdown.getValue())) {
+            showTableRows(tableName);
+        } else {
+            // Setting the value fires the drop-down action, which loads the table
+            tableDropdown.setValue(tableName);
+        }
     }
 
     // Handle the selection of a table from the drop-down
-    private void handleTableSelection(String tableName) throws SQLException {
+    private void handleTableSelection(String tableName) {
         selectedTableName = tableName;
         showTableRows(selectedTableName);
     }
 
-    // Show the rows of the selected table in the TableView
-    private void showTableRows(String tableName) throws SQLException {
-        ResultSet tableRows = database.getTableRows(tableName);
-
-        try {
-            tableView.getColumns().clear();
-            tableView.getItems().clear();
-
-            if (tableRows != null) {
-                ResultSetMetaData metaData = tableRows.getMetaData();
-                int columnCount = metaData.getColumnCount();
-
-                for (int i = 1; i <= columnCount; i++) {
-                    TableColumn<String[], String> column = new TableColumn<>(metaData.getColumnName(i));
-                    final int columnIndex = i;
-                    column.setCellValueFactory(cellData -> {
-                        String[] row = cellData.getValue();
-                        if (row.length >= columnIndex) {
-                            return new SimpleStringProperty(row[columnIndex - 1]);
-                        }
-                        return new SimpleStringProperty("");
-                    });
-                    tableView.getColumns().add(column);
+    // Show the columns of the selected table in the TableView and load its rows
+    // The filter and sort order are reset when switching tables
+    private void showTableRows(String tableName) {
+        clearRows();
+        columnNames = null;
+        tableView.getSortOrder().clear();
+        tableView.getColumns().clear();
+        sortColumn = null;
+        sortDescending = false;
+        filterColumn.setValue(null);
+        filterColumn.getItems().clear();
+        filterValue.clear();
+
+        if (tableName == null) {
+            return;
+        }
+
+        warmCache(tableName);
+        CompletableFuture<List<String>> columnsLoad = database.getColumns(tableName);
+        tableLoad = columnsLoad;
+        columnsLoad.thenAccept(columnNames -> {
+            if (tableName.equals(selectedTableName)) {
+                showColumns(tableName, columnNames);
+                if (pendingRowid != null) {
+                    // Jump to a row picked elsewhere, rowid works as a column name in every rowid table
+                    filterColumn.setValue("rowid");
+                    filterOperator.setValue(FilterOperator.EQUALS);
+                    filterValue.setText(pendingRowid.toString());
+                    pendingRowid = null;
+                }
+                loadRows();
+            }
+        }).exceptionally(this::logError);
+    }
+
+    // In large file mode read the whole table once in the background, so scrolling and sorting hit memory
+    private void warmCache(String tableName) {
+        if (cacheWarmUp != null) {
+            cacheWarmUp.cancel(true);
+            cacheWarmUp = null;
+        }
+        if (!database.getDatabase().getSettings().isLargeFileMode()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        CompletableFuture<Long> warmUp = database.read(db -> db.warmTable(tableName));
+        cacheWarmUp = warmUp;
+        warmUp.thenAccept(rows -> {
+            if (cacheWarmUp == warmUp) {
+                cacheWarmUp = null;
+                statusLabel.setText(String.format("Cache warmed for %s: %,d rows in %.1f s", tableName, rows,
+                        (System.nanoTime() - startTime) / 1e9));
+            }
+        }).exceptionally(this::logError);
+    }
+
+    // Stop loading and showing the current rows
+    private void clearRows() {
+        if (tableLoad != null) {
+            tableLoad.cancel(true);
+        }
+        endEditSession();
+        rowWindow = null;
+        tableView.setItems(FXCollections.observableArrayList());
+        rowCountLabel.textProperty().unbind();
+        rowCountLabel.setText("");
+        createIndexButton.setVisible(false);
+    }
+
+    // Load the rows matching the filter bar and sort order
+    // Rows are paged in through a TableRowWindow, so only the visible part of the table is loaded
+    private void loadRows() {
+        loadRows(false);
+    }
+
+    // keepPosition shows the same rows scrolled to and selected as before, when the table is reloaded in place
+    private void loadRows(boolean keepPosition) {
+        if (columnNames == null) {
+            return;
+        }
+        String tableName = selectedTableName;
+        List<String> columns = columnNames;
+        RowQuery query = buildRowQuery();
+        int firstVisibleIndex = keepPosition ? getFirstVisibleIndex() : 0;
+        List<Integer> selectedIndexes = keepPosition ? new ArrayList<>(tableView.getSelectionModel().getSelectedIndices()) : List.of();
+        List<Object> selectedKeys = new ArrayList<>();
+        for (int index : selectedIndexes) {
+            Object key = rowWindow == null ? null : rowWindow.getRowKey(index);
+            if (key != null) {
+                selectedKeys.add(key);
+            }
+        }
+        clearRows();
+
+        long refreshStart = System.nanoTime();
+        CompletableFuture<TableRowWindow> windowLoad = TableRowWindow.open(database, tableName, columns.size(), query);
+        tableLoad = windowLoad;
+        windowLoad.thenAccept(window -> {
+            showRowWindow(window);
+            if (rowWindow == window) {
+                pendingRefreshStart = refreshStart;
+                if (keepPosition) {
+                    restorePosition(window, firstVisibleIndex, window.getKeyColumn() == null ? selectedIndexes : selectedKeys);
+                }
+            }
+        }).exceptionally(this::logError);
+        suggestIndex(tableName, query);
+    }
+
+    private int getFirstVisibleIndex() {
+        VirtualFlow<?> flow = (VirtualFlow<?>) tableView.lookup(".virtual-flow");
+        IndexedCell<?> cell = flow == null ? null : flow.getFirstVisibleCell();
+        return cell == null ? 0 : Math.max(cell.getIndex(), 0);
+    }
+
+    // Scroll back to the first visible row and select the rows again as their pages load
+    private void restorePosition(TableRowWindow window, int firstVisibleIndex, List<?> selected) {
+        PositionRestore restore = new PositionRestore(window, firstVisibleIndex, selected);
+        if (!restore.apply()) {
+            window.addListener(restore);
+        }
+    }
+
+    /**
+     * Brings back the scroll position and selection of a reloaded table. The row count and
+     * the pages arrive after the window is shown, so it retries whenever the window changes,
+     * until the page at the scroll position is loaded. Selected rows that are not loaded by
+     * then are left unselected. Rows of a table without a key column are selected by index.
+     */
+    private class PositionRestore implements ListChangeListener<RowView> {
+        private final TableRowWindow window;
+        private final int firstVisibleIndex;
+        private final Set<Object> remaining;
+        private boolean scrolled;
+        private boolean done;
+
+        PositionRestore(TableRowWindow window, int firstVisibleIndex, List<?> selected) {
+            this.window = window;
+            this.firstVisibleIndex = firstVisibleIndex;
+            this.remaining = new HashSet<>(selected);
+        }
+
+        @Override
+        public void onChanged(Change<? extends RowView> change) {
+            // The selection model handles the change first, so the rows are selected after it
+            Platform.runLater(() -> {
+                if (!done && (window != rowWindow || apply())) {
+                    window.removeListener(this);
+                }
+            });
+        }
+
+        // Returns true once there is nothing left to restore
+        boolean apply() {
+            boolean counted = window.totalRowsProperty().get() >= 0;
+            if (!scrolled && (firstVisibleIndex < window.size() || counted)) {
+                if (firstVisibleIndex > 0 && window.size() > 0) {
+                    tableView.scrollTo(Math.min(firstVisibleIndex, window.size() - 1));
+                }
+                scrolled = true;
+            }
+            for (Object row : new ArrayList<>(remaining)) {
+                int index = window.getKeyColumn() == null ? (Integer) row : window.indexOfLoadedKey(row);
+                if (index >= 0 && index < window.size()) {
+                    tableView.getSelectionModel().select(index);
+                    remaining.remove(row);
+                }
+            }
+            int scrolledTo = Math.min(firstVisibleIndex, window.size() - 1);
+            boolean loaded = window.getKeyColumn() == null ? counted : scrolledTo < 0 || window.getRowKey(scrolledTo) != null;
+            done = scrolled && (remaining.isEmpty() || loaded);
+            return done;
+        }
+    }
+
+    private RowQuery buildRowQuery() {
+        RowQuery query = new RowQuery();
+        FilterOperator operator = filterOperator.getValue();
+        if (filterColumn.getValue() != null && operator != null
+                && (!operator.hasValue() || !filterValue.getText().isEmpty())) {
+            query.addFilter(filterColumn.getValue(), operator, filterValue.getText());
+        }
+        query.setSort(sortColumn, sortDescending);
+        return query;
+    }
+
+    // Offer to create an index when the sort or filter column has none, so SQLite does not scan the whole table
+    private void suggestIndex(String tableName, RowQuery query) {
+        List<String> candidates = new ArrayList<>();
+        if (query.getSortColumn() != null) {
+            candidates.add(query.getSortColumn());
+        }
+        for (RowQuery.Filter filter : query.getFilters()) {
+            if (filter.getOperator().isIndexable()) {
+                candidates.add(filter.getColumnName());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        database.read(db -> {
+            TableSchema schema = db.getTableSchema(tableName);
+            for (String column : candidates) {
+                if (!schema.isIndexed(column)) {
+                    return column;
                 }
+            }
+            return "";
+        }).thenAccept(column -> {
+            if (column.isEmpty() || !tableName.equals(selectedTableName)) {
+                return;
+            }
+            createIndexButton.setText("Create index on " + column);
+            createIndexButton.setOnAction(event -> {
+                createIndexButton.setVisible(false);
+                statusLabel.setText("Creating index on " + column + "...");
+                database.write(db -> {
+                    db.createIndex(tableName, column);
+                    return null;
+                }).thenRun(() -> {
+                    statusLabel.setText("Created index on " + column);
+                    loadRows();
+                }).exceptionally(error -> {
+                    statusLabel.setText("Creating the index failed");
+                    return logError(error);
+                });
+            });
+            createIndexButton.setVisible(true);
+        }).exceptionally(this::logError);
+    }
 
-                List<String[]> rows = new ArrayList<>();
-                while (tableRows.next()) {
-                    String[] row = new String[columnCount];
-                    for (int i = 0; i < columnCount; i++) {
-                        row[i] = tableRows.getString(i + 1);
-                    }
-                    rows.add(row);
+    private void showColumns(String tableName, List<String> columnNames) {
+        for (int i = 0; i < columnNames.size(); i++) {
+            TableColumn<RowView, Object> column = new TableColumn<>(columnNames.get(i));
+            final int columnIndex = i;
+            column.setCellValueFactory(cellData -> {
+                RowView row = cellData.getValue();
+                if (row.getColumnCount() > columnIndex) {
+                    return new ReadOnlyObjectWrapper<>(row.getValue(columnIndex));
                 }
+                return new ReadOnlyObjectWrapper<>(null);
+            });
+            column.setCellFactory(TextFieldTableCell.forTableColumn(CELL_TEXT));
+            column.setOnEditCommit(event -> {
+                if (editSession != null && !editSession.editCell(event.getTablePosition().getRow(), columnIndex, (String) event.getNewValue())) {
+                    // Show the buffered value again, the edit was not taken
+                    tableView.refresh();
+                }
+            });
+            tableView.getColumns().add(column);
+        }
+
+        this.columnNames = columnNames;
+        filterColumn.setItems(FXCollections.observableArrayList(columnNames));
 
-                tableRows.close();
-
-                tableView.getItems().addAll(rows);
-
-                TableColumn<String[], Void> editColumn = new TableColumn<>("Edit");
-                editColumn.setCellFactory(param -> new TableCell<>() {
-                    private final Button editButton = new Button("Edit");
-
-                    {
-                        editButton.setOnAction(event -> {
-                            String[] rowData = getTableView().getItems().get(getIndex());
-                            editRow = new EditRow(database, rowData, tableName, main);
-                            editRow.show();
-                        });
-                    }
-
-                    @Override
-                    protected void updateItem(Void item, boolean empty) {
-                        super.updateItem(item, empty);
-                        if (empty) {
-                            setGraphic(null);
-                        } else {
-                            setGraphic(editButton);
-                        }
-                    }
+        TableColumn<RowView, Void> editColumn = new TableColumn<>("Edit");
+        editColumn.setSortable(false);
+        editColumn.setCellFactory(param -> new TableCell<>() {
+            private final Button editButton = new Button("Edit");
+
+            {
+                editButton.setOnAction(event -> {
+                    RowView rowData = ArrayRow.copyOf(getTableView().getItems().get(getIndex()));
+                    editRow = new EditRow(database, rowData, tableName, UI.this);
+                    editRow.show();
                 });
+            }
+
+            @Override
+            protected void updateItem(Void item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty) {
+                    setGraphic(null);
+                } else {
+                    setGraphic(editButton);
+                }
+            }
+        });
+
+        tableView.getColumns().add(0, editColumn);
+    }
+
+    private void showRowWindow(TableRowWindow rowWindow) {
+        if (!rowWindow.getTableName().equals(selectedTableName)) {
+            return;
+        }
+
+        this.rowWindow = rowWindow;
+        tableView.setItems(rowWindow);
+        rowCountLabel.textProperty().bind(Bindings.createStringBinding(() -> {
+            long total = rowWindow.totalRowsProperty().get();
+            return total < 0 ? "Rows: counting..." : "Rows: " + total;
+        }, rowWindow.totalRowsProperty()));
+
+        if (editSessionToggle.isSelected()) {
+            startEditSession();
+        }
+    }
+
+    // Start buffering edits of the shown table, tables without a key column cannot be edited this way
+    private void startEditSession() {
+        if (rowWindow == null || editSession != null) {
+            return;
+        }
+        if (rowWindow.getKeyColumn() == null) {
+            statusLabel.setText(rowWindow.getTableName() + " has no key column, edit sessions are not available");
+            editSessionToggle.setSelected(false);
+            return;
+        }
+        editSession = new EditSession(rowWindow, columnNames);
+        pendingChangesLabel.textProperty().bind(Bindings.concat("Pending changes: ", editSession.pendingChangesProperty()));
+        editSessionBar.setVisible(true);
+        tableView.setEditable(true);
+    }
+
+    // Stop the edit session, dropping changes that were not committed
+    private void endEditSession() {
+        if (editSession == null) {
+            return;
+        }
+        if (editSession.pendingChangesProperty().get() > 0 && !editSession.isCommitting()) {
+            statusLabel.setText("Discarded " + editSession.pendingChangesProperty().get() + " uncommitted changes");
+        }
+        editSession.discard();
+        editSession = null;
+        pendingChangesLabel.textProperty().unbind();
+        editSessionBar.setVisible(false);
+        tableView.setEditable(false);
+        tableView.refresh();
+    }
+
+    // Write the buffered changes in one transaction, reloading the table if rows were added or deleted
+    // The table is read-only until the commit finishes, the session takes no edits meanwhile
+    private void commitEditSession() {
+        if (editSession == null || editSession.pendingChangesProperty().get() == 0) {
+            return;
+        }
+        EditSession committing = editSession;
+        int changeCount = committing.pendingChangesProperty().get();
+        editSessionBar.setDisable(true);
+        tableView.setEditable(false);
+        long saveStart = System.nanoTime();
+        committing.commit(database).thenAccept(reload -> {
+            database.getDatabase().getMetrics().recordTime(MetricsRegistry.SAVE, System.nanoTime() - saveStart);
+            statusLabel.setText("Committed " + changeCount + " changes");
+            if (reload) {
+                refreshTableData();
+            } else {
+                tableView.refresh();
+            }
+        }).exceptionally(error -> {
+            statusLabel.setText("Commit failed, no changes were written");
+            return logError(error);
+        }).whenComplete((ignored, error) -> {
+            editSessionBar.setDisable(false);
+            tableView.setEditable(editSession != null);
+        });
+    }
 
-                tableView.getColumns().add(0, editColumn);
+    // Delete the selected rows right away, an edit session only marks them
+    private void deleteSelectedRows() {
+        if (editSession != null) {
+            editSession.deleteRows(new ArrayList<>(tableView.getSelectionModel().getSelectedIndices()));
+            return;
+        }
+        if (rowWindow == null || tableView.getSelectionModel().getSelectedIndices().isEmpty()) {
+            return;
+        }
+        if (!"rowid".equals(rowWindow.getKeyColumn())) {
+            statusLabel.setText("Rows of " + selectedTableName + " can only be deleted in an edit session");
+            return;
+        }
+        List<Long> rowids = new ArrayList<>();
+        for (int index : tableView.getSelectionModel().getSelectedIndices()) {
+            if (rowWindow.getRowKey(index) instanceof Number rowid) {
+                rowids.add(rowid.longValue());
+            }
+        }
+        String tableName = selectedTableName;
+        if (!rowids.isEmpty() && confirm("Delete " + rowids.size() + " rows from " + tableName + "?")) {
+            runBulkOperation("Deleting from " + tableName, progress -> database.writeInChunks(
+                    db -> db.deleteRowids(tableName, rowids, progress)));
+        }
+    }
+
+    // Delete every row matching the filter bar, after showing how many that is
+    private void deleteMatchingRows() {
+        if (selectedTableName == null) {
+            return;
+        }
+        String tableName = selectedTableName;
+        RowQuery query = buildRowQuery();
+        database.countRows(tableName, query).thenAccept(count -> {
+            String scope = query.getFilters().isEmpty() ? "all " + count + " rows" : count + " matching rows";
+            if (count > 0 && confirm("Delete " + scope + " from " + tableName + "?")) {
+                runBulkOperation("Deleting from " + tableName, progress -> database.writeInChunks(
+                        db -> db.deleteWhere(tableName, query, progress)));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        }).exceptionally(this::logError);
+    }
+
+    // Set one column of every row matching the filter bar
+    private void updateMatchingRows() {
+        if (selectedTableName == null || columnNames == null) {
+            return;
+        }
+        String tableName = selectedTableName;
+        RowQuery query = buildRowQuery();
+        ComboBox<String> column = new ComboBox<>(FXCollections.observableArrayList(columnNames));
+        column.setValue(columnNames.get(0));
+        TextField value = new TextField();
+        value.setPromptText("New value");
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Update Matching Rows");
+        dialog.setHeaderText(query.getFilters().isEmpty() ? "Set a column of every row" : "Set a column of the rows matching the filter");
+        dialog.getDialogPane().setContent(new HBox(10, column, new Label("="), value));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK || column.getValue() == null) {
+            return;
         }
+        Map<String, String> values = Map.of(column.getValue(), value.getText());
+        runBulkOperation("Updating " + tableName, progress -> database.writeInChunks(
+                db -> db.updateWhere(tableName, query, values, progress)));
+    }
+
+    // Undo or redo the latest row edit, the Database journals every added, saved and committed row
+    public void replayJournal(boolean undo) {
+        if (editSessionToggle.isSelected()) {
+            statusLabel.setText("End the edit session before undoing");
+            return;
+        }
+        database.write(db -> {
+            String description = undo ? db.getUndoDescription() : db.getRedoDescription();
+            if (description != null) {
+                if (undo) {
+                    db.undo();
+                } else {
+                    db.redo();
+                }
+            }
+            return description;
+        }).thenAccept(description -> {
+            if (description == null) {
+                statusLabel.setText(undo ? "Nothing to undo" : "Nothing to redo");
+                return;
+            }
+            statusLabel.setText((undo ? "Undone: " : "Redone: ") + description);
+            refreshTableData();
+        }).exceptionally(this::logError);
+    }
+
+    // Undo one of the journaled bulk operations
+    private void undoBulkOperation() {
+        database.read(Database::getBulkOperations).thenAccept(operations -> {
+            if (operations.isEmpty()) {
+                statusLabel.setText("No bulk operations to undo");
+                return;
+            }
+            ChoiceDialog<BulkOperation> dialog = new ChoiceDialog<>(operations.get(0), operations);
+            dialog.setTitle("Undo");
+            dialog.setHeaderText("Bulk operation to undo");
+            dialog.showAndWait().ifPresent(operation -> runBulkOperation("Undoing " + operation.getDescription(),
+                    progress -> database.writeInChunks(db -> db.undoBulkOperation(operation, progress))));
+        }).exceptionally(this::logError);
+    }
+
+    // Run a chunked operation with its progress in the status bar, the Cancel button stops it after the current chunk
+    private <T> void runBulkOperation(String action, Function<LongConsumer, CompletableFuture<T>> operation) {
+        long startTime = System.nanoTime();
+        statusLabel.setText(action + "...");
+        operation.apply(rows -> Platform.runLater(() -> statusLabel.setText(action + ": " + rows + " rows")))
+                .thenAccept(result -> {
+                    statusLabel.setText(String.format("%s: done in %.1f s", action, (System.nanoTime() - startTime) / 1e9));
+                    refreshTableData();
+                }).exceptionally(error -> {
+                    statusLabel.setText(action + " stopped, committed chunks can be undone");
+                    refreshTableData();
+                    return logError(error);
+                });
+    }
+
+    private boolean confirm(String question) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, question, ButtonType.YES, ButtonType.NO);
+        alert.setHeaderText(null);
+        return alert.showAndWait().orElse(ButtonType.NO) == ButtonType.YES;
+    }
+
+    // Import a CSV or TSV file into the selected table on the writer thread
+    private void importFile() {
+        if (selectedTableName == null) {
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import into " + selectedTableName);
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV and TSV files", "*.csv", "*.tsv", "*.tab", "*.txt"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = fileChooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+
+        ChoiceDialog<DuplicatePolicy> policyDialog = new ChoiceDialog<>(DuplicatePolicy.SKIP, DuplicatePolicy.values());
+        policyDialog.setTitle("Import");
+        policyDialog.setHeaderText("Rows whose key already exists in " + selectedTableName);
+        Optional<DuplicatePolicy> policy = policyDialog.showAndWait();
+        if (policy.isEmpty()) {
+            return;
+        }
+
+        String tableName = selectedTableName;
+        long startTime = System.nanoTime();
+        AtomicLong lastReport = new AtomicLong();
+        statusLabel.setText("Importing " + file.getName() + "...");
+        // Written in chunks, so edits made meanwhile are saved between them instead of after the import
+        database.writeInChunks(db -> {
+            CsvImporter importer = new CsvImporter(db);
+            importer.setDuplicatePolicy(policy.get());
+            return importer.importFile(file.toPath(), tableName, processed -> {
+                // Report at most ten times a second so a large import does not flood the FX thread
+                long now = System.nanoTime();
+                long last = lastReport.get();
+                if (now - last > 100_000_000L && lastReport.compareAndSet(last, now)) {
+                    Platform.runLater(() -> statusLabel.setText("Importing " + file.getName() + ": " + processed + " rows"));
+                }
+            });
+        }).thenAccept(inserted -> {
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            // Imports into rowid tables are undone with the bulk operations, not with Undo
+            boolean undoable = inserted > 0 && rowWindow != null && rowWindow.getTableName().equals(tableName)
+                    && "rowid".equals(rowWindow.getKeyColumn());
+            statusLabel.setText(String.format("Imported %d rows in %.1f s", inserted, seconds)
+                    + (undoable ? ", revert it with Undo bulk" : ""));
+            refreshTableData();
+        }).exceptionally(error -> {
+            statusLabel.setText("Import failed");
+            return logError(error);
+        });
+    }
+
+    // Stream the selected table to a CSV, JSON Lines or columnar file on a reader thread
+    private void exportTable() {
+        if (selectedTableName == null) {
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export " + selectedTableName);
+        fileChooser.setInitialFileName(selectedTableName + ".csv");
+        for (ExportFormat format : ExportFormat.values()) {
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                    format.getDisplayName(), "*." + format.getExtension()));
+        }
+        File file = fileChooser.showSaveDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+
+        String tableName = selectedTableName;
+        ExportFormat format = ExportFormat.forFileName(file.getName());
+        statusLabel.setText("Exporting " + tableName + "...");
+        database.read(db -> new ResultExporter(db).exportTable(tableName, file.toPath(), format,
+                (rows, bytes, rowsPerSecond) -> Platform.runLater(() -> statusLabel.setText(
+                        String.format("Exporting %s: %d rows, %d MB, %.0f rows/s", tableName, rows, bytes >> 20, rowsPerSecond)))))
+                .thenAccept(rows -> statusLabel.setText("Exported " + rows + " rows to " + file.getName()))
+                .exceptionally(error -> {
+                    statusLabel.setText("Export failed");
+                    return logError(error);
+                });
+    }
+
+    // Report a failed background call, cancelled calls are expected and not logged
+    private Void logError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (!(cause instanceof CancellationException)) {
+            cause.printStackTrace();
+        }
+        return null;
     }
 
     // Update the row in the TableView after editing it
-    public void updateRowInTable(String[] updatedRowData) {
-        for (int i = 0; i < tableView.getItems().size(); i++) {
-            if (tableView.getItems().get(i)[0].equals(updatedRowData[0])) {
-                tableView.getItems().set(i, updatedRowData);
-                break;
+    // Rows that are not loaded are read fresh when they are scrolled to, so only loaded rows are patched
+    // Rows of a table without a key column cannot be found in the window, it is reloaded instead
+    public void updateRowInTable(String tableName, RowPage updatedRows) {
+        if (rowWindow == null || updatedRows == null || !rowWindow.getTableName().equals(tableName)) {
+            return;
+        }
+        if (rowWindow.getKeyColumn() == null) {
+            refreshTableData();
+            return;
+        }
+        for (int i = 0; i < updatedRows.size(); i++) {
+            if (updatedRows.getKey(i) != null) {
+                rowWindow.updateRow(updatedRows.getKey(i), updatedRows.getRow(i));
             }
         }
     }
 
     // Add a new row to the TableView after inserting it into the database
-    public void addRowToTable(String[] newRowData) {
-        tableView.getItems().add(newRowData);
+    // A row that belongs at the end is appended in place, anywhere else the table is reloaded
+    public void addRowToTable(String tableName, RowPage insertedRows) {
+        TableRowWindow window = rowWindow;
+        if (window == null || !window.getTableName().equals(tableName)) {
+            return;
+        }
+        if (insertedRows.size() != 1 || insertedRows.getKey(0) == null) {
+            refreshTableData();
+            return;
+        }
+        Object key = insertedRows.getKey(0);
+        database.isLastRowKey(window.getTableName(), window.getKeyColumn(), key).thenAccept(last -> {
+            if (window != rowWindow) {
+                return;
+            }
+            if (!last || !window.appendRow(key, insertedRows.getRow(0))) {
+                refreshTableData();
+            }
+        }).exceptionally(this::logError);
     }
 
-    // Refresh the data in the TableView
-    public void refreshTableData() throws SQLException {
-        showTableRows(selectedTableName);
+    // Reload the table after another process changed the database, unless there are edits to keep
+    public void refreshAfterExternalChange() {
+        if (editSession != null && editSession.pendingChangesProperty().get() > 0) {
+            statusLabel.setText("The database was changed by another program, commit or discard to reload");
+            return;
+        }
+        statusLabel.setText("The database was changed by another program, reloaded");
+        refreshTableData();
+    }
+
+    // Refresh the data in the TableView, keeping the columns, filter and sort order
+    public void refreshTableData() {
+        if (columnNames == null) {
+            showTableRows(selectedTableName);
+        } else {
+            loadRows(true);
+        }
     }
 }
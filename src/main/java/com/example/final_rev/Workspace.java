@@ -0,0 +1,285 @@
+package com.example.final_rev;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The main window: one tab per open database file. Every file has its own Database with its
+ * own connection pool, its own AsyncDatabase executors and its own UI, so a slow query in one
+ * file never holds up another.
+ *
+ * Files chosen together are opened in parallel, up to MAX_PARALLEL_OPENS at a time, and each
+ * tab is added as soon as its file is ready. The tab then loads its tables and first page on
+ * its own executors while the other files are still opening.
+ *
+ * The other open files can be attached to the selected one, so its Query tab can compare them,
+ * for example SELECT * FROM main.orders EXCEPT SELECT * FROM other.orders.
+ */
+public class Workspace {
+    static final int MAX_PARALLEL_OPENS = 8;
+
+    private final Stage stage;
+    private final TabPane tabPane = new TabPane();
+    private final Label statusLabel = new Label();
+    private final List<OpenFile> openFiles = new ArrayList<>();
+    private final AtomicInteger opening = new AtomicInteger();
+    private final ExecutorService openExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_OPENS, runnable -> {
+        Thread thread = new Thread(runnable, "workspace-open");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * stage The main window.
+     */
+    public Workspace(Stage stage) {
+        this.stage = stage;
+    }
+
+    public void show() {
+        Button openButton = new Button("Open...");
+        openButton.setOnAction(event -> chooseFiles());
+        Button attachButton = new Button("Attach other files");
+        attachButton.setOnAction(event -> attachOthers());
+        HBox toolBar = new HBox(10, openButton, attachButton, statusLabel);
+        toolBar.setAlignment(Pos.CENTER_LEFT);
+        toolBar.setPadding(new Insets(10, 20, 0, 20));
+
+        tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.ALL_TABS);
+        tabPane.getSelectionModel().selectedItemProperty().addListener((observable, oldTab, tab) ->
+                stage.setTitle(tab == null ? "Java Final" : "Java Final - " + tab.getText()));
+        VBox.setVgrow(tabPane, Priority.ALWAYS);
+        VBox root = new VBox(10, toolBar, tabPane);
+
+        Scene scene = new Scene(root, 900, 650);
+        scene.addPostLayoutPulseListener(() -> {
+            for (OpenFile openFile : openFiles) {
+                openFile.ui.layoutDone();
+            }
+        });
+        scene.getAccelerators().put(KeyCombination.keyCombination("Shortcut+Z"), () -> replayJournal(true));
+        scene.getAccelerators().put(KeyCombination.keyCombination("Shortcut+Y"), () -> replayJournal(false));
+        stage.setTitle("Java Final");
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    /**
+     * Lets the user pick database files and opens them.
+     *
+     * @return Whether any file was picked.
+     */
+    public boolean chooseFiles() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Java Final");
+        List<File> files = fileChooser.showOpenMultipleDialog(stage);
+        if (files == null || files.isEmpty()) {
+            return false;
+        }
+        open(files);
+        return true;
+    }
+
+    /**
+     * Opens database files in parallel, each in a new tab. Files that are already open are selected instead.
+     *
+     * files The database files.
+     */
+    public void open(List<File> files) {
+        for (File file : files) {
+            OpenFile existing = find(file);
+            if (existing != null) {
+                tabPane.getSelectionModel().select(existing.tab);
+                continue;
+            }
+            // Large file mode memory-maps the file and uses more memory for caches, so the user decides first
+            ConnectionSettings settings = file.length() >= ConnectionSettings.LARGE_FILE_THRESHOLD_BYTES
+                    && confirmLargeFileMode(file) ? ConnectionSettings.largeFile() : new ConnectionSettings();
+
+            opening.incrementAndGet();
+            showOpening();
+            CompletableFuture.supplyAsync(() -> new Database(file.getAbsolutePath(), settings), openExecutor)
+                    .whenCompleteAsync((database, error) -> {
+                        opening.decrementAndGet();
+                        showOpening();
+                        if (error != null) {
+                            error.printStackTrace();
+                            statusLabel.setText("Opening " + file.getName() + " failed");
+                        } else {
+                            addTab(file, database);
+                        }
+                    }, Platform::runLater);
+        }
+    }
+
+    private void showOpening() {
+        int count = opening.get();
+        statusLabel.setText(count == 0 ? "" : "Opening " + count + (count == 1 ? " file..." : " files..."));
+    }
+
+    private void addTab(File file, Database database) {
+        database.getMetrics().registerMBean(file.getAbsolutePath());
+        AsyncDatabase asyncDatabase = new AsyncDatabase(database);
+        UI ui = new UI(stage, asyncDatabase);
+        Tab tab = new Tab(file.getName(), ui.createContent());
+        tab.setTooltip(new Tooltip(file.getAbsolutePath()));
+
+        // Reload the table when another process changes the database
+        ExternalChangeWatcher changeWatcher = new ExternalChangeWatcher(database, ui::refreshAfterExternalChange);
+        changeWatcher.start();
+
+        OpenFile openFile = new OpenFile(file, database, asyncDatabase, ui, tab, changeWatcher);
+        openFiles.add(openFile);
+        tab.setOnClosed(event -> close(openFile));
+        tabPane.getTabs().add(tab);
+        if (openFiles.size() == 1) {
+            tabPane.getSelectionModel().select(tab);
+        }
+    }
+
+    // Attach every other open file to the selected one, under a schema named after the file
+    private void attachOthers() {
+        OpenFile target = selected();
+        if (target == null) {
+            return;
+        }
+        List<String> schemaNames = new ArrayList<>();
+        for (OpenFile other : openFiles) {
+            if (other == target || target.attached.containsValue(other)) {
+                continue;
+            }
+            String schemaName = schemaName(other.file, target);
+            target.database.attachDatabase(schemaName, other.file.getAbsolutePath());
+            target.attached.put(schemaName, other);
+            schemaNames.add(schemaName);
+        }
+        statusLabel.setText(schemaNames.isEmpty() ? "No other files to attach"
+                : "Attached " + String.join(", ", schemaNames) + " to " + target.file.getName()
+                + ", query them in its Query tab as schema.table");
+    }
+
+    // The file name as a plain identifier, numbered if another attached file has the same name
+    private static String schemaName(File file, OpenFile target) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = (dot > 0 ? name.substring(0, dot) : name).replaceAll("[^A-Za-z0-9_]", "_");
+        if (base.isEmpty() || Character.isDigit(base.charAt(0)) || base.equalsIgnoreCase("main") || base.equalsIgnoreCase("temp")) {
+            base = "db_" + base;
+        }
+        String schemaName = base;
+        for (int i = 2; target.attached.containsKey(schemaName); i++) {
+            schemaName = base + "_" + i;
+        }
+        return schemaName;
+    }
+
+    private void replayJournal(boolean undo) {
+        OpenFile openFile = selected();
+        if (openFile != null) {
+            openFile.ui.replayJournal(undo);
+        }
+    }
+
+    private OpenFile selected() {
+        Tab tab = tabPane.getSelectionModel().getSelectedItem();
+        for (OpenFile openFile : openFiles) {
+            if (openFile.tab == tab) {
+                return openFile;
+            }
+        }
+        return null;
+    }
+
+    private OpenFile find(File file) {
+        for (OpenFile openFile : openFiles) {
+            if (openFile.file.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+                return openFile;
+            }
+        }
+        return null;
+    }
+
+    private void close(OpenFile openFile) {
+        openFiles.remove(openFile);
+        for (OpenFile other : openFiles) {
+            other.attached.entrySet().removeIf(attachment -> {
+                if (attachment.getValue() != openFile) {
+                    return false;
+                }
+                other.database.detachDatabase(attachment.getKey());
+                return true;
+            });
+        }
+        openFile.ui.dispose();
+        openFile.changeWatcher.stop();
+        openFile.asyncDatabase.shutdown();
+        openFile.database.getMetrics().unregisterMBean();
+        openFile.database.close();
+    }
+
+    /**
+     * Closes every open file, when the application exits.
+     */
+    public void close() {
+        for (OpenFile openFile : new ArrayList<>(openFiles)) {
+            close(openFile);
+        }
+        openExecutor.shutdownNow();
+    }
+
+    private boolean confirmLargeFileMode(File file) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Large Database");
+        alert.setHeaderText(file.getName() + " is " + (file.length() >> 20) + " MB");
+        alert.setContentText("Open it in large file mode? The file is memory-mapped, caches are larger "
+                + "and each table is read into the cache in the background when it is opened.");
+        alert.getButtonTypes().setAll(ButtonType.YES, ButtonType.NO);
+        return alert.showAndWait().orElse(ButtonType.NO) == ButtonType.YES;
+    }
+
+    // One open database file and everything that works on it
+    private static class OpenFile {
+        private final File file;
+        private final Database database;
+        private final AsyncDatabase asyncDatabase;
+        private final UI ui;
+        private final Tab tab;
+        private final ExternalChangeWatcher changeWatcher;
+        // Other open files attached to this one, by schema name
+        private final Map<String, OpenFile> attached = new LinkedHashMap<>();
+
+        OpenFile(File file, Database database, AsyncDatabase asyncDatabase, UI ui, Tab tab, ExternalChangeWatcher changeWatcher) {
+            this.file = file;
+            this.database = database;
+            this.asyncDatabase = asyncDatabase;
+            this.ui = ui;
+            this.tab = tab;
+            this.changeWatcher = changeWatcher;
+        }
+    }
+}
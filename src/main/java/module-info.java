@@ -2,6 +2,7 @@ module com.example.final_rev {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.management;
 
     requires org.kordamp.bootstrapfx.core;
     requires java.desktop;
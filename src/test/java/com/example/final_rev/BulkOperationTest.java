@@ -0,0 +1,123 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkOperationTest {
+    // Several times BULK_FIRST_CHUNK_ROWS, so every operation runs in more than one chunk
+    private static final int ROWS = 20_000;
+    private static final String SNAPSHOT = "SELECT rowid, * FROM items ORDER BY rowid;";
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("bulk.db");
+        // Half of the rows match the filters below, interleaved with rows that do not
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, grp INTEGER, name TEXT, score REAL, data BLOB);",
+                "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + ROWS + ") "
+                        + "INSERT INTO items SELECT i, i % 2, 'item ' || i, CASE WHEN i % 7 = 0 THEN NULL ELSE i / 4.0 END, "
+                        + "CASE WHEN i % 5 = 0 THEN randomblob(8) END FROM n;");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void deleteWhereIsUndoneAcrossChunks() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        List<Long> progress = new ArrayList<>();
+
+        BulkOperation operation = database.deleteWhere("items", oddRows(), progress::add);
+
+        assertEquals(ROWS / 2, operation.getRowCount());
+        assertTrue(progress.size() > 1, "expected several chunks, got " + progress);
+        assertEquals(List.of(List.of("Integer:" + ROWS / 2)), SqliteFiles.rows(file, "SELECT count(*) FROM items;"));
+        assertEquals(List.of(List.of("Integer:0")), SqliteFiles.rows(file, "SELECT count(*) FROM items WHERE grp = 1;"));
+
+        assertEquals(ROWS / 2, database.undoBulkOperation(operation, null));
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+        assertTrue(database.getBulkOperations().isEmpty());
+    }
+
+    @Test
+    void updateWhereIsUndoneAcrossChunks() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+
+        BulkOperation operation = database.updateWhere("items", oddRows(), Map.of("name", "changed", "score", "0"), null);
+
+        assertEquals(ROWS / 2, operation.getRowCount());
+        assertEquals(List.of(List.of("Integer:" + ROWS / 2)),
+                SqliteFiles.rows(file, "SELECT count(*) FROM items WHERE name = 'changed' AND score = 0;"));
+
+        database.undoBulkOperation(operation, null);
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    @Test
+    void cancelledDeleteKeepsCommittedChunksAndIsUndone() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        CancelToken call = database.beginCall();
+
+        // Cancel after the first chunk was committed, the next chunk is not started
+        SQLException cancelled = assertThrows(SQLException.class,
+                () -> database.deleteWhere("items", oddRows(), changed -> database.cancel(call)));
+        assertEquals("Cancelled", cancelled.getMessage());
+        database.endCall(call);
+
+        List<BulkOperation> operations = database.getBulkOperations();
+        assertEquals(1, operations.size());
+        BulkOperation operation = operations.get(0);
+        assertTrue(operation.getRowCount() > 0 && operation.getRowCount() < ROWS / 2,
+                "expected a partial delete, got " + operation.getRowCount());
+        assertEquals(List.of(List.of("Integer:" + (ROWS - operation.getRowCount()))),
+                SqliteFiles.rows(file, "SELECT count(*) FROM items;"));
+        assertNotEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+
+        assertEquals(operation.getRowCount(), database.undoBulkOperation(operation, null));
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+        assertTrue(database.getBulkOperations().isEmpty());
+    }
+
+    @Test
+    void cancelledUndoContinuesWhereItStopped() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        BulkOperation operation = database.deleteWhere("items", null, null);
+        CancelToken call = database.beginCall();
+
+        assertThrows(SQLException.class,
+                () -> database.undoBulkOperation(operation, restored -> database.cancel(call)));
+        database.endCall(call);
+        long restored = SqliteFiles.rows(file, SNAPSHOT).size();
+        assertTrue(restored > 0 && restored < ROWS, "expected a partial undo, got " + restored);
+
+        assertEquals(ROWS - restored, database.undoBulkOperation(operation, null));
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    private static RowQuery oddRows() {
+        RowQuery query = new RowQuery();
+        query.addFilter("grp", FilterOperator.EQUALS, "1");
+        return query;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CancelTokenTest {
+    // Runs long enough to be cancelled while it is running
+    private static final String ENDLESS = "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n) SELECT count(*) FROM n;";
+
+    @TempDir
+    Path dir;
+    private Database database;
+    private ExecutorService worker;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        Path file = dir.resolve("cancel.db");
+        SqliteFiles.execute(file, "CREATE TABLE items (id INTEGER PRIMARY KEY, grp INTEGER);",
+                "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 5000) "
+                        + "INSERT INTO items SELECT i, i % 2 FROM n;");
+        database = new Database(file.toString());
+        worker = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        worker.shutdownNow();
+        database.close();
+    }
+
+    @Test
+    void cancelInterruptsTheRunningStatementOnly() throws Exception {
+        CompletableFuture<CancelToken> started = new CompletableFuture<>();
+        CountDownLatch running = new CountDownLatch(1);
+        Future<Long> endless = worker.submit(() -> {
+            CancelToken call = database.beginCall();
+            started.complete(call);
+            try {
+                return database.streamQuery(ENDLESS, Long.MAX_VALUE, 100, new QueryListener() {
+                    @Override
+                    public void columns(List<String> columnNames) {
+                        running.countDown();
+                    }
+
+                    @Override
+                    public void rows(List<RowView> rows) {
+                    }
+
+                    @Override
+                    public void limitReached() {
+                    }
+                });
+            } finally {
+                database.endCall(call);
+            }
+        });
+        CancelToken call = started.get(5, TimeUnit.SECONDS);
+        running.await(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+
+        database.cancel(call);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> endless.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, failure.getCause());
+        // The next call on the same thread and connection is not affected
+        assertEquals(5000L, worker.submit(() -> database.countRows("items")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelArrivingAfterTheCallEndedIsIgnored() throws Exception {
+        CancelToken finished = worker.submit(() -> {
+            CancelToken call = database.beginCall();
+            database.countRows("items");
+            database.endCall(call);
+            return call;
+        }).get(5, TimeUnit.SECONDS);
+
+        database.cancel(finished);
+
+        // A chunked operation on the same worker thread runs to the end
+        BulkOperation operation = worker.submit(() -> {
+            CancelToken call = database.beginCall();
+            try {
+                return database.deleteWhere("items", null, null);
+            } finally {
+                database.endCall(call);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(5000, operation.getRowCount());
+    }
+}
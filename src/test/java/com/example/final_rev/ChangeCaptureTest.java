@@ -0,0 +1,96 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChangeCaptureTest {
+    // More than twice MAX_JSON_PAIRS, so the data object is built by two nested json_insert calls
+    private static final int COLUMNS = ChangeCapture.MAX_JSON_PAIRS * 2 + 3;
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+    private final List<String> columns = new ArrayList<>();
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("capture.db");
+        StringBuilder create = new StringBuilder("CREATE TABLE wide (");
+        for (int i = 0; i < COLUMNS; i++) {
+            // Names that need quoting as identifiers and in JSON paths
+            String column = switch (i % 3) {
+                case 0 -> "c" + i;
+                case 1 -> "col " + i;
+                default -> "c." + i;
+            };
+            columns.add(column);
+            create.append(i == 0 ? "" : ", ").append(Database.quoteIdentifier(column));
+        }
+        SqliteFiles.execute(file, create.append(");").toString());
+        database = new Database(file.toString());
+        database.enableChangeCapture("wide");
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void wideRowsAreCapturedWithEveryColumn() throws Exception {
+        StringBuilder insert = new StringBuilder("INSERT INTO wide VALUES (");
+        for (int i = 0; i < COLUMNS; i++) {
+            insert.append(i == 0 ? "" : ", ").append(value(i));
+        }
+        SqliteFiles.execute(file, insert.append(");").toString(),
+                "UPDATE wide SET " + Database.quoteIdentifier(columns.get(COLUMNS - 1)) + " = 'updated';",
+                "DELETE FROM wide;");
+
+        List<List<String>> changes = SqliteFiles.rows(file, "SELECT op, row_key, json_valid(data), "
+                + "(SELECT count(*) FROM json_each(data)) FROM " + ChangeCapture.CHANGES + " ORDER BY seq;");
+        assertEquals(List.of(
+                List.of("String:insert", "Integer:1", "Integer:1", "Integer:" + COLUMNS),
+                List.of("String:update", "Integer:1", "Integer:1", "Integer:" + COLUMNS),
+                List.of("String:delete", "Integer:1", "null", "Integer:0")), changes);
+
+        for (int i = 0; i < COLUMNS; i++) {
+            List<List<String>> captured = SqliteFiles.rows(file, "SELECT type, value FROM json_each(("
+                    + "SELECT data FROM " + ChangeCapture.CHANGES + " WHERE op = 'insert')) WHERE key = '"
+                    + columns.get(i).replace("'", "''") + "';");
+            assertEquals(List.of(expected(i)), captured, "column " + columns.get(i));
+        }
+        assertEquals(List.of(List.of("String:updated")), SqliteFiles.rows(file, "SELECT value FROM json_each(("
+                + "SELECT data FROM " + ChangeCapture.CHANGES + " WHERE op = 'update')) WHERE key = '"
+                + columns.get(COLUMNS - 1) + "';"));
+    }
+
+    // Cycles through the storage classes so values are checked before and after every split
+    private static String value(int column) {
+        return switch (column % 5) {
+            case 0 -> Integer.toString(column);
+            case 1 -> "'text " + column + "'";
+            case 2 -> column + ".5";
+            case 3 -> "NULL";
+            default -> "x'0a0b'";
+        };
+    }
+
+    private static List<String> expected(int column) {
+        return switch (column % 5) {
+            case 0 -> List.of("String:integer", "Integer:" + column);
+            case 1 -> List.of("String:text", "String:text " + column);
+            case 2 -> List.of("String:real", "Double:" + column + ".5");
+            case 3 -> List.of("String:null", "null");
+            default -> List.of("String:object", "String:{\"hex\":\"0A0B\"}");
+        };
+    }
+}
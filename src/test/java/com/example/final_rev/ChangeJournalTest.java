@@ -0,0 +1,117 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChangeJournalTest {
+    private static final String SNAPSHOT = "SELECT rowid, * FROM items ORDER BY rowid;";
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("journal.db");
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT, score REAL, data BLOB, note);",
+                "INSERT INTO items VALUES (1, 'one', 1.5, x'00ff', 'text');",
+                "INSERT INTO items VALUES (2, NULL, 2.0, x'', 42);",
+                "INSERT INTO items VALUES (3, 'three', NULL, NULL, 3.25);");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void undoAndRedoRestoreEveryValueWithItsStorageClass() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+
+        ChangeSet changes = new ChangeSet();
+        changes.update(1L, "name", "changed");
+        changes.update(1L, "score", "7");
+        changes.update(3L, "note", null);
+        changes.delete(2L);
+        Map<String, String> insert = new LinkedHashMap<>();
+        insert.put("name", "new");
+        insert.put("note", "inserted");
+        changes.insert(insert);
+        database.applyChanges("items", "rowid", changes);
+        List<List<String>> after = SqliteFiles.rows(file, SNAPSHOT);
+        assertNotEquals(before, after);
+
+        assertEquals(List.of("items"), database.undo());
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+        assertNull(database.getUndoDescription());
+
+        assertEquals(List.of("items"), database.redo());
+        assertEquals(after, SqliteFiles.rows(file, SNAPSHOT));
+
+        database.undo();
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    @Test
+    void separateActionsAreUndoneInReverseOrder() throws Exception {
+        List<List<String>> original = SqliteFiles.rows(file, SNAPSHOT);
+        ChangeSet first = new ChangeSet();
+        first.update(1L, "name", "first");
+        database.applyChanges("items", "rowid", first);
+        List<List<String>> afterFirst = SqliteFiles.rows(file, SNAPSHOT);
+        ChangeSet second = new ChangeSet();
+        second.delete(1L);
+        database.applyChanges("items", "rowid", second);
+
+        database.undo();
+        assertEquals(afterFirst, SqliteFiles.rows(file, SNAPSHOT));
+        database.undo();
+        assertEquals(original, SqliteFiles.rows(file, SNAPSHOT));
+        database.redo();
+        assertEquals(afterFirst, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    @Test
+    void rowCodecKeepsStorageClassesAndOrder() {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("null", null);
+        row.put("small", 1);
+        row.put("negative", -300L);
+        row.put("min", Long.MIN_VALUE);
+        row.put("max", Long.MAX_VALUE);
+        row.put("real", -0.5);
+        row.put("empty", "");
+        row.put("text", "héllo ☃ 😀");
+        row.put("blob", new byte[] {0, -1, 127});
+        row.put("emptyBlob", new byte[0]);
+
+        Map<String, Object> decoded = RowCodec.decode(RowCodec.encode(row));
+
+        assertEquals(List.copyOf(row.keySet()), List.copyOf(decoded.keySet()));
+        assertNull(decoded.get("null"));
+        assertEquals(1L, decoded.get("small"));
+        assertEquals(-300L, decoded.get("negative"));
+        assertEquals(Long.MIN_VALUE, decoded.get("min"));
+        assertEquals(Long.MAX_VALUE, decoded.get("max"));
+        assertEquals(-0.5, decoded.get("real"));
+        assertEquals("", decoded.get("empty"));
+        assertEquals(row.get("text"), decoded.get("text"));
+        assertArrayEquals(new byte[] {0, -1, 127}, (byte[]) decoded.get("blob"));
+        assertArrayEquals(new byte[0], (byte[]) decoded.get("emptyBlob"));
+    }
+}
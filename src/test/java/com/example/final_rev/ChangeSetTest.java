@@ -0,0 +1,110 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangeSetTest {
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("changes.db");
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT NOT NULL, qty INTEGER);",
+                "INSERT INTO items VALUES (1, 'a', 1), (2, 'b', 2), (3, 'c', 3);",
+                "CREATE TABLE codes (code TEXT PRIMARY KEY, label TEXT) WITHOUT ROWID;",
+                "INSERT INTO codes VALUES ('x', 'first'), ('y', 'second');",
+                "CREATE TABLE pairs (a INTEGER, b INTEGER, label TEXT, PRIMARY KEY (a, b)) WITHOUT ROWID;",
+                "INSERT INTO pairs VALUES (1, 1, 'one'), (1, 2, 'two');");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void editsOfOneRowAreMergedAndDeletesDropThem() {
+        ChangeSet changes = new ChangeSet();
+        changes.update(1L, "name", "x");
+        changes.update(1L, "name", "y");
+        changes.update(1L, "qty", "5");
+        changes.update(2L, "name", "z");
+        changes.delete(2L);
+        changes.update(2L, "name", "ignored");
+
+        assertEquals(Map.of(1L, Map.of("name", "y", "qty", "5")), changes.getUpdates());
+        assertTrue(changes.isDeleted(2L));
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    void updatesDeletesAndInsertsAreWrittenTogether() throws Exception {
+        ChangeSet changes = new ChangeSet();
+        changes.update(1L, "name", "edited");
+        changes.delete(2L);
+        changes.insert(Map.of("id", "4", "name", "d", "qty", "4"));
+
+        database.applyChanges("items", "rowid", changes);
+
+        assertEquals(List.of(
+                        List.of("Integer:1", "String:edited", "Integer:1"),
+                        List.of("Integer:3", "String:c", "Integer:3"),
+                        List.of("Integer:4", "String:d", "Integer:4")),
+                SqliteFiles.rows(file, "SELECT * FROM items ORDER BY id;"));
+        assertEquals("Commit 3 changes to items", database.getUndoDescription());
+    }
+
+    @Test
+    void failedChangeLeavesTheTableAsItWas() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, "SELECT * FROM items ORDER BY id;");
+        ChangeSet changes = new ChangeSet();
+        changes.update(1L, "name", "edited");
+        changes.delete(3L);
+        changes.insert(Map.of("id", "1", "name", "duplicate key"));
+
+        assertThrows(SQLException.class, () -> database.applyChanges("items", "rowid", changes));
+
+        assertEquals(before, SqliteFiles.rows(file, "SELECT * FROM items ORDER BY id;"));
+    }
+
+    @Test
+    void withoutRowidTableIsEditedByItsPrimaryKey() throws Exception {
+        ChangeSet changes = new ChangeSet();
+        changes.update("x", "label", "edited");
+        changes.delete("y");
+
+        database.applyChanges("codes", "code", changes);
+
+        assertEquals(List.of(List.of("String:x", "String:edited")), SqliteFiles.rows(file, "SELECT * FROM codes;"));
+    }
+
+    @Test
+    void compositeKeyTableIsNotEditedByPartOfItsKey() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, "SELECT * FROM pairs ORDER BY a, b;");
+        ChangeSet changes = new ChangeSet();
+        changes.update(1L, "label", "both rows");
+
+        assertThrows(SQLException.class, () -> database.applyChanges("pairs", "a", changes));
+        assertThrows(SQLException.class, () -> database.applyChanges("pairs", null, changes));
+
+        assertEquals(before, SqliteFiles.rows(file, "SELECT * FROM pairs ORDER BY a, b;"));
+        assertNull(database.getRowKeyColumn("pairs"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CliTest {
+    @TempDir
+    Path dir;
+    private Path first;
+    private Path second;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private PrintStream systemOut;
+    private PrintStream systemErr;
+
+    @BeforeEach
+    void createDatabases() throws Exception {
+        first = dir.resolve("first.db");
+        second = dir.resolve("second.db");
+        SqliteFiles.execute(first,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT);",
+                "INSERT INTO items VALUES (1, 'one'), (2, 'two');");
+        SqliteFiles.execute(second, "CREATE TABLE other (id INTEGER PRIMARY KEY);");
+        systemOut = System.out;
+        systemErr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreStreams() {
+        System.setOut(systemOut);
+        System.setErr(systemErr);
+    }
+
+    @Test
+    void badCommandLinesAreUsageErrors() throws Exception {
+        String db = first.toString();
+        List<String[]> commandLines = List.of(
+                new String[] {"drop", db},
+                new String[] {"dump", db},
+                new String[] {"--format", "xml", "dump", "items", db},
+                new String[] {"--duplicates", "merge", "import", "items", "rows.csv", db},
+                new String[] {"--jobs", "0", "tables", db},
+                new String[] {"--jobs", "many", "tables", db},
+                new String[] {"--bogus", "1", "tables", db},
+                new String[] {"tables", db, "--out"},
+                new String[] {"feed", "tcp:localhost:99999", db},
+                new String[] {"feed", "tcp::80", db},
+                new String[] {"--out", dir.resolve("missing").toString(), "tables", db, second.toString()});
+        for (String[] args : commandLines) {
+            err.reset();
+            assertEquals(Cli.EXIT_USAGE, new Cli().run(args), String.join(" ", args));
+            assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage:"), String.join(" ", args));
+        }
+    }
+
+    @Test
+    void noCommandPrintsUsage() {
+        assertEquals(Cli.EXIT_OK, new Cli().run(new String[0]));
+        assertEquals(Cli.EXIT_OK, new Cli().run(new String[] {"--help", "tables", first.toString()}));
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("Usage:"));
+    }
+
+    @Test
+    void severalDatabasesPrintTheirOutputUnderAHeader() {
+        assertEquals(Cli.EXIT_OK, new Cli().run(new String[] {"--jobs", "2", "tables", first.toString(), second.toString()}));
+
+        String output = out.toString(StandardCharsets.UTF_8);
+        int firstHeader = output.indexOf("==> " + first + " <==\nitems\n");
+        int secondHeader = output.indexOf("==> " + second + " <==\nother\n");
+        assertTrue(firstHeader >= 0 && secondHeader >= 0, output);
+    }
+
+    @Test
+    void missingDatabaseFailsWithoutStoppingTheOthers() {
+        Path missing = dir.resolve("missing.db");
+
+        assertEquals(Cli.EXIT_FAILED, new Cli().run(new String[] {"tables", first.toString(), missing.toString()}));
+
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("items"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains(missing + ": no such database"));
+    }
+
+    @Test
+    void dumpWritesOneFilePerDatabaseIntoTheOutDirectory() throws Exception {
+        Path target = Files.createDirectory(dir.resolve("out"));
+        SqliteFiles.execute(second, "CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT);",
+                "INSERT INTO items VALUES (3, 'three');");
+
+        assertEquals(Cli.EXIT_OK, new Cli().run(new String[] {"--format", "jsonl", "--out", target.toString(),
+                "dump", "items", first.toString(), second.toString()}));
+
+        assertEquals(2, Files.readAllLines(target.resolve("first-items.jsonl")).size());
+        String rows = Files.readString(target.resolve("second-items.jsonl"));
+        assertTrue(rows.contains("three"), rows);
+    }
+
+    @Test
+    void importAppliesTheDuplicatePolicy() throws Exception {
+        Path csv = dir.resolve("rows.csv");
+        Files.writeString(csv, "id,name\n2,deux\n3,trois\n");
+        Path copy = dir.resolve("copy.db");
+        Files.copy(first, copy);
+
+        assertEquals(Cli.EXIT_OK, new Cli().run(new String[] {"--duplicates", "replace", "import", "items", csv.toString(),
+                first.toString(), copy.toString()}));
+
+        List<List<String>> expected = List.of(List.of("Integer:1", "String:one"), List.of("Integer:2", "String:deux"),
+                List.of("Integer:3", "String:trois"));
+        assertEquals(expected, SqliteFiles.rows(first, "SELECT id, name FROM items ORDER BY id;"));
+        assertEquals(expected, SqliteFiles.rows(copy, "SELECT id, name FROM items ORDER BY id;"));
+    }
+}
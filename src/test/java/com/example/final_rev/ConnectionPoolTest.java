@@ -0,0 +1,119 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionPoolTest {
+    @TempDir
+    Path dir;
+    private ConnectionPool pool;
+    private ExecutorService threads;
+
+    @BeforeEach
+    void openPool() throws Exception {
+        Path file = dir.resolve("pool.db");
+        SqliteFiles.execute(file, "CREATE TABLE items (id INTEGER PRIMARY KEY);", "INSERT INTO items VALUES (1);");
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setReaderConnections(2);
+        pool = new ConnectionPool(file.toString(), settings);
+        threads = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    void closePool() {
+        threads.shutdownNow();
+        pool.close();
+    }
+
+    @Test
+    void writerUsesWalAndReadersAreReadOnly() throws Exception {
+        try (Statement statement = pool.getWriter().createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA journal_mode;")) {
+            assertEquals("wal", rs.getString(1));
+        }
+        try (Statement statement = pool.getReader().createStatement()) {
+            assertThrows(SQLException.class, () -> statement.execute("INSERT INTO items VALUES (2);"));
+        }
+    }
+
+    @Test
+    void threadKeepsItsReaderUntilItReleasesIt() throws Exception {
+        Connection first = pool.getReader();
+        assertSame(first, pool.getReader());
+
+        Connection other = threads.submit(pool::getReader).get(5, TimeUnit.SECONDS);
+        assertNotSame(first, other);
+
+        pool.releaseReader();
+        assertSame(first, threads.submit(pool::getReader).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void readersAreLimitedAndWaitersGetReleasedOnes() throws Exception {
+        Connection first = pool.getReader();
+        Connection second = threads.submit(pool::getReader).get(5, TimeUnit.SECONDS);
+
+        Future<Connection> third = threads.submit(pool::getReader);
+        assertThrows(TimeoutException.class, () -> third.get(300, TimeUnit.MILLISECONDS));
+
+        pool.releaseReader();
+        assertSame(first, third.get(5, TimeUnit.SECONDS));
+        assertNotSame(second, first);
+    }
+
+    @Test
+    void readerOfAnEndedThreadIsTakenBack() throws Exception {
+        Thread ended = new Thread(() -> {
+            try {
+                pool.getReader();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        ended.start();
+        ended.join();
+        Connection kept = pool.getReader();
+
+        // Both readers were checked out, the one of the ended thread is handed on
+        Connection taken = threads.submit(pool::getReader).get(5, TimeUnit.SECONDS);
+        assertNotSame(kept, taken);
+    }
+
+    @Test
+    void cancellingOneReaderLeavesTheOthersRunning() throws Exception {
+        Future<Long> longRead = threads.submit(() -> {
+            try (Statement statement = pool.getReader().createStatement();
+                 ResultSet rs = statement.executeQuery(
+                         "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 3000000) SELECT count(*) FROM n;")) {
+                return rs.getLong(1);
+            }
+        });
+        Future<?> cancel = threads.submit(() -> {
+            Statement statement = pool.getReader().createStatement();
+            Thread.sleep(50);
+            statement.cancel();
+            return null;
+        });
+
+        cancel.get(5, TimeUnit.SECONDS);
+        assertEquals(3_000_000L, longRead.get(30, TimeUnit.SECONDS));
+    }
+}
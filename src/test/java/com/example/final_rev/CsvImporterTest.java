@@ -0,0 +1,146 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvImporterTest {
+    private static final String SNAPSHOT = "SELECT rowid, * FROM items ORDER BY rowid;";
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("import.db");
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, code TEXT UNIQUE, qty INTEGER);",
+                "INSERT INTO items VALUES (1, 'a', 1), (2, 'b', 2), (3, 'c', 3);",
+                "CREATE TABLE codes (code TEXT PRIMARY KEY, label TEXT) WITHOUT ROWID;");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void skippedDuplicatesAreLeftAloneAndTheImportIsUndone() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        Path csv = csv("id,code,qty", "2,b,20", "4,d,4", "5,e,5", "6,a,6", "7,g,7");
+
+        CsvImporter importer = new CsvImporter(database);
+        importer.setTransactionSize(2);
+        assertEquals(3, importer.importFile(csv, "items", null));
+
+        BulkOperation operation = database.getBulkOperations().get(0);
+        assertEquals(BulkOperation.Kind.INSERT, operation.getKind());
+        assertEquals(3, operation.getRowCount());
+        assertEquals(3, database.undoBulkOperation(operation, null));
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+        assertTrue(database.getBulkOperations().isEmpty());
+    }
+
+    @Test
+    void undoingAReplacingImportBringsBackTheReplacedRows() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        // Replaces row 1 under its own rowid, row 2 through its unique code, and an imported row again
+        Path csv = csv("id,code,qty", "1,x,10", "8,b,20", "9,y,30", "10,y,40");
+
+        CsvImporter importer = new CsvImporter(database);
+        importer.setDuplicatePolicy(DuplicatePolicy.REPLACE);
+        importer.setTransactionSize(3);
+        importer.importFile(csv, "items", null);
+        assertEquals(List.of(
+                        List.of("Integer:1", "Integer:1", "String:x", "Integer:10"),
+                        List.of("Integer:3", "Integer:3", "String:c", "Integer:3"),
+                        List.of("Integer:8", "Integer:8", "String:b", "Integer:20"),
+                        List.of("Integer:10", "Integer:10", "String:y", "Integer:40")),
+                SqliteFiles.rows(file, SNAPSHOT));
+
+        database.undoBulkOperation(database.getBulkOperations().get(0), null);
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    @Test
+    void failedChunkLeavesTheEarlierChunksUndoable() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, SNAPSHOT);
+        Path csv = csv("id,code,qty", "4,d,4", "5,e,5", "6,a,6");
+
+        CsvImporter importer = new CsvImporter(database);
+        importer.setDuplicatePolicy(DuplicatePolicy.FAIL);
+        importer.setTransactionSize(2);
+        assertThrows(SQLException.class, () -> importer.importFile(csv, "items", null));
+
+        BulkOperation operation = database.getBulkOperations().get(0);
+        assertEquals(2, operation.getRowCount());
+        database.undoBulkOperation(operation, null);
+        assertEquals(before, SqliteFiles.rows(file, SNAPSHOT));
+    }
+
+    @Test
+    void otherWritesRunBetweenChunks() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Iterator<String[]> rows = new Iterator<>() {
+                private int next = 10;
+
+                @Override
+                public boolean hasNext() {
+                    return next < 14;
+                }
+
+                @Override
+                public String[] next() {
+                    if (next == 12) {
+                        // The first chunk is committed, so the write lock must be free while the second is read
+                        try {
+                            assertNotNull(writer.submit(() -> database.insertRow("items", List.of("id", "code", "qty"),
+                                    Map.of("id", "100", "code", "between", "qty", "0"))).get(5, TimeUnit.SECONDS));
+                        } catch (Exception e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                    return new String[] {String.valueOf(next), "code " + next, String.valueOf(next++)};
+                }
+            };
+
+            assertEquals(4, database.insertRows("items", List.of("id", "code", "qty"), DuplicatePolicy.SKIP, rows, 10, 2, null));
+            assertEquals(List.of(List.of("Integer:8")), SqliteFiles.rows(file, "SELECT count(*) FROM items;"));
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    void importIntoWithoutRowidTableIsNotJournaled() throws Exception {
+        CsvImporter importer = new CsvImporter(database);
+        assertEquals(2, importer.importFile(csv("code,label", "x,first", "y,second"), "codes", null));
+        assertTrue(database.getBulkOperations().isEmpty());
+    }
+
+    private Path csv(String... lines) throws Exception {
+        Path csv = Files.createTempFile(dir, "rows", ".csv");
+        Files.write(csv, List.of(lines));
+        return csv;
+    }
+}
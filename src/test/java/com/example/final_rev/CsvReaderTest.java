@@ -0,0 +1,79 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTest {
+
+    @Test
+    void emptyUnquotedFieldIsNullAndQuotedEmptyFieldIsEmptyText() throws IOException {
+        List<String[]> records = read("a,,\"\",b\n,\n", ',');
+
+        assertArrayEquals(new String[] {"a", null, "", "b"}, records.get(0));
+        assertArrayEquals(new String[] {null, null}, records.get(1));
+    }
+
+    @Test
+    void quotedFieldsKeepDelimitersDoubledQuotesAndLineBreaks() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\"\"\"\"\nnext,row\n"), ',');
+
+        assertArrayEquals(new String[] {"a,b", "say \"hi\"", "two\nlines", "\""}, reader.readRecord());
+        assertEquals(2, reader.getLineNumber());
+        assertArrayEquals(new String[] {"next", "row"}, reader.readRecord());
+        assertEquals(3, reader.getLineNumber());
+    }
+
+    @Test
+    void crlfEndsRecordsButStaysInsideQuotedFields() throws IOException {
+        List<String[]> records = read("a,b\r\n\"x\r\ny\",\"\"\r\nlast,\r\n", ',');
+
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[] {"a", "b"}, records.get(0));
+        assertArrayEquals(new String[] {"x\r\ny", ""}, records.get(1));
+        assertArrayEquals(new String[] {"last", null}, records.get(2));
+    }
+
+    @Test
+    void crlfSplitAcrossBufferRefillIsOneLineBreak() throws IOException {
+        // The reader fills a buffer of 64 Ki characters, put the \r last in it and the \n first in the next
+        String first = "x".repeat(64 * 1024 - 1);
+        List<String[]> records = read(first + "\r\nsecond\r\n", ',');
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {first}, records.get(0));
+        assertArrayEquals(new String[] {"second"}, records.get(1));
+    }
+
+    @Test
+    void lastRecordWithoutLineBreakAndTabDelimiter() throws IOException {
+        List<String[]> records = read("a\t\"b\tc\"\r\n1\t", '\t');
+
+        assertArrayEquals(new String[] {"a", "b\tc"}, records.get(0));
+        assertArrayEquals(new String[] {"1", null}, records.get(1));
+        assertEquals('\t', CsvReader.delimiterFor("data.TSV"));
+        assertEquals(',', CsvReader.delimiterFor("data.csv"));
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        CsvReader reader = new CsvReader(new StringReader("a,\"open\n"), ',');
+
+        assertThrows(IOException.class, reader::readRecord);
+    }
+
+    private static List<String[]> read(String text, char delimiter) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new StringReader(text), delimiter)) {
+            reader.forEachRemaining(records::add);
+        }
+        return records;
+    }
+}
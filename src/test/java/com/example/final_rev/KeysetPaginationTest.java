@@ -0,0 +1,97 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeysetPaginationTest {
+    private static final int ROWS = 1000;
+    private static final int PAGE = 64;
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("pages.db");
+        String numbers = "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < " + ROWS + ") ";
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, grp INTEGER);",
+                numbers + "INSERT INTO items SELECT i, i % 3 FROM n;",
+                "CREATE TABLE codes (code TEXT PRIMARY KEY, n INTEGER) WITHOUT ROWID;",
+                numbers + "INSERT INTO codes SELECT printf('c%04d', i), i FROM n;",
+                // Every value of a repeats over many rows, so pages end in the middle of a run of a
+                "CREATE TABLE pairs (a INTEGER, b INTEGER, PRIMARY KEY (a, b)) WITHOUT ROWID;",
+                numbers + "INSERT INTO pairs SELECT i / 100, i FROM n;");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void rowidPagesFollowEachOther() throws Exception {
+        assertEquals("rowid", database.getRowKeyColumn("items"));
+        assertEquals(ids("SELECT id FROM items ORDER BY id;"), readAll("items", "rowid", null, 0));
+    }
+
+    @Test
+    void singleColumnPrimaryKeyPagesOnTheKey() throws Exception {
+        assertEquals("code", database.getRowKeyColumn("codes"));
+        assertEquals(ids("SELECT n FROM codes ORDER BY code;"), readAll("codes", "code", null, 1));
+    }
+
+    @Test
+    void compositePrimaryKeyPagesWithOffset() throws Exception {
+        assertNull(database.getRowKeyColumn("pairs"));
+        assertEquals(ids("SELECT b FROM pairs ORDER BY a, b;"), readAll("pairs", null, null, 1));
+    }
+
+    @Test
+    void sortedPagesKeepRowsWithEqualSortValues() throws Exception {
+        RowQuery query = new RowQuery();
+        query.setSort("grp", true);
+        assertEquals(ids("SELECT id FROM items ORDER BY grp DESC, id DESC;"), readAll("items", "rowid", query, 0));
+    }
+
+    // Reads the whole table page by page from the last position, as TableRowWindow does
+    private List<Long> readAll(String tableName, String keyColumn, RowQuery query, int idColumn) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        RowPage.Position after = null;
+        long offset = 0;
+        while (true) {
+            RowPage page = database.getRowPage(tableName, keyColumn, query, after, offset, PAGE);
+            for (int i = 0; i < page.size(); i++) {
+                ids.add(((Number) page.getRow(i).getValue(idColumn)).longValue());
+            }
+            if (page.size() < PAGE) {
+                return ids;
+            }
+            if (keyColumn == null) {
+                offset += PAGE;
+            } else {
+                after = page.getLastPosition();
+            }
+        }
+    }
+
+    private List<Long> ids(String sql) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (List<String> row : SqliteFiles.rows(file, sql)) {
+            ids.add(Long.parseLong(row.get(0).substring(row.get(0).indexOf(':') + 1)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowCacheTest {
+    private static final long BUDGET = 1 << 20;
+
+    @Test
+    void putWithStampFromBeforeAnInvalidationIsIgnored() {
+        RowCache cache = new RowCache(BUDGET);
+        long stamp = cache.validate(1);
+        cache.invalidate("items");
+
+        cache.putPage(stamp, "items", null, 10, page(1));
+        cache.putRowCount(stamp, "items", 1);
+        cache.putWarmedRows(stamp, "items", 1);
+
+        assertNull(cache.getPage("items", null, 10));
+        assertEquals(-1, cache.getRowCount("items"));
+        assertEquals(-1, cache.getWarmedRows("items"));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void invalidateDropsOnlyTheWrittenTable() {
+        RowCache cache = new RowCache(BUDGET);
+        long stamp = cache.validate(1);
+        RowPage other = page(2);
+        cache.putPage(stamp, "items", null, 10, page(1));
+        cache.putPage(stamp, "other", null, 10, other);
+        cache.putRowCount(stamp, "other", 5);
+
+        cache.invalidate("items");
+
+        assertNull(cache.getPage("items", null, 10));
+        assertSame(other, cache.getPage("other", null, 10));
+        assertEquals(5, cache.getRowCount("other"));
+        assertEquals(other.estimateBytes(), cache.getBytes());
+    }
+
+    @Test
+    void externalCommitClearsEverything() {
+        RowCache cache = new RowCache(BUDGET);
+        long stamp = cache.validate(1);
+        cache.putPage(stamp, "items", null, 10, page(1));
+
+        assertEquals(stamp, cache.validate(1));
+        long newStamp = cache.validate(2);
+
+        assertTrue(newStamp != stamp);
+        assertNull(cache.getPage("items", null, 10));
+        assertEquals(-1, new RowCache(0).validate(1));
+    }
+
+    @Test
+    void leastRecentlyUsedPageGivesWayToAMoreFrequentOne() {
+        RowPage first = page(1);
+        RowCache cache = new RowCache(first.estimateBytes() * 2);
+        long stamp = cache.validate(1);
+        cache.putPage(stamp, "items", null, 10, first);
+        cache.putPage(stamp, "items", 1L, 10, page(2));
+        cache.getPage("items", null, 10);
+
+        // Like Database, the miss is counted before the page is read and put
+        assertNull(cache.getPage("items", 2L, 10));
+        cache.putPage(stamp, "items", 2L, 10, page(3));
+
+        assertSame(first, cache.getPage("items", null, 10));
+        assertNull(cache.getPage("items", 1L, 10));
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void oneOffScanDoesNotEvictPagesReadOften() {
+        RowPage hot = page(0);
+        RowCache cache = new RowCache(hot.estimateBytes() * 4);
+        long stamp = cache.validate(1);
+        for (int i = 0; i < 5; i++) {
+            cache.getPage("hot", null, 10);
+        }
+        cache.putPage(stamp, "hot", null, 10, hot);
+
+        // Least recently used order alone would evict the hot page between two of its reads
+        for (long key = 1; key <= 1000; key++) {
+            if (cache.getPage("items", key, 10) == null) {
+                cache.putPage(stamp, "items", key, 10, page(key));
+            }
+            if (key % 20 == 0) {
+                assertSame(hot, cache.getPage("hot", null, 10), "after " + key + " scanned pages");
+            }
+        }
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void cachedPagesAreSharedAndChangedOnlyAsCopies() {
+        RowCache cache = new RowCache(BUDGET);
+        long stamp = cache.validate(1);
+        RowPage page = page(1);
+        cache.putPage(stamp, "items", null, 10, page);
+        assertTrue(page.isShared());
+
+        // What TableRowWindow does before it keeps a pending edit or an appended row
+        RowPage copy = page.copy();
+        copy.setRow(0, new ArrayRow(new Object[] {2L}));
+        copy.add(3L, new ArrayRow(new Object[] {3L}));
+
+        RowPage cached = cache.getPage("items", null, 10);
+        assertEquals(1, cached.size());
+        assertEquals(1L, cached.getRow(0).getValue(0));
+        assertFalse(copy.isShared());
+        assertEquals(2L, copy.getRow(0).getValue(0));
+        assertEquals(1L, copy.getKey(0));
+    }
+
+    @Test
+    void pageReadBeforeAConcurrentWriteIsNeverServedAfterIt() throws Exception {
+        RowCache cache = new RowCache(BUDGET);
+        // The data version a reader sees, and the number of writes whose invalidation has finished
+        AtomicLong committed = new AtomicLong();
+        AtomicLong invalidated = new AtomicLong();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Long>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(() -> {
+                    long checks = 0;
+                    while (writing.get()) {
+                        long stamp = cache.validate(1);
+                        long version = committed.get();
+                        cache.putPage(stamp, "items", null, 10, page(version));
+                        cache.putRowCount(stamp, "items", version);
+
+                        long done = invalidated.get();
+                        RowPage cached = cache.getPage("items", null, 10);
+                        if (cached != null) {
+                            long cachedVersion = (Long) cached.getRow(0).getValue(0);
+                            assertTrue(cachedVersion >= done, "page of version " + cachedVersion + " after write " + done);
+                        }
+                        long count = cache.getRowCount("items");
+                        assertTrue(count == -1 || count >= done, "row count " + count + " after write " + done);
+                        checks++;
+                    }
+                    return checks;
+                });
+            }
+            List<Future<Long>> results = new ArrayList<>();
+            for (Callable<Long> reader : readers) {
+                results.add(executor.submit(reader));
+            }
+            for (long write = 1; write <= 20_000; write++) {
+                // Like Database: commit first, then drop what was cached for the table
+                committed.set(write);
+                cache.invalidate("items");
+                invalidated.set(write);
+            }
+            writing.set(false);
+            for (Future<Long> result : results) {
+                assertTrue(result.get() > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RowPage page(long value) {
+        RowPage page = new RowPage(1, 1);
+        page.add(value, new ArrayRow(new Object[] {value}));
+        return page;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class RowEditTest {
+    @TempDir
+    Path dir;
+    private Path file;
+    private Database database;
+
+    @BeforeEach
+    void createDatabase() throws Exception {
+        file = dir.resolve("edit.db");
+        SqliteFiles.execute(file,
+                "CREATE TABLE items (id INTEGER PRIMARY KEY, code TEXT, qty INTEGER, note TEXT, data BLOB);",
+                "INSERT INTO items VALUES (1, 'a', 5, NULL, x'00ff10');");
+        database = new Database(file.toString());
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void updateRowOnlyWritesChangedColumns() throws Exception {
+        RowPage row = database.updateRow("items", "id", "1", Map.of("code", "007"));
+
+        assertEquals(List.of(List.of("Integer:1", "String:007", "Integer:5", "null", "blob:00ff10")),
+                SqliteFiles.rows(file, "SELECT * FROM items;"));
+        assertEquals("007", row.getRow(0).getValue(1));
+        assertInstanceOf(BlobHandle.class, row.getRow(0).getValue(4));
+    }
+
+    @Test
+    void updateRowWithoutChangesKeepsTheRow() throws Exception {
+        List<List<String>> before = SqliteFiles.rows(file, "SELECT * FROM items;");
+
+        RowPage row = database.updateRow("items", "id", "1", Map.of());
+
+        assertEquals(before, SqliteFiles.rows(file, "SELECT * FROM items;"));
+        assertEquals(1, row.size());
+    }
+
+    @Test
+    void editedTextIsStoredAsEntered() {
+        RowStore store = new RowStore(2, 4);
+        store.append(new Object[] {7L, 1.5});
+
+        store.setValue(0, 0, "007");
+        store.setValue(0, 1, "1.50");
+
+        assertEquals("007", store.getValue(0, 0));
+        assertEquals("1.50", store.getValue(0, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.final_rev;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Creates and reads SQLite files for tests on a plain connection, outside Database.
+ */
+final class SqliteFiles {
+    private SqliteFiles() {
+    }
+
+    /**
+     * Runs statements on a new connection to the file, creating it if needed.
+     *
+     * file       The database file.
+     * statements The SQL statements, each run on its own.
+     */
+    static void execute(Path file, String... statements) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Reads every row of a query on a new connection. Blobs are returned as hex text and
+     * every value is prefixed with its storage class, so rows only compare equal when the
+     * values were stored exactly alike.
+     *
+     * file The database file.
+     * sql  The query.
+     * @return The rows.
+     */
+    static List<List<String>> rows(Path file, String sql) throws SQLException {
+        List<List<String>> rows = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    Object value = rs.getObject(i);
+                    if (value == null) {
+                        row.add("null");
+                    } else if (value instanceof byte[] bytes) {
+                        row.add("blob:" + HexFormat.of().formatHex(bytes));
+                    } else {
+                        row.add(value.getClass().getSimpleName() + ":" + value);
+                    }
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
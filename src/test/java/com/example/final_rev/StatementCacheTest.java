@@ -0,0 +1,109 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementCacheTest {
+    private Connection connection;
+    private int prepared;
+
+    @BeforeEach
+    void openConnection() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    void closeConnection() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void givenBackStatementIsReusedForTheSameKey() throws Exception {
+        StatementCache cache = new StatementCache(connection);
+        PreparedStatement first;
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "select", List.of("a"), this::sql)) {
+            first = cached.get();
+        }
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "select", List.of("a"), this::sql)) {
+            assertSame(first, cached.get());
+        }
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "select", List.of("b"), this::sql)) {
+            assertNotSame(first, cached.get());
+        }
+        assertEquals(2, prepared);
+    }
+
+    @Test
+    void borrowedStatementIsNeverSharedAndOnlyOneIsKept() throws Exception {
+        StatementCache cache = new StatementCache(connection);
+        StatementCache.CachedStatement first = cache.borrow("t", "select", List.of(), this::sql);
+        StatementCache.CachedStatement second = cache.borrow("t", "select", List.of(), this::sql);
+        assertNotSame(first.get(), second.get());
+
+        first.close();
+        second.close();
+
+        assertTrue(first.get().isClosed());
+        assertFalse(second.get().isClosed());
+    }
+
+    @Test
+    void eldestIdleStatementIsClosedOverCapacity() throws Exception {
+        StatementCache cache = new StatementCache(connection, 2, null);
+        PreparedStatement eldest = borrowAndReturn(cache, "a");
+        PreparedStatement middle = borrowAndReturn(cache, "b");
+        borrowAndReturn(cache, "c");
+
+        assertTrue(eldest.isClosed());
+        assertFalse(middle.isClosed());
+    }
+
+    @Test
+    void clearClosesIdleAndLaterReturnedStatements() throws Exception {
+        StatementCache cache = new StatementCache(connection);
+        PreparedStatement idle = borrowAndReturn(cache, "a");
+        StatementCache.CachedStatement borrowed = cache.borrow("t", "select", List.of("b"), this::sql);
+
+        cache.clear();
+        borrowed.close();
+
+        assertTrue(idle.isClosed());
+        assertTrue(borrowed.get().isClosed());
+    }
+
+    @Test
+    void nullColumnIsPartOfTheKey() throws Exception {
+        StatementCache cache = new StatementCache(connection);
+        PreparedStatement withNull;
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "update", Arrays.asList("a", null), this::sql)) {
+            withNull = cached.get();
+        }
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "update", Arrays.asList("a", null), this::sql)) {
+            assertSame(withNull, cached.get());
+        }
+    }
+
+    private PreparedStatement borrowAndReturn(StatementCache cache, String column) throws Exception {
+        try (StatementCache.CachedStatement cached = cache.borrow("t", "select", List.of(column), this::sql)) {
+            return cached.get();
+        }
+    }
+
+    private String sql() {
+        prepared++;
+        return "SELECT 1;";
+    }
+}
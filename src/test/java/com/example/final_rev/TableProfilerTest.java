@@ -0,0 +1,35 @@
+package com.example.final_rev;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableProfilerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void topValuesAreExactAndLeaveOutUnrepeatedValues() throws Exception {
+        Path file = dir.resolve("profile.db");
+        // 30% of skew is 1 and 10% is 2, the rest is unique like every value of name
+        SqliteFiles.execute(file, "CREATE TABLE items (name TEXT, skew INTEGER);",
+                "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 50000) "
+                        + "INSERT INTO items SELECT 'val' || i, CASE WHEN i % 10 < 3 THEN 1 WHEN i % 10 = 3 THEN 2 ELSE i END FROM n;");
+        Database database = new Database(file.toString());
+        try {
+            TableProfile profile = database.getTableProfiler().profile("items", null);
+
+            ColumnProfile name = profile.getColumns().get(0);
+            ColumnProfile skew = profile.getColumns().get(1);
+            assertTrue(name.getTopValues().isEmpty(), "unique values reported as frequent: " + name.getTopValues());
+            assertEquals(Map.of(1L, 15_000L, 2L, 5_000L), skew.getTopValues());
+        } finally {
+            database.close();
+        }
+    }
+}